@@ -1,6 +1,9 @@
 package com.goodsop.file.config;
 
+import com.goodsop.file.exception.ChunkChecksumException;
+import com.goodsop.file.exception.UploadThrottledException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -32,6 +35,40 @@ public class FileExceptionHandler {
         return new ResponseEntity<>(response, HttpStatus.PAYLOAD_TOO_LARGE);
     }
     
+    /**
+     * 处理上传限流异常，返回429并通过Retry-After告知客户端重试时间
+     */
+    @ExceptionHandler(UploadThrottledException.class)
+    public ResponseEntity<Map<String, Object>> handleUploadThrottledException(UploadThrottledException e) {
+        log.warn("上传请求被限流: {}", e.getMessage());
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", e.getMessage());
+        response.put("retryAfter", e.getRetryAfterSeconds());
+        
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(response);
+    }
+    
+    /**
+     * 处理分块校验失败异常，返回400，客户端应重传该分块
+     */
+    @ExceptionHandler(ChunkChecksumException.class)
+    public ResponseEntity<Map<String, Object>> handleChunkChecksumException(ChunkChecksumException e) {
+        log.warn("分块校验失败: {}", e.getMessage());
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", e.getMessage());
+        response.put("chunk", e.getChunk());
+        response.put("expectedCrc32c", e.getExpected());
+        response.put("actualCrc32c", e.getActual());
+        
+        return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+    }
+    
     /**
      * 处理运行时异常
      */
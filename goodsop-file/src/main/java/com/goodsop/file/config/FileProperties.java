@@ -3,6 +3,12 @@ package com.goodsop.file.config;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * 文件服务配置
@@ -22,6 +28,11 @@ public class FileProperties {
      */
     private Upload upload = new Upload();
     
+    /**
+     * 下载配置
+     */
+    private Download download = new Download();
+    
     /**
      * 清理配置
      */
@@ -101,6 +112,52 @@ public class FileProperties {
          * 是否启用解压缩 (将尝试解压缩带有.gz后缀的文件)
          */
         private Boolean enableDecompress = true;
+        
+        /**
+         * ZIP包含多个文件时是否全部解压，每个文件登记为独立的文件记录（关闭时只保留第一个文件）
+         */
+        private Boolean zipExtractAllEntries = false;
+        
+        /**
+         * 全部解压时单个ZIP最多解压的文件数，超出的条目跳过
+         */
+        private Integer zipMaxEntries = 100;
+        
+        /**
+         * 下载和预览静态加密的文件时是否按请求的范围实时解密输出明文（关闭则输出密文原文）；
+         * 客户端上传后仍为密文的文件始终原样输出
+         */
+        private Boolean decryptOnRead = true;
+        
+        /**
+         * 在线预览响应允许浏览器缓存的时长（秒），过期后按ETag重新验证；0表示每次都重新验证
+         */
+        private Integer previewCacheMaxAge = 86400;
+        
+        /**
+         * 是否启用静态加密：最终文件写入磁盘时按AES/CTR加密（每个文件随机IV，使用 atRestKey），下载和预览时实时解密
+         */
+        private Boolean encryptAtRest = false;
+        
+        /**
+         * 静态加密密钥（UTF-8编码后32字节），与解密客户端数据的 aesKey 分开配置；启用静态加密时必须配置，否则启动失败
+         */
+        private String atRestKey;
+        
+        /**
+         * 存储目录布局: DATE-按日期(yyyyMMdd)，DEVICE_HASH-日期+设备ID哈希两级分片，MD5_PREFIX-日期+文件MD5前缀两级分片
+         */
+        private String layout = "DATE";
+        
+        /**
+         * 是否启用存储布局迁移（把已有文件移动到当前布局对应的目录并更新记录，需执行db/t_task_lock.sql）
+         */
+        private Boolean layoutMigrationEnabled = false;
+        
+        /**
+         * 存储布局迁移每批处理的记录数
+         */
+        private Integer layoutMigrationBatchSize = 500;
     }
     
     /**
@@ -109,9 +166,203 @@ public class FileProperties {
     @Data
     public static class Upload {
         /**
-         * 最大文件大小
+         * 最大文件大小（如 4GB），分块上传的 chunks * chunkSize 超过时拒绝上传，不再预分配
+         */
+        private DataSize maxSize = DataSize.ofGigabytes(4);
+        
+        /**
+         * 分块合并方式：ZERO_COPY-FileChannel.transferTo内核态拼接，BUFFERED-经堆内缓冲区复制
+         */
+        private String mergeMode = "ZERO_COPY";
+        
+        /**
+         * 分块存储方式：PREALLOCATED-预分配目标文件并按偏移量写入分块，PART_FILES-每块保存为.part文件后合并
+         */
+        private String chunkStoreMode = "PREALLOCATED";
+        
+        /**
+         * 单个文件的最大分块数，超过时拒绝探测和上传（限制缺失分块列表和会话分块位图的大小）
+         */
+        private Integer maxChunks = 65536;
+        
+        /**
+         * 全局同时处理中的分块请求上限，超过时返回429
+         */
+        private Integer maxInFlightChunks = 64;
+        
+        /**
+         * 单个文件同时处理中的分块请求上限，超过时返回429
+         */
+        private Integer maxInFlightChunksPerUpload = 4;
+        
+        /**
+         * 限流时建议客户端重试的等待时间（秒），通过Retry-After响应头返回
+         */
+        private Integer retryAfterSeconds = 1;
+        
+        /**
+         * 分块上传完成后是否在后台线程中解密、解压和入库（false时在最后一个分块的请求中同步处理）
+         */
+        private Boolean asyncProcessing = true;
+        
+        /**
+         * 后台处理线程数
+         */
+        private Integer processingThreads = 4;
+        
+        /**
+         * 后台处理队列容量，队列满时由上传请求线程同步处理
+         */
+        private Integer processingQueueCapacity = 100;
+        
+        /**
+         * 后台处理超时时间（分钟），超过该时间仍为上传中的文件记录（节点重启或崩溃后遗留）标记为处理失败，0表示不检查
+         */
+        private Integer processingTimeoutMinutes = 120;
+
+        /**
+         * 大文件并行解密、并行GZIP压缩使用的线程数，0表示使用CPU核数
+         */
+        private Integer parallelThreads = 0;
+
+        /**
+         * 是否校验标准格式文件名中的MD5，不一致时拒绝上传
+         */
+        private Boolean verifyFilenameMd5 = true;
+
+        /**
+         * 是否按文件MD5和大小去重，相同内容只存储一份并支持秒传
+         */
+        private Boolean dedupEnabled = true;
+
+        /**
+         * 秒传持有证明的校验范围大小（字节）：秒传前客户端需提交服务端随机指定范围内容的MD5，证明确实持有该文件
+         */
+        private Integer instantProofBytes = 64 * 1024;
+
+        /**
+         * 秒传校验范围的有效期（秒）
+         */
+        private Integer instantChallengeTtlSeconds = 300;
+
+        /**
+         * 秒传校验范围的签名密钥，为空时每次启动随机生成（多节点部署时需配置为相同的值）
+         */
+        private String instantChallengeSecret;
+
+        /**
+         * 上传元数据缓存（原始扩展名、原始大小）的最大条目数，空闲超时与临时文件最大保留时间一致
+         */
+        private Integer metadataCacheMaxEntries = 10000;
+
+        /**
+         * 分块上传会话存储：MEMORY-内存（单节点），DATABASE-数据库（多节点共享，需执行db/t_upload_session.sql，存储目录需位于共享存储上）
+         */
+        private String sessionStore = "MEMORY";
+
+        /**
+         * 客户端未携带分块校验值时是否也计算分块CRC32C并在响应中返回（关闭时这类分块走零拷贝写入）
+         */
+        private Boolean chunkChecksumEnabled = false;
+
+        /**
+         * 建议设备上传前使用的压缩格式：NONE/GZIP/ZSTD/LZ4（服务端按文件头自动识别并解压以上格式）
+         */
+        private String compressionCodec = "ZSTD";
+
+        /**
+         * 已压缩、不建议再压缩的文件扩展名（Speex编码的.bin录音、有损音频、图片、已加密数据等）
+         */
+        private List<String> compressionSkipExtensions = new ArrayList<>(List.of(
+                "bin", "spx", "opus", "ogg", "mp3", "aac", "m4a", "amr", "mp4", "jpg", "jpeg", "png", "gif", "enc"));
+    }
+    
+    /**
+     * 下载配置（下载和在线预览共用）
+     */
+    @Data
+    public static class Download {
+        /**
+         * 是否使用Servlet异步非阻塞输出，输出期间不占用容器线程，慢速客户端只在可写时才被处理
+         */
+        private Boolean asyncEnabled = true;
+        
+        /**
+         * 响应内容不小于该字节数时才使用异步输出，更小的响应可以一次写入套接字缓冲区，直接同步输出
+         */
+        private Long asyncThreshold = 256 * 1024L;
+        
+        /**
+         * 异步输出和批量打包输出的超时时间（秒），超过时断开连接；0表示不限制
+         */
+        private Integer asyncTimeoutSeconds = 3600;
+        
+        /**
+         * 全局同时输出中的响应上限（sendfile交给容器发送的除外），超过时返回503
+         */
+        private Integer maxConcurrentTransfers = 1000;
+        
+        /**
+         * 全局输出带宽上限（字节/秒），0表示不限制；带宽不足时按流量类别和用户加权公平分配。
+         * 配置了任一带宽上限时不使用sendfile
+         */
+        private Long maxBandwidth = 0L;
+        
+        /**
+         * 单个用户（或网关传入的租户）的输出带宽上限（字节/秒），0表示不限制
+         */
+        private Long maxBandwidthPerUser = 0L;
+        
+        /**
+         * 单个连接的输出带宽上限（字节/秒），0表示不限制
+         */
+        private Long maxBandwidthPerConnection = 0L;
+        
+        /**
+         * 识别用户的请求头（如网关传入的用户ID或租户ID），只采信来自 trustedProxies 的请求；
+         * 默认为空：依次使用登录用户和客户端地址
+         */
+        private String clientKeyHeader = "";
+        
+        /**
+         * 受信任的网关/反向代理地址，只有来自这些地址的请求才使用 clientKeyHeader 和 X-Forwarded-For 识别用户
+         */
+        private List<String> trustedProxies = new ArrayList<>();
+        
+        /**
+         * 在线预览（播放）在全局带宽分配中的权重
+         */
+        private Integer interactiveWeight = 8;
+        
+        /**
+         * 文件下载（批量导出）在全局带宽分配中的权重
+         */
+        private Integer bulkWeight = 1;
+        
+        /**
+         * 按用户（或租户）设置的权重倍数，未配置的为1
+         */
+        private Map<String, Integer> clientWeights = new HashMap<>();
+        
+        /**
+         * 超过并发上限时建议客户端重试的等待时间（秒），通过Retry-After响应头返回
+         */
+        private Integer retryAfterSeconds = 1;
+        
+        /**
+         * 批量打包下载一次最多包含的文件数，超过时拒绝请求
+         */
+        private Integer batchMaxFiles = 5000;
+        
+        /**
+         * 同时进行的批量打包下载上限，超过时返回503；打包同步输出，每个占用一个容器线程，同时计入 maxConcurrentTransfers
+         */
+        private Integer batchMaxConcurrent = 8;
+        
+        /**
+         * 批量打包下载中可压缩文件（如WAV）的deflate压缩级别 1-9，边读边压缩，级别越低CPU占用越少
          */
-        private String maxSize;
+        private Integer batchCompressionLevel = 1;
     }
     
     /**
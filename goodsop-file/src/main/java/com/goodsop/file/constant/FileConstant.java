@@ -20,6 +20,11 @@ public class FileConstant {
      */
     public static final int FILE_STATUS_EXPIRED = 2;
     
+    /**
+     * 文件状态：处理失败
+     */
+    public static final int FILE_STATUS_FAILED = 3;
+    
     /**
      * 是否删除：否
      */
@@ -105,6 +110,11 @@ public class FileConstant {
      */
     public static final String ENCRYPTION_TYPE_AES = "AES-256";
     
+    /**
+     * 服务端静态加密类型（文件开头为随机IV，其后为AES/CTR密文），只有此类型的文件在读取时实时解密
+     */
+    public static final String ENCRYPTION_TYPE_AT_REST = "AES-CTR-AT-REST";
+    
     /**
      * GZIP压缩类型
      */
@@ -144,7 +154,52 @@ public class FileConstant {
      * 默认缓冲区大小
      */
     public static final int DEFAULT_BUFFER_SIZE = 8192;
-    
+
+    /**
+     * 流式处理缓冲区大小（64KB）
+     */
+    public static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 大于该大小（32MB）的加密文件按段并行解密
+     */
+    public static final long PARALLEL_DECRYPT_THRESHOLD = 32L * 1024 * 1024;
+
+    /**
+     * 并行解密时每段的大小（8MB，必须是AES块大小16字节的整数倍）
+     */
+    public static final int PARALLEL_DECRYPT_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * 不小于该大小（4MB）的文件按块并行GZIP压缩
+     */
+    public static final long PARALLEL_COMPRESS_THRESHOLD = 4L * 1024 * 1024;
+
+    /**
+     * 并行GZIP压缩的分块大小（128KB）
+     */
+    public static final int PARALLEL_COMPRESS_BLOCK_SIZE = 128 * 1024;
+
+    /**
+     * 流式处理过程中的临时文件后缀
+     */
+    public static final String PIPELINE_FILE_SUFFIX = ".pipeline";
+
+    /**
+     * 预分配模式下分块上传的数据文件名（位于temp/{文件名}目录中）
+     */
+    public static final String UPLOAD_DATA_FILE = "data.upload";
+
+    /**
+     * 分块文件模式下的分块文件后缀（{分块索引}.part）
+     */
+    public static final String CHUNK_PART_SUFFIX = ".part";
+
+    /**
+     * 预分配模式下分块写完后创建的标记文件后缀（{分块索引}.done，内容为分块字节数），用于重启后恢复上传进度
+     */
+    public static final String CHUNK_DONE_SUFFIX = ".done";
+
     /**
      * 最大文件大小（默认100MB）
      */
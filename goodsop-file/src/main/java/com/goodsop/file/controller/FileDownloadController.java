@@ -2,9 +2,11 @@ package com.goodsop.file.controller;
 
 import com.goodsop.file.entity.FileInfo;
 import com.goodsop.file.service.FileService;
+import com.goodsop.file.vo.BatchDownloadQueryVO;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springdoc.core.annotations.ParameterObject;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
@@ -12,6 +14,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
 /**
@@ -63,4 +66,29 @@ public class FileDownloadController {
             }
         }
     }
+    
+    /**
+     * 批量打包下载：按文件ID列表，或按设备ID、录音日期范围和文件类型查询，边读边打包成ZIP输出
+     */
+    @RequestMapping(value = "/download/batch", method = {RequestMethod.GET, RequestMethod.POST})
+    @Operation(summary = "批量打包下载")
+    public void downloadBatch(
+            @ParameterObject BatchDownloadQueryVO query,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        
+        log.info("接收到批量打包下载请求: {}", query);
+        
+        try {
+            fileService.downloadBatch(query, request, response);
+        } catch (IllegalArgumentException e) {
+            log.warn("批量打包下载请求无效: {}", e.getMessage());
+            try {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                response.getWriter().write(e.getMessage());
+            } catch (Exception ex) {
+                log.error("返回批量打包下载请求无效错误失败", ex);
+            }
+        }
+    }
 } 
\ No newline at end of file
@@ -5,6 +5,7 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.goodsop.common.core.model.Result;
 import com.goodsop.file.entity.FileInfo;
 import com.goodsop.file.service.FileService;
+import com.goodsop.file.util.UploadMetadataCache;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -26,6 +27,7 @@ import java.util.Map;
 public class FileManageController {
     
     private final FileService fileService;
+    private final UploadMetadataCache uploadMetadataCache;
     
     /**
      * 分页查询文件列表
@@ -100,4 +102,13 @@ public class FileManageController {
             return Result.error("文件删除失败");
         }
     }
-} 
\ No newline at end of file
+    
+    /**
+     * 查询上传元数据缓存统计
+     */
+    @GetMapping("/upload/cache/stats")
+    @Operation(summary = "查询上传元数据缓存统计(条目数、命中、未命中、淘汰)")
+    public Result<UploadMetadataCache.CacheStats> getUploadCacheStats() {
+        return Result.success(uploadMetadataCache.getStats());
+    }
+}
\ No newline at end of file
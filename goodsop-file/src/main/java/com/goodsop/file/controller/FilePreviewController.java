@@ -16,11 +16,6 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -60,40 +55,10 @@ public class FilePreviewController {
             return;
         }
         
-        File file = new File(fileInfo.getFilePath());
-        if (!file.exists()) {
-            try {
-                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                response.getWriter().write("文件不存在");
-            } catch (Exception e) {
-                log.error("返回文件不存在错误失败", e);
-            }
-            return;
-        }
-        
-        // 设置文件内容类型
+        // 设置文件内容类型，图片/音频/视频等媒体文件直接预览（支持Range和条件请求，加密存储的文件实时解密）
+        // 文件是否存在在条件请求判断之后才检查，浏览器缓存仍有效时不访问磁盘
         String contentType = getContentType(fileInfo.getFileType());
-        response.setContentType(contentType);
-        
-        // 如果是图片/音频/视频等媒体文件，直接预览
-        try (FileInputStream fis = new FileInputStream(file);
-             OutputStream os = response.getOutputStream()) {
-            
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = fis.read(buffer)) != -1) {
-                os.write(buffer, 0, bytesRead);
-            }
-            os.flush();
-        } catch (IOException e) {
-            log.error("文件预览失败: {}", e.getMessage(), e);
-            try {
-                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                response.getWriter().write("文件预览失败: " + e.getMessage());
-            } catch (Exception ex) {
-                log.error("返回文件预览失败错误失败", ex);
-            }
-        }
+        fileService.previewFile(fileInfo, contentType, request, response);
     }
     
     /**
@@ -2,14 +2,24 @@ package com.goodsop.file.controller;
 
 import com.goodsop.common.core.model.Result;
 import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.constant.FileConstant;
 import com.goodsop.file.entity.FileInfo;
+import com.goodsop.file.exception.ChunkChecksumException;
+import com.goodsop.file.exception.UploadThrottledException;
 import com.goodsop.file.service.FileService;
+import com.goodsop.file.util.ChunkChecksum;
+import com.goodsop.file.util.InstantUploadChallenge;
+import com.goodsop.file.vo.ChunkUploadStatusVO;
+import com.goodsop.file.vo.FileProcessingStatusVO;
 import com.goodsop.file.vo.FileUploadResponseVO;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -18,6 +28,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * 文件上传控制器
@@ -58,6 +69,7 @@ public class FileUploadController {
             result.put("uploadTime", fileInfo.getUploadTime());
             result.put("filePath", fileInfo.getFilePath());
             result.put("accessUrl", fileInfo.getAccessUrl());
+            result.put("deduplicated", Boolean.TRUE.equals(fileInfo.getDeduplicated()));
             result.put("success", true);
             
             return Result.success(result);
@@ -67,6 +79,76 @@ public class FileUploadController {
         }
     }
     
+    /**
+     * 秒传：服务端已有相同内容的文件时无需上传文件内容
+     * <p>
+     * 第一次请求不带校验令牌，服务端已有相同内容时返回随机指定的校验范围；
+     * 客户端携带令牌和该范围内容的MD5再次请求，校验通过后登记文件记录。
+     * </p>
+     */
+    @PostMapping("/instant")
+    @Operation(summary = "秒传(按文件MD5和大小判断服务端是否已有相同内容，需提交指定范围内容的MD5证明持有该文件)")
+    public Result<FileUploadResponseVO> instantUpload(
+            @Parameter(description = "文件名", required = true) @RequestParam("fileName") String fileName,
+            @Parameter(description = "设备ID") @RequestParam(required = false, defaultValue = "unknown") String deviceId,
+            @Parameter(description = "文件MD5", required = true) @RequestParam("fileMd5") String fileMd5,
+            @Parameter(description = "文件大小(字节)", required = true) @RequestParam("fileSize") Long fileSize,
+            @Parameter(description = "关键词") @RequestParam(required = false) String keywords,
+            @Parameter(description = "秒传校验令牌") @RequestParam(required = false) String challengeToken,
+            @Parameter(description = "校验范围内容的MD5") @RequestParam(required = false) String proofMd5) {
+        
+        log.info("接收到秒传请求: fileName={}, deviceId={}, fileMd5={}, fileSize={}", fileName, deviceId, fileMd5, fileSize);
+        
+        if (fileName == null || fileName.trim().isEmpty()) {
+            return Result.error("文件名不能为空");
+        }
+        if (fileMd5 == null || !fileMd5.matches("[a-fA-F0-9]{32}") || fileSize == null || fileSize < 0) {
+            return Result.error("文件MD5或大小无效");
+        }
+        
+        FileUploadResponseVO responseVO = new FileUploadResponseVO().setFileName(fileName).setSuccess(true);
+        try {
+            if (!StringUtils.hasText(challengeToken) || !StringUtils.hasText(proofMd5)) {
+                InstantUploadChallenge.Challenge challenge = fileService.challengeInstantUpload(deviceId, fileMd5, fileSize);
+                if (challenge == null) {
+                    return Result.success(responseVO.setCompleted(false).setDeduplicated(false)
+                            .setMessage("服务端没有相同内容的文件，请上传文件"));
+                }
+                return Result.success(responseVO.setCompleted(false)
+                        .setChallengeToken(challenge.getToken())
+                        .setChallengeOffset(challenge.getOffset())
+                        .setChallengeLength(challenge.getLength())
+                        .setMessage("请提交校验范围内容的MD5以完成秒传"));
+            }
+            
+            FileInfo fileInfo = fileService.instantUpload(fileName, deviceId, fileMd5, fileSize, keywords, challengeToken, proofMd5);
+            if (fileInfo == null) {
+                return Result.success(responseVO.setCompleted(false).setDeduplicated(false)
+                        .setMessage("服务端没有相同内容的文件，请上传文件"));
+            }
+            
+            FileProperties.Storage storage = fileProperties.getStorage();
+            responseVO.setFileId(fileInfo.getId())
+                      .setFileName(fileInfo.getFileName())
+                      .setFileSize(fileInfo.getFileSize())
+                      .setFileType(fileInfo.getFileType())
+                      .setUploadTime(fileInfo.getUploadTime())
+                      .setAccessUrl(String.format("http://%s:%d%s", storage.getInternetHost(), storage.getInternetPort(), fileInfo.getAccessUrl()))
+                      .setLanAccessUrl(String.format("http://%s:%d%s", storage.getLanHost(), storage.getLanPort(), fileInfo.getAccessUrl()))
+                      .setCompleted(true)
+                      .setDeduplicated(true)
+                      .setStatus(fileInfo.getStatus())
+                      .setMessage("秒传成功");
+            return Result.success(responseVO);
+        } catch (IllegalArgumentException e) {
+            log.warn("秒传校验未通过: fileName={}, deviceId={}, {}", fileName, deviceId, e.getMessage());
+            return Result.error(e.getMessage());
+        } catch (Exception e) {
+            log.error("秒传失败: {}", e.getMessage(), e);
+            return Result.error("秒传失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 分块上传文件（断点续传）
      */
@@ -78,13 +160,15 @@ public class FileUploadController {
             @Parameter(description = "设备ID") @RequestParam(required = false, defaultValue = "unknown") String deviceId,
             @Parameter(description = "当前块索引", required = true) @RequestParam("chunk") Integer chunk,
             @Parameter(description = "总块数", required = true) @RequestParam("chunks") Integer chunks,
+            @Parameter(description = "分块大小(字节，除最后一块外每块的大小)") @RequestParam(required = false) Long chunkSize,
             @Parameter(description = "是否加密(0-否，1-是)") @RequestParam(required = false, defaultValue = "0") Integer isEncrypted,
             @Parameter(description = "是否压缩(0-否，1-是)") @RequestParam(required = false, defaultValue = "0") Integer isCompressed,
             @Parameter(description = "原始文件扩展名") @RequestParam(required = false) String originalExtension,
-            @Parameter(description = "关键词") @RequestParam(required = false) String keywords) {
+            @Parameter(description = "关键词") @RequestParam(required = false) String keywords,
+            @Parameter(description = "分块CRC32C校验值(8位十六进制)，携带时服务端写入后校验，不一致返回400") @RequestParam(required = false) String chunkCrc32c) {
         
-        log.info("接收到分块上传请求: fileName={}, chunk={}/{}, fileSize={}, deviceId={}, isEncrypted={}, isCompressed={}, originalExtension={}, keywords={}",
-                fileName, chunk + 1, chunks, file.getSize(), deviceId, isEncrypted, isCompressed, originalExtension, keywords);
+        log.info("接收到分块上传请求: fileName={}, chunk={}/{}, fileSize={}, deviceId={}, isEncrypted={}, isCompressed={}, originalExtension={}, keywords={}, chunkCrc32c={}",
+                fileName, chunk + 1, chunks, file.getSize(), deviceId, isEncrypted, isCompressed, originalExtension, keywords, chunkCrc32c);
         
         // 参数校验
         if (file.isEmpty()) {
@@ -102,6 +186,11 @@ public class FileUploadController {
             return Result.error("分块参数无效");
         }
         
+        if (chunks > fileProperties.getUpload().getMaxChunks()) {
+            log.error("分块上传失败: 分块数超过上限 chunks={}, maxChunks={}", chunks, fileProperties.getUpload().getMaxChunks());
+            return Result.error("分块数超过上限: " + fileProperties.getUpload().getMaxChunks());
+        }
+        
         // 确保isEncrypted和isCompressed是有效值
         if (isEncrypted != null && (isEncrypted != 0 && isEncrypted != 1)) {
             log.warn("接收到无效的isEncrypted值: {}, 默认使用0(未加密)", isEncrypted);
@@ -113,17 +202,29 @@ public class FileUploadController {
             isCompressed = 0;
         }
         
+        // 携带校验值或开启了分块校验时，写入分块的同时计算CRC32C
+        ChunkChecksum checksum = null;
+        if (StringUtils.hasText(chunkCrc32c) || Boolean.TRUE.equals(fileProperties.getUpload().getChunkChecksumEnabled())) {
+            try {
+                checksum = new ChunkChecksum(chunkCrc32c);
+            } catch (IllegalArgumentException e) {
+                log.error("分块上传失败: {}", e.getMessage());
+                return Result.error(e.getMessage());
+            }
+        }
+        
         FileUploadResponseVO responseVO = new FileUploadResponseVO();
         
         try {
             // 上传文件块
             FileInfo fileInfo = fileService.uploadFileChunk(file, fileName, deviceId, chunk, chunks,
-                    isEncrypted, isCompressed, originalExtension, keywords);
+                    chunkSize, isEncrypted, isCompressed, originalExtension, keywords, checksum);
             
             // 设置共同的返回信息
             responseVO.setFileName(fileName)
                       .setChunks(chunks)
                       .setChunk(chunk)
+                      .setChunkCrc32c(checksum != null ? checksum.getActual() : null)
                       .setSuccess(true);
             
             if (fileInfo != null) {
@@ -143,7 +244,11 @@ public class FileUploadController {
                           .setIsEncrypted(isEncrypted)
                           .setIsCompressed(isCompressed)
                           .setCompleted(true)
-                          .setMessage("文件上传完成");
+                          .setProcessingId(fileInfo.getProcessingId())
+                          .setDeduplicated(fileInfo.getDeduplicated())
+                          .setStatus(fileInfo.getStatus())
+                          .setMessage(Objects.equals(fileInfo.getStatus(), FileConstant.FILE_STATUS_NORMAL)
+                                  ? "文件上传完成" : "文件上传完成，正在后台处理");
                           
                 log.info("分块上传完成: fileId={}, filePath={}, accessUrl={}, lanAccessUrl={}",
                         fileInfo.getId(), fileInfo.getFilePath(), accessUrl, lanAccessUrl);
@@ -155,6 +260,9 @@ public class FileUploadController {
             }
             
             return Result.success(responseVO);
+        } catch (UploadThrottledException | ChunkChecksumException e) {
+            // 交由异常处理器返回429和Retry-After，或400要求重传该分块
+            throw e;
         } catch (Exception e) {
             log.error("分块上传失败: {}", e.getMessage(), e);
             responseVO.setSuccess(false)
@@ -164,4 +272,74 @@ public class FileUploadController {
             return Result.error(500, "分块上传失败: " + e.getMessage());
         }
     }
+    
+    /**
+     * 上传前探测：该设备已上传过该文件时直接返回文件ID，服务端有相同内容时返回秒传校验范围，否则返回需要上传的分块索引
+     */
+    @PostMapping("/chunk/probe")
+    @Operation(summary = "上传前探测(秒传/断点续传)")
+    public Result<ChunkUploadStatusVO> probeChunkUpload(
+            @Parameter(description = "文件名", required = true) @RequestParam("fileName") String fileName,
+            @Parameter(description = "设备ID") @RequestParam(required = false, defaultValue = "unknown") String deviceId,
+            @Parameter(description = "文件大小(字节)") @RequestParam(required = false) Long fileSize,
+            @Parameter(description = "总块数", required = true) @RequestParam("chunks") Integer chunks,
+            @Parameter(description = "文件MD5") @RequestParam(required = false) String fileMd5) {
+        if (fileName == null || fileName.trim().isEmpty()) {
+            return Result.error("文件名不能为空");
+        }
+        if (chunks == null || chunks <= 0) {
+            return Result.error("分块参数无效");
+        }
+        if (chunks > fileProperties.getUpload().getMaxChunks()) {
+            return Result.error("分块数超过上限: " + fileProperties.getUpload().getMaxChunks());
+        }
+        if (fileMd5 != null && !fileMd5.isEmpty() && !fileMd5.matches("[a-fA-F0-9]{32}")) {
+            return Result.error("文件MD5无效");
+        }
+        
+        try {
+            ChunkUploadStatusVO status = fileService.probeChunkUpload(fileName, deviceId, fileSize, chunks, fileMd5);
+            if (status.getAccessUrl() != null) {
+                FileProperties.Storage storage = fileProperties.getStorage();
+                status.setAccessUrl(String.format("http://%s:%d%s", storage.getInternetHost(), storage.getInternetPort(), status.getAccessUrl()));
+            }
+            log.info("上传前探测: fileName={}, deviceId={}, completed={}, fileId={}, missing={}",
+                    fileName, deviceId, status.getCompleted(), status.getFileId(), status.getMissingChunks());
+            return Result.success(status);
+        } catch (Exception e) {
+            log.error("上传前探测失败: {}", e.getMessage(), e);
+            return Result.error("上传前探测失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 查询分块上传状态（断点续传时获取缺失的分块）
+     */
+    @GetMapping("/chunk/status")
+    @Operation(summary = "查询分块上传状态")
+    public Result<ChunkUploadStatusVO> getChunkUploadStatus(
+            @Parameter(description = "文件名", required = true) @RequestParam("fileName") String fileName,
+            @Parameter(description = "设备ID") @RequestParam(required = false, defaultValue = "unknown") String deviceId) {
+        if (fileName == null || fileName.trim().isEmpty()) {
+            return Result.error("文件名不能为空");
+        }
+        ChunkUploadStatusVO status = fileService.getChunkUploadStatus(fileName, deviceId);
+        log.info("查询分块上传状态: fileName={}, deviceId={}, exists={}, missing={}",
+                fileName, deviceId, status.getExists(), status.getMissingChunks());
+        return Result.success(status);
+    }
+    
+    /**
+     * 查询分块上传完成后的后台处理状态
+     */
+    @GetMapping("/chunk/processing/{processingId}")
+    @Operation(summary = "查询文件后台处理状态")
+    public Result<FileProcessingStatusVO> getProcessingStatus(
+            @Parameter(description = "处理ID", required = true) @PathVariable String processingId) {
+        FileProcessingStatusVO status = fileService.getProcessingStatus(processingId);
+        if (status == null) {
+            return Result.error("处理任务不存在或已过期");
+        }
+        return Result.success(status);
+    }
 } 
\ No newline at end of file
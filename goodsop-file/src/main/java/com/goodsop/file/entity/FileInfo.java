@@ -101,11 +101,23 @@ public class FileInfo {
     private LocalDateTime uploadTime;
     
     /**
-     * 文件状态: 0-上传中，1-已完成，2-已失效
+     * 文件状态: 0-上传中，1-已完成，2-已失效，3-处理失败
      */
     @TableField("status")
     private Integer status;
     
+    /**
+     * 后台处理ID（分块上传完成后用于查询处理状态）
+     */
+    @TableField("processing_id")
+    private String processingId;
+    
+    /**
+     * 是否与已有文件内容重复而共享物理文件（不入库，秒传或去重时为true）
+     */
+    @TableField(exist = false)
+    private Boolean deduplicated;
+    
     /**
      * 创建时间
      */
@@ -0,0 +1,88 @@
+package com.goodsop.file.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 分块上传会话实体类（多节点共享的会话状态）
+ */
+@Data
+@TableName("t_upload_session")
+public class UploadSessionRecord {
+
+    /**
+     * 会话标识（设备ID + 文件名）
+     */
+    @TableId(value = "session_key", type = IdType.INPUT)
+    private String sessionKey;
+
+    /**
+     * 会话ID
+     */
+    @TableField("session_id")
+    private String sessionId;
+
+    /**
+     * 设备ID
+     */
+    @TableField("device_id")
+    private String deviceId;
+
+    /**
+     * 客户端上传的文件名
+     */
+    @TableField("file_name")
+    private String fileName;
+
+    /**
+     * 总块数
+     */
+    @TableField("chunks")
+    private Integer chunks;
+
+    /**
+     * 分块大小，0表示尚未确定
+     */
+    @TableField("chunk_size")
+    private Long chunkSize;
+
+    /**
+     * 最后一块的实际大小，-1表示尚未上传
+     */
+    @TableField("last_chunk_length")
+    private Long lastChunkLength;
+
+    /**
+     * 是否已完成：0-未完成，1-已完成
+     */
+    @TableField("completed")
+    private Integer completed;
+
+    /**
+     * 分配的标准文件名
+     */
+    @TableField("standard_file_name")
+    private String standardFileName;
+
+    /**
+     * 原始文件扩展名
+     */
+    @TableField("original_extension")
+    private String originalExtension;
+
+    /**
+     * 创建时间
+     */
+    @TableField("create_time")
+    private LocalDateTime createTime;
+
+    /**
+     * 最后一次收到分块的时间
+     */
+    @TableField("last_access_time")
+    private LocalDateTime lastAccessTime;
+}
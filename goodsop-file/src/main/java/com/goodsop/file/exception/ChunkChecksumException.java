@@ -0,0 +1,34 @@
+package com.goodsop.file.exception;
+
+import lombok.Getter;
+
+/**
+ * 分块校验失败异常
+ * 分块写入时计算的CRC32C与客户端携带的校验值不一致时抛出，该分块不会被登记为已上传，
+ * 由异常处理器转换为 400 Bad Request，客户端应立即重传该分块
+ */
+@Getter
+public class ChunkChecksumException extends RuntimeException {
+
+    /**
+     * 分块索引
+     */
+    private final int chunk;
+
+    /**
+     * 客户端携带的校验值
+     */
+    private final String expected;
+
+    /**
+     * 服务端计算的校验值
+     */
+    private final String actual;
+
+    public ChunkChecksumException(int chunk, String expected, String actual) {
+        super("分块" + chunk + "的CRC32C校验失败: 期望" + expected + ", 实际" + actual);
+        this.chunk = chunk;
+        this.expected = expected;
+        this.actual = actual;
+    }
+}
@@ -0,0 +1,21 @@
+package com.goodsop.file.exception;
+
+import lombok.Getter;
+
+/**
+ * 上传限流异常
+ * 节点或单个文件同时处理中的分块请求达到上限时抛出，由异常处理器转换为 429 Too Many Requests
+ */
+@Getter
+public class UploadThrottledException extends RuntimeException {
+
+    /**
+     * 建议客户端重试的等待时间（秒）
+     */
+    private final int retryAfterSeconds;
+
+    public UploadThrottledException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,30 @@
+package com.goodsop.file.mapper;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * 定时任务锁Mapper接口
+ * <p>
+ * 以租约方式加锁：锁不存在、已过期或由同一持有者持有时获取成功（依赖PostgreSQL的 ON CONFLICT 语法）。
+ * </p>
+ */
+@Mapper
+public interface TaskLockMapper {
+
+    /**
+     * 获取或续期锁
+     *
+     * @return 1表示获取成功，0表示锁由其他持有者持有且未过期
+     */
+    @Insert("INSERT INTO t_task_lock (task_name, owner, locked_until) "
+            + "VALUES (#{taskName}, #{owner}, now() + #{leaseSeconds} * INTERVAL '1 second') "
+            + "ON CONFLICT (task_name) DO UPDATE SET owner = EXCLUDED.owner, locked_until = EXCLUDED.locked_until "
+            + "WHERE t_task_lock.locked_until < now() OR t_task_lock.owner = EXCLUDED.owner")
+    int tryLock(@Param("taskName") String taskName, @Param("owner") String owner, @Param("leaseSeconds") long leaseSeconds);
+
+    @Delete("DELETE FROM t_task_lock WHERE task_name = #{taskName} AND owner = #{owner}")
+    int unlock(@Param("taskName") String taskName, @Param("owner") String owner);
+}
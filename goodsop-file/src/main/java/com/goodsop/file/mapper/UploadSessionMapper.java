@@ -0,0 +1,94 @@
+package com.goodsop.file.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.goodsop.file.entity.UploadSessionRecord;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 分块上传会话Mapper接口
+ * <p>
+ * 需要跨节点原子执行的操作使用单条SQL完成（依赖PostgreSQL的 ON CONFLICT 语法）。
+ * </p>
+ */
+@Mapper
+public interface UploadSessionMapper extends BaseMapper<UploadSessionRecord> {
+
+    /**
+     * 会话不存在时创建
+     *
+     * @return 是否创建了新会话
+     */
+    @Insert("INSERT INTO t_upload_session (session_key, session_id, device_id, file_name, chunks, chunk_size, "
+            + "last_chunk_length, completed, create_time, last_access_time) "
+            + "VALUES (#{sessionKey}, #{sessionId}, #{deviceId}, #{fileName}, #{chunks}, 0, -1, 0, now(), now()) "
+            + "ON CONFLICT DO NOTHING")
+    int insertIfAbsent(UploadSessionRecord record);
+
+    /**
+     * 记录分块已写入
+     *
+     * @return 1表示首次写入，0表示重复上传
+     */
+    @Insert("INSERT INTO t_upload_chunk (session_id, chunk_index, chunk_bytes, create_time) "
+            + "VALUES (#{sessionId}, #{chunk}, #{bytes}, now()) ON CONFLICT DO NOTHING")
+    int insertChunk(@Param("sessionId") String sessionId, @Param("chunk") int chunk, @Param("bytes") long bytes);
+
+    @Select("SELECT chunk_index FROM t_upload_chunk WHERE session_id = #{sessionId}")
+    List<Integer> selectChunkIndexes(@Param("sessionId") String sessionId);
+
+    @Select("SELECT COUNT(*) FROM t_upload_chunk WHERE session_id = #{sessionId}")
+    int countChunks(@Param("sessionId") String sessionId);
+
+    @Select("SELECT COALESCE(SUM(chunk_bytes), 0) FROM t_upload_chunk WHERE session_id = #{sessionId}")
+    long sumChunkBytes(@Param("sessionId") String sessionId);
+
+    @Update("UPDATE t_upload_session SET last_access_time = now() WHERE session_id = #{sessionId}")
+    int touch(@Param("sessionId") String sessionId);
+
+    /**
+     * 所有分块都已写入且尚未完成时标记为完成，并发执行时行锁保证只有一个节点更新成功
+     */
+    @Update("UPDATE t_upload_session SET completed = 1 WHERE session_id = #{sessionId} AND completed = 0 "
+            + "AND (SELECT COUNT(*) FROM t_upload_chunk c WHERE c.session_id = #{sessionId}) >= chunks")
+    int tryComplete(@Param("sessionId") String sessionId);
+
+    @Update("UPDATE t_upload_session SET completed = 0 WHERE session_id = #{sessionId}")
+    int resetCompletion(@Param("sessionId") String sessionId);
+
+    @Update("UPDATE t_upload_session SET chunk_size = #{chunkSize} WHERE session_id = #{sessionId} AND chunk_size = 0")
+    int initChunkSize(@Param("sessionId") String sessionId, @Param("chunkSize") long chunkSize);
+
+    @Update("UPDATE t_upload_session SET last_chunk_length = #{length} WHERE session_id = #{sessionId}")
+    int updateLastChunkLength(@Param("sessionId") String sessionId, @Param("length") long length);
+
+    @Update("UPDATE t_upload_session SET standard_file_name = #{name} "
+            + "WHERE session_id = #{sessionId} AND standard_file_name IS NULL")
+    int assignStandardFileName(@Param("sessionId") String sessionId, @Param("name") String name);
+
+    @Update("UPDATE t_upload_session SET original_extension = #{extension} WHERE session_id = #{sessionId}")
+    int updateOriginalExtension(@Param("sessionId") String sessionId, @Param("extension") String extension);
+
+    @Delete("DELETE FROM t_upload_chunk WHERE session_id = #{sessionId}")
+    int deleteChunks(@Param("sessionId") String sessionId);
+
+    @Delete("DELETE FROM t_upload_session WHERE session_id = #{sessionId}")
+    int deleteBySessionId(@Param("sessionId") String sessionId);
+
+    @Delete("DELETE FROM t_upload_session WHERE last_access_time < #{expiration}")
+    int deleteIdle(@Param("expiration") LocalDateTime expiration);
+
+    /**
+     * 删除会话已不存在的分块记录（过期清理的会话以及会话移除后才写入的迟到分块）
+     */
+    @Delete("DELETE FROM t_upload_chunk c WHERE NOT EXISTS "
+            + "(SELECT 1 FROM t_upload_session s WHERE s.session_id = c.session_id)")
+    int deleteOrphanChunks();
+}
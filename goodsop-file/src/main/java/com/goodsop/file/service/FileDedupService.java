@@ -0,0 +1,62 @@
+package com.goodsop.file.service;
+
+import com.goodsop.file.entity.FileInfo;
+
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 文件去重服务：以 文件MD5 + 文件大小 作为内容索引，相同内容在磁盘上只存储一份，
+ * 多条文件记录共享同一个物理文件，删除时按引用计数决定是否删除物理文件
+ */
+public interface FileDedupService {
+
+    /**
+     * 查找已存储的相同内容文件
+     *
+     * @param fileMd5  文件MD5
+     * @param fileSize 文件大小（字节）
+     * @return 已存储且物理文件存在的文件记录，不存在时返回null
+     */
+    FileInfo findBlob(String fileMd5, Long fileSize);
+
+    /**
+     * 查找设备自己已上传完成的相同内容文件（如上传完成但响应因网络中断丢失）
+     *
+     * @param deviceId 设备ID
+     * @param fileMd5  文件MD5
+     * @param fileSize 文件大小（字节）
+     * @return 文件记录，不存在时返回null
+     */
+    FileInfo findDeviceFile(String deviceId, String fileMd5, Long fileSize);
+
+    /**
+     * 让文件记录指向已存储的相同内容文件
+     * 复制存储相关字段（路径、访问URL、大小、MD5、加密/压缩状态）后执行持久化，
+     * 与 {@link #releaseBlob(FileInfo, BooleanSupplier)} 通过数据库行锁互斥，避免引用刚建立时物理文件被删除
+     *
+     * @param fileInfo 文件记录
+     * @param blob     已存储的文件记录
+     * @param persist  持久化文件记录（保存或更新）
+     * @return 是否成功共享，物理文件已不存在或持久化失败时返回false
+     */
+    boolean shareBlob(FileInfo fileInfo, FileInfo blob, BooleanSupplier persist);
+
+    /**
+     * 释放文件记录对物理文件的引用，没有其他有效记录引用该物理文件时删除物理文件
+     *
+     * @param fileInfo 文件记录
+     * @param persist  持久化文件记录的失效状态
+     * @return 持久化是否成功
+     */
+    boolean releaseBlob(FileInfo fileInfo, BooleanSupplier persist);
+
+    /**
+     * 在当前事务中锁住引用该物理文件的有效记录（SELECT ... FOR UPDATE），事务结束前其他事务不能建立或释放对该文件的引用；
+     * 移动或改写物理文件时使用，必须在事务中调用
+     *
+     * @param filePath 物理文件路径
+     * @return 被锁住的记录，没有有效引用时为空
+     */
+    List<FileInfo> lockReferences(String filePath);
+}
@@ -4,6 +4,11 @@ package com.goodsop.file.service;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.goodsop.file.entity.FileInfo;
+import com.goodsop.file.util.ChunkChecksum;
+import com.goodsop.file.util.InstantUploadChallenge;
+import com.goodsop.file.vo.BatchDownloadQueryVO;
+import com.goodsop.file.vo.ChunkUploadStatusVO;
+import com.goodsop.file.vo.FileProcessingStatusVO;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.web.multipart.MultipartFile;
@@ -35,14 +40,74 @@ public interface FileService {
      * @param deviceId   设备ID
      * @param chunk      当前块索引
      * @param chunks     总块数
+     * @param chunkSize  分块大小（除最后一块外每块的字节数，可为空）
      * @param isEncrypted 是否加密
      * @param isCompressed 是否压缩
      * @param originalExtension 原始文件扩展名（解压后使用）
      * @param keywords   关键词
+     * @param checksum   分块CRC32C校验（可为空），写入后可从中取得计算出的校验值
      * @return 如果是最后一块，返回文件信息；否则返回null
      */
     FileInfo uploadFileChunk(MultipartFile file, String fileName, String deviceId,
-                            Integer chunk, Integer chunks, Integer isEncrypted, Integer isCompressed, String originalExtension, String keywords);
+                            Integer chunk, Integer chunks, Long chunkSize, Integer isEncrypted, Integer isCompressed, String originalExtension, String keywords,
+                            ChunkChecksum checksum);
+    
+    /**
+     * 秒传前获取持有证明的校验范围：服务端已存储相同内容（MD5 + 大小）的文件时随机指定一段内容范围，
+     * 不登记任何记录
+     * 
+     * @param deviceId 设备ID
+     * @param fileMd5  文件MD5
+     * @param fileSize 文件大小（字节）
+     * @return 校验范围，服务端没有相同内容的文件时返回null
+     */
+    InstantUploadChallenge.Challenge challengeInstantUpload(String deviceId, String fileMd5, Long fileSize);
+    
+    /**
+     * 秒传：客户端提交的校验范围内容MD5与服务端已存储的内容一致时，直接登记一条指向已有文件的记录，无需上传文件内容
+     * 
+     * @param fileName       文件名
+     * @param deviceId       设备ID
+     * @param fileMd5        文件MD5
+     * @param fileSize       文件大小（字节）
+     * @param keywords       关键词
+     * @param challengeToken 校验令牌（由 {@link #challengeInstantUpload} 签发）
+     * @param proofMd5       校验范围内容的MD5
+     * @return 文件信息，服务端没有相同内容的文件时返回null
+     * @throws IllegalArgumentException 校验令牌无效、已过期或校验范围内容不一致
+     */
+    FileInfo instantUpload(String fileName, String deviceId, String fileMd5, Long fileSize, String keywords,
+                           String challengeToken, String proofMd5);
+    
+    /**
+     * 查询分块上传状态，用于客户端断点续传时只补传缺失的分块
+     * 
+     * @param fileName 文件名
+     * @param deviceId 设备ID
+     * @return 分块上传状态
+     */
+    ChunkUploadStatusVO getChunkUploadStatus(String fileName, String deviceId);
+    
+    /**
+     * 上传前探测：该设备已上传过该文件时返回文件ID，服务端有其他来源的相同内容时返回秒传校验范围，
+     * 并返回需要上传的分块索引。只读取上传会话状态和MD5索引，不登记任何记录
+     * 
+     * @param fileName 文件名
+     * @param deviceId 设备ID
+     * @param fileSize 文件大小（字节）
+     * @param chunks   总块数
+     * @param fileMd5  文件MD5，为空时尝试使用标准格式文件名中的MD5
+     * @return 分块上传状态
+     */
+    ChunkUploadStatusVO probeChunkUpload(String fileName, String deviceId, Long fileSize, Integer chunks, String fileMd5);
+    
+    /**
+     * 查询分块上传完成后的后台处理状态
+     * 
+     * @param processingId 处理ID
+     * @return 处理状态，处理ID不存在或已过期时返回null
+     */
+    FileProcessingStatusVO getProcessingStatus(String processingId);
     
     /**
      * 下载文件
@@ -53,6 +118,26 @@ public interface FileService {
      */
     void downloadFile(Long id, HttpServletRequest request, HttpServletResponse response);
     
+    /**
+     * 在线预览文件（支持Range请求）
+     * 
+     * @param fileInfo    文件信息
+     * @param contentType 内容类型
+     * @param request     HTTP请求
+     * @param response    HTTP响应
+     */
+    void previewFile(FileInfo fileInfo, String contentType, HttpServletRequest request, HttpServletResponse response);
+    
+    /**
+     * 批量打包下载：把符合条件的文件边读边打包成ZIP直接输出，不生成临时压缩包
+     * 
+     * @param query    查询条件
+     * @param request  HTTP请求
+     * @param response HTTP响应
+     * @throws IllegalArgumentException 查询条件为空或文件数超过上限
+     */
+    void downloadBatch(BatchDownloadQueryVO query, HttpServletRequest request, HttpServletResponse response);
+    
     /**
      * 根据ID获取文件信息
      * 
@@ -0,0 +1,158 @@
+package com.goodsop.file.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.constant.FileConstant;
+import com.goodsop.file.entity.FileInfo;
+import com.goodsop.file.mapper.FileInfoMapper;
+import com.goodsop.file.service.FileDedupService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.io.File;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 文件去重服务实现类
+ * <p>
+ * 依赖 t_file_info 上的 (file_md5, file_size) 索引查询已有内容。
+ * 建立引用与释放引用都在事务中先以 SELECT ... FOR UPDATE 锁住引用同一物理文件的有效记录（按ID顺序加锁），
+ * 两者在数据库中串行执行，多节点之间同样有效：释放引用的事务提交前新引用无法建立，
+ * 建立引用的事务提交后释放方才重新统计引用数；物理文件在释放引用的事务提交后才删除，事务回滚时保留。
+ * </p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FileDedupServiceImpl implements FileDedupService {
+
+    private final FileInfoMapper fileInfoMapper;
+
+    private final FileProperties fileProperties;
+
+    @Override
+    public FileInfo findBlob(String fileMd5, Long fileSize) {
+        if (!Boolean.TRUE.equals(fileProperties.getUpload().getDedupEnabled())
+                || !StringUtils.hasText(fileMd5) || fileSize == null) {
+            return null;
+        }
+        LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(FileInfo::getFileMd5, fileMd5.toLowerCase())
+                .eq(FileInfo::getFileSize, fileSize)
+                .eq(FileInfo::getStatus, FileConstant.FILE_STATUS_NORMAL)
+                .orderByAsc(FileInfo::getId)
+                .last("LIMIT 1");
+        FileInfo blob = fileInfoMapper.selectOne(wrapper);
+        if (blob == null) {
+            return null;
+        }
+        if (!new File(blob.getFilePath()).isFile()) {
+            log.warn("去重索引命中的物理文件不存在，忽略: fileId={}, filePath={}", blob.getId(), blob.getFilePath());
+            return null;
+        }
+        return blob;
+    }
+
+    @Override
+    public FileInfo findDeviceFile(String deviceId, String fileMd5, Long fileSize) {
+        if (!StringUtils.hasText(fileMd5) || fileSize == null) {
+            return null;
+        }
+        LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(FileInfo::getDeviceId, deviceId)
+                .eq(FileInfo::getFileMd5, fileMd5.toLowerCase())
+                .eq(FileInfo::getFileSize, fileSize)
+                .eq(FileInfo::getStatus, FileConstant.FILE_STATUS_NORMAL)
+                .orderByDesc(FileInfo::getId)
+                .last("LIMIT 1");
+        return fileInfoMapper.selectOne(wrapper);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public boolean shareBlob(FileInfo fileInfo, FileInfo blob, BooleanSupplier persist) {
+        // 已有的引用都已释放（或正在释放的事务已提交）时不再共享
+        if (lockReferences(blob.getFilePath()).isEmpty() || !new File(blob.getFilePath()).isFile()) {
+            log.warn("待共享的物理文件已被删除: {}", blob.getFilePath());
+            return false;
+        }
+        fileInfo.setFileName(blob.getFileName());
+        fileInfo.setFilePath(blob.getFilePath());
+        fileInfo.setAccessUrl(blob.getAccessUrl());
+        fileInfo.setDomainPrefix(blob.getDomainPrefix());
+        fileInfo.setFileSize(blob.getFileSize());
+        fileInfo.setFileMd5(blob.getFileMd5());
+        fileInfo.setFileType(blob.getFileType());
+        fileInfo.setIsEncrypted(blob.getIsEncrypted());
+        fileInfo.setIsCompressed(blob.getIsCompressed());
+        fileInfo.setEncryptionType(blob.getEncryptionType());
+        fileInfo.setCompressionType(blob.getCompressionType());
+        if (!persist.getAsBoolean()) {
+            return false;
+        }
+        log.info("文件内容已存在，共享物理文件: fileId={}, blobId={}, filePath={}",
+                fileInfo.getId(), blob.getId(), blob.getFilePath());
+        return true;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public boolean releaseBlob(FileInfo fileInfo, BooleanSupplier persist) {
+        String filePath = fileInfo.getFilePath();
+        lockReferences(filePath);
+        if (!persist.getAsBoolean()) {
+            return false;
+        }
+        // 加锁之后重新统计（新的语句能看到加锁前已提交的新引用）；上传中的记录也可能指向同一路径（同名文件重传），同样视为有效引用
+        LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(FileInfo::getFilePath, filePath)
+                .ne(FileInfo::getId, fileInfo.getId())
+                .in(FileInfo::getStatus, FileConstant.FILE_STATUS_UPLOADING, FileConstant.FILE_STATUS_NORMAL);
+        Long references = fileInfoMapper.selectCount(wrapper);
+        if (references != null && references > 0) {
+            log.info("物理文件仍被{}条记录引用，保留文件: {}", references, filePath);
+            return true;
+        }
+        deleteAfterCommit(filePath);
+        return true;
+    }
+
+    @Override
+    public List<FileInfo> lockReferences(String filePath) {
+        LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(FileInfo::getFilePath, filePath)
+                .in(FileInfo::getStatus, FileConstant.FILE_STATUS_UPLOADING, FileConstant.FILE_STATUS_NORMAL)
+                .orderByAsc(FileInfo::getId)
+                .last("FOR UPDATE");
+        return fileInfoMapper.selectList(wrapper);
+    }
+
+    /**
+     * 事务提交后删除物理文件，没有事务时立即删除
+     */
+    private void deleteAfterCommit(String filePath) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deletePhysicalFile(filePath);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                deletePhysicalFile(filePath);
+            }
+        });
+    }
+
+    private void deletePhysicalFile(String filePath) {
+        File file = new File(filePath);
+        if (file.exists() && !file.delete()) {
+            log.warn("删除物理文件失败: {}", filePath);
+        }
+    }
+}
@@ -7,34 +7,68 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.goodsop.file.config.FileProperties;
 import com.goodsop.file.constant.FileConstant;
 import com.goodsop.file.entity.FileInfo;
+import com.goodsop.file.exception.ChunkChecksumException;
 import com.goodsop.file.mapper.FileInfoMapper;
+import com.goodsop.file.service.FileDedupService;
 import com.goodsop.file.service.FileService;
+import com.goodsop.file.util.ChunkChecksum;
+import com.goodsop.file.util.CompressionPolicy;
 import com.goodsop.file.util.FileCompressUtil;
 import com.goodsop.file.util.FileEncryptUtil;
+import com.goodsop.file.util.FileProcessingExecutor;
 import com.goodsop.file.util.FileProcessingUtil;
+import com.goodsop.file.util.FileSender;
+import com.goodsop.file.util.FileStreamPipeline;
 import com.goodsop.file.util.FileTransferUtil;
+import com.goodsop.file.util.InstantUploadChallenge;
+import com.goodsop.file.util.StorageLayoutResolver;
+import com.goodsop.file.util.UploadMetadataCache;
+import com.goodsop.file.util.UploadSession;
+import com.goodsop.file.util.UploadSessionRegistry;
+import com.goodsop.file.util.UploadSessionStore;
+import com.goodsop.file.util.UploadThrottle;
+import com.goodsop.file.util.ZipStreamWriter;
+import com.goodsop.file.vo.BatchDownloadQueryVO;
+import com.goodsop.file.vo.ChunkUploadStatusVO;
+import com.goodsop.file.vo.FileProcessingStatusVO;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.crypto.SecretKey;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -46,168 +80,132 @@ import java.util.regex.Pattern;
 public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> implements FileService {
     
     /**
-     * 文件名缓存，用于存储标准化后的文件名
+     * 批量打包下载每次查询的记录数
      */
-    private static final Map<String, String> FILENAME_CACHE = new ConcurrentHashMap<>();
+    private static final int BATCH_QUERY_SIZE = 200;
     
-    /**
-     * 扩展名缓存，用于存储原始文件扩展名
-     */
-    private static final Map<String, String> EXTENSION_CACHE = new ConcurrentHashMap<>();
-
-    /**
-     * 原始文件大小缓存，用于存储解压/解密前的文件大小
-     */
-    private static final Map<String, String> ORIGINAL_SIZE_CACHE = new ConcurrentHashMap<>();
-
     private final FileProperties fileProperties;
     private final FileTransferUtil fileTransferUtil;
     private final FileCompressUtil fileCompressUtil;
     private final FileEncryptUtil fileEncryptUtil;
     private final FileProcessingUtil fileProcessingUtil;
+    private final FileStreamPipeline fileStreamPipeline;
+    private final UploadSessionRegistry uploadSessionRegistry;
+    private final UploadThrottle uploadThrottle;
+    private final FileProcessingExecutor fileProcessingExecutor;
+    private final FileDedupService fileDedupService;
+    private final StorageLayoutResolver storageLayoutResolver;
+    private final CompressionPolicy compressionPolicy;
+    private final InstantUploadChallenge instantUploadChallenge;
+    
+    /**
+     * 上传元数据缓存：原始文件扩展名、解压/解密前的原始文件大小
+     */
+    private final UploadMetadataCache uploadMetadataCache;
+    
+    /**
+     * 启动时校验密钥：解密客户端数据和静态加密都不再回退到内置密钥，未配置或长度不符时拒绝启动
+     */
+    @PostConstruct
+    public void validateKeys() {
+        FileProperties.Storage storage = fileProperties.getStorage();
+        if (Boolean.TRUE.equals(storage.getEnableDecrypt()) && !fileEncryptUtil.isValidKey(storage.getAesKey())) {
+            throw new IllegalStateException("启用解密(goodsop.file.storage.enable-decrypt)时 goodsop.file.storage.aes-key 必须是32字节");
+        }
+        if (Boolean.TRUE.equals(storage.getEncryptAtRest()) && !fileEncryptUtil.isValidKey(storage.getAtRestKey())) {
+            throw new IllegalStateException("启用静态加密(goodsop.file.storage.encrypt-at-rest)时必须配置32字节的 "
+                    + "goodsop.file.storage.at-rest-key");
+        }
+    }
     
     @Override
     @Transactional(rollbackFor = Exception.class)
     public FileInfo uploadFile(MultipartFile file, String deviceId, Integer isEncrypted, Integer isCompressed, String originalExtension) {
         try {
             // 获取当前日期作为子目录
-            String dateDir = LocalDate.now().format(DateTimeFormatter.ofPattern(FileConstant.DATE_FORMAT_YYYYMMDD));
-            String basePath = fileProperties.getStorage().getPath();
-            if (!basePath.endsWith(File.separator)) {
-                basePath = basePath + File.separator;
-            }
-            String storageDir = basePath + dateDir;
+            LocalDate today = LocalDate.now();
+            String dateDir = today.format(DateTimeFormatter.ofPattern(FileConstant.DATE_FORMAT_YYYYMMDD));
             
-            // 确保存储目录存在
-            File storageDirFile = new File(storageDir);
-            if (!storageDirFile.exists()) {
-                boolean created = storageDirFile.mkdirs();
-                log.info("创建存储目录: {} 结果: {}", storageDir, created ? "成功" : "失败");
-            }
-            
-            // 获取原始文件名并检查格式
+            // 获取原始文件名
             String originalFilename = file.getOriginalFilename();
-            String fileType = getFileType(originalFilename);
+            
+            // 按存储布局确定存储目录（目录不存在时自动创建）
+            String storageDir = storageLayoutResolver.resolveDirectory(today, deviceId, originalFilename).getPath();
             
             // 保存原始文件大小
             long originalSize = file.getSize();
             
-            // 首先保存原始文件到临时目录
-            File tempDir = Files.createTempDirectory("upload_").toFile();
-            File tempFile = new File(tempDir, originalFilename);
-            file.transferTo(tempFile);
-            log.info("已保存原始文件: {}, 大小: {} 字节", tempFile.getAbsolutePath(), tempFile.length());
-            
-            // 处理文件（解密和解压缩）
-            File processedFile = tempFile;
-            
-            // 如果需要解密和解压缩
-            if ((isEncrypted != null && isEncrypted == 1 && fileProperties.getStorage().getEnableDecrypt()) ||
-                (isCompressed != null && isCompressed == 1 && fileProperties.getStorage().getEnableDecompress())) {
-                
+            // 处理文件（解密和解压缩）：直接从上传流一次读取、一次写入最终文件，同时计算MD5
+            boolean needDecrypt = shouldDecrypt(isEncrypted, originalFilename);
+            boolean needDecompress = shouldDecompress(isCompressed);
+            if (needDecrypt || needDecompress) {
                 log.info("文件需要处理: isEncrypted={}, isCompressed={}", isEncrypted, isCompressed);
-                
-                // 解密文件
-                if (isEncrypted != null && isEncrypted == 1 && fileProperties.getStorage().getEnableDecrypt()) {
-                    log.info("开始解密文件: {}", tempFile.getAbsolutePath());
-                    String decryptedPath = tempFile.getAbsolutePath() + ".decrypted";
-                    File decryptedFile = new File(decryptedPath);
-                    processedFile = fileEncryptUtil.decryptFile(tempFile, decryptedFile, fileProperties.getStorage().getAesKey());
-                    log.info("文件解密完成: {}, 大小: {}", processedFile.getAbsolutePath(), processedFile.length());
-                }
-                
-                // 解压文件
-                if (isCompressed != null && isCompressed == 1 && fileProperties.getStorage().getEnableDecompress()) {
-                    log.info("开始解压文件: {}", processedFile.getAbsolutePath());
-                    String decompressedPath = processedFile.getAbsolutePath() + ".decompressed";
-                    File decompressedFile = new File(decompressedPath);
-                    File tempProcessedFile = processedFile;
-                    processedFile = fileCompressUtil.decompressFile(tempProcessedFile, decompressedFile);
-                    log.info("文件解压完成: {}, 大小: {}", processedFile.getAbsolutePath(), processedFile.length());
-                    
-                    // 如果解压后文件与解密后文件不同，可以删除中间文件
-                    if (!tempProcessedFile.equals(tempFile) && !tempProcessedFile.equals(processedFile)) {
-                        tempProcessedFile.delete();
-                        log.info("删除中间处理文件: {}", tempProcessedFile.getAbsolutePath());
-                    }
-                }
             }
             
-            // 确定最终文件名（如果已经解密，原始文件名可能包含.enc后缀，需要移除）
-            String finalFileName = originalFilename;
+            String filenameMd5 = extractFilenameMd5(originalFilename);
             
-            // 移除加密后缀
-            if (isEncrypted != null && isEncrypted == 1 && fileProperties.getStorage().getEnableDecrypt()
-                && finalFileName.toLowerCase().endsWith(".enc") && !processedFile.equals(tempFile)) {
-                // 只有解密成功的情况下才移除.enc后缀
-                finalFileName = finalFileName.substring(0, finalFileName.length() - 4);
-                log.info("移除加密后缀，最终文件名: {}", finalFileName);
-            }
-            
-            // 移除压缩后缀
-            if (isCompressed != null && isCompressed == 1 && fileProperties.getStorage().getEnableDecompress()) {
-                // 检查是否是压缩格式的后缀，如果是则移除
-                String lcFilename = finalFileName.toLowerCase();
-                if (lcFilename.endsWith(".gz") || lcFilename.endsWith(".gzip")) {
-                    int suffixLen = lcFilename.endsWith(".gz") ? 3 : 5;
-                    finalFileName = finalFileName.substring(0, finalFileName.length() - suffixLen);
-                    log.info("移除GZIP压缩后缀，最终文件名: {}", finalFileName);
-                } else if (lcFilename.endsWith(".zip")) {
-                    finalFileName = finalFileName.substring(0, finalFileName.length() - 4);
-                    log.info("移除ZIP压缩后缀，最终文件名: {}", finalFileName);
-                }
-            }
-            
-            // 从缓存中检查是否有原始扩展名，如果有，则添加
-            String cachedExtension = EXTENSION_CACHE.get(originalFilename);
-            if (cachedExtension != null && !cachedExtension.isEmpty() && 
-                !finalFileName.toLowerCase().endsWith(cachedExtension.toLowerCase())) {
-                // 确保扩展名以.开头
-                if (!cachedExtension.startsWith(".")) {
-                    cachedExtension = "." + cachedExtension;
+            // 不需要解密和解压时上传内容即最终内容，上传内容的MD5与文件名MD5一致时可在写入前直接引用已有文件
+            if (!needDecrypt && !needDecompress && filenameMd5 != null) {
+                FileInfo blob = fileDedupService.findBlob(filenameMd5, originalSize);
+                if (blob != null) {
+                    String contentMd5;
+                    try (InputStream in = file.getInputStream()) {
+                        contentMd5 = fileEncryptUtil.calculateMD5(in);
+                    }
+                    FileInfo existing = filenameMd5.equalsIgnoreCase(contentMd5)
+                            ? shareExistingBlob(originalFilename, deviceId, null, blob) : null;
+                    if (existing != null) {
+                        return existing;
+                    }
                 }
-                finalFileName = finalFileName + cachedExtension;
-                log.info("从缓存获取文件类型: {} -> {}, 添加原始扩展名后: {}", 
-                         originalFilename, cachedExtension, finalFileName);
             }
             
-            // 将处理后的文件复制到最终存储位置
-            File targetFile = new File(storageDir, finalFileName);
-            Files.copy(processedFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            FileStreamPipeline.PipelineOptions options = new FileStreamPipeline.PipelineOptions()
+                    .setDecrypt(needDecrypt)
+                    .setAesKey(fileProperties.getStorage().getAesKey())
+                    .setDecompress(needDecompress)
+                    .setEncryptAtRest(shouldEncryptAtRest(isEncrypted, needDecrypt))
+                    .setAtRestKey(fileProperties.getStorage().getAtRestKey())
+                    .setZipMaxEntries(zipMaxEntries())
+                    .setDigestSource(filenameMd5 != null);
+            String expectedFileName = resolveFinalFileName(originalFilename, needDecrypt, needDecompress, originalFilename);
+            FileStreamPipeline.PipelineResult result = fileStreamPipeline.process(file, new File(storageDir, expectedFileName), options);
+            verifyFilenameMd5(filenameMd5, result);
+            File targetFile = settleTargetFile(result, originalFilename, originalFilename);
+            String finalFileName = targetFile.getName();
             log.info("处理后的文件已保存到最终位置: {}", targetFile.getAbsolutePath());
             
-            // 计算MD5
-            String md5 = calculateFileMd5(targetFile);
-            
             // 创建文件信息对象
             FileInfo fileInfo = new FileInfo();
             fileInfo.setDeviceId(deviceId);
             fileInfo.setUserId(getCurrentUserId());
             fileInfo.setFileName(finalFileName);
             fileInfo.setFilePath(targetFile.getAbsolutePath());
-            fileInfo.setFileSize(targetFile.length());
+            fileInfo.setFileSize(result.getBytesWritten());
             
             // 获取解压缩/解密后的文件类型，不是原始压缩文件的类型
             String fileType2 = getFileType(finalFileName);
             fileInfo.setFileType(fileType2);
             
-            fileInfo.setFileMd5(md5);
+            fileInfo.setFileMd5(result.getMd5());
             fileInfo.setUploadTime(LocalDateTime.now());
             
             // 设置加密和压缩状态字段
             // 存储文件是否仍然处于加密状态 - 如果客户端标记为加密但未解密，或解密失败
-            boolean stillEncrypted = (isEncrypted != null && isEncrypted == 1) && !processedFile.equals(tempFile);
+            boolean stillEncrypted = (isEncrypted != null && isEncrypted == 1) && !result.isDecrypted();
             // 存储文件是否仍然处于压缩状态 - 如果客户端标记为压缩但未解压，或解压失败
-            boolean stillCompressed = (isCompressed != null && isCompressed == 1) && !processedFile.equals(tempFile);
+            boolean stillCompressed = (isCompressed != null && isCompressed == 1) && !result.isDecompressed();
             
-            fileInfo.setIsEncrypted(stillEncrypted);
+            // 静态加密写入的文件同样按加密状态记录，下载和预览时实时解密
+            fileInfo.setIsEncrypted(stillEncrypted || result.isEncryptedAtRest());
             fileInfo.setIsCompressed(stillCompressed);
             
-            log.info("文件最终状态: 是否加密={}, 是否压缩={}", stillEncrypted, stillCompressed);
+            log.info("文件最终状态: 是否加密={}, 是否压缩={}", fileInfo.getIsEncrypted(), stillCompressed);
             
             // 设置加密和压缩类型
             if (fileInfo.getIsEncrypted()) {
-                fileInfo.setEncryptionType(fileProperties.getStorage().getDefaultEncryptionType());
+                fileInfo.setEncryptionType(result.isEncryptedAtRest()
+                        ? FileConstant.ENCRYPTION_TYPE_AT_REST : fileProperties.getStorage().getDefaultEncryptionType());
                 log.info("文件保持加密状态，设置加密类型: {}", fileInfo.getEncryptionType());
             }
             if (fileInfo.getIsCompressed()) {
@@ -229,28 +227,11 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
             fileInfo.setUpdateTime(LocalDateTime.now());
             fileInfo.setDeleted(0);
             
-            // 保存到数据库
-            this.save(fileInfo);
+            // 保存到数据库，内容已存在时删除刚写入的文件并共享已有文件
+            persistWithDedup(fileInfo, targetFile, () -> this.save(fileInfo));
+            registerZipEntries(fileInfo, result, dateDir);
             log.info("文件上传成功: {}", fileInfo);
             
-            // 删除临时处理文件
-            try {
-                if (!processedFile.equals(targetFile) && !processedFile.equals(tempFile)) {
-                    processedFile.delete();
-                    log.info("删除临时处理文件: {}", processedFile.getAbsolutePath());
-                }
-                
-                if (tempFile.exists()) {
-                    tempFile.delete();
-                    log.info("删除临时原始文件: {}", tempFile.getAbsolutePath());
-                }
-                
-                // 尝试删除临时目录
-                tempDir.delete();
-            } catch (Exception e) {
-                log.warn("删除临时文件失败: {}", e.getMessage());
-            }
-            
             return fileInfo;
         } catch (Exception e) {
             log.error("文件上传失败: {}", e.getMessage(), e);
@@ -258,35 +239,35 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
         }
     }
     
+    /**
+     * 同一文件的分块可能乱序并发到达，这里不开启事务（否则每个分块都会在整个I/O期间占用数据库连接），
+     * 只有完成上传的那一个请求才会写入数据库
+     */
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public FileInfo uploadFileChunk(MultipartFile file, String fileName, String deviceId,
-                                  Integer chunk, Integer chunks, Integer isEncrypted, Integer isCompressed, String originalExtension, String keywords) {
+                                  Integer chunk, Integer chunks, Long chunkSize, Integer isEncrypted, Integer isCompressed, String originalExtension, String keywords,
+                                  ChunkChecksum checksum) {
         if (file.isEmpty()) {
             throw new RuntimeException("文件为空");
         }
         
+        // 申请处理名额，节点或该文件并发已满时直接抛出限流异常
+        UploadSession session = uploadSessionRegistry.getOrCreate(deviceId, fileName, chunks);
+        UploadThrottle.Permit permit = uploadThrottle.acquire(session);
+        
         try {
             // 记录配置项值，便于排查问题
-            log.info("===== 文件上传配置检查 =====");
-            log.info("解密配置: fileProperties.getStorage().getEnableDecrypt()={}", fileProperties.getStorage().getEnableDecrypt());
-            log.info("解压配置: fileProperties.getStorage().getEnableDecompress()={}", fileProperties.getStorage().getEnableDecompress());
-            log.info("上传参数: isEncrypted={}, isCompressed={}", isEncrypted, isCompressed);
-            log.info("===========================");
+            log.debug("上传配置检查: enableDecrypt={}, enableDecompress={}, isEncrypted={}, isCompressed={}",
+                    fileProperties.getStorage().getEnableDecrypt(), fileProperties.getStorage().getEnableDecompress(),
+                    isEncrypted, isCompressed);
             
-            // 获取当前日期作为子目录
-            String dateDir = LocalDate.now().format(DateTimeFormatter.ofPattern(FileConstant.DATE_FORMAT_YYYYMMDD));
-            // 确保路径分隔符正确
-            String basePath = fileProperties.getStorage().getPath();
-            if (!basePath.endsWith(File.separator)) {
-                basePath = basePath + File.separator;
-            }
-            // 修复路径连接，使用File.separator确保分隔符一致性
-            String storageDir = basePath + dateDir;
+            // 获取当前日期作为子目录，分块临时目录和合并文件位于日期目录下，处理后的文件按存储布局存放
+            LocalDate today = LocalDate.now();
+            String dateDir = today.format(DateTimeFormatter.ofPattern(FileConstant.DATE_FORMAT_YYYYMMDD));
+            String storageDir = storageLayoutResolver.getDateDirectory(today).getPath();
             
             // 添加日志，输出存储路径信息
             log.info("文件存储配置路径: {}", fileProperties.getStorage().getPath());
-            log.info("修正的基础路径: {}", basePath);
             log.info("今日日期格式化: {}", dateDir);
             log.info("实际存储目录: {}", storageDir);
             
@@ -294,28 +275,33 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
             String processedFileName = ensureCorrectFileSuffix(fileName, isEncrypted);
             log.info("处理后的文件名: {} -> {}", fileName, processedFileName);
             
+            // 原始扩展名记录在上传会话中，落在其他节点上的分块（可能不再携带该参数）也能取到
+            UploadSessionStore.SessionState sessionState = session.getState();
+            if (originalExtension != null && !originalExtension.isEmpty()) {
+                if (!originalExtension.equals(sessionState.getOriginalExtension())) {
+                    sessionState.setOriginalExtension(originalExtension);
+                }
+            } else {
+                originalExtension = sessionState.getOriginalExtension();
+            }
+            
             // 保存原始扩展名，用于解压缩后恢复
             if (originalExtension != null && !originalExtension.isEmpty()) {
                 // 保存原始扩展名到缓存中，供解压缩使用
-                EXTENSION_CACHE.put(processedFileName, originalExtension);
+                uploadMetadataCache.put(UploadMetadataCache.Namespace.EXTENSION, processedFileName, originalExtension);
                 log.info("保存原始文件扩展名: {} -> {}", processedFileName, originalExtension);
             }
             
-            // 检查目录是否存在，不存在则创建
-            File storageDirFile = new File(storageDir);
-            if (!storageDirFile.exists()) {
-                boolean created = storageDirFile.mkdirs();
-                log.info("创建存储目录: {} 结果: {}", storageDir, created ? "成功" : "失败");
-            } else {
-                log.info("存储目录已存在: {}", storageDir);
-            }
-            
-            // 将原始文件名保存到线程本地变量，用于后续分块使用同一文件名
+            // 原始文件名用于生成标准文件名（标准文件名由上传会话统一分配）
             String originalFilename = processedFileName;
             
             // 检查文件名是否符合标准格式，如果不符合则重命名
-            // 重要修复：使用原始文件名作为key，获取已经生成的标准文件名
-            String finalFileName = getOrCreateStandardFileName(originalFilename, deviceId);
+            // 标准文件名在上传会话中只分配一次（并发的分块各自生成候选名，只有第一个生效），
+            // 保证所有节点上的分块使用同一文件名，且在上传结束前不会丢失
+            String finalFileName = sessionState.getStandardFileName();
+            if (finalFileName == null) {
+                finalFileName = sessionState.assignStandardFileName(createStandardFileName(originalFilename, deviceId));
+            }
             
             // 保存原始扩展名到FileTransferUtil的缓存中，用于合并分块文件时使用
             if (originalExtension != null && !originalExtension.isEmpty()) {
@@ -326,7 +312,7 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
             log.info("处理分块上传: fileChunk={}/{}, fileName={}", chunk + 1, chunks, finalFileName);
             
             // 存储分块文件 - 注意fileTransferUtil.storeFileChunk只有在所有分块上传完毕后才会返回合并后的文件
-            File tempFile = fileTransferUtil.storeFileChunk(file, storageDir, finalFileName, chunk, chunks);
+            File tempFile = fileTransferUtil.storeFileChunk(file, storageDir, finalFileName, session, chunk, chunkSize, checksum);
             
             // 如果不是所有分块都上传完成，返回null
             if (tempFile == null) {
@@ -334,155 +320,150 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
                 return null;
             }
             
-            // 所有分块上传完成，清理文件名缓存
-            cleanupFilenameCache(originalFilename);
-            
-            log.info("所有分块上传完成，开始处理合并后的文件: {}", tempFile.getAbsolutePath());
+            // 分块按顺序到达时MD5已在写入过程中得出，乱序时为空，由后台处理时统一计算一次
+            String chunkMd5 = session.getDigest().getMd5();
+            log.info("所有分块上传完成，开始处理合并后的文件: {}, 增量MD5: {}", tempFile.getAbsolutePath(),
+                    chunkMd5 != null ? chunkMd5 : "乱序上传，延迟计算");
             if (!tempFile.exists()) {
                 log.error("合并后的文件不存在: {}", tempFile.getAbsolutePath());
                 throw new RuntimeException("合并后的文件不存在");
             }
             
-            // 处理合并后的文件（解密和解压缩）
-            File processedFile = tempFile;
-            // 记录是否真的处理了文件
-            boolean actuallyDecrypted = false;
-            boolean actuallyDecompressed = false;
+            // 先登记文件记录（状态为上传中），解密、解压、MD5计算等耗时处理交给后台执行，最后一个分块的请求无需等待
+            File targetDir = storageLayoutResolver.resolveDirectory(today, deviceId, finalFileName);
+            File expectedFile = new File(targetDir, resolveFinalFileName(finalFileName,
+                    shouldDecrypt(isEncrypted, finalFileName), shouldDecompress(isCompressed), originalFilename));
+            FileInfo fileInfo = new FileInfo();
+            fileInfo.setDeviceId(deviceId);
+            fileInfo.setUserId(getCurrentUserId());
+            fileInfo.setFileName(expectedFile.getName());
+            fileInfo.setFilePath(expectedFile.getAbsolutePath());
+            fileInfo.setFileSize(tempFile.length());
+            fileInfo.setFileType(getFileType(expectedFile.getName()));
+            fileInfo.setUploadTime(LocalDateTime.now());
+            fileInfo.setIsEncrypted(isEncrypted != null && isEncrypted == 1);
+            fileInfo.setIsCompressed(isCompressed != null && isCompressed == 1);
             
-            log.info("检查文件是否需要处理: isEncrypted={}, configEnableDecrypt={}, isCompressed={}, configEnableDecompress={}",
-                    isEncrypted, fileProperties.getStorage().getEnableDecrypt(),
-                    isCompressed, fileProperties.getStorage().getEnableDecompress());
+            // 记录原始文件大小（如果有）
+            String cachedOriginalSize = uploadMetadataCache.remove(UploadMetadataCache.Namespace.ORIGINAL_SIZE, finalFileName);
+            // 如果没有缓存，则使用合并后的原始文件大小
+            fileInfo.setOriginalSize(cachedOriginalSize != null ? Long.parseLong(cachedOriginalSize) : tempFile.length());
             
-            if ((isEncrypted != null && isEncrypted == 1 && fileProperties.getStorage().getEnableDecrypt()) ||
-                (isCompressed != null && isCompressed == 1 && fileProperties.getStorage().getEnableDecompress())) {
-                
-                // 直接使用已有的工具类处理文件
-                log.info("文件需要处理: isEncrypted={}, isCompressed={}", isEncrypted, isCompressed);
-                
-                if (isEncrypted != null && isEncrypted == 1 && fileProperties.getStorage().getEnableDecrypt()) {
-                    try {
-                        log.info("开始解密文件: {}", tempFile.getAbsolutePath());
-                        String decryptedPath = tempFile.getAbsolutePath() + ".decrypted";
-                        File decryptedFile = new File(decryptedPath);
-                        File decryptedResult = fileEncryptUtil.decryptFile(tempFile, decryptedFile, fileProperties.getStorage().getAesKey());
-                        if (decryptedResult != null && decryptedResult.exists()) {
-                            processedFile = decryptedResult;
-                            actuallyDecrypted = true;
-                            log.info("文件解密完成: {}, 大小: {}", processedFile.getAbsolutePath(), processedFile.length());
-                        } else {
-                            log.warn("文件解密失败或解密结果文件不存在，将保留原始加密文件: {}", tempFile.getAbsolutePath());
-                            // 确保processedFile是tempFile，而不是null
-                            processedFile = tempFile;
-                        }
-                    } catch (Exception e) {
-                        log.warn("文件解密过程出现异常，将保留原始加密文件: {}, 异常: {}", tempFile.getAbsolutePath(), e.getMessage());
-                        // 确保processedFile是tempFile，而不是null
-                        processedFile = tempFile;
-                    }
-                } else if (isEncrypted != null && isEncrypted == 1) {
-                    log.info("文件标记为加密(isEncrypted=1)，但系统配置禁用解密(enable-decrypt=false)，不进行解密处理");
-                }
-                
-                if (isCompressed != null && isCompressed == 1 && fileProperties.getStorage().getEnableDecompress()) {
-                    try {
-                        log.info("开始解压文件: {}", processedFile.getAbsolutePath());
-                        String decompressedPath = processedFile.getAbsolutePath() + ".decompressed";
-                        File decompressedFile = new File(decompressedPath);
-                        File tempProcessedFile = processedFile;
-                        File decompressedResult = fileCompressUtil.decompressFile(tempProcessedFile, decompressedFile);
-                        if (decompressedResult != null && decompressedResult.exists()) {
-                            processedFile = decompressedResult;
-                            actuallyDecompressed = true;
-                            log.info("文件解压完成: {}, 大小: {}", processedFile.getAbsolutePath(), processedFile.length());
-                            
-                            // 如果解压后文件与解密后文件不同，可以删除中间文件
-                            if (!tempProcessedFile.equals(tempFile) && !tempProcessedFile.equals(processedFile)) {
-                                tempProcessedFile.delete();
-                                log.info("删除中间处理文件: {}", tempProcessedFile.getAbsolutePath());
-                            }
-                        } else {
-                            log.warn("文件解压失败或解压结果文件不存在，将保留原始压缩文件: {}", processedFile.getAbsolutePath());
-                            // processedFile保持不变
-                        }
-                    } catch (Exception e) {
-                        log.warn("文件解压过程出现异常，将保留原始压缩文件: {}, 异常: {}", processedFile.getAbsolutePath(), e.getMessage());
-                        // processedFile保持不变
-                    }
-                } else if (isCompressed != null && isCompressed == 1) {
-                    log.info("文件标记为压缩(isCompressed=1)，但系统配置禁用解压(enable-decompress=false)，不进行解压处理");
-                }
-            } else {
-                log.info("文件不需要处理，或者系统配置禁用了相应的处理");
-            }
+            // 解析文件名中的元数据信息 - 使用原始文件名解析，更准确
+            parseFileMetadata(fileInfo, originalFilename);
             
-            // 确定最终文件名（如果已经解密，原始文件名可能包含.enc后缀，需要移除）
-            if (isEncrypted != null && isEncrypted == 1 && actuallyDecrypted
-                && finalFileName.toLowerCase().endsWith(".enc") && !processedFile.equals(tempFile)) {
-                // 只有解密成功的情况下才移除.enc后缀
-                finalFileName = finalFileName.substring(0, finalFileName.length() - 4);
-                log.info("移除加密后缀，最终文件名: {}", finalFileName);
+            // 设置关键词
+            if (StringUtils.hasText(keywords)) {
+                fileInfo.setKeywords(keywords);
             }
             
-            // 移除压缩后缀
-            if (isCompressed != null && isCompressed == 1 && actuallyDecompressed) {
-                // 检查是否是压缩格式的后缀，如果是则移除
-                String lcFilename = finalFileName.toLowerCase();
-                if (lcFilename.endsWith(".gz") || lcFilename.endsWith(".gzip")) {
-                    int suffixLen = lcFilename.endsWith(".gz") ? 3 : 5;
-                    finalFileName = finalFileName.substring(0, finalFileName.length() - suffixLen);
-                    log.info("移除GZIP压缩后缀，最终文件名: {}", finalFileName);
-                } else if (lcFilename.endsWith(".zip")) {
-                    finalFileName = finalFileName.substring(0, finalFileName.length() - 4);
-                    log.info("移除ZIP压缩后缀，最终文件名: {}", finalFileName);
-                }
+            // 设置访问URL和域名前缀
+            setAccessUrlAndDomain(fileInfo, expectedFile, dateDir);
+            
+            // 处理ID随记录保存，处理状态以记录为准，重启后和其他节点都能查询
+            fileInfo.setStatus(FileConstant.FILE_STATUS_UPLOADING);
+            fileInfo.setProcessingId(FileProcessingExecutor.newProcessingId());
+            fileInfo.setCreateTime(LocalDateTime.now());
+            fileInfo.setUpdateTime(LocalDateTime.now());
+            fileInfo.setDeleted(0);
+            this.save(fileInfo);
+            
+            // 后台处理使用独立的副本，避免与返回给调用方的对象并发修改
+            String mergedFileName = finalFileName;
+            FileInfo processingInfo = new FileInfo();
+            BeanUtils.copyProperties(fileInfo, processingInfo);
+            FileProcessingExecutor.ProcessingTask task = fileProcessingExecutor.submit(fileInfo.getProcessingId(), fileInfo.getId(),
+                    () -> processMergedFile(processingInfo, tempFile, targetDir, chunkMd5, mergedFileName, originalFilename,
+                            isEncrypted, isCompressed, dateDir));
+            
+            // 未启用异步处理或队列已满时任务已在当前线程执行完毕
+            if (task.getState() == FileProcessingExecutor.ProcessingState.FAILED) {
+                throw new RuntimeException(task.getMessage());
             }
+            FileInfo response = task.getState() == FileProcessingExecutor.ProcessingState.COMPLETED ? processingInfo : fileInfo;
+            log.info("分块文件上传完成: fileId={}, processingId={}, 处理状态: {}", fileInfo.getId(), task.getProcessingId(), task.getState());
             
-            // 从缓存中检查是否有原始扩展名，如果有，则添加
-            String cachedExtension = EXTENSION_CACHE.get(originalFilename);
-            if (cachedExtension != null && !cachedExtension.isEmpty() && 
-                !finalFileName.toLowerCase().endsWith(cachedExtension.toLowerCase())) {
-                // 确保扩展名以.开头
-                if (!cachedExtension.startsWith(".")) {
-                    cachedExtension = "." + cachedExtension;
-                }
-                finalFileName = finalFileName + cachedExtension;
-                log.info("从缓存获取文件类型: {} -> {}, 添加原始扩展名后: {}", 
-                         originalFilename, cachedExtension, finalFileName);
+            return response;
+        } catch (ChunkChecksumException e) {
+            // 交由异常处理器返回400，客户端重传该分块
+            throw e;
+        } catch (Exception e) {
+            log.error("分块文件上传失败: {}", e.getMessage(), e);
+            throw new RuntimeException("分块文件上传失败", e);
+        } finally {
+            permit.close();
+        }
+    }
+    
+    /**
+     * 后台处理分块合并后的文件（解密和解压缩）：一次读取合并文件、一次写入最终文件，同时计算MD5，
+     * 完成后更新文件记录并将状态置为已完成，失败时置为处理失败
+     * 
+     * @param fileInfo         已登记的文件记录
+     * @param mergedFile       分块合并后的文件
+     * @param targetDir        按存储布局确定的存储目录
+     * @param chunkMd5         分块写入时增量计算的MD5，乱序上传时为空
+     * @param finalFileName    标准化后的文件名
+     * @param originalFilename 客户端上传的文件名
+     * @param isEncrypted      是否加密
+     * @param isCompressed     是否压缩
+     * @param dateDir          日期目录
+     */
+    private void processMergedFile(FileInfo fileInfo, File mergedFile, File targetDir, String chunkMd5, String finalFileName,
+                                   String originalFilename, Integer isEncrypted, Integer isCompressed, String dateDir) {
+        try {
+            log.info("检查文件是否需要处理: isEncrypted={}, configEnableDecrypt={}, isCompressed={}, configEnableDecompress={}",
+                    isEncrypted, fileProperties.getStorage().getEnableDecrypt(),
+                    isCompressed, fileProperties.getStorage().getEnableDecompress());
+            
+            boolean needDecrypt = shouldDecrypt(isEncrypted, finalFileName);
+            boolean needDecompress = shouldDecompress(isCompressed);
+            if (!needDecrypt && isEncrypted != null && isEncrypted == 1 && !fileProperties.getStorage().getEnableDecrypt()) {
+                log.info("文件标记为加密(isEncrypted=1)，但系统配置禁用解密(enable-decrypt=false)，不进行解密处理");
+            }
+            if (!needDecompress && isCompressed != null && isCompressed == 1) {
+                log.info("文件标记为压缩(isCompressed=1)，但系统配置禁用解压(enable-decompress=false)，不进行解压处理");
             }
             
-            // 将处理后的文件复制到最终存储位置
-            File targetFile = new File(storageDir, finalFileName);
-            Files.copy(processedFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            String filenameMd5 = extractFilenameMd5(originalFilename);
+            FileStreamPipeline.PipelineOptions options = new FileStreamPipeline.PipelineOptions()
+                    .setDecrypt(needDecrypt)
+                    .setAesKey(fileProperties.getStorage().getAesKey())
+                    .setDecompress(needDecompress)
+                    .setEncryptAtRest(shouldEncryptAtRest(isEncrypted, needDecrypt))
+                    .setAtRestKey(fileProperties.getStorage().getAtRestKey())
+                    .setZipMaxEntries(zipMaxEntries())
+                    .setSourceMd5(chunkMd5)
+                    .setDigestSource(filenameMd5 != null);
+            String expectedFileName = resolveFinalFileName(finalFileName, needDecrypt, needDecompress, originalFilename);
+            FileStreamPipeline.PipelineResult result = fileStreamPipeline.processFile(mergedFile,
+                    new File(targetDir, expectedFileName), options);
+            verifyFilenameMd5(filenameMd5, result);
+            File targetFile = settleTargetFile(result, finalFileName, originalFilename);
             log.info("处理后的文件已保存到最终位置: {}", targetFile.getAbsolutePath());
             
-            // 处理文件
-            String fileType = getFileType(finalFileName);
-            
-            // 创建文件信息对象
-            FileInfo fileInfo = new FileInfo();
-            fileInfo.setDeviceId(deviceId);
-            fileInfo.setUserId(getCurrentUserId());
-            fileInfo.setFileName(finalFileName);
+            fileInfo.setFileName(targetFile.getName());
             fileInfo.setFilePath(targetFile.getAbsolutePath());
-            fileInfo.setFileSize(targetFile.length());
-            fileInfo.setFileType(fileType);
-            fileInfo.setFileMd5(calculateFileMd5(targetFile));
-            fileInfo.setUploadTime(LocalDateTime.now());
+            fileInfo.setFileSize(result.getBytesWritten());
+            fileInfo.setFileType(getFileType(targetFile.getName()));
+            fileInfo.setFileMd5(result.getMd5());
             
             // 设置加密和压缩状态字段
             // 存储文件是否仍然处于加密状态 - 如果客户端标记为加密但未解密，或解密失败
-            boolean stillEncrypted = (isEncrypted != null && isEncrypted == 1) && !actuallyDecrypted;
+            boolean stillEncrypted = (isEncrypted != null && isEncrypted == 1) && !result.isDecrypted();
             // 存储文件是否仍然处于压缩状态 - 如果客户端标记为压缩但未解压，或解压失败
-            boolean stillCompressed = (isCompressed != null && isCompressed == 1) && !actuallyDecompressed;
+            boolean stillCompressed = (isCompressed != null && isCompressed == 1) && !result.isDecompressed();
             
-            fileInfo.setIsEncrypted(stillEncrypted);
+            // 静态加密写入的文件同样按加密状态记录，下载和预览时实时解密
+            fileInfo.setIsEncrypted(stillEncrypted || result.isEncryptedAtRest());
             fileInfo.setIsCompressed(stillCompressed);
             
-            log.info("文件最终状态: 是否加密={}, 是否压缩={}", stillEncrypted, stillCompressed);
+            log.info("文件最终状态: 是否加密={}, 是否压缩={}", fileInfo.getIsEncrypted(), stillCompressed);
             
             // 设置加密和压缩类型
             if (fileInfo.getIsEncrypted()) {
-                fileInfo.setEncryptionType(fileProperties.getStorage().getDefaultEncryptionType());
+                fileInfo.setEncryptionType(result.isEncryptedAtRest()
+                        ? FileConstant.ENCRYPTION_TYPE_AT_REST : fileProperties.getStorage().getDefaultEncryptionType());
                 log.info("文件保持加密状态，设置加密类型: {}", fileInfo.getEncryptionType());
             }
             if (fileInfo.getIsCompressed()) {
@@ -490,166 +471,126 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
                 log.info("文件保持压缩状态，设置压缩类型: {}", fileInfo.getCompressionType());
             }
             
-            // 记录原始文件大小（如果有）
-            String cachedOriginalSize = ORIGINAL_SIZE_CACHE.get(finalFileName);
-            if (cachedOriginalSize != null) {
-                fileInfo.setOriginalSize(Long.parseLong(cachedOriginalSize));
-                ORIGINAL_SIZE_CACHE.remove(finalFileName);
-            } else {
-                // 如果没有缓存，则使用原始文件大小
-                fileInfo.setOriginalSize(tempFile.length());
-            }
-            
-            // 解析文件名中的元数据信息 - 使用原始文件名解析，更准确
-            parseFileMetadata(fileInfo, originalFilename);
-            
-            // 设置关键词
-            if (StringUtils.hasText(keywords)) {
-                fileInfo.setKeywords(keywords);
-            }
-            
-            // 设置访问URL和域名前缀
+            // 处理失败回退为保留原始数据时文件名会变化，需要重新生成访问URL
             setAccessUrlAndDomain(fileInfo, targetFile, dateDir);
             
             fileInfo.setStatus(FileConstant.FILE_STATUS_NORMAL);
-            fileInfo.setCreateTime(LocalDateTime.now());
             fileInfo.setUpdateTime(LocalDateTime.now());
-            fileInfo.setDeleted(0);
-            
-            // 保存到数据库
-            this.save(fileInfo);
-            log.info("分块文件上传完成: {}", fileInfo);
-            
-            // 删除临时处理文件
-            try {
-                // 删除最终处理过的临时文件（例如.decompressed）
-                if (processedFile != null && processedFile.exists() && !processedFile.equals(targetFile) && !processedFile.equals(tempFile)) {
-                    if (processedFile.delete()) {
-                        log.info("成功删除临时处理文件: {}", processedFile.getAbsolutePath());
-                    } else {
-                        log.warn("删除临时处理文件失败: {}", processedFile.getAbsolutePath());
-                    }
-                }
-
-                // 删除合并后的原始文件（例如.enc），这个是问题的关键
-                if (tempFile != null && tempFile.exists() && !tempFile.equals(targetFile)) {
-                    if (tempFile.delete()) {
-                        log.info("成功删除合并后的临时文件: {}", tempFile.getAbsolutePath());
-                    } else {
-                        log.warn("删除合并后的临时文件失败: {}", tempFile.getAbsolutePath());
-                    }
-                }
-            } catch (Exception e) {
-                log.warn("删除临时文件时发生异常: {}", e.getMessage(), e);
-            }
-            
-            return fileInfo;
+            persistWithDedup(fileInfo, targetFile, () -> this.updateById(fileInfo));
+            registerZipEntries(fileInfo, result, dateDir);
+            log.info("分块文件后台处理完成: {}", fileInfo);
         } catch (Exception e) {
-            log.error("分块文件上传失败: {}", e.getMessage(), e);
-            throw new RuntimeException("分块文件上传失败", e);
+            log.error("分块文件后台处理失败: fileId={}, 错误: {}", fileInfo.getId(), e.getMessage(), e);
+            FileInfo failed = new FileInfo();
+            failed.setId(fileInfo.getId());
+            failed.setStatus(FileConstant.FILE_STATUS_FAILED);
+            failed.setUpdateTime(LocalDateTime.now());
+            this.updateById(failed);
+            fileInfo.setStatus(FileConstant.FILE_STATUS_FAILED);
+            throw new RuntimeException("分块文件后台处理失败: " + e.getMessage(), e);
         }
     }
     
     /**
      * 生成标准格式文件名
-     * 确保相同原始文件名的所有分块使用相同的标准文件名
+     * 同一上传的所有分块使用上传会话中分配的标准文件名（只分配一次），这里只负责生成候选名
      * 
      * @param originalFilename 原始文件名
      * @param deviceId 设备ID
      * @return 标准格式文件名
      */
-    private String getOrCreateStandardFileName(String originalFilename, String deviceId) {
+    private String createStandardFileName(String originalFilename, String deviceId) {
         if (originalFilename == null) {
             return UUID.randomUUID().toString();
         }
         
-        // 使用原始文件名作为缓存key
-        return FILENAME_CACHE.computeIfAbsent(originalFilename, key -> {
-            log.info("分块上传的文件名不符合标准格式，将进行重命名: {}", originalFilename);
-            String fileType = getFileType(originalFilename);
-            
-            // 尝试从原始文件名中提取信息
-            String userId = "default";
-            Long timestamp = System.currentTimeMillis();
-            Long duration = 0L;
-            
-            // 尝试从原始文件名中解析信息，如果可能的话
-            if (originalFilename.contains("_")) {
-                String[] parts = originalFilename.split("_");
-                // 如果包含足够的部分，尝试提取
-                if (parts.length >= 3) {
-                    // 尝试提取用户ID (通常是第3个部分)
-                    if (parts.length > 2) {
-                        userId = parts[2];
-                    }
-                    
-                    // 尝试提取时间戳 (通常是第4个部分)
-                    if (parts.length > 3) {
-                        try {
-                            timestamp = Long.parseLong(parts[3]);
-                        } catch (NumberFormatException e) {
-                            log.warn("无法从文件名解析时间戳，使用当前时间戳");
-                        }
+        log.info("分块上传的文件名不符合标准格式，将进行重命名: {}", originalFilename);
+        String fileType = getFileType(originalFilename);
+        
+        // 尝试从原始文件名中提取信息
+        String userId = "default";
+        Long timestamp = System.currentTimeMillis();
+        Long duration = 0L;
+        
+        // 尝试从原始文件名中解析信息，如果可能的话
+        if (originalFilename.contains("_")) {
+            String[] parts = originalFilename.split("_");
+            // 如果包含足够的部分，尝试提取
+            if (parts.length >= 3) {
+                // 尝试提取用户ID (通常是第3个部分)
+                if (parts.length > 2) {
+                    userId = parts[2];
+                }
+                
+                // 尝试提取时间戳 (通常是第4个部分)
+                if (parts.length > 3) {
+                    try {
+                        timestamp = Long.parseLong(parts[3]);
+                    } catch (NumberFormatException e) {
+                        log.warn("无法从文件名解析时间戳，使用当前时间戳");
                     }
-                    
-                    // 尝试提取时长 (通常是第5个部分)
-                    if (parts.length > 4) {
-                        try {
-                            duration = Long.parseLong(parts[4]);
-                        } catch (NumberFormatException e) {
-                            log.warn("无法从文件名解析时长，使用默认值0");
-                        }
+                }
+                
+                // 尝试提取时长 (通常是第5个部分)
+                if (parts.length > 4) {
+                    try {
+                        duration = Long.parseLong(parts[4]);
+                    } catch (NumberFormatException e) {
+                        log.warn("无法从文件名解析时长，使用默认值0");
                     }
                 }
             }
+        }
+        
+        // 计算或使用文件MD5值
+        String md5;
+        if (originalFilename.contains("_") && originalFilename.split("_").length > 5) {
+            // 尝试从原始文件名中提取MD5值
+            String[] parts = originalFilename.split("_");
+            String lastPart = parts[5];
+            if (lastPart.contains(".")) {
+                lastPart = lastPart.substring(0, lastPart.indexOf("."));
+            }
             
-            // 计算或使用文件MD5值
-            String md5;
-            if (originalFilename.contains("_") && originalFilename.split("_").length > 5) {
-                // 尝试从原始文件名中提取MD5值
-                String[] parts = originalFilename.split("_");
-                String lastPart = parts[5];
-                if (lastPart.contains(".")) {
-                    lastPart = lastPart.substring(0, lastPart.indexOf("."));
-                }
-                
-                if (lastPart.matches("[a-fA-F0-9]{32}")) {
-                    md5 = lastPart;
-                } else {
-                    md5 = UUID.randomUUID().toString().replace("-", "").substring(0, 32);
-                }
+            if (lastPart.matches("[a-fA-F0-9]{32}")) {
+                md5 = lastPart;
             } else {
                 md5 = UUID.randomUUID().toString().replace("-", "").substring(0, 32);
             }
-            
-            // 生成标准格式的文件名
-            String dateStr = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd"));
-            
-            String extension = "";
-            if (originalFilename.contains(".")) {
-                extension = originalFilename.substring(originalFilename.lastIndexOf("."));
-            } else if (fileType != null && !fileType.equals("unknown")) {
-                extension = "." + fileType;
-            } else {
-                // 尝试从EXTENSION_CACHE获取扩展名
-                String cachedExtension = EXTENSION_CACHE.get(originalFilename);
-                if (cachedExtension != null && !cachedExtension.isEmpty()) {
-                    extension = cachedExtension.startsWith(".") ? cachedExtension : "." + cachedExtension;
-                    log.info("使用缓存的扩展名: {}", extension);
-                }
+        } else {
+            md5 = UUID.randomUUID().toString().replace("-", "").substring(0, 32);
+        }
+        
+        // 生成标准格式的文件名
+        String dateStr = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd"));
+        
+        String extension = "";
+        if (originalFilename.contains(".")) {
+            extension = originalFilename.substring(originalFilename.lastIndexOf("."));
+        } else if (fileType != null && !fileType.equals("unknown")) {
+            extension = "." + fileType;
+        } else {
+            // 尝试从缓存获取扩展名
+            String cachedExtension = uploadMetadataCache.get(UploadMetadataCache.Namespace.EXTENSION, originalFilename);
+            if (cachedExtension != null && !cachedExtension.isEmpty()) {
+                extension = cachedExtension.startsWith(".") ? cachedExtension : "." + cachedExtension;
+                log.info("使用缓存的扩展名: {}", extension);
             }
-            
-            String standardName = String.format("%s_%s_%s_%d_%d_%s%s", 
-                    deviceId, dateStr, userId, timestamp, duration, md5, extension);
-            
-            log.info("生成标准格式文件名: {}", standardName);
-            return standardName;
-        });
+        }
+        
+        String standardName = String.format("%s_%s_%s_%d_%d_%s%s", 
+                deviceId, dateStr, userId, timestamp, duration, md5, extension);
+        
+        log.info("生成标准格式文件名: {}", standardName);
+        return standardName;
     }
     
     private static final Pattern STANDARD_FILENAME_PATTERN = 
             Pattern.compile("^.+_\\d{8}_.+_\\d+_\\d+_[a-fA-F0-9]{32}.*$");
     
+    private static final Pattern FILENAME_MD5_PATTERN = 
+            Pattern.compile("^.+_\\d{8}_.+_\\d+_\\d+_([a-fA-F0-9]{32}).*$");
+    
     /**
      * 检查文件名是否符合标准格式：设备ID_YYYYMMDD_用户ID_时间戳_时长_MD5值.扩展名
      * 
@@ -665,6 +606,370 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
         return STANDARD_FILENAME_PATTERN.matcher(filename).matches();
     }
     
+    /**
+     * 持久化文件记录：已存储过相同内容（MD5 + 大小）的文件时，删除刚写入的文件并让记录指向已有文件
+     *
+     * @param fileInfo   文件记录
+     * @param targetFile 刚写入的文件
+     * @param persist    持久化文件记录（保存或更新）
+     */
+    private void persistWithDedup(FileInfo fileInfo, File targetFile, BooleanSupplier persist) throws IOException {
+        FileInfo blob = fileDedupService.findBlob(fileInfo.getFileMd5(), fileInfo.getFileSize());
+        // 同名文件重传时写入的就是已有文件本身，直接按新记录引用
+        if (blob != null && !new File(blob.getFilePath()).getAbsoluteFile().equals(targetFile.getAbsoluteFile())
+                && fileDedupService.shareBlob(fileInfo, blob, persist)) {
+            fileInfo.setDeduplicated(true);
+            Files.deleteIfExists(targetFile.toPath());
+            log.info("文件内容重复，已删除新写入的文件: {}", targetFile.getAbsolutePath());
+            return;
+        }
+        persist.getAsBoolean();
+    }
+    
+    /**
+     * 解压ZIP时最多写出的文件数，未启用全部解压时只保留第一个文件
+     */
+    private int zipMaxEntries() {
+        FileProperties.Storage storage = fileProperties.getStorage();
+        return Boolean.TRUE.equals(storage.getZipExtractAllEntries()) ? storage.getZipMaxEntries() : 1;
+    }
+    
+    /**
+     * ZIP中第一个文件之后的其他文件各自登记为独立的文件记录，设备、用户、录音元数据等沿用压缩包的记录
+     *
+     * @param archiveInfo 压缩包（第一个文件）的文件记录
+     * @param result      流式处理结果
+     * @param dateDir     日期目录
+     */
+    private void registerZipEntries(FileInfo archiveInfo, FileStreamPipeline.PipelineResult result, String dateDir) throws IOException {
+        for (FileStreamPipeline.PipelineResult entry : result.getEntries()) {
+            File entryFile = entry.getTargetFile();
+            FileInfo entryInfo = new FileInfo();
+            BeanUtils.copyProperties(archiveInfo, entryInfo);
+            entryInfo.setId(null);
+            entryInfo.setProcessingId(null);
+            entryInfo.setDeduplicated(null);
+            entryInfo.setFileName(entryFile.getName());
+            entryInfo.setFilePath(entryFile.getAbsolutePath());
+            entryInfo.setFileSize(entry.getBytesWritten());
+            entryInfo.setOriginalSize(entry.getBytesWritten());
+            entryInfo.setFileType(getFileType(entryFile.getName()));
+            entryInfo.setFileMd5(entry.getMd5());
+            entryInfo.setIsEncrypted(entry.isEncryptedAtRest());
+            entryInfo.setEncryptionType(entry.isEncryptedAtRest() ? FileConstant.ENCRYPTION_TYPE_AT_REST : null);
+            entryInfo.setIsCompressed(false);
+            entryInfo.setCompressionType(null);
+            setAccessUrlAndDomain(entryInfo, entryFile, dateDir);
+            persistWithDedup(entryInfo, entryFile, () -> this.save(entryInfo));
+            log.info("ZIP条目登记为独立文件: {} -> fileId={}", entry.getEntryName(), entryInfo.getId());
+        }
+    }
+    
+    /**
+     * 从客户端上传的标准格式文件名中提取MD5，文件名不符合标准格式或未启用校验时返回null
+     * （不符合标准格式的文件名由服务端生成随机MD5部分，不能用于校验）
+     *
+     * @param filename 客户端上传的文件名
+     * @return 文件名中的MD5（小写）
+     */
+    private String extractFilenameMd5(String filename) {
+        if (!Boolean.TRUE.equals(fileProperties.getUpload().getVerifyFilenameMd5()) || filename == null) {
+            return null;
+        }
+        Matcher matcher = FILENAME_MD5_PATTERN.matcher(filename);
+        return matcher.matches() ? matcher.group(1).toLowerCase() : null;
+    }
+    
+    /**
+     * 校验文件名中的MD5：与源数据MD5（客户端上传的原始数据）或处理后文件的MD5之一一致即通过，
+     * 两者均由处理管道在读写数据时同时得出，不额外读取文件；校验失败时删除已写入的文件
+     *
+     * @param filenameMd5 文件名中的MD5，为空时不校验
+     * @param result      处理结果
+     */
+    private void verifyFilenameMd5(String filenameMd5, FileStreamPipeline.PipelineResult result) throws IOException {
+        if (filenameMd5 == null) {
+            return;
+        }
+        if (filenameMd5.equalsIgnoreCase(result.getSourceMd5()) || filenameMd5.equalsIgnoreCase(result.getMd5())) {
+            log.info("文件MD5校验通过: {}", filenameMd5);
+            return;
+        }
+        log.error("文件MD5校验失败，文件名MD5: {}, 源数据MD5: {}, 文件MD5: {}",
+                filenameMd5, result.getSourceMd5(), result.getMd5());
+        Files.deleteIfExists(result.getTargetFile().toPath());
+        for (FileStreamPipeline.PipelineResult entry : result.getEntries()) {
+            Files.deleteIfExists(entry.getTargetFile().toPath());
+        }
+        throw new RuntimeException("文件MD5校验失败，文件可能已损坏");
+    }
+    
+    /**
+     * 判断是否需要解密：客户端标记为加密、系统启用解密且文件名带有.enc后缀
+     *
+     * @param isEncrypted 是否加密
+     * @param fileName    文件名
+     * @return 是否需要解密
+     */
+    private boolean shouldDecrypt(Integer isEncrypted, String fileName) {
+        return isEncrypted != null && isEncrypted == 1
+                && fileProperties.getStorage().getEnableDecrypt()
+                && fileName != null && fileName.toLowerCase().endsWith(FileConstant.ENCRYPTED_FILE_SUFFIX);
+    }
+    
+    /**
+     * 判断是否需要解压：客户端标记为压缩且系统启用解压
+     *
+     * @param isCompressed 是否压缩
+     * @return 是否需要解压
+     */
+    private boolean shouldDecompress(Integer isCompressed) {
+        return isCompressed != null && isCompressed == 1 && fileProperties.getStorage().getEnableDecompress();
+    }
+    
+    /**
+     * 根据解密/解压结果确定最终文件名：移除.enc和压缩后缀，并补充缓存中的原始扩展名
+     *
+     * @param fileName     处理前的文件名
+     * @param decrypted    是否已解密
+     * @param decompressed 是否已解压
+     * @param extensionKey 原始扩展名缓存的key
+     * @return 最终文件名
+     */
+    private String resolveFinalFileName(String fileName, boolean decrypted, boolean decompressed, String extensionKey) {
+        String finalFileName = fileName;
+        
+        // 只有解密成功的情况下才移除.enc后缀
+        if (decrypted && finalFileName.toLowerCase().endsWith(FileConstant.ENCRYPTED_FILE_SUFFIX)) {
+            finalFileName = finalFileName.substring(0, finalFileName.length() - 4);
+        }
+        
+        // 移除压缩后缀（.gz/.gzip/.zip/.zst/.zstd/.lz4）
+        if (decompressed) {
+            finalFileName = FileCompressUtil.stripCompressionSuffix(finalFileName);
+        }
+        
+        // 从缓存中检查是否有原始扩展名，如果有，则添加
+        String cachedExtension = uploadMetadataCache.get(UploadMetadataCache.Namespace.EXTENSION, extensionKey);
+        if (cachedExtension != null && !cachedExtension.isEmpty() &&
+            !finalFileName.toLowerCase().endsWith(cachedExtension.toLowerCase())) {
+            // 确保扩展名以.开头
+            if (!cachedExtension.startsWith(".")) {
+                cachedExtension = "." + cachedExtension;
+            }
+            finalFileName = finalFileName + cachedExtension;
+        }
+        
+        return finalFileName;
+    }
+    
+    /**
+     * 按实际处理结果校正最终文件名，若与预期不一致（如解密或解压未成功）则重命名目标文件
+     *
+     * @param result       流式处理结果
+     * @param fileName     处理前的文件名
+     * @param extensionKey 原始扩展名缓存的key
+     * @return 最终文件
+     */
+    private File settleTargetFile(FileStreamPipeline.PipelineResult result, String fileName, String extensionKey) throws IOException {
+        File targetFile = result.getTargetFile();
+        String finalFileName = resolveFinalFileName(fileName, result.isDecrypted(), result.isDecompressed(), extensionKey);
+        if (!finalFileName.equals(targetFile.getName())) {
+            File renamedFile = new File(targetFile.getParentFile(), finalFileName);
+            Files.move(targetFile.toPath(), renamedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            log.info("按处理结果重命名文件: {} -> {}", targetFile.getName(), finalFileName);
+            result.setTargetFile(renamedFile);
+        }
+        log.info("最终文件名: {}", result.getTargetFile().getName());
+        return result.getTargetFile();
+    }
+    
+    @Override
+    public ChunkUploadStatusVO getChunkUploadStatus(String fileName, String deviceId) {
+        ChunkUploadStatusVO status = new ChunkUploadStatusVO()
+                .setFileName(fileName)
+                .setDeviceId(deviceId);
+        UploadSession session = uploadSessionRegistry.get(deviceId, fileName);
+        if (session == null) {
+            return status.setExists(false).setCompleted(false);
+        }
+        return status.setExists(true)
+                .setChunks(session.getChunks())
+                .setUploadedChunks(session.getUploadedChunks())
+                .setMissingChunks(session.getMissingChunks())
+                .setReceivedBytes(session.getReceivedBytes())
+                .setChunkSize(session.getChunkSize() > 0 ? session.getChunkSize() : null)
+                .setCompleted(session.isCompleted());
+    }
+    
+    @Override
+    public ChunkUploadStatusVO probeChunkUpload(String fileName, String deviceId, Long fileSize, Integer chunks, String fileMd5) {
+        ChunkUploadStatusVO status = new ChunkUploadStatusVO()
+                .setFileName(fileName)
+                .setDeviceId(deviceId)
+                .setChunks(chunks)
+                .setRecommendedCompression(compressionPolicy.select(fileName).name());
+        
+        // 先查MD5索引：设备自己已完成的上传直接返回；其他来源的相同内容只返回秒传校验范围，不泄露其文件ID
+        String md5 = StringUtils.hasText(fileMd5) ? fileMd5 : extractFilenameMd5(fileName);
+        if (md5 != null && fileSize != null) {
+            FileInfo existing = fileDedupService.findDeviceFile(deviceId, md5, fileSize);
+            if (existing != null) {
+                log.info("探测到设备已上传过该文件: fileName={}, deviceId={}, fileId={}", fileName, deviceId, existing.getId());
+                return status.setExists(false)
+                        .setCompleted(true)
+                        .setFileId(existing.getId())
+                        .setAccessUrl(existing.getAccessUrl())
+                        .setDeduplicated(Boolean.TRUE.equals(existing.getDeduplicated()))
+                        .setUploadedChunks(chunks)
+                        .setMissingChunks(Collections.emptyList());
+            }
+            InstantUploadChallenge.Challenge challenge = challengeInstantUpload(deviceId, md5, fileSize);
+            if (challenge != null) {
+                status.setChallengeToken(challenge.getToken())
+                        .setChallengeOffset(challenge.getOffset())
+                        .setChallengeLength(challenge.getLength());
+            }
+        }
+        
+        // 再查上传会话：只需补传缺失的分块
+        UploadSession session = uploadSessionRegistry.get(deviceId, fileName);
+        if (session == null) {
+            List<Integer> missing = new ArrayList<>();
+            for (int i = 0; i < chunks; i++) {
+                missing.add(i);
+            }
+            return status.setExists(false)
+                    .setCompleted(false)
+                    .setUploadedChunks(0)
+                    .setMissingChunks(missing)
+                    .setReceivedBytes(0L);
+        }
+        if (session.getChunks() != chunks) {
+            throw new IllegalArgumentException("分块总数与进行中的上传不一致: " + chunks + " != " + session.getChunks());
+        }
+        return status.setExists(true)
+                .setUploadedChunks(session.getUploadedChunks())
+                .setMissingChunks(session.getMissingChunks())
+                .setReceivedBytes(session.getReceivedBytes())
+                .setChunkSize(session.getChunkSize() > 0 ? session.getChunkSize() : null)
+                .setCompleted(session.isCompleted());
+    }
+    
+    @Override
+    public InstantUploadChallenge.Challenge challengeInstantUpload(String deviceId, String fileMd5, Long fileSize) {
+        if (fileDedupService.findBlob(fileMd5, fileSize) == null) {
+            return null;
+        }
+        return instantUploadChallenge.issue(deviceId, fileMd5, fileSize);
+    }
+    
+    @Override
+    public FileInfo instantUpload(String fileName, String deviceId, String fileMd5, Long fileSize, String keywords,
+                                  String challengeToken, String proofMd5) {
+        InstantUploadChallenge.Challenge challenge = instantUploadChallenge.verify(deviceId, fileMd5, fileSize, challengeToken);
+        if (challenge == null) {
+            throw new IllegalArgumentException("秒传校验令牌无效或已过期");
+        }
+        FileInfo blob = fileDedupService.findBlob(fileMd5, fileSize);
+        if (blob == null) {
+            return null;
+        }
+        if (!StringUtils.hasText(proofMd5) || !proofMd5.equalsIgnoreCase(rangeMd5(blob, challenge))) {
+            log.warn("秒传校验范围内容不一致: fileName={}, deviceId={}, fileMd5={}", fileName, deviceId, fileMd5);
+            throw new IllegalArgumentException("秒传校验失败，请上传文件");
+        }
+        return shareExistingBlob(fileName, deviceId, keywords, blob);
+    }
+    
+    /**
+     * 计算已存储文件中校验范围内容的MD5（静态加密的文件按明文计算）
+     */
+    private String rangeMd5(FileInfo blob, InstantUploadChallenge.Challenge challenge) {
+        FileTransferUtil.RangeResource resource = rangeResourceOf(blob);
+        FileTransferUtil.RangeWriter writer = resource.getWriter() != null
+                ? resource.getWriter() : FileTransferUtil.rawRangeWriter();
+        try (FileChannel channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ)) {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            writer.write(channel, challenge.getOffset(), challenge.getLength(),
+                    new DigestOutputStream(OutputStream.nullOutputStream(), md5));
+            return FileEncryptUtil.toHex(md5.digest());
+        } catch (Exception e) {
+            log.error("读取秒传校验范围失败: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+    
+    /**
+     * 登记一条指向已有文件的记录
+     *
+     * @return 文件信息，已有文件不可用时返回null
+     */
+    private FileInfo shareExistingBlob(String fileName, String deviceId, String keywords, FileInfo blob) {
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setDeviceId(deviceId);
+        fileInfo.setUserId(getCurrentUserId());
+        fileInfo.setUploadTime(LocalDateTime.now());
+        fileInfo.setOriginalSize(blob.getOriginalSize());
+        parseFileMetadata(fileInfo, fileName);
+        if (StringUtils.hasText(keywords)) {
+            fileInfo.setKeywords(keywords);
+        }
+        fileInfo.setStatus(FileConstant.FILE_STATUS_NORMAL);
+        fileInfo.setCreateTime(LocalDateTime.now());
+        fileInfo.setUpdateTime(LocalDateTime.now());
+        fileInfo.setDeleted(0);
+        if (!fileDedupService.shareBlob(fileInfo, blob, () -> this.save(fileInfo))) {
+            return null;
+        }
+        fileInfo.setDeduplicated(true);
+        log.info("秒传成功: fileName={}, deviceId={}, fileId={}, 共享文件: {}", fileName, deviceId, fileInfo.getId(), fileInfo.getFilePath());
+        return fileInfo;
+    }
+    
+    /**
+     * 处理状态以文件记录为准，本节点内存中的任务只用于区分排队和处理中、补充失败原因
+     */
+    @Override
+    public FileProcessingStatusVO getProcessingStatus(String processingId) {
+        if (!StringUtils.hasText(processingId)) {
+            return null;
+        }
+        FileInfo fileInfo = this.getOne(new LambdaQueryWrapper<FileInfo>()
+                .eq(FileInfo::getProcessingId, processingId), false);
+        if (fileInfo == null) {
+            return null;
+        }
+        FileProcessingExecutor.ProcessingTask task = fileProcessingExecutor.get(processingId);
+        FileProcessingExecutor.ProcessingState state;
+        if (Objects.equals(fileInfo.getStatus(), FileConstant.FILE_STATUS_UPLOADING)) {
+            state = task != null && task.getState() == FileProcessingExecutor.ProcessingState.QUEUED
+                    ? FileProcessingExecutor.ProcessingState.QUEUED : FileProcessingExecutor.ProcessingState.PROCESSING;
+        } else if (Objects.equals(fileInfo.getStatus(), FileConstant.FILE_STATUS_FAILED)) {
+            state = FileProcessingExecutor.ProcessingState.FAILED;
+        } else {
+            state = FileProcessingExecutor.ProcessingState.COMPLETED;
+        }
+        boolean finished = state != FileProcessingExecutor.ProcessingState.QUEUED
+                && state != FileProcessingExecutor.ProcessingState.PROCESSING;
+        String message = task != null ? task.getMessage() : null;
+        if (state == FileProcessingExecutor.ProcessingState.FAILED && message == null) {
+            message = "后台处理失败或被中断（如节点重启）";
+        }
+        return new FileProcessingStatusVO()
+                .setProcessingId(processingId)
+                .setFileId(fileInfo.getId())
+                .setState(state.name())
+                .setMessage(message)
+                .setSubmitTime(fileInfo.getCreateTime())
+                .setFinishTime(finished ? fileInfo.getUpdateTime() : null)
+                .setStatus(fileInfo.getStatus())
+                .setFileName(fileInfo.getFileName())
+                .setFileSize(fileInfo.getFileSize())
+                .setFileMd5(fileInfo.getFileMd5())
+                .setAccessUrl(fileInfo.getAccessUrl());
+    }
+    
     @Override
     public void downloadFile(Long id, HttpServletRequest request, HttpServletResponse response) {
         try {
@@ -680,14 +985,184 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
                 throw new RuntimeException("文件不存在");
             }
             
-            // 下载文件（支持断点续传）
-            fileTransferUtil.downloadWithRange(request, response, file, fileInfo.getFileName());
+            // 下载文件（支持断点续传、多范围和条件请求），仍处于加密状态的文件按范围实时解密
+            fileTransferUtil.serve(request, response, rangeResourceOf(fileInfo)
+                    .setTrafficClass(FileSender.TrafficClass.BULK)
+                    .setFilename(shouldDecryptOnRead(fileInfo)
+                            ? stripEncryptedSuffix(fileInfo.getFileName()) : fileInfo.getFileName()));
         } catch (Exception e) {
             log.error("文件下载失败: {}", e.getMessage(), e);
             throw new RuntimeException("文件下载失败", e);
         }
     }
     
+    /**
+     * 预览的文件内容在记录生命周期内不变，按配置的时长允许浏览器缓存，过期后以ETag重新验证；
+     * 预览多为在线播放，限速时按交互流量优先分配带宽
+     */
+    @Override
+    public void previewFile(FileInfo fileInfo, String contentType, HttpServletRequest request, HttpServletResponse response) {
+        Integer maxAge = fileProperties.getStorage().getPreviewCacheMaxAge();
+        fileTransferUtil.serve(request, response, rangeResourceOf(fileInfo)
+                .setContentType(contentType)
+                .setTrafficClass(FileSender.TrafficClass.INTERACTIVE)
+                .setCacheControl(maxAge != null && maxAge > 0 ? "private, max-age=" + maxAge : "no-cache"));
+    }
+    
+    /**
+     * 先统计文件数（没有文件或超过上限时在输出前返回），再按ID分批查询、逐个打包输出，内存占用与文件数量无关；
+     * 已压缩的格式原样存储，仍处于加密状态的文件实时解密后打包
+     */
+    @Override
+    public void downloadBatch(BatchDownloadQueryVO query, HttpServletRequest request, HttpServletResponse response) {
+        boolean hasIds = query.getIds() != null && !query.getIds().isEmpty();
+        if (!hasIds && !StringUtils.hasText(query.getDeviceId())
+                && query.getStartDate() == null && query.getEndDate() == null) {
+            throw new IllegalArgumentException("请指定文件ID列表、设备ID或录音日期范围");
+        }
+        int maxFiles = fileProperties.getDownload().getBatchMaxFiles();
+        if (hasIds && query.getIds().size() > maxFiles) {
+            throw new IllegalArgumentException("文件数超过批量下载上限: " + maxFiles);
+        }
+        long count = this.count(batchQuery(query));
+        if (count > maxFiles) {
+            throw new IllegalArgumentException("文件数超过批量下载上限: " + count + " > " + maxFiles);
+        }
+        if (count == 0) {
+            try {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                response.getWriter().write("没有符合条件的文件");
+            } catch (IOException e) {
+                log.error("返回没有符合条件的文件错误失败", e);
+            }
+            return;
+        }
+        
+        log.info("批量打包下载: 文件数={}, 条件={}", count, query);
+        String filename = "recordings_" + (StringUtils.hasText(query.getDeviceId()) ? query.getDeviceId() + "_" : "")
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss")) + ".zip";
+        fileTransferUtil.serveZip(request, response, filename, batchEntries(query, maxFiles));
+    }
+    
+    /**
+     * 批量打包的查询条件，只包含状态正常的文件
+     */
+    private LambdaQueryWrapper<FileInfo> batchQuery(BatchDownloadQueryVO query) {
+        LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(FileInfo::getStatus, FileConstant.FILE_STATUS_NORMAL)
+                .in(query.getIds() != null && !query.getIds().isEmpty(), FileInfo::getId, query.getIds())
+                .eq(StringUtils.hasText(query.getDeviceId()), FileInfo::getDeviceId, query.getDeviceId())
+                .ge(query.getStartDate() != null, FileInfo::getRecordDate, query.getStartDate())
+                .le(query.getEndDate() != null, FileInfo::getRecordDate, query.getEndDate())
+                .eq(StringUtils.hasText(query.getFileType()), FileInfo::getFileType, query.getFileType());
+        return wrapper;
+    }
+    
+    /**
+     * 按ID顺序每次查询一批记录，遍历到时才查询下一批，最多 maxFiles 个
+     */
+    private Iterable<ZipStreamWriter.Entry> batchEntries(BatchDownloadQueryVO query, int maxFiles) {
+        return () -> new Iterator<>() {
+            
+            private Iterator<FileInfo> batch = Collections.emptyIterator();
+            
+            private long lastId;
+            
+            private int remaining = maxFiles;
+            
+            private boolean exhausted;
+            
+            @Override
+            public boolean hasNext() {
+                while (!batch.hasNext() && !exhausted && remaining > 0) {
+                    int size = Math.min(BATCH_QUERY_SIZE, remaining);
+                    List<FileInfo> records = FileServiceImpl.this.list(batchQuery(query)
+                            .gt(FileInfo::getId, lastId)
+                            .orderByAsc(FileInfo::getId)
+                            .last("LIMIT " + size));
+                    exhausted = records.size() < size;
+                    if (!records.isEmpty()) {
+                        lastId = records.get(records.size() - 1).getId();
+                    }
+                    batch = records.iterator();
+                }
+                return batch.hasNext();
+            }
+            
+            @Override
+            public ZipStreamWriter.Entry next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                remaining--;
+                return zipEntryOf(batch.next());
+            }
+        };
+    }
+    
+    private ZipStreamWriter.Entry zipEntryOf(FileInfo fileInfo) {
+        FileTransferUtil.RangeResource resource = rangeResourceOf(fileInfo);
+        String name = shouldDecryptOnRead(fileInfo) ? stripEncryptedSuffix(fileInfo.getFileName()) : fileInfo.getFileName();
+        return new ZipStreamWriter.Entry()
+                .setName(name)
+                .setFile(resource.getFile())
+                .setContentOffset(resource.getContentOffset())
+                .setWriter(resource.getWriter())
+                .setLastModified(resource.getLastModified())
+                .setStored(compressionPolicy.select(name) == FileCompressUtil.CompressionType.NONE);
+    }
+    
+    /**
+     * 以文件MD5作为强ETag、记录更新时间作为最后修改时间（条件请求命中时无需访问磁盘），
+     * 仍处于加密状态的文件跳过IV、按明文范围实时解密
+     */
+    private FileTransferUtil.RangeResource rangeResourceOf(FileInfo fileInfo) {
+        FileTransferUtil.RangeResource resource = new FileTransferUtil.RangeResource()
+                .setFile(new File(fileInfo.getFilePath()))
+                .setEtag(fileInfo.getFileMd5());
+        LocalDateTime modified = fileInfo.getUpdateTime() != null ? fileInfo.getUpdateTime() : fileInfo.getUploadTime();
+        if (modified != null) {
+            resource.setLastModified(modified.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+        if (shouldDecryptOnRead(fileInfo)) {
+            return resource.setContentOffset(FileConstant.IV_SIZE).setWriter(decryptingRangeWriter());
+        }
+        return resource;
+    }
+    
+    /**
+     * 是否对最终文件做静态加密：客户端密文未解密而原样保留时不再重复加密
+     */
+    private boolean shouldEncryptAtRest(Integer isEncrypted, boolean needDecrypt) {
+        boolean keepClientCiphertext = isEncrypted != null && isEncrypted == 1 && !needDecrypt;
+        return Boolean.TRUE.equals(fileProperties.getStorage().getEncryptAtRest()) && !keepClientCiphertext;
+    }
+    
+    /**
+     * 文件是否需要在读取时实时解密：只有服务端静态加密写入的文件（加密类型为 ENCRYPTION_TYPE_AT_REST）格式和密钥确定，
+     * 客户端密文（上传时未解密或解密失败）原样输出；不足IV长度的文件在输出时按不存在处理
+     */
+    private boolean shouldDecryptOnRead(FileInfo fileInfo) {
+        return Boolean.TRUE.equals(fileInfo.getIsEncrypted())
+                && FileConstant.ENCRYPTION_TYPE_AT_REST.equals(fileInfo.getEncryptionType())
+                && Boolean.TRUE.equals(fileProperties.getStorage().getDecryptOnRead());
+    }
+    
+    /**
+     * 按明文范围解密输出的 RangeWriter（AES/CTR可从任意块开始解密）
+     */
+    private FileTransferUtil.RangeWriter decryptingRangeWriter() {
+        SecretKey key = fileEncryptUtil.resolveDecryptKey(fileProperties.getStorage().getAtRestKey());
+        return (channel, start, length, out) -> fileEncryptUtil.transferDecryptedRange(channel, start, length, out, key);
+    }
+    
+    private String stripEncryptedSuffix(String fileName) {
+        if (fileName != null && fileName.toLowerCase().endsWith(FileConstant.ENCRYPTED_FILE_SUFFIX)) {
+            return fileName.substring(0, fileName.length() - FileConstant.ENCRYPTED_FILE_SUFFIX.length());
+        }
+        return fileName;
+    }
+    
     @Override
     public FileInfo getFileById(Long id) {
         return this.getById(id);
@@ -726,16 +1201,10 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
         }
         
         try {
-            // 删除物理文件
-            File file = new File(fileInfo.getFilePath());
-            if (file.exists()) {
-                file.delete();
-            }
-            
-            // 更新数据库记录
+            // 更新数据库记录，物理文件可能被多条记录共享，没有其他有效记录引用时才删除
             fileInfo.setStatus(FileConstant.FILE_STATUS_EXPIRED);
             fileInfo.setUpdateTime(LocalDateTime.now());
-            return this.updateById(fileInfo);
+            return fileDedupService.releaseBlob(fileInfo, () -> this.updateById(fileInfo));
         } catch (Exception e) {
             log.error("文件删除失败: {}", e.getMessage(), e);
             throw new RuntimeException("文件删除失败", e);
@@ -759,7 +1228,7 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
         }
         
         // 如果文件名中没有扩展名，尝试从扩展名缓存中获取
-        String cachedExtension = EXTENSION_CACHE.get(filename);
+        String cachedExtension = uploadMetadataCache.get(UploadMetadataCache.Namespace.EXTENSION, filename);
         if (cachedExtension != null && !cachedExtension.isEmpty()) {
             // 移除开头的点(如果有)
             if (cachedExtension.startsWith(".")) {
@@ -782,21 +1251,6 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
         return "default";
     }
 
-    /**
-     * 计算文件的MD5值
-     * 
-     * @param file 文件
-     * @return MD5值
-     */
-    private String calculateFileMd5(File file) {
-        try {
-            return fileEncryptUtil.calculateMD5(file);
-        } catch (Exception e) {
-            log.error("计算文件MD5失败: {}", e.getMessage(), e);
-            return UUID.randomUUID().toString().replace("-", "");
-        }
-    }
-
     /**
      * 处理文件（加密和压缩）
      * 
@@ -811,7 +1265,7 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
             long originalSize = file.length();
             
             // 记录原始文件大小到缓存
-            ORIGINAL_SIZE_CACHE.put(file.getName(), String.valueOf(originalSize));
+            uploadMetadataCache.put(UploadMetadataCache.Namespace.ORIGINAL_SIZE, file.getName(), String.valueOf(originalSize));
             
             // 根据配置决定是否需要解密
             if (isEncrypted != null && isEncrypted == 1 && fileProperties.getStorage().getEnableDecrypt()) {
@@ -837,7 +1291,7 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
             if (isCompressed != null && isCompressed == 1 && fileProperties.getStorage().getEnableDecompress()) {
                 try {
                     // 获取原始扩展名（如果有）
-                    String originalExtension = EXTENSION_CACHE.get(file.getName());
+                    String originalExtension = uploadMetadataCache.get(UploadMetadataCache.Namespace.EXTENSION, file.getName());
                     if (originalExtension != null) {
                         String decompressedPath = getProcessedFilePathWithExt(processedFile, originalExtension);
                         File decompressedFile = new File(decompressedPath);
@@ -1054,18 +1508,6 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
         }
     }
     
-    /**
-     * 清理文件名缓存
-     * 
-     * @param originalFilename 原始文件名
-     */
-    private void cleanupFilenameCache(String originalFilename) {
-        if (originalFilename != null && FILENAME_CACHE.containsKey(originalFilename)) {
-            String removedName = FILENAME_CACHE.remove(originalFilename);
-            log.info("从缓存中清理文件名映射: {} -> {}", originalFilename, removedName);
-        }
-    }
-    
     /**
      * 确保文件名后缀正确，用于加密/解密处理
      * 
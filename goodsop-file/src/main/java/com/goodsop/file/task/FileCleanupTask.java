@@ -1,6 +1,7 @@
 package com.goodsop.file.task;
 
 import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.util.UploadMetadataCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -29,6 +30,8 @@ public class FileCleanupTask {
 
     private final FileProperties fileProperties;
     
+    private final UploadMetadataCache uploadMetadataCache;
+    
     /**
      * 清理长时间未更新的临时文件
      * 使用配置的cron表达式执行
@@ -109,8 +112,9 @@ public class FileCleanupTask {
                                 uploadDir.getAbsolutePath(), 
                                 modifiedTime.format(formatter));
                         
-                        // 删除目录及其内容
+                        // 删除目录及其内容，同时清理该上传在内存中的元数据
                         int filesDeleted = deleteDirectory(uploadDir);
+                        uploadMetadataCache.evictUpload(uploadDir.getName());
                         deletedFileCount.addAndGet(filesDeleted);
                         deletedDirCount.incrementAndGet();
                     }
@@ -0,0 +1,61 @@
+package com.goodsop.file.task;
+
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.constant.FileConstant;
+import com.goodsop.file.entity.FileInfo;
+import com.goodsop.file.mapper.FileInfoMapper;
+import com.goodsop.file.util.FileProcessingExecutor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * 遗留上传记录恢复定时任务
+ * 后台处理任务只在节点内存中排队，节点重启或崩溃后对应的文件记录会一直停留在上传中，
+ * 既查不到结果，又会被去重当作共享文件的引用而无法释放。启动后和之后定期把超时仍为上传中的记录标记为处理失败；
+ * 条件更新只修改仍为上传中的记录，多个节点同时执行也是安全的
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StaleUploadRecoveryTask {
+
+    private final FileProperties fileProperties;
+
+    private final FileInfoMapper fileInfoMapper;
+
+    private final FileProcessingExecutor fileProcessingExecutor;
+
+    /**
+     * 把超过处理超时时间仍为上传中的记录标记为处理失败，本节点仍在排队或处理的记录除外
+     *
+     * @return 标记的记录数
+     */
+    @Scheduled(initialDelay = 60 * 1000L, fixedDelay = 10 * 60 * 1000L)
+    public int markStaleUploadsFailed() {
+        Integer timeout = fileProperties.getUpload().getProcessingTimeoutMinutes();
+        if (timeout == null || timeout <= 0) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LambdaUpdateWrapper<FileInfo> wrapper = new LambdaUpdateWrapper<FileInfo>()
+                .set(FileInfo::getStatus, FileConstant.FILE_STATUS_FAILED)
+                .set(FileInfo::getUpdateTime, now)
+                .eq(FileInfo::getStatus, FileConstant.FILE_STATUS_UPLOADING)
+                .lt(FileInfo::getUpdateTime, now.minusMinutes(timeout));
+        Set<Long> active = fileProcessingExecutor.getActiveFileIds();
+        if (!active.isEmpty()) {
+            wrapper.notIn(FileInfo::getId, active);
+        }
+        int updated = fileInfoMapper.update(null, wrapper);
+        if (updated > 0) {
+            log.warn("已将{}条超过{}分钟仍为上传中的文件记录标记为处理失败", updated, timeout);
+        }
+        return updated;
+    }
+}
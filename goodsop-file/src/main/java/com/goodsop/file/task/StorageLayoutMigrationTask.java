@@ -0,0 +1,244 @@
+package com.goodsop.file.task;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.constant.FileConstant;
+import com.goodsop.file.entity.FileInfo;
+import com.goodsop.file.mapper.FileInfoMapper;
+import com.goodsop.file.service.FileDedupService;
+import com.goodsop.file.util.StorageLayoutResolver;
+import com.goodsop.file.util.TaskLock;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * 存储布局迁移定时任务
+ * 切换存储布局后，在后台把已有文件移动到当前布局对应的目录，并更新 file_path / access_url。
+ * 多节点部署时通过数据库任务锁保证只有一个节点执行迁移（需执行db/t_task_lock.sql）
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StorageLayoutMigrationTask {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern(FileConstant.DATE_FORMAT_YYYYMMDD);
+
+    private static final String LOCK_NAME = "storage-layout-migration";
+
+    /**
+     * 任务锁租约时长，每处理完一批续期一次
+     */
+    private static final Duration LOCK_LEASE = Duration.ofMinutes(10);
+
+    private final FileProperties fileProperties;
+
+    private final FileInfoMapper fileInfoMapper;
+
+    private final StorageLayoutResolver storageLayoutResolver;
+
+    private final FileDedupService fileDedupService;
+
+    private final TaskLock taskLock;
+
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * 按ID顺序分批迁移已完成的文件，每批之间不持有数据库连接
+     */
+    @Scheduled(initialDelay = 60 * 1000L, fixedDelay = 60 * 60 * 1000L)
+    public void migrate() {
+        if (!Boolean.TRUE.equals(fileProperties.getStorage().getLayoutMigrationEnabled())) {
+            return;
+        }
+        String lockOwner = taskLock.tryLock(LOCK_NAME, LOCK_LEASE);
+        if (lockOwner == null) {
+            log.info("存储布局迁移正在进行中（本节点或其他节点），跳过本次执行");
+            return;
+        }
+        
+        try {
+            log.info("开始迁移存储布局: {}", storageLayoutResolver.getLayout().getName());
+            int batchSize = Math.max(1, fileProperties.getStorage().getLayoutMigrationBatchSize());
+            long lastId = 0;
+            int migrated = 0;
+            int scanned = 0;
+            while (true) {
+                LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<>();
+                wrapper.gt(FileInfo::getId, lastId)
+                        .eq(FileInfo::getStatus, FileConstant.FILE_STATUS_NORMAL)
+                        .orderByAsc(FileInfo::getId)
+                        .last("LIMIT " + batchSize);
+                List<FileInfo> batch = fileInfoMapper.selectList(wrapper);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                for (FileInfo fileInfo : batch) {
+                    lastId = fileInfo.getId();
+                    scanned++;
+                    if (migrateFile(fileInfo)) {
+                        migrated++;
+                    }
+                }
+                if (!taskLock.renew(LOCK_NAME, lockOwner, LOCK_LEASE)) {
+                    log.warn("存储布局迁移的任务锁已失效，停止本次迁移");
+                    break;
+                }
+            }
+            log.info("存储布局迁移完成 - 检查{}条记录，迁移{}个文件", scanned, migrated);
+        } catch (Exception e) {
+            log.error("存储布局迁移失败: {}", e.getMessage(), e);
+        } finally {
+            taskLock.unlock(LOCK_NAME, lockOwner);
+        }
+    }
+
+    /**
+     * 迁移单个文件，共享同一物理文件的记录一并更新
+     * <p>
+     * 移动文件和更新记录在同一事务中进行，并先锁定引用该文件的记录：与秒传（shareBlob）和删除（releaseBlob）互斥，
+     * 迁移期间不会有新记录引用旧路径，也不会删除正在移动的文件；事务回滚时把文件移回原位置。
+     * </p>
+     *
+     * @param fileInfo 文件记录
+     * @return 是否移动了文件
+     */
+    boolean migrateFile(FileInfo fileInfo) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> relocate(fileInfo)));
+    }
+
+    private boolean relocate(FileInfo fileInfo) {
+        if (fileDedupService.lockReferences(fileInfo.getFilePath()).isEmpty()) {
+            // 批次查询之后记录已被删除或已迁移
+            return false;
+        }
+        File source = new File(fileInfo.getFilePath()).getAbsoluteFile();
+        if (!source.isFile()) {
+            return false;
+        }
+        
+        String oldRelative;
+        try {
+            oldRelative = storageLayoutResolver.relativize(source);
+        } catch (IllegalArgumentException e) {
+            log.warn("文件不在存储根目录下，跳过迁移: {}", source);
+            return false;
+        }
+        if (oldRelative.startsWith("..")) {
+            log.warn("文件不在存储根目录下，跳过迁移: {}", source);
+            return false;
+        }
+        
+        LocalDate date = resolveDate(fileInfo, oldRelative);
+        File targetDir = storageLayoutResolver.resolveDirectory(date, fileInfo.getDeviceId(), fileInfo.getFileName());
+        File target = new File(targetDir, source.getName());
+        if (target.equals(source)) {
+            return false;
+        }
+        if (target.exists()) {
+            log.warn("迁移目标文件已存在，跳过: {} -> {}", source, target);
+            return false;
+        }
+        
+        Path sourcePath = source.toPath();
+        Path targetPath = target.toPath();
+        try {
+            Files.move(sourcePath, targetPath);
+        } catch (IOException e) {
+            log.warn("移动文件失败: {} -> {}, 错误: {}", source, target, e.getMessage());
+            return false;
+        }
+        moveBackOnRollback(sourcePath, targetPath);
+        
+        String newRelative = storageLayoutResolver.relativize(target);
+        try {
+            LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<>();
+            wrapper.eq(FileInfo::getFilePath, fileInfo.getFilePath());
+            List<FileInfo> sharers = fileInfoMapper.selectList(wrapper);
+            for (FileInfo sharer : sharers) {
+                FileInfo update = new FileInfo();
+                update.setId(sharer.getId());
+                update.setFilePath(target.getAbsolutePath());
+                update.setAccessUrl(replaceRelativePath(sharer.getAccessUrl(), oldRelative, newRelative));
+                update.setUpdateTime(LocalDateTime.now());
+                fileInfoMapper.updateById(update);
+            }
+            log.info("文件已迁移: {} -> {}, 更新{}条记录", oldRelative, newRelative, sharers.size());
+            return true;
+        } catch (RuntimeException e) {
+            log.error("更新文件记录失败，回滚文件移动: {} -> {}, 错误: {}", source, target, e.getMessage());
+            try {
+                Files.move(targetPath, sourcePath);
+            } catch (IOException rollback) {
+                log.error("回滚文件移动失败: {} -> {}", target, source, rollback);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 提交记录更新失败（事务回滚）时把文件移回原位置
+     */
+    private void moveBackOnRollback(Path sourcePath, Path targetPath) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_ROLLED_BACK || !Files.exists(targetPath) || Files.exists(sourcePath)) {
+                    return;
+                }
+                try {
+                    Files.move(targetPath, sourcePath);
+                    log.warn("事务回滚，文件已移回原位置: {}", sourcePath);
+                } catch (IOException e) {
+                    log.error("事务回滚后移回文件失败: {} -> {}", targetPath, sourcePath, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 文件日期优先取原路径中的日期目录，其次取上传时间
+     */
+    private LocalDate resolveDate(FileInfo fileInfo, String relativePath) {
+        int slash = relativePath.indexOf('/');
+        if (slash > 0) {
+            try {
+                return LocalDate.parse(relativePath.substring(0, slash), DATE_FORMATTER);
+            } catch (DateTimeParseException ignored) {
+                // 非日期目录，使用上传时间
+            }
+        }
+        if (fileInfo.getUploadTime() != null) {
+            return fileInfo.getUploadTime().toLocalDate();
+        }
+        return fileInfo.getCreateTime() != null ? fileInfo.getCreateTime().toLocalDate() : LocalDate.now();
+    }
+
+    /**
+     * 访问URL由基础路径 + 相对存储根目录的路径组成，只替换相对路径部分
+     */
+    private String replaceRelativePath(String accessUrl, String oldRelative, String newRelative) {
+        if (accessUrl == null || !accessUrl.endsWith(oldRelative)) {
+            return accessUrl;
+        }
+        return accessUrl.substring(0, accessUrl.length() - oldRelative.length()) + newRelative;
+    }
+}
@@ -0,0 +1,349 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.config.FileProperties;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 下载带宽调度
+ * <p>
+ * 每次写出前按 连接 → 用户 → 全局 三级令牌桶取最小可用量。连接或用户自身超限时定时恢复；
+ * 全局带宽不足（或已有其他连接在等待）时进入等待队列，由定时的 {@link #tick()} 按加权差额轮询（DRR）分配：
+ * 以 用户 + 流量类别 为一个流，每轮按 权重 × {@link #QUANTUM} 累加额度，同一用户的多个连接共享一个流，
+ * 开再多连接也不会多分带宽。在线预览的权重远高于文件下载，播放请求在带宽紧张时也能及时拿到数据，
+ * 下载使用剩余的带宽；没有预览请求时下载可以用满全局带宽。
+ * </p>
+ */
+public class BandwidthScheduler {
+
+    /**
+     * 权重为1的流每轮获得的额度
+     */
+    static final long QUANTUM = 16 * 1024;
+
+    /**
+     * 自身超限时至少等到这么多令牌再恢复，避免频繁写出很小的块
+     */
+    private static final long MIN_GRANT = 8 * 1024;
+
+    /**
+     * 没有连接的用户保留令牌桶状态的时间，避免逐个顺序下载时每次都拿到满桶
+     */
+    private static final long USER_IDLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final FileProperties.Download config;
+
+    private final ScheduledExecutorService executor;
+
+    private final LongSupplier nanoClock;
+
+    /**
+     * 全局限速，未配置时为null
+     */
+    private final TokenBucket global;
+
+    private final Map<String, User> users = new HashMap<>();
+
+    /**
+     * 有连接在等待全局带宽的流（DRR轮询顺序）
+     */
+    private final Deque<Flow> activeFlows = new ArrayDeque<>();
+
+    public BandwidthScheduler(FileProperties.Download config, ScheduledExecutorService executor) {
+        this(config, executor, System::nanoTime);
+    }
+
+    BandwidthScheduler(FileProperties.Download config, ScheduledExecutorService executor, LongSupplier nanoClock) {
+        this.config = config;
+        this.executor = executor;
+        this.nanoClock = nanoClock;
+        this.global = isPositive(config.getMaxBandwidth()) ? new TokenBucket(config.getMaxBandwidth(), nanoClock) : null;
+    }
+
+    /**
+     * 是否配置了任一级带宽上限
+     */
+    public static boolean isEnabled(FileProperties.Download config) {
+        return isPositive(config.getMaxBandwidth()) || isPositive(config.getMaxBandwidthPerUser())
+                || isPositive(config.getMaxBandwidthPerConnection());
+    }
+
+    /**
+     * 是否需要定时分配全局带宽
+     */
+    public boolean hasGlobalLimit() {
+        return global != null;
+    }
+
+    /**
+     * 登记一个输出连接
+     *
+     * @param clientKey    用户（或租户）标识
+     * @param trafficClass 流量类别
+     * @param resumer      等待结束后恢复输出
+     */
+    public synchronized Connection open(String clientKey, FileSender.TrafficClass trafficClass, Runnable resumer) {
+        User user = users.computeIfAbsent(clientKey, User::new);
+        user.connections++;
+        Flow flow = user.flows.computeIfAbsent(trafficClass, key -> new Flow(user, weightOf(clientKey, key)));
+        TokenBucket bucket = isPositive(config.getMaxBandwidthPerConnection())
+                ? new TokenBucket(config.getMaxBandwidthPerConnection(), nanoClock) : null;
+        return new Connection(flow, bucket, resumer);
+    }
+
+    /**
+     * 申请写出的字节数
+     *
+     * @param connection 连接
+     * @param want       希望写出的字节数
+     * @return 允许写出的字节数；为0时连接已排队或定时等待，之后由 resumer 恢复，期间不应再写出
+     */
+    public synchronized long acquire(Connection connection, long want) {
+        if (connection.closed || connection.enqueued) {
+            // 已在等待队列中（重复申请）时不再重复排队，恢复后再申请
+            return 0;
+        }
+        if (connection.credit > 0) {
+            long n = Math.min(connection.credit, want);
+            connection.credit -= n;
+            return n;
+        }
+        long own = Math.min(want, ownAvailable(connection));
+        if (own <= 0) {
+            scheduleOwnLimitResume(connection);
+            return 0;
+        }
+        if (global == null) {
+            consumeOwn(connection, own);
+            return own;
+        }
+        // 全局令牌只够写很小的块时也排队，由 tick 凑满后再恢复
+        long globalAvailable = global.available();
+        if (activeFlows.isEmpty() && globalAvailable >= Math.min(own, MIN_GRANT)) {
+            long n = Math.min(own, globalAvailable);
+            global.consume(n);
+            consumeOwn(connection, n);
+            return n;
+        }
+        connection.want = own;
+        connection.enqueued = true;
+        connection.flow.waiters.addLast(connection);
+        if (connection.flow.waiters.size() == 1) {
+            activeFlows.addLast(connection.flow);
+        }
+        return 0;
+    }
+
+    /**
+     * 连接结束，移出等待队列
+     */
+    public synchronized void close(Connection connection) {
+        if (connection.closed) {
+            return;
+        }
+        connection.closed = true;
+        Flow flow = connection.flow;
+        if (connection.enqueued && flow.waiters.remove(connection) && flow.waiters.isEmpty()) {
+            activeFlows.remove(flow);
+            flow.deficit = 0;
+            flow.interrupted = false;
+        }
+        User user = flow.user;
+        user.connections--;
+        user.lastActiveNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * 按加权差额轮询把当前可用的全局带宽分给等待中的连接，并恢复拿到带宽的连接
+     */
+    public void tick() {
+        List<Runnable> resumed = new ArrayList<>();
+        synchronized (this) {
+            if (global != null && !activeFlows.isEmpty()) {
+                distribute(global.available(), resumed);
+            }
+            evictIdleUsers();
+        }
+        for (Runnable resumer : resumed) {
+            resumer.run();
+        }
+    }
+
+    private void distribute(long budget, List<Runnable> resumed) {
+        while (budget > 0 && !activeFlows.isEmpty()) {
+            Flow flow = activeFlows.pollFirst();
+            if (flow.interrupted) {
+                // 上次因全局带宽用完而中断，继续使用剩余额度
+                flow.interrupted = false;
+            } else {
+                flow.deficit += QUANTUM * flow.weight;
+            }
+            while (budget > 0 && flow.deficit > 0 && !flow.waiters.isEmpty()) {
+                Connection connection = flow.waiters.peekFirst();
+                long own = ownAvailable(connection);
+                if (own <= 0) {
+                    // 同一用户的其他连接已用完用户额度，已分到的额度保留到恢复后使用
+                    flow.waiters.pollFirst();
+                    connection.enqueued = false;
+                    scheduleOwnLimitResume(connection);
+                    continue;
+                }
+                long n = Math.min(Math.min(connection.want - connection.credit, flow.deficit), Math.min(budget, own));
+                global.consume(n);
+                consumeOwn(connection, n);
+                connection.credit += n;
+                flow.deficit -= n;
+                budget -= n;
+                // 凑满申请的字节数再恢复，避免频繁写出很小的块
+                if (connection.credit >= connection.want) {
+                    flow.waiters.pollFirst();
+                    connection.enqueued = false;
+                    resumed.add(connection.resumer);
+                }
+            }
+            if (flow.waiters.isEmpty()) {
+                flow.deficit = 0;
+                flow.interrupted = false;
+            } else if (flow.deficit > 0) {
+                flow.interrupted = true;
+                activeFlows.addFirst(flow);
+            } else {
+                activeFlows.addLast(flow);
+            }
+        }
+    }
+
+    private void evictIdleUsers() {
+        long now = nanoClock.getAsLong();
+        Iterator<User> iterator = users.values().iterator();
+        while (iterator.hasNext()) {
+            User user = iterator.next();
+            if (user.connections == 0 && now - user.lastActiveNanos > USER_IDLE_NANOS) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private long ownAvailable(Connection connection) {
+        long available = Long.MAX_VALUE;
+        if (connection.bucket != null) {
+            available = connection.bucket.available();
+        }
+        if (connection.flow.user.bucket != null) {
+            available = Math.min(available, connection.flow.user.bucket.available());
+        }
+        return available;
+    }
+
+    private void consumeOwn(Connection connection, long n) {
+        if (connection.bucket != null) {
+            connection.bucket.consume(n);
+        }
+        if (connection.flow.user.bucket != null) {
+            connection.flow.user.bucket.consume(n);
+        }
+    }
+
+    private void scheduleOwnLimitResume(Connection connection) {
+        long delay = 0;
+        if (connection.bucket != null) {
+            delay = connection.bucket.nanosUntilAvailable(MIN_GRANT);
+        }
+        if (connection.flow.user.bucket != null) {
+            delay = Math.max(delay, connection.flow.user.bucket.nanosUntilAvailable(MIN_GRANT));
+        }
+        executor.schedule(connection.resumer, Math.max(delay, 1), TimeUnit.NANOSECONDS);
+    }
+
+    private int weightOf(String clientKey, FileSender.TrafficClass trafficClass) {
+        Integer classWeight = trafficClass == FileSender.TrafficClass.INTERACTIVE
+                ? config.getInteractiveWeight() : config.getBulkWeight();
+        Integer clientWeight = config.getClientWeights().get(clientKey);
+        return Math.max(classWeight != null ? classWeight : 1, 1) * Math.max(clientWeight != null ? clientWeight : 1, 1);
+    }
+
+    private static boolean isPositive(Long value) {
+        return value != null && value > 0;
+    }
+
+    /**
+     * 用户（或租户），持有用户级令牌桶
+     */
+    private final class User {
+
+        private final Map<FileSender.TrafficClass, Flow> flows = new HashMap<>();
+
+        private final TokenBucket bucket;
+
+        private int connections;
+
+        private long lastActiveNanos;
+
+        User(String clientKey) {
+            this.bucket = isPositive(config.getMaxBandwidthPerUser())
+                    ? new TokenBucket(config.getMaxBandwidthPerUser(), nanoClock) : null;
+        }
+    }
+
+    /**
+     * 一个用户的一类流量，DRR调度的单位
+     */
+    private static final class Flow {
+
+        private final User user;
+
+        private final int weight;
+
+        private final Deque<Connection> waiters = new ArrayDeque<>();
+
+        private long deficit;
+
+        /**
+         * 额度未用完时全局带宽已分完，下次从该流继续且不再累加额度
+         */
+        private boolean interrupted;
+
+        Flow(User user, int weight) {
+            this.user = user;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * 一个输出连接，持有连接级令牌桶和已分配未写出的额度
+     */
+    public static final class Connection {
+
+        private final Flow flow;
+
+        private final TokenBucket bucket;
+
+        private final Runnable resumer;
+
+        private long want;
+
+        private long credit;
+
+        /**
+         * 是否在所属流的等待队列中，保证每个连接最多排队一次
+         */
+        private boolean enqueued;
+
+        private boolean closed;
+
+        private Connection(Flow flow, TokenBucket bucket, Runnable resumer) {
+            this.flow = flow;
+            this.bucket = bucket;
+            this.resumer = resumer;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.goodsop.file.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分块完成位图
+ * <p>
+ * 每个分块占用一位，记录分块是否已写入。基于CAS实现，多个分块并发标记时无需加锁，
+ * 所有分块都标记后 {@link #isComplete()} 返回true，用于替代每次请求都列出临时目录统计 .part 文件数量的做法。
+ * </p>
+ */
+public class ChunkBitmap {
+
+    private final AtomicLongArray words;
+
+    private final AtomicInteger cardinality = new AtomicInteger();
+
+    private final int chunks;
+
+    public ChunkBitmap(int chunks) {
+        if (chunks <= 0) {
+            throw new IllegalArgumentException("分块总数必须大于0: " + chunks);
+        }
+        this.chunks = chunks;
+        this.words = new AtomicLongArray((chunks + 63) >>> 6);
+    }
+
+    /**
+     * 标记分块已写入
+     *
+     * @param chunk 分块索引
+     * @return 该分块是否为首次标记（重复上传的分块返回false）
+     */
+    public boolean set(int chunk) {
+        checkIndex(chunk);
+        long mask = 1L << chunk;
+        int index = chunk >>> 6;
+        while (true) {
+            long word = words.get(index);
+            if ((word & mask) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(index, word, word | mask)) {
+                cardinality.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 分块是否已写入
+     */
+    public boolean get(int chunk) {
+        checkIndex(chunk);
+        return (words.get(chunk >>> 6) & (1L << chunk)) != 0;
+    }
+
+    /**
+     * 已写入的分块数量
+     */
+    public int cardinality() {
+        return cardinality.get();
+    }
+
+    /**
+     * 是否所有分块都已写入
+     */
+    public boolean isComplete() {
+        return cardinality.get() == chunks;
+    }
+
+    /**
+     * 获取尚未写入的分块索引（升序）
+     */
+    public List<Integer> missing() {
+        List<Integer> missing = new ArrayList<>(chunks - cardinality());
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            if (!get(chunk)) {
+                missing.add(chunk);
+            }
+        }
+        return missing;
+    }
+
+    public int getChunks() {
+        return chunks;
+    }
+
+    private void checkIndex(int chunk) {
+        if (chunk < 0 || chunk >= chunks) {
+            throw new IndexOutOfBoundsException("分块索引越界: " + chunk + "/" + chunks);
+        }
+    }
+}
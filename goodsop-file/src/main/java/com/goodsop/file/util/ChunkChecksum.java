@@ -0,0 +1,83 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.exception.ChunkChecksumException;
+import org.springframework.util.StringUtils;
+
+import java.util.zip.CRC32C;
+
+/**
+ * 分块CRC32C校验
+ * <p>
+ * 分块写入磁盘的同时计算CRC32C（JDK的实现使用CPU的CRC32C指令加速，几乎不增加写入耗时），
+ * 写完后与客户端携带的校验值比对，不一致时立即拒绝该分块，而不是等到合并后才发现整个文件已损坏。
+ * 校验值使用8位十六进制表示（不区分大小写）。
+ * </p>
+ */
+public class ChunkChecksum {
+
+    private final String expected;
+
+    private final CRC32C crc32c = new CRC32C();
+
+    private String actual;
+
+    /**
+     * @param expected 客户端携带的校验值，为空时只计算不比对
+     * @throws IllegalArgumentException 校验值格式无效
+     */
+    public ChunkChecksum(String expected) {
+        this.expected = StringUtils.hasText(expected) ? normalize(expected) : null;
+    }
+
+    /**
+     * 更新校验值
+     */
+    public void update(byte[] buffer, int offset, int length) {
+        crc32c.update(buffer, offset, length);
+    }
+
+    /**
+     * 分块写入完成后比对校验值
+     *
+     * @param chunk 分块索引
+     * @throws ChunkChecksumException 与客户端携带的校验值不一致
+     */
+    public void verify(int chunk) {
+        actual = format(crc32c.getValue());
+        if (expected != null && !expected.equals(actual)) {
+            throw new ChunkChecksumException(chunk, expected, actual);
+        }
+    }
+
+    /**
+     * 客户端携带的校验值
+     */
+    public String getExpected() {
+        return expected;
+    }
+
+    /**
+     * 服务端计算的校验值，分块尚未写完时返回null
+     */
+    public String getActual() {
+        return actual;
+    }
+
+    /**
+     * 格式化为8位小写十六进制
+     */
+    public static String format(long value) {
+        return String.format("%08x", value);
+    }
+
+    private static String normalize(String value) {
+        String hex = value.trim();
+        if (hex.startsWith("0x") || hex.startsWith("0X")) {
+            hex = hex.substring(2);
+        }
+        if (hex.isEmpty() || hex.length() > 8 || !hex.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+            throw new IllegalArgumentException("无效的CRC32C校验值: " + value);
+        }
+        return format(Long.parseLong(hex, 16));
+    }
+}
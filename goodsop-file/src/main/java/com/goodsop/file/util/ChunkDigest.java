@@ -0,0 +1,116 @@
+package com.goodsop.file.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 分块上传的增量MD5摘要
+ * <p>
+ * 分块按顺序到达时，在写入分块的同时更新摘要，最后一块写完即得到整个文件的MD5，无需再读取一遍文件；
+ * 一旦出现乱序（后面的分块先于前面的分块到达）或分块写入失败，摘要转为延迟计算，
+ * {@link #getMd5()} 返回null，由调用方在处理合并后的文件时统一计算一次。
+ * </p>
+ */
+@Slf4j
+public class ChunkDigest {
+
+    private final int chunks;
+
+    private final MessageDigest digest;
+
+    /**
+     * 下一个需要摘要的分块索引
+     */
+    private int nextChunk;
+
+    /**
+     * 是否有分块正在更新摘要
+     */
+    private boolean busy;
+
+    /**
+     * 是否已转为延迟计算
+     */
+    private boolean deferred;
+
+    private String md5;
+
+    public ChunkDigest(int chunks) {
+        this.chunks = chunks;
+        try {
+            this.digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5算法不可用", e);
+        }
+    }
+
+    /**
+     * 分块开始写入前申请更新摘要，只有按顺序到达的下一个分块才能申请成功
+     *
+     * @param chunk 分块索引
+     * @return 是否需要在写入时调用 {@link #update(byte[], int, int)}
+     */
+    public synchronized boolean claim(int chunk) {
+        if (deferred || chunk < nextChunk) {
+            // 已摘要过的分块重传时内容相同，不影响结果
+            return false;
+        }
+        if (chunk == nextChunk && busy) {
+            // 同一分块的并发重传
+            return false;
+        }
+        if (chunk > nextChunk) {
+            deferred = true;
+            log.info("分块乱序到达(期望: {}, 实际: {})，MD5改为上传完成后统一计算", nextChunk, chunk);
+            return false;
+        }
+        busy = true;
+        return true;
+    }
+
+    /**
+     * 更新摘要，仅由 {@link #claim(int)} 成功的线程调用
+     */
+    public synchronized void update(byte[] buffer, int offset, int length) {
+        digest.update(buffer, offset, length);
+    }
+
+    /**
+     * 分块写入结束后释放摘要
+     *
+     * @param chunk   分块索引
+     * @param success 分块是否完整写入，写入失败时摘要已包含部分数据，只能转为延迟计算
+     */
+    public synchronized void release(int chunk, boolean success) {
+        busy = false;
+        if (success) {
+            nextChunk = chunk + 1;
+        } else {
+            deferred = true;
+        }
+    }
+
+    /**
+     * 获取整个文件的MD5
+     *
+     * @return 所有分块均按顺序摘要时返回MD5，否则返回null
+     */
+    public synchronized String getMd5() {
+        if (deferred || nextChunk < chunks) {
+            return null;
+        }
+        if (md5 == null) {
+            md5 = FileEncryptUtil.toHex(digest.digest());
+        }
+        return md5;
+    }
+
+    /**
+     * 是否已转为延迟计算
+     */
+    public synchronized boolean isDeferred() {
+        return deferred;
+    }
+}
@@ -0,0 +1,49 @@
+package com.goodsop.file.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 压缩编解码器SPI
+ * <p>
+ * 内置 GZIP / ZIP / ZSTD / LZ4 四种实现，由 FileCompressUtil 按文件头魔数选择。
+ * 注册为Spring Bean的实现会替换同一压缩类型的内置实现（例如调整压缩级别或换用其他库）。
+ * </p>
+ */
+public interface CompressionCodec {
+
+    /**
+     * 压缩类型
+     */
+    FileCompressUtil.CompressionType getType();
+
+    /**
+     * 压缩文件的扩展名（带.，如 .gz）
+     */
+    String getExtension();
+
+    /**
+     * 文件头前4个字节是否为本格式的魔数
+     *
+     * @param signature 文件头字节（至少4字节）
+     */
+    boolean matches(byte[] signature);
+
+    /**
+     * 包装解压流
+     *
+     * @param in 压缩数据流
+     * @return 解压后的数据流
+     */
+    InputStream decompress(InputStream in) throws IOException;
+
+    /**
+     * 包装压缩流，关闭返回的流时写出格式尾部并关闭 out
+     *
+     * @param out       压缩数据输出流
+     * @param entryName 原始文件名（ZIP格式作为条目名，其他格式忽略）
+     * @return 写入原始数据的流
+     */
+    OutputStream compress(OutputStream out, String entryName) throws IOException;
+}
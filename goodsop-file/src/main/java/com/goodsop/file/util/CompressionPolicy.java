@@ -0,0 +1,58 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.config.FileProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按内容选择压缩格式的策略
+ * <p>
+ * Speex编码的 .bin 录音、MP3/AAC等有损音频、图片和已压缩/已加密的数据几乎无法再压缩，
+ * 再压缩一次只会消耗设备和服务端的CPU，这类文件建议不压缩；WAV等PCM数据使用配置的压缩格式（默认ZSTD）。
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CompressionPolicy {
+
+    private final FileProperties fileProperties;
+
+    /**
+     * 按文件名选择压缩格式
+     *
+     * @param fileName 原始文件名（可包含 .gz/.zst 等压缩后缀之前的扩展名）
+     * @return 建议的压缩格式，NONE表示不压缩
+     */
+    public FileCompressUtil.CompressionType select(String fileName) {
+        if (fileName == null) {
+            return preferred();
+        }
+        String name = fileName.toLowerCase();
+        if (FileCompressUtil.detectByFileName(name) != FileCompressUtil.CompressionType.NONE) {
+            return FileCompressUtil.CompressionType.NONE;
+        }
+        int dot = name.lastIndexOf('.');
+        String extension = dot >= 0 ? name.substring(dot + 1) : "";
+        if (fileProperties.getUpload().getCompressionSkipExtensions().contains(extension)) {
+            return FileCompressUtil.CompressionType.NONE;
+        }
+        return preferred();
+    }
+
+    /**
+     * 获取配置的压缩格式，无法识别时使用默认的ZSTD
+     */
+    private FileCompressUtil.CompressionType preferred() {
+        String codec = fileProperties.getUpload().getCompressionCodec();
+        if (codec != null) {
+            try {
+                return FileCompressUtil.CompressionType.valueOf(codec.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                log.warn("无法识别的压缩格式: {}, 使用默认的ZSTD", codec);
+            }
+        }
+        return FileCompressUtil.CompressionType.ZSTD;
+    }
+}
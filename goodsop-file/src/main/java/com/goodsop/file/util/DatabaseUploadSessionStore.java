@@ -0,0 +1,229 @@
+package com.goodsop.file.util;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.goodsop.file.entity.UploadSessionRecord;
+import com.goodsop.file.mapper.UploadSessionMapper;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 数据库中的分块上传会话存储（PostgreSQL，表结构见 db/t_upload_session.sql）
+ * <p>
+ * 会话和已写入的分块分别保存在 t_upload_session 和 t_upload_chunk 中，通过现有数据源访问，
+ * 负载均衡后的所有节点看到同一份分块完成情况，服务重启后上传可以继续。
+ * 完成判断由单条带条件的UPDATE完成，多个节点同时收到最后一块时只有一个节点会进入合并。
+ * 分块数据本身仍写入存储目录，多节点部署时存储目录需要挂载在共享存储上。
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "goodsop.file.upload", name = "session-store", havingValue = "DATABASE")
+public class DatabaseUploadSessionStore implements UploadSessionStore {
+
+    private final UploadSessionMapper uploadSessionMapper;
+
+    @Override
+    public String getName() {
+        return "DATABASE";
+    }
+
+    @Override
+    public SessionState open(String key, String deviceId, String fileName, int chunks) {
+        UploadSessionRecord record = new UploadSessionRecord();
+        record.setSessionKey(key);
+        record.setSessionId(UUID.randomUUID().toString().replace("-", ""));
+        record.setDeviceId(deviceId);
+        record.setFileName(fileName);
+        record.setChunks(chunks);
+        if (uploadSessionMapper.insertIfAbsent(record) > 0) {
+            log.info("创建共享分块上传会话: {}, 会话ID: {}", key, record.getSessionId());
+            return new DatabaseSessionState(record);
+        }
+        return find(key);
+    }
+
+    @Override
+    public SessionState find(String key) {
+        UploadSessionRecord record = uploadSessionMapper.selectById(key);
+        return record != null ? new DatabaseSessionState(record) : null;
+    }
+
+    @Override
+    public void remove(SessionState state) {
+        uploadSessionMapper.deleteBySessionId(state.getSessionId());
+        uploadSessionMapper.deleteChunks(state.getSessionId());
+    }
+
+    @Override
+    public int evictIdle(long expirationTimeMillis) {
+        LocalDateTime expiration = LocalDateTime.ofInstant(Instant.ofEpochMilli(expirationTimeMillis), ZoneId.systemDefault());
+        int evicted = uploadSessionMapper.deleteIdle(expiration);
+        int chunks = uploadSessionMapper.deleteOrphanChunks();
+        if (evicted > 0 || chunks > 0) {
+            log.info("清理过期的共享分块上传会话: {}个, 分块记录: {}条", evicted, chunks);
+        }
+        return evicted;
+    }
+
+    private class DatabaseSessionState implements SessionState {
+
+        @Getter
+        private final String sessionId;
+
+        @Getter
+        private final String key;
+
+        @Getter
+        private final int chunks;
+
+        /**
+         * 本次请求打开会话时读取的会话记录：完成标记、最后一块大小、标准文件名和原始扩展名都从这里读取，
+         * 每次请求只查询一次会话表；本节点的修改同时写入数据库和这里
+         */
+        private volatile UploadSessionRecord snapshot;
+
+        DatabaseSessionState(UploadSessionRecord record) {
+            this.sessionId = record.getSessionId();
+            this.key = record.getSessionKey();
+            this.chunks = record.getChunks();
+            this.snapshot = record;
+        }
+
+        @Override
+        public void refresh(SessionState latest) {
+            if (latest instanceof DatabaseSessionState && sessionId.equals(latest.getSessionId())) {
+                snapshot = ((DatabaseSessionState) latest).snapshot;
+            }
+        }
+
+        @Override
+        public boolean markChunk(int chunk, long bytes) {
+            boolean first = uploadSessionMapper.insertChunk(sessionId, chunk, bytes) > 0;
+            uploadSessionMapper.touch(sessionId);
+            return first;
+        }
+
+        @Override
+        public int getUploadedChunks() {
+            return uploadSessionMapper.countChunks(sessionId);
+        }
+
+        @Override
+        public long getReceivedBytes() {
+            return uploadSessionMapper.sumChunkBytes(sessionId);
+        }
+
+        @Override
+        public List<Integer> getMissingChunks() {
+            ChunkBitmap bitmap = new ChunkBitmap(chunks);
+            for (Integer chunk : uploadSessionMapper.selectChunkIndexes(sessionId)) {
+                bitmap.set(chunk);
+            }
+            return bitmap.missing();
+        }
+
+        @Override
+        public boolean tryComplete() {
+            if (uploadSessionMapper.tryComplete(sessionId) > 0) {
+                snapshot.setCompleted(1);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void resetCompletion() {
+            uploadSessionMapper.resetCompletion(sessionId);
+            snapshot.setCompleted(0);
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return Integer.valueOf(1).equals(snapshot.getCompleted());
+        }
+
+        @Override
+        public long getChunkSize() {
+            Long chunkSize = snapshot.getChunkSize();
+            return chunkSize != null ? chunkSize : 0;
+        }
+
+        @Override
+        public long initChunkSize(long size) {
+            if (getChunkSize() > 0) {
+                return getChunkSize();
+            }
+            if (uploadSessionMapper.initChunkSize(sessionId, size) > 0) {
+                snapshot.setChunkSize(size);
+                return size;
+            }
+            // 其他节点已确定分块大小
+            reload();
+            return getChunkSize();
+        }
+
+        @Override
+        public long getLastChunkLength() {
+            Long length = snapshot.getLastChunkLength();
+            return length != null ? length : -1;
+        }
+
+        @Override
+        public void setLastChunkLength(long length) {
+            uploadSessionMapper.updateLastChunkLength(sessionId, length);
+            snapshot.setLastChunkLength(length);
+        }
+
+        @Override
+        public String getStandardFileName() {
+            return snapshot.getStandardFileName();
+        }
+
+        @Override
+        public String assignStandardFileName(String name) {
+            if (snapshot.getStandardFileName() != null) {
+                return snapshot.getStandardFileName();
+            }
+            if (uploadSessionMapper.assignStandardFileName(sessionId, name) > 0) {
+                snapshot.setStandardFileName(name);
+                return name;
+            }
+            // 其他节点已分配标准文件名
+            reload();
+            return getStandardFileName();
+        }
+
+        @Override
+        public String getOriginalExtension() {
+            return snapshot.getOriginalExtension();
+        }
+
+        @Override
+        public void setOriginalExtension(String originalExtension) {
+            uploadSessionMapper.updateOriginalExtension(sessionId, originalExtension);
+            snapshot.setOriginalExtension(originalExtension);
+        }
+
+        /**
+         * 条件更新未生效（其他节点已写入）时重新读取会话记录
+         */
+        private UploadSessionRecord reload() {
+            UploadSessionRecord record = uploadSessionMapper.selectOne(new LambdaQueryWrapper<UploadSessionRecord>()
+                    .eq(UploadSessionRecord::getSessionId, sessionId));
+            if (record != null) {
+                snapshot = record;
+            }
+            return snapshot;
+        }
+    }
+}
@@ -1,32 +1,72 @@
 package com.goodsop.file.util;
 
+import com.goodsop.file.constant.FileConstant;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Component;
 import org.springframework.util.FileCopyUtils;
 
 import java.io.*;
-import java.nio.file.Files;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 
 /**
  * 文件压缩工具类
+ * <p>
+ * 各压缩格式的编解码由 CompressionCodec 实现，按文件头魔数识别格式后选择对应的编解码器。
+ * </p>
  */
 @Slf4j
 @Component
 public class FileCompressUtil {
     
     /**
-     * 压缩文件
+     * 内置编解码器，注册为Spring Bean的编解码器可替换同一压缩类型的实现
+     */
+    private static final List<CompressionCodec> BUILTIN_CODECS = List.of(
+            new GzipCompressionCodec(), new ZipCompressionCodec(), new ZstdCompressionCodec(), new Lz4CompressionCodec());
+    
+    private final Map<CompressionType, CompressionCodec> codecs = new EnumMap<>(CompressionType.class);
+    
+    private final ParallelTaskExecutor parallelTaskExecutor;
+    
+    /**
+     * @param customCodecs         注册为Spring Bean的编解码器，替换同一压缩类型的内置实现
+     * @param parallelTaskExecutor 大文件并行GZIP压缩使用的线程池
+     */
+    public FileCompressUtil(ObjectProvider<CompressionCodec> customCodecs, ParallelTaskExecutor parallelTaskExecutor) {
+        this.parallelTaskExecutor = parallelTaskExecutor;
+        BUILTIN_CODECS.forEach(codec -> codecs.put(codec.getType(), codec));
+        customCodecs.orderedStream().forEach(codec -> {
+            codecs.put(codec.getType(), codec);
+            log.info("使用自定义压缩编解码器: {} -> {}", codec.getType(), codec.getClass().getName());
+        });
+    }
+    
+    /**
+     * 压缩文件（GZIP格式）
      * 
      * @param sourceFile 源文件
      * @param targetFile 目标文件
      * @return 压缩后的文件
      */
     public File compressFile(File sourceFile, File targetFile) {
+        return compressFile(sourceFile, targetFile, CompressionType.GZIP);
+    }
+    
+    /**
+     * 按指定格式压缩文件
+     * 
+     * @param sourceFile 源文件
+     * @param targetFile 目标文件
+     * @param type       压缩格式（不能为NONE）
+     * @return 压缩后的文件
+     */
+    public File compressFile(File sourceFile, File targetFile, CompressionType type) {
         try {
             log.info("准备压缩文件: {} -> {}", sourceFile.getAbsolutePath(), targetFile.getAbsolutePath());
             
@@ -42,19 +82,15 @@ public class FileCompressUtil {
                 log.info("创建目标文件目录: {} 结果: {}", parentDir.getAbsolutePath(), created ? "成功" : "失败");
             }
             
+            CompressionCodec codec = getCodec(type);
             try (FileInputStream fis = new FileInputStream(sourceFile);
-                 FileOutputStream fos = new FileOutputStream(targetFile);
-                 GZIPOutputStream gzos = new GZIPOutputStream(fos, true)) {
+                 OutputStream out = openCompressStream(codec, sourceFile, new FileOutputStream(targetFile))) {
                 
-                byte[] buffer = new byte[8192];
+                byte[] buffer = new byte[FileConstant.STREAM_BUFFER_SIZE];
                 int bytesRead;
                 while ((bytesRead = fis.read(buffer)) != -1) {
-                    gzos.write(buffer, 0, bytesRead);
+                    out.write(buffer, 0, bytesRead);
                 }
-                gzos.finish();
-                
-                log.info("文件压缩成功: {} -> {}", sourceFile.getAbsolutePath(), targetFile.getAbsolutePath());
-                return targetFile;
             } catch (IOException e) {
                 log.error("压缩文件IO异常: {}", e.getMessage(), e);
                 // 检查目标文件是否已创建，如果已创建但可能不完整，则删除
@@ -64,6 +100,9 @@ public class FileCompressUtil {
                 }
                 return null;
             }
+            // 关闭压缩流时才写出格式尾部，关闭后才算压缩完成
+            log.info("文件压缩成功({}): {} -> {}", type, sourceFile.getAbsolutePath(), targetFile.getAbsolutePath());
+            return targetFile;
         } catch (Exception e) {
             log.error("文件压缩失败: {}", e.getMessage(), e);
             // 检查目标文件是否已创建，如果已创建但可能不完整，则删除
@@ -75,6 +114,19 @@ public class FileCompressUtil {
         }
     }
     
+    /**
+     * 大文件的GZIP压缩在多核上按块并行进行，其他格式和小文件使用编解码器的单线程压缩
+     */
+    private OutputStream openCompressStream(CompressionCodec codec, File sourceFile, OutputStream out) throws IOException {
+        if (codec instanceof GzipCompressionCodec && sourceFile.length() >= FileConstant.PARALLEL_COMPRESS_THRESHOLD
+                && parallelTaskExecutor.getParallelism() > 1) {
+            log.info("并行GZIP压缩: {}, 大小: {}, 并行度: {}", sourceFile.getName(), sourceFile.length(),
+                    parallelTaskExecutor.getParallelism());
+            return ((GzipCompressionCodec) codec).compressParallel(out, parallelTaskExecutor);
+        }
+        return codec.compress(out, sourceFile.getName());
+    }
+    
     /**
      * 解压缩文件
      * 
@@ -109,16 +161,10 @@ public class FileCompressUtil {
                 return targetFile;
             }
             
-            switch (compressionType) {
-                case GZIP:
-                    return decompressGzip(sourceFile, targetFile);
-                case ZIP:
-                    return decompressZip(sourceFile, targetFile);
-                default:
-                    log.warn("不支持的压缩格式: {}", compressionType);
-                    FileUtils.copyFile(sourceFile, targetFile);
-                    return targetFile;
+            if (compressionType == CompressionType.ZIP) {
+                return decompressZip(sourceFile, targetFile);
             }
+            return decompressStream(getCodec(compressionType), sourceFile, targetFile);
         } catch (Exception e) {
             log.error("文件解压失败: {}", e.getMessage(), e);
             // 检查目标文件是否已创建，如果已创建但可能不完整，则删除
@@ -131,19 +177,19 @@ public class FileCompressUtil {
     }
     
     /**
-     * 解压GZIP文件
+     * 解压GZIP/ZSTD/LZ4等单一数据流格式的文件
      */
-    private File decompressGzip(File sourceFile, File targetFile) throws IOException {
-        try (GZIPInputStream gzipIn = new GZIPInputStream(new FileInputStream(sourceFile));
+    private File decompressStream(CompressionCodec codec, File sourceFile, File targetFile) throws IOException {
+        try (InputStream in = codec.decompress(new BufferedInputStream(new FileInputStream(sourceFile), FileConstant.STREAM_BUFFER_SIZE));
              FileOutputStream fos = new FileOutputStream(targetFile)) {
             
-            byte[] buffer = new byte[8192];
+            byte[] buffer = new byte[FileConstant.STREAM_BUFFER_SIZE];
             int len;
-            while ((len = gzipIn.read(buffer)) > 0) {
+            while ((len = in.read(buffer)) != -1) {
                 fos.write(buffer, 0, len);
             }
             
-            log.info("GZIP文件解压完成: {} -> {}, 解压后大小: {}", 
+            log.info("{}文件解压完成: {} -> {}, 解压后大小: {}", codec.getType(),
                     sourceFile.getAbsolutePath(), targetFile.getAbsolutePath(), targetFile.length());
             
             if (targetFile.exists() && targetFile.length() > 0) {
@@ -153,76 +199,44 @@ public class FileCompressUtil {
                 return null;
             }
         } catch (IOException e) {
-            log.error("GZIP解压文件IO异常: {}", e.getMessage());
+            log.error("{}解压文件IO异常: {}", codec.getType(), e.getMessage());
             throw e;
         }
     }
     
     /**
-     * 解压ZIP文件
+     * 解压ZIP文件：按中央目录定位第一个文件条目，直接流式写入目标文件，其他条目不读取
      */
     private File decompressZip(File sourceFile, File targetFile) throws IOException {
-        // 创建临时目录，用于解压多文件ZIP
-        File tempDir = Files.createTempDirectory("zip_extract_").toFile();
-        try (ZipInputStream zipIn = new ZipInputStream(new FileInputStream(sourceFile))) {
-            
-            ZipEntry entry;
-            File extractedFile = null;
+        try (ZipFile zipFile = new ZipFile(sourceFile)) {
+            ZipEntry entry = zipFile.stream()
+                    .filter(e -> !e.isDirectory())
+                    .findFirst()
+                    .orElse(null);
             
-            while ((entry = zipIn.getNextEntry()) != null) {
-                String entryName = entry.getName();
-                File entryFile = new File(tempDir, entryName);
-                
-                // 跳过目录
-                if (entry.isDirectory()) {
-                    entryFile.mkdirs();
-                    continue;
-                }
-                
-                // 确保父目录存在
-                File entryParent = entryFile.getParentFile();
-                if (entryParent != null && !entryParent.exists()) {
-                    entryParent.mkdirs();
-                }
-                
-                // 解压文件
-                try (FileOutputStream fos = new FileOutputStream(entryFile)) {
-                    byte[] buffer = new byte[8192];
-                    int len;
-                    while ((len = zipIn.read(buffer)) > 0) {
-                        fos.write(buffer, 0, len);
-                    }
-                }
-                
-                // 记录第一个解压出的文件
-                if (extractedFile == null) {
-                    extractedFile = entryFile;
-                }
-                
-                log.info("解压ZIP文件: {}", entryName);
-                zipIn.closeEntry();
-            }
-            
-            // 如果只有一个文件，将它复制到目标位置
-            if (extractedFile != null) {
-                FileUtils.copyFile(extractedFile, targetFile);
-                log.info("ZIP文件解压完成(单文件): {} -> {}, 解压后大小: {}", 
-                        sourceFile.getAbsolutePath(), targetFile.getAbsolutePath(), targetFile.length());
-                return targetFile;
-            } else {
+            if (entry == null) {
                 log.warn("ZIP文件中没有找到文件，可能是空ZIP或只包含目录");
                 FileUtils.copyFile(sourceFile, targetFile);
                 return targetFile;
             }
+            
+            copyZipEntry(zipFile, entry, targetFile);
+            log.info("ZIP文件解压完成(条目 {}/{}): {} -> {}, 解压后大小: {}", entry.getName(), zipFile.size(),
+                    sourceFile.getAbsolutePath(), targetFile.getAbsolutePath(), targetFile.length());
+            return targetFile;
         } catch (IOException e) {
             log.error("ZIP解压文件IO异常: {}", e.getMessage());
             throw e;
-        } finally {
-            // 清理临时目录
-            try {
-                FileUtils.deleteDirectory(tempDir);
-            } catch (IOException e) {
-                log.warn("清理临时目录失败: {}", tempDir);
+        }
+    }
+    
+    private void copyZipEntry(ZipFile zipFile, ZipEntry entry, File targetFile) throws IOException {
+        try (InputStream in = zipFile.getInputStream(entry);
+             FileOutputStream fos = new FileOutputStream(targetFile)) {
+            byte[] buffer = new byte[FileConstant.STREAM_BUFFER_SIZE];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                fos.write(buffer, 0, len);
             }
         }
     }
@@ -245,14 +259,7 @@ public class FileCompressUtil {
         }
         
         // 如果文件头检测失败，尝试通过文件名判断
-        String fileName = file.getName().toLowerCase();
-        if (fileName.endsWith(".gz") || fileName.endsWith(".gzip")) {
-            return CompressionType.GZIP;
-        } else if (fileName.endsWith(".zip")) {
-            return CompressionType.ZIP;
-        }
-        
-        return CompressionType.NONE;
+        return detectByFileName(file.getName());
     }
     
     /**
@@ -264,24 +271,85 @@ public class FileCompressUtil {
             if (fis.read(signature) != 4) {
                 return CompressionType.NONE;
             }
-            
-            // GZIP文件头标识：0x1f 0x8b
-            if ((signature[0] & 0xff) == 0x1f && (signature[1] & 0xff) == 0x8b) {
-                return CompressionType.GZIP;
-            }
-            
-            // ZIP文件头标识：0x50 0x4b 0x03 0x04 (PK..)
-            if ((signature[0] & 0xff) == 0x50 && (signature[1] & 0xff) == 0x4b &&
-                (signature[2] & 0xff) == 0x03 && (signature[3] & 0xff) == 0x04) {
-                return CompressionType.ZIP;
-            }
-            
-            return CompressionType.NONE;
+
+            return detectBySignature(signature);
         } catch (IOException e) {
             log.error("检查文件头失败: {}", e.getMessage(), e);
             return CompressionType.NONE;
         }
     }
+
+    /**
+     * 通过文件头前4个字节检测压缩类型，供文件和数据流共用；按已注册的编解码器（含自定义实现）识别
+     *
+     * @param signature 文件头字节（不足4字节时视为非压缩数据）
+     * @return 压缩类型
+     */
+    public CompressionType detectBySignature(byte[] signature) {
+        if (signature == null || signature.length < 4) {
+            return CompressionType.NONE;
+        }
+
+        for (CompressionCodec codec : codecs.values()) {
+            if (codec.matches(signature)) {
+                return codec.getType();
+            }
+        }
+        return CompressionType.NONE;
+    }
+
+    /**
+     * 通过文件扩展名判断压缩类型
+     *
+     * @param fileName 文件名
+     * @return 压缩类型
+     */
+    public static CompressionType detectByFileName(String fileName) {
+        if (fileName == null) {
+            return CompressionType.NONE;
+        }
+        String lowerName = fileName.toLowerCase();
+        if (lowerName.endsWith(".gzip")) {
+            return CompressionType.GZIP;
+        }
+        if (lowerName.endsWith(".zstd")) {
+            return CompressionType.ZSTD;
+        }
+        for (CompressionCodec codec : BUILTIN_CODECS) {
+            if (lowerName.endsWith(codec.getExtension())) {
+                return codec.getType();
+            }
+        }
+        return CompressionType.NONE;
+    }
+
+    /**
+     * 去掉文件名末尾的压缩扩展名（.gz/.gzip/.zip/.zst/.zstd/.lz4），没有时原样返回
+     *
+     * @param fileName 文件名
+     * @return 去掉压缩扩展名后的文件名
+     */
+    public static String stripCompressionSuffix(String fileName) {
+        CompressionType type = detectByFileName(fileName);
+        if (type == CompressionType.NONE) {
+            return fileName;
+        }
+        return fileName.substring(0, fileName.lastIndexOf('.'));
+    }
+
+    /**
+     * 获取压缩类型对应的编解码器
+     *
+     * @param type 压缩类型
+     * @return 编解码器
+     */
+    public CompressionCodec getCodec(CompressionType type) {
+        CompressionCodec codec = codecs.get(type);
+        if (codec == null) {
+            throw new IllegalArgumentException("不支持的压缩格式: " + type);
+        }
+        return codec;
+    }
     
     /**
      * 支持的压缩文件类型
@@ -289,7 +357,9 @@ public class FileCompressUtil {
     public enum CompressionType {
         NONE,   // 不是压缩文件
         GZIP,   // GZIP格式
-        ZIP     // ZIP格式
+        ZIP,    // ZIP格式
+        ZSTD,   // Zstandard格式
+        LZ4     // LZ4帧格式
     }
     
     /**
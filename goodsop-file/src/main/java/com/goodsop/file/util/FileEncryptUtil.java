@@ -9,13 +9,27 @@ import javax.crypto.*;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.InvalidKeyException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * 文件加解密工具类
@@ -24,6 +38,45 @@ import java.util.Base64;
 @Component
 public class FileEncryptUtil {
 
+    /**
+     * 十六进制字符表，用于查表转换摘要字节
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * AES块大小（字节）
+     */
+    private static final int AES_BLOCK_SIZE = 16;
+
+    /**
+     * 边并行解密边计算摘要时每块的大小（1MB）
+     */
+    private static final int PARALLEL_DIGEST_BLOCK_SIZE = 1024 * 1024;
+
+    /**
+     * AES/CTR Cipher对象池，空闲对象数与CPU核数相关
+     */
+    private final AesCtrCipherPool cipherPool = new AesCtrCipherPool(Runtime.getRuntime().availableProcessors() * 2);
+
+    /**
+     * 已解析的解密密钥
+     */
+    private final Map<String, SecretKey> decryptKeys = new ConcurrentHashMap<>();
+
+    /**
+     * 生成每个文件随机IV的随机数源
+     */
+    private final SecureRandom ivRandom = new SecureRandom();
+
+    /**
+     * 分段并行解密使用的线程池
+     */
+    private final ParallelTaskExecutor parallelTaskExecutor;
+
+    public FileEncryptUtil(ParallelTaskExecutor parallelTaskExecutor) {
+        this.parallelTaskExecutor = parallelTaskExecutor;
+    }
+
     /**
      * AES加密文件
      * 
@@ -135,65 +188,46 @@ public class FileEncryptUtil {
             }
             
             // 准备密钥
-            log.info("AES密钥长度: {} 字符", key.length());
-            
-            // 确保密钥长度为32字节，用于AES-256
-            SecretKey secretKey;
-            if (key.length() == 32) {
-                // 使用UTF-8编码确保与加密时相同的字节序列
-                byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
-                secretKey = new SecretKeySpec(keyBytes, FileConstant.ALGORITHM_AES);
-                log.info("使用原始AES-256密钥，长度: {} 字节", keyBytes.length);
-            } else {
-                log.warn("密钥长度不是32字节，将使用固定的AES密钥");
-                // 使用FileConstant中定义的标准密钥
-                byte[] keyBytes = FileConstant.AES_KEY.getBytes(StandardCharsets.UTF_8);
-                secretKey = new SecretKeySpec(keyBytes, FileConstant.ALGORITHM_AES);
-            }
-            
-            try (FileInputStream fis = new FileInputStream(sourceFile);
-                 FileOutputStream fos = new FileOutputStream(targetFile)) {
+            SecretKey secretKey = resolveDecryptKey(key);
+
+            try (FileChannel in = FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(targetFile.toPath(), StandardOpenOption.CREATE,
+                         StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
                 
                 // 读取IV（前16字节）
-                byte[] iv = new byte[FileConstant.IV_SIZE];
-                int bytesRead = fis.read(iv);
+                ByteBuffer ivBuffer = ByteBuffer.allocate(FileConstant.IV_SIZE);
+                while (ivBuffer.hasRemaining() && in.read(ivBuffer, ivBuffer.position()) > 0) {
+                    // 读满IV
+                }
                 
-                if (bytesRead != FileConstant.IV_SIZE) {
+                if (ivBuffer.hasRemaining()) {
                     log.error("无法读取完整的IV，可能不是加密文件");
-                    try {
-                        // 如果无法读取IV，尝试直接复制文件
-                        fis.close();
-                        FileUtils.copyFile(sourceFile, targetFile);
-                        log.info("无法读取IV，直接复制文件: {} -> {}", 
-                                sourceFile.getAbsolutePath(), targetFile.getAbsolutePath());
-                        return targetFile;
-                    } catch (IOException e) {
-                        log.error("复制文件失败: {}", e.getMessage(), e);
-                        return null;
-                    }
+                    // 如果无法读取IV，直接复制文件
+                    in.transferTo(0, in.size(), out.truncate(0));
+                    log.info("无法读取IV，直接复制文件: {} -> {}", 
+                            sourceFile.getAbsolutePath(), targetFile.getAbsolutePath());
+                    return targetFile;
                 }
                 
-                IvParameterSpec ivParameterSpec = new IvParameterSpec(iv);
-                log.info("读取加密文件IV，长度: {} 字节", iv.length);
-                
-                // 初始化Cipher
-                Cipher cipher = Cipher.getInstance(FileConstant.TRANSFORMATION_AES);
-                cipher.init(Cipher.DECRYPT_MODE, secretKey, ivParameterSpec);
-                log.info("初始化Cipher成功，模式: {}", FileConstant.TRANSFORMATION_AES);
-                
-                // 开始解密
-                log.info("开始解密文件流...");
-                
-                try (CipherInputStream cis = new CipherInputStream(fis, cipher)) {
-                    byte[] buffer = new byte[8192];
-                    int len;
-                    while ((len = cis.read(buffer)) > 0) {
-                        fos.write(buffer, 0, len);
+                // 大文件按段并行解密，否则经解密流（池中的Cipher，64KB整块解密）顺序解密，基准测试中这是最快的单线程方式
+                long length = in.size() - FileConstant.IV_SIZE;
+                if (shouldDecryptInParallel(length)) {
+                    decryptParallel(in, FileConstant.IV_SIZE, length, out, secretKey, ivBuffer.array(),
+                            FileConstant.PARALLEL_DECRYPT_SEGMENT_SIZE);
+                } else {
+                    in.position(FileConstant.IV_SIZE);
+                    try (InputStream decrypted = openDecryptStream(Channels.newInputStream(in), secretKey, ivBuffer.array())) {
+                        OutputStream target = Channels.newOutputStream(out);
+                        byte[] buffer = new byte[FileConstant.STREAM_BUFFER_SIZE];
+                        int n;
+                        while ((n = decrypted.read(buffer)) != -1) {
+                            target.write(buffer, 0, n);
+                        }
                     }
                 }
                 
                 log.info("文件解密完成: {} -> {}, 大小: {}", 
-                        sourceFile.getAbsolutePath(), targetFile.getAbsolutePath(), targetFile.length());
+                        sourceFile.getAbsolutePath(), targetFile.getAbsolutePath(), length);
                 return targetFile;
                 
             } catch (IOException e) {
@@ -238,9 +272,291 @@ public class FileEncryptUtil {
         }
     }
     
+    /**
+     * 解析解密使用的AES密钥
+     * 32字节的密钥按UTF-8字节直接作为AES-256密钥，长度不符时拒绝使用（不回退到任何内置密钥）
+     *
+     * @param key 配置的密钥字符串
+     * @return SecretKey
+     * @throws IllegalArgumentException 密钥为空或不是32字节
+     */
+    public SecretKey resolveDecryptKey(String key) {
+        if (!isValidKey(key)) {
+            throw new IllegalArgumentException("AES密钥必须是32字节");
+        }
+        // 解析结果按配置的密钥字符串缓存，每个文件不再重复构造密钥
+        // 使用UTF-8编码确保与加密时相同的字节序列
+        return decryptKeys.computeIfAbsent(key,
+                k -> new SecretKeySpec(k.getBytes(StandardCharsets.UTF_8), FileConstant.ALGORITHM_AES));
+    }
+
+    /**
+     * 密钥是否可用作AES-256密钥（UTF-8编码后为32字节）
+     */
+    public boolean isValidKey(String key) {
+        return key != null && key.getBytes(StandardCharsets.UTF_8).length == 32;
+    }
+
+    /**
+     * 打开AES/CTR解密流，使用池中的Cipher，读取时按调用方的缓冲区大小整块解密，关闭时归还Cipher
+     *
+     * @param in  密文数据流（不含IV）
+     * @param key 解密密钥
+     * @param iv  IV
+     * @return 明文数据流
+     */
+    public InputStream openDecryptStream(InputStream in, SecretKey key, byte[] iv) throws GeneralSecurityException {
+        return new CtrDecryptInputStream(in, cipherPool.acquire(Cipher.DECRYPT_MODE, key, iv));
+    }
+
+    /**
+     * 生成随机IV（每个加密文件一个，写在文件开头）
+     */
+    public byte[] generateIv() {
+        byte[] iv = new byte[FileConstant.IV_SIZE];
+        ivRandom.nextBytes(iv);
+        return iv;
+    }
+
+    /**
+     * 密文长度是否达到并行解密的阈值（单核机器不并行）
+     */
+    public boolean shouldDecryptInParallel(long length) {
+        return length >= FileConstant.PARALLEL_DECRYPT_THRESHOLD && parallelTaskExecutor.getParallelism() > 1;
+    }
+
+    /**
+     * 按段并行解密AES/CTR密文
+     * <p>
+     * CTR模式下第n个16字节块的计数器等于 IV + n，任意一段都可以独立解密：
+     * 每段在并行计算线程池中借出一个Cipher，按段起始块号推进计数器后初始化，再按位置读写两个文件通道
+     * （FileChannel的按位置读写可以多线程并发进行）。
+     * </p>
+     *
+     * @param in          密文通道
+     * @param inputOffset 密文在输入通道中的起始位置（即IV之后的位置）
+     * @param length      密文长度
+     * @param out         明文输出通道（从位置0开始写入）
+     * @param key         解密密钥
+     * @param iv          IV（第0块的计数器）
+     * @param segmentSize 每段大小，必须是16的整数倍
+     * @return 解密的字节数
+     */
+    public long decryptParallel(FileChannel in, long inputOffset, long length, FileChannel out,
+                                SecretKey key, byte[] iv, int segmentSize) throws IOException, GeneralSecurityException {
+        if (segmentSize <= 0 || segmentSize % AES_BLOCK_SIZE != 0) {
+            throw new IllegalArgumentException("分段大小必须是" + AES_BLOCK_SIZE + "的整数倍: " + segmentSize);
+        }
+        List<Callable<Long>> tasks = new ArrayList<>();
+        for (long offset = 0; offset < length; offset += segmentSize) {
+            long segmentOffset = offset;
+            long segmentLength = Math.min(segmentSize, length - offset);
+            byte[] counter = advanceCounter(iv, segmentOffset / AES_BLOCK_SIZE);
+            tasks.add(() -> {
+                try (AesCtrCipherPool.Lease lease = cipherPool.acquire(Cipher.DECRYPT_MODE, key, counter)) {
+                    return lease.transform(in, inputOffset + segmentOffset, segmentLength, out, segmentOffset);
+                }
+            });
+        }
+        try {
+            long total = 0;
+            for (Future<Long> task : parallelTaskExecutor.invokeAll(tasks)) {
+                total += task.get();
+            }
+            log.info("并行解密完成: 大小: {}, 分段数: {}", length, tasks.size());
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("并行解密被中断");
+        } catch (ExecutionException e) {
+            throw parallelFailure(e);
+        }
+    }
+
+    /**
+     * 按块并行解密AES/CTR密文，同时按顺序计算明文（和密文）的摘要
+     * <p>
+     * MD5不能由各段的摘要合并得出：各块（1MB）在并行计算线程池中解密并按位置写入输出通道，
+     * 调用线程按块的顺序取回已解密的数据更新摘要，摘要计算与后续块的解密同时进行，源数据和目标文件都不需要再读一遍。
+     * 同时在途的块数不超过线程数的2倍，内存占用有上限。
+     * </p>
+     *
+     * @param in           密文通道
+     * @param inputOffset  密文在输入通道中的起始位置（即IV之后的位置）
+     * @param length       密文长度
+     * @param out          明文输出通道（从位置0开始写入）
+     * @param key          解密密钥
+     * @param iv           IV（第0块的计数器）
+     * @param plainDigest  明文摘要
+     * @param cipherDigest 密文摘要，不需要时为null
+     * @return 解密的字节数
+     */
+    public long decryptParallel(FileChannel in, long inputOffset, long length, FileChannel out, SecretKey key, byte[] iv,
+                                MessageDigest plainDigest, MessageDigest cipherDigest) throws IOException, GeneralSecurityException {
+        int window = parallelTaskExecutor.getParallelism() * 2;
+        Deque<Future<DecryptedBlock>> pending = new ArrayDeque<>();
+        Deque<DecryptedBlock> free = new ArrayDeque<>();
+        long next = 0;
+        long total = 0;
+        try {
+            while (next < length || !pending.isEmpty()) {
+                while (next < length && pending.size() < window) {
+                    DecryptedBlock block = free.isEmpty() ? new DecryptedBlock() : free.pop();
+                    long offset = next;
+                    int blockLength = (int) Math.min(PARALLEL_DIGEST_BLOCK_SIZE, length - offset);
+                    byte[] counter = advanceCounter(iv, offset / AES_BLOCK_SIZE);
+                    pending.add(parallelTaskExecutor.submit(() -> {
+                        try (AesCtrCipherPool.Lease lease = cipherPool.acquire(Cipher.DECRYPT_MODE, key, counter)) {
+                            return block.decrypt(lease.getCipher(), in, inputOffset + offset, blockLength, out, offset);
+                        }
+                    }));
+                    next += blockLength;
+                }
+                DecryptedBlock block = pending.poll().get();
+                if (cipherDigest != null) {
+                    cipherDigest.update(block.input, 0, block.length);
+                }
+                plainDigest.update(block.output, 0, block.length);
+                total += block.length;
+                free.push(block);
+            }
+            log.info("并行解密完成: 大小: {}, 块数: {}", length, (length + PARALLEL_DIGEST_BLOCK_SIZE - 1) / PARALLEL_DIGEST_BLOCK_SIZE);
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("并行解密被中断");
+        } catch (ExecutionException e) {
+            throw parallelFailure(e);
+        } finally {
+            // 出错时不再等待在途的块，输出通道关闭后它们的写入随之失败
+            pending.forEach(task -> task.cancel(false));
+        }
+    }
+
+    /**
+     * 取出并行解密任务的异常，受检异常原样抛出
+     */
+    private static RuntimeException parallelFailure(ExecutionException e) throws IOException, GeneralSecurityException {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        }
+        if (cause instanceof GeneralSecurityException) {
+            throw (GeneralSecurityException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new IllegalStateException("并行解密失败", cause);
+    }
+
+    /**
+     * 并行解密中的一块：保留密文和明文供调用线程按顺序计算摘要，摘要更新完后复用于后续的块
+     */
+    private static final class DecryptedBlock {
+
+        private final byte[] input = new byte[PARALLEL_DIGEST_BLOCK_SIZE];
+
+        private final byte[] output = new byte[PARALLEL_DIGEST_BLOCK_SIZE];
+
+        private int length;
+
+        DecryptedBlock decrypt(Cipher cipher, FileChannel in, long inputPosition, int blockLength,
+                               FileChannel out, long outputPosition) throws IOException, GeneralSecurityException {
+            ByteBuffer inputBuffer = ByteBuffer.wrap(input, 0, blockLength);
+            while (inputBuffer.hasRemaining()) {
+                if (in.read(inputBuffer, inputPosition + inputBuffer.position()) < 0) {
+                    throw new EOFException("密文长度不足: 位置" + (inputPosition + inputBuffer.position()));
+                }
+            }
+            // CTR模式update的输出长度等于输入长度
+            cipher.update(input, 0, blockLength, output, 0);
+            ByteBuffer outputBuffer = ByteBuffer.wrap(output, 0, blockLength);
+            while (outputBuffer.hasRemaining()) {
+                out.write(outputBuffer, outputPosition + outputBuffer.position());
+            }
+            this.length = blockLength;
+            return this;
+        }
+    }
+
+    /**
+     * 把加密文件中指定明文区间实时解密后写入输出流，不生成解密副本
+     * <p>
+     * 明文第 offset 字节位于密文文件的 IV_SIZE + offset 处：从所在的16字节块开始读取，
+     * 计数器推进到该块的块号，解密后丢弃块内 offset 之前的字节。
+     * </p>
+     *
+     * @param in     加密文件通道（前16字节为IV）
+     * @param offset 明文起始位置
+     * @param length 明文字节数
+     * @param out    输出流
+     * @param key    解密密钥
+     * @return 写入的字节数
+     */
+    public long transferDecryptedRange(FileChannel in, long offset, long length, OutputStream out,
+                                       SecretKey key) throws IOException, GeneralSecurityException {
+        ByteBuffer ivBuffer = ByteBuffer.allocate(FileConstant.IV_SIZE);
+        while (ivBuffer.hasRemaining()) {
+            if (in.read(ivBuffer, ivBuffer.position()) < 0) {
+                throw new IOException("无法读取完整的IV");
+            }
+        }
+        long block = offset / AES_BLOCK_SIZE;
+        int skip = (int) (offset % AES_BLOCK_SIZE);
+        long position = FileConstant.IV_SIZE + block * AES_BLOCK_SIZE;
+        long remaining = length + skip;
+        byte[] input = new byte[FileConstant.STREAM_BUFFER_SIZE];
+        byte[] output = new byte[FileConstant.STREAM_BUFFER_SIZE];
+        ByteBuffer inputBuffer = ByteBuffer.wrap(input);
+        try (AesCtrCipherPool.Lease lease = cipherPool.acquire(Cipher.DECRYPT_MODE, key, advanceCounter(ivBuffer.array(), block))) {
+            while (remaining > 0) {
+                inputBuffer.clear().limit((int) Math.min(input.length, remaining));
+                while (inputBuffer.hasRemaining()) {
+                    if (in.read(inputBuffer, position + inputBuffer.position()) < 0) {
+                        throw new EOFException("密文长度不足: 位置" + (position + inputBuffer.position()));
+                    }
+                }
+                int read = inputBuffer.position();
+                // CTR模式update的输出长度等于输入长度
+                int produced = lease.getCipher().update(input, 0, read, output, 0);
+                out.write(output, skip, produced - skip);
+                skip = 0;
+                position += read;
+                remaining -= read;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 计算CTR模式下第 blocks 个块的计数器：把IV视为128位大端无符号整数加上块号（溢出时回绕，与SunJCE一致）
+     *
+     * @param iv     IV
+     * @param blocks 块号
+     * @return 新的计数器
+     */
+    public static byte[] advanceCounter(byte[] iv, long blocks) {
+        byte[] counter = iv.clone();
+        long carry = blocks;
+        for (int i = counter.length - 1; i >= 0 && carry != 0; i--) {
+            long sum = (counter[i] & 0xFFL) + (carry & 0xFFL);
+            counter[i] = (byte) sum;
+            carry = (carry >>> 8) + (sum >>> 8);
+        }
+        return counter;
+    }
+
+    /**
+     * Cipher对象池
+     */
+    public AesCtrCipherPool getCipherPool() {
+        return cipherPool;
+    }
+
     /**
      * 生成AES密钥
-     * 
+     *
      * @param key 密钥字符串
      * @return SecretKey
      */
@@ -288,22 +604,31 @@ public class FileEncryptUtil {
      */
     public String calculateMD5(File file) {
         try (FileInputStream fis = new FileInputStream(file)) {
+            return calculateMD5(fis);
+        } catch (IOException e) {
+            log.error("计算文件MD5失败: {}", e.getMessage(), e);
+            throw new RuntimeException("计算文件MD5失败", e);
+        }
+    }
+    
+    /**
+     * 计算输入流剩余内容的MD5值（不关闭输入流）
+     * 
+     * @param in 输入流
+     * @return MD5值
+     */
+    public String calculateMD5(InputStream in) {
+        try {
             MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] buffer = new byte[8192];
+            byte[] buffer = new byte[FileConstant.STREAM_BUFFER_SIZE];
             int length;
-            while ((length = fis.read(buffer)) != -1) {
+            while ((length = in.read(buffer)) != -1) {
                 md.update(buffer, 0, length);
             }
-            
-            byte[] mdBytes = md.digest();
-            StringBuilder sb = new StringBuilder();
-            for (byte mdByte : mdBytes) {
-                sb.append(String.format("%02x", mdByte));
-            }
-            return sb.toString();
+            return toHex(md.digest());
         } catch (Exception e) {
-            log.error("计算文件MD5失败: {}", e.getMessage(), e);
-            throw new RuntimeException("计算文件MD5失败", e);
+            log.error("计算MD5失败: {}", e.getMessage(), e);
+            throw new RuntimeException("计算MD5失败", e);
         }
     }
     
@@ -316,19 +641,29 @@ public class FileEncryptUtil {
     public String calculateMD5(String text) {
         try {
             MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] mdBytes = md.digest(text.getBytes(StandardCharsets.UTF_8));
-            
-            StringBuilder sb = new StringBuilder();
-            for (byte mdByte : mdBytes) {
-                sb.append(String.format("%02x", mdByte));
-            }
-            return sb.toString();
+            return toHex(md.digest(text.getBytes(StandardCharsets.UTF_8)));
         } catch (Exception e) {
             log.error("计算字符串MD5失败: {}", e.getMessage(), e);
             throw new RuntimeException("计算字符串MD5失败", e);
         }
     }
     
+    /**
+     * 将摘要字节转换为小写十六进制字符串
+     *
+     * @param bytes 摘要字节
+     * @return 十六进制字符串
+     */
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int v = bytes[i] & 0xff;
+            chars[i * 2] = HEX_DIGITS[v >>> 4];
+            chars[i * 2 + 1] = HEX_DIGITS[v & 0x0f];
+        }
+        return new String(chars);
+    }
+
     /**
      * Base64编码
      * 
@@ -392,4 +727,78 @@ public class FileEncryptUtil {
         // 加密数据通常有更多不同的字节值
         return Math.min(10, (differentBytes * 10) / Math.min(data.length, 128));
     }
-} 
\ No newline at end of file
+
+    /**
+     * AES/CTR解密流：先把密文读入暂存数组，再整块解密到调用方的缓冲区
+     * （CipherInputStream内部每次只处理512字节，大文件解密时开销明显）
+     */
+    private static class CtrDecryptInputStream extends FilterInputStream {
+
+        private final AesCtrCipherPool.Lease lease;
+
+        private final byte[] scratch = new byte[FileConstant.STREAM_BUFFER_SIZE];
+
+        private boolean closed;
+
+        CtrDecryptInputStream(InputStream in, AesCtrCipherPool.Lease lease) {
+            super(in);
+            this.lease = lease;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int n = in.read(scratch, 0, Math.min(len, scratch.length));
+            if (n <= 0) {
+                return n;
+            }
+            try {
+                return lease.getCipher().update(scratch, 0, n, b, off);
+            } catch (ShortBufferException e) {
+                throw new IOException("AES/CTR解密输出缓冲区不足", e);
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // 跳过的数据也要经过Cipher，保证后续数据的计数器正确
+            byte[] discard = new byte[(int) Math.min(n, FileConstant.STREAM_BUFFER_SIZE)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(discard, 0, (int) Math.min(discard.length, n - skipped));
+                if (read <= 0) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                lease.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.config.FileProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 上传文件后台处理执行器
+ * <p>
+ * 分块上传完成后的解密、解压、MD5计算和入库交给固定大小的线程池处理，最后一个分块的请求无需等待。
+ * 队列有界，队列满时由提交请求的线程自己执行（CallerRunsPolicy），从而对上传端形成反压而不会无限堆积。
+ * 处理状态以文件记录为准（重启后和其他节点都能查到），这里的任务状态只保留在本节点内存中，
+ * 用于区分排队和处理中、记录失败原因，以及避免把本节点仍在处理的记录当作遗留记录。
+ * </p>
+ */
+@Slf4j
+@Component
+public class FileProcessingExecutor {
+
+    /**
+     * 已结束的任务状态保留时间
+     */
+    private static final Duration FINISHED_TASK_RETENTION = Duration.ofHours(1);
+
+    private final FileProperties fileProperties;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Map<String, ProcessingTask> tasks = new ConcurrentHashMap<>();
+
+    public FileProcessingExecutor(FileProperties fileProperties) {
+        this.fileProperties = fileProperties;
+        FileProperties.Upload upload = fileProperties.getUpload();
+        int threads = Math.max(1, upload.getProcessingThreads());
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, upload.getProcessingQueueCapacity())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "file-process-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 生成处理ID，提交前随文件记录一起保存
+     */
+    public static String newProcessingId() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+
+    /**
+     * 提交后台处理任务
+     *
+     * @param processingId 处理ID
+     * @param fileId       文件ID
+     * @param job          处理逻辑
+     * @return 处理任务
+     */
+    public ProcessingTask submit(String processingId, Long fileId, Runnable job) {
+        ProcessingTask task = new ProcessingTask()
+                .setProcessingId(processingId)
+                .setFileId(fileId)
+                .setState(ProcessingState.QUEUED)
+                .setSubmitTime(LocalDateTime.now());
+        tasks.put(task.getProcessingId(), task);
+
+        Runnable wrapped = () -> run(task, job);
+        if (Boolean.TRUE.equals(fileProperties.getUpload().getAsyncProcessing())) {
+            executor.execute(wrapped);
+            log.info("文件后台处理任务已提交: processingId={}, fileId={}, 排队数: {}",
+                    task.getProcessingId(), fileId, executor.getQueue().size());
+        } else {
+            wrapped.run();
+        }
+        return task;
+    }
+
+    /**
+     * 查询处理任务
+     *
+     * @param processingId 处理ID
+     * @return 处理任务，不存在或已过期时返回null
+     */
+    public ProcessingTask get(String processingId) {
+        return tasks.get(processingId);
+    }
+
+    /**
+     * 本节点排队中和处理中的文件ID
+     */
+    public Set<Long> getActiveFileIds() {
+        Set<Long> fileIds = new HashSet<>();
+        for (ProcessingTask task : tasks.values()) {
+            if (task.getFinishTime() == null) {
+                fileIds.add(task.getFileId());
+            }
+        }
+        return fileIds;
+    }
+
+    /**
+     * 当前排队中的任务数
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * 定期清理已结束的任务状态
+     */
+    @Scheduled(fixedDelay = 10 * 60 * 1000L)
+    public void evictFinishedTasks() {
+        LocalDateTime expiration = LocalDateTime.now().minus(FINISHED_TASK_RETENTION);
+        tasks.values().removeIf(task -> task.getFinishTime() != null && task.getFinishTime().isBefore(expiration));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("文件后台处理任务未能在30秒内完成，剩余排队任务: {}", executor.getQueue().size());
+            executor.shutdownNow();
+        }
+    }
+
+    private void run(ProcessingTask task, Runnable job) {
+        task.setState(ProcessingState.PROCESSING);
+        try {
+            job.run();
+            task.setState(ProcessingState.COMPLETED);
+        } catch (Exception e) {
+            log.error("文件后台处理失败: processingId={}, fileId={}, 错误: {}",
+                    task.getProcessingId(), task.getFileId(), e.getMessage(), e);
+            task.setState(ProcessingState.FAILED).setMessage(e.getMessage());
+        } finally {
+            task.setFinishTime(LocalDateTime.now());
+        }
+    }
+
+    /**
+     * 处理状态
+     */
+    public enum ProcessingState {
+        QUEUED,      // 排队中
+        PROCESSING,  // 处理中
+        COMPLETED,   // 处理完成
+        FAILED       // 处理失败
+    }
+
+    /**
+     * 处理任务
+     */
+    @Data
+    @Accessors(chain = true)
+    public static class ProcessingTask {
+        /**
+         * 处理ID
+         */
+        private String processingId;
+
+        /**
+         * 文件ID
+         */
+        private Long fileId;
+
+        /**
+         * 处理状态
+         */
+        private volatile ProcessingState state;
+
+        /**
+         * 失败原因
+         */
+        private volatile String message;
+
+        /**
+         * 提交时间
+         */
+        private LocalDateTime submitTime;
+
+        /**
+         * 结束时间
+         */
+        private volatile LocalDateTime finishTime;
+    }
+}
@@ -9,7 +9,6 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
 import javax.crypto.CipherOutputStream;
@@ -134,18 +133,10 @@ public class FileProcessingUtil {
      */
     public File compressFile(File file) throws IOException {
         File compressedFile = new File(file.getParent(), file.getName() + ".gz");
-        
-        try (FileInputStream inputStream = new FileInputStream(file);
-             FileOutputStream outputStream = new FileOutputStream(compressedFile);
-             GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
-            
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                gzipOutputStream.write(buffer, 0, bytesRead);
-            }
+        // 由FileCompressUtil压缩，大文件按块并行压缩
+        if (fileCompressUtil.compressFile(file, compressedFile) == null) {
+            throw new IOException("压缩文件失败: " + file.getAbsolutePath());
         }
-        
         return compressedFile;
     }
     
@@ -0,0 +1,624 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.constant.FileConstant;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 下载和预览的响应体输出
+ * <p>
+ * 较大的响应使用Servlet异步非阻塞输出：请求线程在启动异步后立即归还容器，之后只在连接可写
+ * （{@link WriteListener#onWritePossible()}）时读取并写出下一块，慢速客户端不再占用容器线程。
+ * 所有输出共享全局预算：同时输出的响应数有上限（达到上限时调用方返回503），
+ * 配置了带宽上限时由 {@link BandwidthScheduler} 按连接、用户和全局三级限速并在用户之间加权公平分配，
+ * 异步输出在带宽不足时挂起、拿到带宽后再继续，不阻塞线程。
+ * 不支持异步的请求和小响应仍同步输出。
+ * </p>
+ */
+@Slf4j
+@Component
+public class FileSender {
+
+    /**
+     * 全局带宽的分配周期（毫秒）
+     */
+    private static final long BANDWIDTH_TICK_MILLIS = 10;
+
+    private final FileProperties fileProperties;
+
+    private final Semaphore transferPermits;
+
+    /**
+     * 批量打包输出的名额，与 transferPermits 同时占用
+     */
+    private final Semaphore batchPermits;
+
+    /**
+     * 带宽调度，未配置带宽上限时为null
+     */
+    private final BandwidthScheduler bandwidthScheduler;
+
+    /**
+     * 带宽分配和限速等待结束后恢复输出
+     */
+    private final ScheduledThreadPoolExecutor resumeScheduler;
+
+    public FileSender(FileProperties fileProperties) {
+        this.fileProperties = fileProperties;
+        FileProperties.Download download = fileProperties.getDownload();
+        this.transferPermits = new Semaphore(download.getMaxConcurrentTransfers());
+        this.batchPermits = new Semaphore(download.getBatchMaxConcurrent());
+        this.resumeScheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "file-send-resume");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.resumeScheduler.setRemoveOnCancelPolicy(true);
+        if (BandwidthScheduler.isEnabled(download)) {
+            this.bandwidthScheduler = new BandwidthScheduler(download, resumeScheduler);
+            resumeScheduler.scheduleWithFixedDelay(bandwidthScheduler::tick, BANDWIDTH_TICK_MILLIS,
+                    BANDWIDTH_TICK_MILLIS, TimeUnit.MILLISECONDS);
+            log.info("下载带宽限制 - 全局: {}, 每用户: {}, 每连接: {} (字节/秒)", download.getMaxBandwidth(),
+                    download.getMaxBandwidthPerUser(), download.getMaxBandwidthPerConnection());
+        } else {
+            this.bandwidthScheduler = null;
+        }
+    }
+
+    /**
+     * 是否限制输出带宽（限速时不能交给容器sendfile发送）
+     */
+    public boolean isShaping() {
+        return bandwidthScheduler != null;
+    }
+
+    /**
+     * 申请一个输出名额
+     *
+     * @return 输出名额，达到并发上限时返回null
+     */
+    public Permit tryAcquire() {
+        if (!transferPermits.tryAcquire()) {
+            log.warn("同时输出的响应数已达上限: {}", fileProperties.getDownload().getMaxConcurrentTransfers());
+            return null;
+        }
+        return new Permit(null);
+    }
+
+    /**
+     * 申请一个批量打包的输出名额，同时占用一个普通输出名额
+     *
+     * @return 输出名额，批量打包或全部输出达到并发上限时返回null
+     */
+    public Permit tryAcquireBatch() {
+        if (!batchPermits.tryAcquire()) {
+            log.warn("同时进行的批量打包下载已达上限: {}", fileProperties.getDownload().getBatchMaxConcurrent());
+            return null;
+        }
+        if (!transferPermits.tryAcquire()) {
+            batchPermits.release();
+            log.warn("同时输出的响应数已达上限: {}", fileProperties.getDownload().getMaxConcurrentTransfers());
+            return null;
+        }
+        return new Permit(batchPermits);
+    }
+
+    /**
+     * 当前正在输出的响应数
+     */
+    public int getActiveTransfers() {
+        return fileProperties.getDownload().getMaxConcurrentTransfers() - transferPermits.availablePermits();
+    }
+
+    /**
+     * 输出响应体，响应状态和响应头需已设置；输出结束（包括失败和客户端断开）时释放输出名额
+     *
+     * @param request       HTTP请求对象
+     * @param response      HTTP响应对象
+     * @param file          输出的文件
+     * @param writer        范围内容输出方式，为空时输出文件原始字节
+     * @param parts         按顺序输出的各部分
+     * @param contentLength 响应体总长度
+     * @param trafficClass  流量类别，决定带宽分配的权重
+     * @param permit        输出名额
+     */
+    public void send(HttpServletRequest request, HttpServletResponse response, File file,
+                     FileTransferUtil.RangeWriter writer, List<BodyPart> parts, long contentLength,
+                     TrafficClass trafficClass, Permit permit) throws Exception {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            FileTransferUtil.RangeWriter rangeWriter = writer != null ? writer : FileTransferUtil.rawRangeWriter();
+            if (isAsyncApplicable(request, contentLength)) {
+                ServletOutputStream out = response.getOutputStream();
+                AsyncContext asyncContext = request.startAsync();
+                Integer timeout = fileProperties.getDownload().getAsyncTimeoutSeconds();
+                asyncContext.setTimeout(timeout != null && timeout > 0 ? TimeUnit.SECONDS.toMillis(timeout) : 0);
+                Transfer transfer = new Transfer(asyncContext, out, channel, writer, parts.iterator(), permit);
+                asyncContext.addListener(transfer);
+                // 带宽调度中的连接在其余准备完成后才打开，之后的失败由 Transfer 统一释放，不会残留在调度中
+                if (bandwidthScheduler != null) {
+                    transfer.connection = bandwidthScheduler.open(clientKeyOf(request), trafficClass, transfer::resume);
+                }
+                // 交给容器在连接可写时回调，资源由 Transfer 结束时释放
+                channel = null;
+                permit = null;
+                try {
+                    out.setWriteListener(transfer);
+                } catch (RuntimeException e) {
+                    transfer.release(e);
+                    throw e;
+                }
+                return;
+            }
+            OutputStream out = response.getOutputStream();
+            BoundedOutputStream bounded = null;
+            if (bandwidthScheduler != null) {
+                bounded = new BoundedOutputStream(out, clientKeyOf(request), trafficClass, 0);
+                out = bounded;
+            }
+            try {
+                for (BodyPart part : parts) {
+                    if (part.getPrefix() != null) {
+                        out.write(part.getPrefix());
+                    }
+                    if (part.getLength() > 0) {
+                        rangeWriter.write(channel, part.getStart(), part.getLength(), out);
+                    }
+                }
+                out.flush();
+            } finally {
+                if (bounded != null) {
+                    bounded.release();
+                }
+            }
+        } finally {
+            closeQuietly(channel);
+            if (permit != null) {
+                permit.close();
+            }
+        }
+    }
+
+    /**
+     * 同步输出长度未知的流式响应体（如边读边打包的ZIP），响应状态和响应头需已设置；
+     * 限速时按带宽调度阻塞等待，超过 asyncTimeoutSeconds 时下一次写出抛出 {@link InterruptedIOException}，
+     * 输出结束（包括失败和客户端断开）时释放输出名额
+     *
+     * @param request      HTTP请求对象
+     * @param response     HTTP响应对象
+     * @param body         写出响应体
+     * @param trafficClass 流量类别，决定带宽分配的权重
+     * @param permit       输出名额
+     */
+    public void sendStream(HttpServletRequest request, HttpServletResponse response, StreamBody body,
+                           TrafficClass trafficClass, Permit permit) throws Exception {
+        BoundedOutputStream bounded = null;
+        try {
+            Integer timeout = fileProperties.getDownload().getAsyncTimeoutSeconds();
+            bounded = new BoundedOutputStream(response.getOutputStream(), clientKeyOf(request), trafficClass,
+                    timeout != null && timeout > 0 ? TimeUnit.SECONDS.toMillis(timeout) : 0);
+            body.writeTo(bounded);
+        } finally {
+            if (bounded != null) {
+                bounded.release();
+            }
+            permit.close();
+        }
+    }
+
+    private boolean isAsyncApplicable(HttpServletRequest request, long contentLength) {
+        FileProperties.Download download = fileProperties.getDownload();
+        return Boolean.TRUE.equals(download.getAsyncEnabled()) && request.isAsyncSupported()
+                && contentLength >= download.getAsyncThreshold();
+    }
+
+    /**
+     * 带宽分配使用的用户标识：登录用户 → 受信任代理传入的请求头或 X-Forwarded-For → 客户端地址
+     * <p>
+     * 请求头可由客户端任意伪造，只有直连地址在 trustedProxies 中时才采信；
+     * X-Forwarded-For 从右向左跳过受信任的代理，取第一个不受信任的地址。
+     * </p>
+     */
+    String clientKeyOf(HttpServletRequest request) {
+        if (request.getUserPrincipal() != null) {
+            return request.getUserPrincipal().getName();
+        }
+        if (request.getRemoteUser() != null) {
+            return request.getRemoteUser();
+        }
+        List<String> trustedProxies = fileProperties.getDownload().getTrustedProxies();
+        String remoteAddr = request.getRemoteAddr();
+        if (trustedProxies == null || !trustedProxies.contains(remoteAddr)) {
+            return remoteAddr;
+        }
+        String header = fileProperties.getDownload().getClientKeyHeader();
+        if (header != null && !header.isEmpty()) {
+            String value = request.getHeader(header);
+            if (value != null && !value.isBlank()) {
+                return value.trim();
+            }
+        }
+        String forwardedFor = request.getHeader("X-Forwarded-For");
+        if (forwardedFor != null && !forwardedFor.isBlank()) {
+            String[] hops = forwardedFor.split(",");
+            for (int i = hops.length - 1; i >= 0; i--) {
+                String hop = hops[i].trim();
+                if (!hop.isEmpty() && !trustedProxies.contains(hop)) {
+                    return hop;
+                }
+            }
+        }
+        return remoteAddr;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        resumeScheduler.shutdownNow();
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("关闭文件通道失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 流量类别
+     */
+    public enum TrafficClass {
+        INTERACTIVE,    // 在线预览、播放，对延迟敏感
+        BULK            // 文件下载、批量导出，使用剩余带宽
+    }
+
+    /**
+     * 流式响应体
+     */
+    @FunctionalInterface
+    public interface StreamBody {
+
+        /**
+         * @param out 响应输出流
+         */
+        void writeTo(OutputStream out) throws Exception;
+    }
+
+    /**
+     * 响应体的一部分：可选的前缀字节（如multipart各部分的头）加文件中的一个范围
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class BodyPart {
+
+        private final byte[] prefix;
+
+        private final long start;
+
+        private final long length;
+
+        public static BodyPart range(long start, long length) {
+            return new BodyPart(null, start, length);
+        }
+
+        public static BodyPart bytes(byte[] prefix) {
+            return new BodyPart(prefix, 0, 0);
+        }
+    }
+
+    /**
+     * 输出名额
+     */
+    public class Permit implements AutoCloseable {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        /**
+         * 同时占用的批量打包名额，普通输出为null
+         */
+        private final Semaphore batch;
+
+        private Permit(Semaphore batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                transferPermits.release();
+                if (batch != null) {
+                    batch.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * 可复用的块缓冲区，RangeWriter 写入后直接取底层数组写出
+     */
+    private static final class ChunkBuffer extends ByteArrayOutputStream {
+
+        ChunkBuffer(int size) {
+            super(size);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    /**
+     * 同步输出流：限速时按带宽调度阻塞等待，设置了超时时间时超时后的写出抛出 {@link InterruptedIOException}
+     */
+    private final class BoundedOutputStream extends FilterOutputStream {
+
+        private final Semaphore resumed = new Semaphore(0);
+
+        /**
+         * 带宽调度中的连接，未限速时为null
+         */
+        private final BandwidthScheduler.Connection connection;
+
+        private final ScheduledFuture<?> expiry;
+
+        private volatile boolean expired;
+
+        BoundedOutputStream(OutputStream out, String clientKey, TrafficClass trafficClass, long timeoutMillis) {
+            super(out);
+            this.connection = bandwidthScheduler != null
+                    ? bandwidthScheduler.open(clientKey, trafficClass, resumed::release) : null;
+            this.expiry = timeoutMillis > 0 ? resumeScheduler.schedule(() -> {
+                expired = true;
+                // 唤醒限速等待
+                resumed.release();
+            }, timeoutMillis, TimeUnit.MILLISECONDS) : null;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (expired) {
+                    throw new InterruptedIOException("输出超时");
+                }
+                int n = connection != null ? (int) bandwidthScheduler.acquire(connection, len) : len;
+                if (n == 0) {
+                    // 已排队或定时等待，恢复前重新申请不会拿到带宽，一直等到 resumer 通知
+                    try {
+                        resumed.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("输出限速等待被中断");
+                    }
+                    continue;
+                }
+                out.write(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * 输出结束后释放带宽连接和超时任务
+         */
+        void release() {
+            if (expiry != null) {
+                expiry.cancel(false);
+            }
+            if (connection != null) {
+                bandwidthScheduler.close(connection);
+            }
+        }
+    }
+
+    /**
+     * 一个异步输出中的响应：连接可写时逐块读取（经 RangeWriter，可实时解密）并写出，直到不可写、需要限速等待或全部写完
+     */
+    private final class Transfer implements WriteListener, AsyncListener {
+
+        private final AsyncContext asyncContext;
+
+        private final ServletOutputStream out;
+
+        private final FileChannel channel;
+
+        private final FileTransferUtil.RangeWriter writer;
+
+        private final Iterator<BodyPart> parts;
+
+        private final Permit permit;
+
+        private final ChunkBuffer chunk = new ChunkBuffer(FileConstant.STREAM_BUFFER_SIZE);
+
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        /**
+         * 带宽调度中的连接，未限速时为null
+         */
+        private BandwidthScheduler.Connection connection;
+
+        private BodyPart current;
+
+        private boolean prefixWritten;
+
+        private long position;
+
+        private long remaining;
+
+        Transfer(AsyncContext asyncContext, ServletOutputStream out, FileChannel channel,
+                 FileTransferUtil.RangeWriter writer, Iterator<BodyPart> parts, Permit permit) {
+            this.asyncContext = asyncContext;
+            this.out = out;
+            this.channel = channel;
+            this.writer = writer;
+            this.parts = parts;
+            this.permit = permit;
+        }
+
+        @Override
+        public void onWritePossible() {
+            pump();
+        }
+
+        /**
+         * 写到连接不可写为止（isReady返回false后由容器在可写时再次回调），或令牌不足时定时恢复
+         */
+        private synchronized void pump() {
+            if (finished.get()) {
+                return;
+            }
+            try {
+                while (out.isReady()) {
+                    if (current == null || (prefixWritten && remaining == 0)) {
+                        if (!parts.hasNext()) {
+                            finish(null);
+                            return;
+                        }
+                        current = parts.next();
+                        prefixWritten = false;
+                        position = current.getStart();
+                        remaining = current.getLength();
+                    }
+                    if (!prefixWritten) {
+                        prefixWritten = true;
+                        if (current.getPrefix() != null) {
+                            out.write(current.getPrefix());
+                        }
+                        continue;
+                    }
+                    long length = Math.min(remaining, FileConstant.STREAM_BUFFER_SIZE);
+                    if (connection != null) {
+                        // 带宽不足时挂起，由带宽调度在分到带宽后恢复
+                        length = bandwidthScheduler.acquire(connection, length);
+                        if (length == 0) {
+                            return;
+                        }
+                    }
+                    int n = readChunk((int) length);
+                    out.write(chunk.array(), 0, n);
+                    position += length;
+                    remaining -= length;
+                }
+            } catch (Throwable t) {
+                finish(t);
+            }
+        }
+
+        /**
+         * 读取下一块到块缓冲区：原始字节直接从文件读入，不经过 RangeWriter 的临时缓冲区
+         */
+        private int readChunk(int length) throws Exception {
+            chunk.reset();
+            if (writer != null) {
+                writer.write(channel, position, length, chunk);
+                return chunk.size();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(chunk.array(), 0, length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) == -1) {
+                    throw new EOFException("文件长度不足: 位置 " + (position + buffer.position()));
+                }
+            }
+            return length;
+        }
+
+        private void resume() {
+            if (finished.get()) {
+                return;
+            }
+            try {
+                asyncContext.start(this::pump);
+            } catch (IllegalStateException e) {
+                // 异步请求已结束（超时或连接关闭）
+                release(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            finish(t);
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release(null);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            finish(new TimeoutException("异步输出超时"));
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            finish(event.getThrowable());
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+
+        private void finish(Throwable error) {
+            if (release(error)) {
+                try {
+                    asyncContext.complete();
+                } catch (IllegalStateException e) {
+                    log.debug("异步请求已结束: {}", e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * 释放文件通道和输出名额，只执行一次
+         *
+         * @return 是否为本次释放
+         */
+        private boolean release(Throwable error) {
+            if (!finished.compareAndSet(false, true)) {
+                return false;
+            }
+            if (error != null) {
+                // 客户端中途断开是常见情况，不按错误记录
+                log.info("异步输出中断, 已输出至: {}, 原因: {}", position, error.toString());
+            }
+            closeQuietly(channel);
+            if (connection != null) {
+                bandwidthScheduler.close(connection);
+            }
+            permit.close();
+            return true;
+        }
+    }
+}
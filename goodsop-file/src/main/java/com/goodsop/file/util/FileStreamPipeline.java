@@ -0,0 +1,542 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.constant.FileConstant;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 文件流式处理管道
+ * <p>
+ * 将 源数据 -> AES/CTR解密 -> GZIP/ZIP/ZSTD/LZ4解压 -> MD5摘要 -> [静态加密] -> 目标文件通道 组合为一次读取、一次写入，
+ * 不再产生 .decrypted / .decompressed 等中间文件，最终文件写完时MD5也已同时得出。
+ * 启用静态加密时MD5仍按明文计算（去重和校验都基于明文），写入磁盘的是 IV + AES/CTR密文。
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FileStreamPipeline {
+
+    private final FileEncryptUtil fileEncryptUtil;
+
+    private final FileCompressUtil fileCompressUtil;
+
+    /**
+     * 处理磁盘上的源文件（如分块合并后的文件）并写入目标文件
+     * 不需要解密和解压时直接重命名源文件，已知源数据MD5（如分块上传时增量计算得出）时不再读取文件，否则只做一次MD5读取
+     *
+     * @param sourceFile 源文件
+     * @param targetFile 目标文件
+     * @param options    处理选项
+     * @return 处理结果
+     */
+    public PipelineResult processFile(File sourceFile, File targetFile, PipelineOptions options) throws IOException {
+        if (!options.isDecrypt() && !options.isDecompress() && !options.isEncryptAtRest()) {
+            if (!sourceFile.equals(targetFile)) {
+                Files.move(sourceFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            String md5 = options.getSourceMd5() != null ? options.getSourceMd5() : fileEncryptUtil.calculateMD5(targetFile);
+            PipelineResult result = new PipelineResult()
+                    .setTargetFile(targetFile)
+                    .setBytesWritten(targetFile.length())
+                    .setMd5(md5)
+                    .setSourceMd5(md5);
+            log.info("文件无需处理，直接落盘: {}, 大小: {}", targetFile.getAbsolutePath(), result.getBytesWritten());
+            return result;
+        }
+
+        PipelineResult result = options.isDecrypt() && !options.isDecompress() && !options.isEncryptAtRest()
+                ? decryptInParallel(sourceFile, targetFile, options) : null;
+        if (result == null) {
+            result = process(new FileSystemResource(sourceFile), targetFile, options);
+        }
+        if (!sourceFile.equals(targetFile) && sourceFile.exists() && !sourceFile.delete()) {
+            log.warn("删除处理前的源文件失败: {}", sourceFile.getAbsolutePath());
+        }
+        return result;
+    }
+
+    /**
+     * 只需解密的大文件按块并行解密（AES/CTR可从任意块开始解密），目标文件的MD5和未知的源数据MD5
+     * 在解密的同时按块顺序计算，源文件只读取一次、目标文件只写入一次
+     *
+     * @return 处理结果，文件未达到并行解密阈值或解密初始化失败时返回null，由流式处理按原有方式处理
+     */
+    private PipelineResult decryptInParallel(File sourceFile, File targetFile, PipelineOptions options) throws IOException {
+        long length = sourceFile.length() - FileConstant.IV_SIZE;
+        if (!fileEncryptUtil.shouldDecryptInParallel(length)) {
+            return null;
+        }
+        SecretKey secretKey = fileEncryptUtil.resolveDecryptKey(options.getAesKey());
+        MessageDigest md5 = newMd5Digest();
+        MessageDigest sourceMd5 = options.isDigestSource() && options.getSourceMd5() == null ? newMd5Digest() : null;
+        Path partPath = partPathOf(targetFile);
+
+        try (FileChannel in = FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(partPath, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer iv = ByteBuffer.allocate(FileConstant.IV_SIZE);
+            while (iv.hasRemaining()) {
+                if (in.read(iv, iv.position()) < 0) {
+                    throw new IOException("无法读取完整的IV: " + sourceFile.getAbsolutePath());
+                }
+            }
+            if (sourceMd5 != null) {
+                sourceMd5.update(iv.array());
+            }
+            fileEncryptUtil.decryptParallel(in, FileConstant.IV_SIZE, length, out, secretKey, iv.array(), md5, sourceMd5);
+        } catch (GeneralSecurityException e) {
+            Files.deleteIfExists(partPath);
+            log.warn("并行解密初始化失败，改为流式处理: {}, 异常: {}", sourceFile.getAbsolutePath(), e.getMessage());
+            return null;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partPath);
+            throw e;
+        }
+
+        PipelineResult result = new PipelineResult()
+                .setTargetFile(targetFile)
+                .setBytesWritten(length)
+                .setDecrypted(true)
+                .setMd5(FileEncryptUtil.toHex(md5.digest()))
+                .setSourceMd5(options.getSourceMd5() != null ? options.getSourceMd5()
+                        : sourceMd5 != null ? FileEncryptUtil.toHex(sourceMd5.digest()) : null);
+        // 源文件读取结束后再替换，源文件与目标文件同名时也是安全的
+        Files.move(partPath, targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        log.info("文件并行解密完成: {}, 大小: {}", targetFile.getAbsolutePath(), length);
+        return result;
+    }
+
+    /**
+     * 按选项组合处理阶段，一次读取源数据、一次写入目标文件
+     * 解密阶段初始化失败时保留密文，解压阶段失败时保留压缩数据（仅在失败时才会重新读取一次源数据）
+     *
+     * @param source     数据源（MultipartFile、FileSystemResource等）
+     * @param targetFile 目标文件
+     * @param options    处理选项
+     * @return 处理结果
+     */
+    public PipelineResult process(InputStreamSource source, File targetFile, PipelineOptions options) throws IOException {
+        File parentDir = targetFile.getParentFile();
+        if (parentDir != null && !parentDir.exists()) {
+            boolean created = parentDir.mkdirs();
+            log.info("创建目标文件目录: {} 结果: {}", parentDir.getAbsolutePath(), created ? "成功" : "失败");
+        }
+
+        SecretKey secretKey = options.isDecrypt() ? fileEncryptUtil.resolveDecryptKey(options.getAesKey()) : null;
+        SecretKey atRestKey = options.isEncryptAtRest() ? fileEncryptUtil.resolveDecryptKey(options.getAtRestKey()) : null;
+        boolean decompress = options.isDecompress();
+        // 源数据MD5未知时在读取源数据的同时计算，不额外读取
+        boolean digestSource = options.isDigestSource() && options.getSourceMd5() == null;
+        int zipMaxEntries = decompress ? Math.max(options.getZipMaxEntries(), 1) : 1;
+
+        PipelineResult result;
+        try {
+            try {
+                result = transfer(source, targetFile, secretKey, decompress, digestSource, atRestKey, zipMaxEntries);
+            } catch (IOException e) {
+                if (!decompress) {
+                    throw e;
+                }
+                log.warn("流式解压失败，将保留压缩数据重新处理: {}, 异常: {}", targetFile.getAbsolutePath(), e.getMessage());
+                result = transfer(source, targetFile, secretKey, false, digestSource, atRestKey, 1);
+            }
+        } catch (GeneralSecurityException e) {
+            // 静态加密初始化失败已在写入时转为IOException，这里只会是客户端密文的解密失败
+            log.warn("初始化解密失败，将保留原始加密数据: {}, 异常: {}", targetFile.getAbsolutePath(), e.getMessage());
+            try {
+                // 保留的已是客户端密文，不再做静态加密
+                result = transfer(source, targetFile, null, decompress, digestSource, null, zipMaxEntries);
+            } catch (GeneralSecurityException unexpected) {
+                throw new IOException("文件流式处理失败", unexpected);
+            }
+        }
+        if (options.getSourceMd5() != null) {
+            result.setSourceMd5(options.getSourceMd5());
+        }
+        return result;
+    }
+
+    /**
+     * 执行一次完整的读取-处理-写入，atRestKey 不为空时写入前按AES/CTR加密（文件开头写入随机IV）
+     */
+    private PipelineResult transfer(InputStreamSource source, File targetFile, SecretKey secretKey, boolean decompress,
+                                    boolean digestSource, SecretKey atRestKey, int zipMaxEntries)
+            throws IOException, GeneralSecurityException {
+        PipelineResult result = new PipelineResult().setTargetFile(targetFile);
+        MessageDigest md5 = newMd5Digest();
+        MessageDigest sourceMd5 = digestSource ? newMd5Digest() : null;
+        Path partPath = partPathOf(targetFile);
+
+        InputStream raw = source.getInputStream();
+        if (sourceMd5 != null) {
+            raw = new DigestInputStream(raw, sourceMd5);
+        }
+        byte[] buffer = new byte[FileConstant.STREAM_BUFFER_SIZE];
+        try (InputStream sourceIn = raw;
+             InputStream in = openStages(sourceIn, secretKey, decompress, result)) {
+            result.setBytesWritten(writePart(in, partPath, md5, buffer, atRestKey, result));
+            if (zipMaxEntries > 1 && in instanceof ZipInputStream) {
+                // 第一个条目已写入目标文件，其余条目逐个直接写入同目录下的独立文件
+                extractRemainingEntries((ZipInputStream) in, targetFile, buffer, atRestKey, zipMaxEntries - 1, result);
+            }
+            if (sourceMd5 != null) {
+                // 解压只读取到第一个条目/压缩流末尾，剩余的源数据也要计入源数据MD5
+                while (sourceIn.read(buffer) != -1) {
+                    // 仅为更新摘要
+                }
+            }
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            Files.deleteIfExists(partPath);
+            for (PipelineResult entry : result.getEntries()) {
+                Files.deleteIfExists(partPathOf(entry.getTargetFile()));
+            }
+            throw e;
+        }
+
+        // 源数据流已关闭，即使源文件与目标文件同名也可以安全替换
+        Files.move(partPath, targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        for (PipelineResult entry : result.getEntries()) {
+            // 条目文件名在写入前已预留，不覆盖任何已有文件；期间被其他程序占用时上传失败
+            Files.move(partPathOf(entry.getTargetFile()), entry.getTargetFile().toPath());
+        }
+        result.setMd5(FileEncryptUtil.toHex(md5.digest()));
+        if (sourceMd5 != null) {
+            result.setSourceMd5(FileEncryptUtil.toHex(sourceMd5.digest()));
+        }
+
+        log.info("文件流式处理完成: {}, 大小: {}, 解密: {}, 解压: {}({}), 静态加密: {}, ZIP其他条目: {}", targetFile.getAbsolutePath(),
+                result.getBytesWritten(), result.isDecrypted(), result.isDecompressed(), result.getCompressionType(),
+                result.isEncryptedAtRest(), result.getEntries().size());
+        return result;
+    }
+
+    /**
+     * 将数据流写入临时文件（同时更新MD5），atRestKey 不为空时先写入随机IV再写入AES/CTR密文
+     *
+     * @return 写入的明文字节数
+     */
+    private long writePart(InputStream in, Path partPath, MessageDigest md5, byte[] buffer, SecretKey atRestKey,
+                           PipelineResult result) throws IOException, GeneralSecurityException {
+        byte[] atRestIv = atRestKey != null ? fileEncryptUtil.generateIv() : null;
+        try (AesCtrCipherPool.Lease encryptLease = atRestKey != null ? acquireAtRestCipher(atRestKey, atRestIv) : null;
+             FileChannel out = FileChannel.open(partPath, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            byte[] encrypted = encryptLease != null ? new byte[buffer.length] : null;
+            ByteBuffer byteBuffer = ByteBuffer.wrap(encrypted != null ? encrypted : buffer);
+            if (encryptLease != null) {
+                ByteBuffer ivBuffer = ByteBuffer.wrap(atRestIv);
+                while (ivBuffer.hasRemaining()) {
+                    out.write(ivBuffer);
+                }
+                result.setEncryptedAtRest(true);
+            }
+            long total = 0;
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                if (len == 0) {
+                    continue;
+                }
+                md5.update(buffer, 0, len);
+                if (encryptLease != null) {
+                    // CTR模式update的输出长度等于输入长度
+                    encryptLease.getCipher().update(buffer, 0, len, encrypted, 0);
+                }
+                byteBuffer.clear().limit(len);
+                while (byteBuffer.hasRemaining()) {
+                    out.write(byteBuffer);
+                }
+                total += len;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * 把ZIP中第一个条目之后的文件条目逐个写入目标文件同目录下以条目名命名的文件，每个条目单独计算MD5，
+     * 目录条目和超出数量上限的条目跳过（只在内存中读过，不落盘）
+     */
+    private void extractRemainingEntries(ZipInputStream zipIn, File targetFile, byte[] buffer, SecretKey atRestKey,
+                                         int maxEntries, PipelineResult result) throws IOException, GeneralSecurityException {
+        File dir = targetFile.getParentFile();
+        ZipEntry entry;
+        while ((entry = zipIn.getNextEntry()) != null) {
+            if (entry.isDirectory()) {
+                continue;
+            }
+            if (result.getEntries().size() >= maxEntries) {
+                log.warn("ZIP文件条目数超过上限 {}，跳过其余条目，从 {} 开始", maxEntries + 1, entry.getName());
+                break;
+            }
+            File entryFile = reserveEntryFile(dir, entry.getName());
+            MessageDigest entryMd5 = newMd5Digest();
+            PipelineResult entryResult = new PipelineResult()
+                    .setTargetFile(entryFile)
+                    .setEntryName(entry.getName())
+                    .setDecrypted(result.isDecrypted())
+                    .setDecompressed(true)
+                    .setCompressionType(FileCompressUtil.CompressionType.ZIP);
+            // 先登记再写入，失败时与其他条目一起清理预留的临时文件
+            result.getEntries().add(entryResult);
+            entryResult.setBytesWritten(writePart(zipIn, partPathOf(entryFile), entryMd5, buffer, atRestKey, entryResult));
+            entryResult.setMd5(FileEncryptUtil.toHex(entryMd5.digest()));
+            log.info("流式解压ZIP条目: {} -> {}, 大小: {}", entry.getName(), entryFile.getAbsolutePath(), entryResult.getBytesWritten());
+        }
+    }
+
+    /**
+     * 预留ZIP条目解压后的文件名：只取条目路径的最后一段（防止 ../ 跳出目标目录），
+     * 以 CREATE_NEW 创建对应的临时文件占位，已有同名文件或临时文件（其他上传正在写入）时追加序号重试，
+     * 多个上传同时解压到同一目录也不会选中同一个文件名
+     *
+     * @param dir       目标目录
+     * @param entryName 条目名
+     * @return 条目对应的文件（其临时文件已创建）
+     */
+    static File reserveEntryFile(File dir, String entryName) throws IOException {
+        String name = FilenameUtils.getName(entryName);
+        if (name.isEmpty() || ".".equals(name) || "..".equals(name)) {
+            name = "entry";
+        }
+        String baseName = FilenameUtils.removeExtension(name);
+        String extension = FilenameUtils.getExtension(name);
+        String candidate = name;
+        for (int i = 1; ; i++) {
+            File entryFile = new File(dir, candidate);
+            try {
+                Files.createFile(partPathOf(entryFile));
+                if (!entryFile.exists()) {
+                    return entryFile;
+                }
+                Files.deleteIfExists(partPathOf(entryFile));
+            } catch (FileAlreadyExistsException e) {
+                // 其他上传正在写入同名条目
+            }
+            candidate = baseName + "_" + i + (extension.isEmpty() ? "" : "." + extension);
+        }
+    }
+
+    private static Path partPathOf(File targetFile) {
+        return new File(targetFile.getParentFile(), targetFile.getName() + FileConstant.PIPELINE_FILE_SUFFIX).toPath();
+    }
+
+    /**
+     * 借出静态加密使用的Cipher；初始化失败时上传失败，不能退回为明文写入磁盘
+     */
+    private AesCtrCipherPool.Lease acquireAtRestCipher(SecretKey atRestKey, byte[] iv) throws IOException {
+        try {
+            return fileEncryptUtil.getCipherPool().acquire(Cipher.ENCRYPT_MODE, atRestKey, iv);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("初始化静态加密失败", e);
+        }
+    }
+
+    /**
+     * 组合处理阶段，返回最终输出的数据流
+     */
+    private InputStream openStages(InputStream raw, SecretKey secretKey, boolean decompress, PipelineResult result)
+            throws IOException, GeneralSecurityException {
+        try {
+            InputStream in = new BufferedInputStream(raw, FileConstant.STREAM_BUFFER_SIZE);
+            if (secretKey != null) {
+                in = decryptStage(in, secretKey, result);
+            }
+            if (decompress) {
+                in = inflateStage(in, result);
+            }
+            return in;
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            raw.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 解密阶段：读取前16字节IV，后续数据按AES/CTR流式解密
+     *
+     * @param in        输入流
+     * @param secretKey 解密密钥
+     * @param result    处理结果（记录是否实际解密）
+     * @return 解密后的数据流
+     */
+    public InputStream decryptStage(InputStream in, SecretKey secretKey, PipelineResult result)
+            throws IOException, GeneralSecurityException {
+        byte[] iv = in.readNBytes(FileConstant.IV_SIZE);
+        if (iv.length != FileConstant.IV_SIZE) {
+            log.warn("无法读取完整的IV，可能不是加密数据，将原样保留");
+            return new SequenceInputStream(new ByteArrayInputStream(iv), in);
+        }
+
+        InputStream decrypted = fileEncryptUtil.openDecryptStream(in, secretKey, iv);
+        result.setDecrypted(true);
+        return decrypted;
+    }
+
+    /**
+     * 解压阶段：根据数据头部魔数选择编解码器（GZIP/ZSTD/LZ4，ZIP取第一个文件条目），非压缩数据直接透传
+     *
+     * @param in     输入流
+     * @param result 处理结果（记录压缩类型）
+     * @return 解压后的数据流
+     */
+    public InputStream inflateStage(InputStream in, PipelineResult result) throws IOException {
+        InputStream markable = in.markSupported() ? in : new BufferedInputStream(in, FileConstant.STREAM_BUFFER_SIZE);
+        markable.mark(4);
+        byte[] signature = markable.readNBytes(4);
+        markable.reset();
+
+        FileCompressUtil.CompressionType type = fileCompressUtil.detectBySignature(signature);
+        result.setCompressionType(type);
+        if (type == FileCompressUtil.CompressionType.NONE) {
+            // 与FileCompressUtil.decompressFile保持一致：非压缩数据原样输出视为处理成功
+            log.warn("数据不是压缩格式或无法识别压缩格式，将原样输出");
+            result.setDecompressed(true);
+            return markable;
+        }
+        InputStream decompressed = fileCompressUtil.getCodec(type).decompress(markable);
+        result.setDecompressed(true);
+        return decompressed;
+    }
+
+    private MessageDigest newMd5Digest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("MD5算法不可用", e);
+        }
+    }
+
+    /**
+     * 处理选项
+     */
+    @Data
+    @Accessors(chain = true)
+    public static class PipelineOptions {
+        /**
+         * 是否解密
+         */
+        private boolean decrypt;
+
+        /**
+         * 解密客户端密文使用的AES密钥
+         */
+        private String aesKey;
+
+        /**
+         * 是否解压
+         */
+        private boolean decompress;
+
+        /**
+         * 是否对写入磁盘的最终文件做静态加密（AES/CTR，使用 atRestKey，每个文件随机IV）
+         */
+        private boolean encryptAtRest;
+
+        /**
+         * 静态加密使用的AES密钥
+         */
+        private String atRestKey;
+
+        /**
+         * 解压ZIP时最多写出的文件条目数：1 只保留第一个文件，大于1时其余条目写入目标文件同目录下的独立文件
+         */
+        private int zipMaxEntries = 1;
+
+        /**
+         * 已知的源数据MD5（分块上传时增量计算得出），为空表示未知
+         */
+        private String sourceMd5;
+
+        /**
+         * 源数据MD5未知时是否在读取源数据的同时计算
+         */
+        private boolean digestSource;
+    }
+
+    /**
+     * 处理结果
+     */
+    @Data
+    @Accessors(chain = true)
+    public static class PipelineResult {
+        /**
+         * 最终写入的目标文件
+         */
+        private File targetFile;
+
+        /**
+         * 写入目标文件的明文字节数（静态加密时文件实际大小另加16字节IV）
+         */
+        private long bytesWritten;
+
+        /**
+         * 目标文件内容（明文）的MD5值
+         */
+        private String md5;
+
+        /**
+         * 源数据（解密、解压前）的MD5值，未要求计算时为空
+         */
+        private String sourceMd5;
+
+        /**
+         * 是否实际完成解密
+         */
+        private boolean decrypted;
+
+        /**
+         * 是否实际完成解压（非压缩数据原样透传也视为完成）
+         */
+        private boolean decompressed;
+
+        /**
+         * 目标文件是否以静态加密形式写入
+         */
+        private boolean encryptedAtRest;
+
+        /**
+         * 检测到的压缩类型
+         */
+        private FileCompressUtil.CompressionType compressionType = FileCompressUtil.CompressionType.NONE;
+
+        /**
+         * ZIP条目名（仅ZIP其他条目的结果有值）
+         */
+        private String entryName;
+
+        /**
+         * ZIP中第一个文件之后的其他文件条目的处理结果（zipMaxEntries 大于1时才会有）
+         */
+        private List<PipelineResult> entries = new ArrayList<>();
+    }
+}
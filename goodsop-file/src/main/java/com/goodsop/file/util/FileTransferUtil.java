@@ -1,22 +1,35 @@
 package com.goodsop.file.util;
 
+import com.goodsop.file.config.FileProperties;
 import com.goodsop.file.constant.FileConstant;
+import com.goodsop.file.exception.ChunkChecksumException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.Data;
+import lombok.experimental.Accessors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 文件传输工具类
@@ -26,9 +39,39 @@ import java.util.concurrent.ConcurrentHashMap;
 public class FileTransferUtil {
 
     /**
-     * 扩展名缓存，用于存储原始文件扩展名
+     * Tomcat sendfile 相关的请求属性
      */
-    private static final Map<String, String> EXTENSION_CACHE = new ConcurrentHashMap<>();
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+    
+    /**
+     * 批量打包时列出缺失文件的条目名
+     */
+    static final String ZIP_MISSING_ENTRY = "MISSING.txt";
+
+    private final FileProperties fileProperties;
+    
+    private final UploadSessionRegistry uploadSessionRegistry;
+    
+    /**
+     * 上传元数据缓存，用于存储原始文件扩展名
+     */
+    private final UploadMetadataCache uploadMetadataCache;
+    
+    /**
+     * 下载和预览的响应体输出（异步输出及并发、带宽预算）
+     */
+    private final FileSender fileSender;
+    
+    public FileTransferUtil(FileProperties fileProperties, UploadSessionRegistry uploadSessionRegistry,
+                            UploadMetadataCache uploadMetadataCache, FileSender fileSender) {
+        this.fileProperties = fileProperties;
+        this.uploadSessionRegistry = uploadSessionRegistry;
+        this.uploadMetadataCache = uploadMetadataCache;
+        this.fileSender = fileSender;
+    }
 
     /**
      * 存储上传的文件
@@ -145,9 +188,58 @@ public class FileTransferUtil {
      * @param chunk     当前块索引
      * @param chunks    总块数
      * @return 如果是最后一块，返回合并后的文件；否则返回null
+     * @deprecated 未区分设备，不同设备的同名上传会共用一个会话，请使用
+     * {@link #storeFileChunk(MultipartFile, String, String, String, Integer, Integer, Long)}
      */
+    @Deprecated
     public File storeFileChunk(MultipartFile file, String directory, String fileName, 
                                Integer chunk, Integer chunks) {
+        return storeFileChunk(file, directory, null, fileName, chunk, chunks, null);
+    }
+    
+    /**
+     * 分块上传文件（断点续传）
+     * 
+     * @param file      文件块
+     * @param directory 存储目录
+     * @param deviceId  设备ID，与文件名一起确定上传会话
+     * @param fileName  文件名
+     * @param chunk     当前块索引
+     * @param chunks    总块数
+     * @param chunkSize 分块大小（除最后一块外每块的字节数），为空时根据非最后一块的大小推断
+     * @return 如果是最后一块，返回合并后的文件；否则返回null
+     */
+    public File storeFileChunk(MultipartFile file, String directory, String deviceId, String fileName,
+                               Integer chunk, Integer chunks, Long chunkSize) {
+        UploadSession session = uploadSessionRegistry.getOrCreate(deviceId, fileName, chunks);
+        return storeFileChunk(file, directory, fileName, session, chunk, chunkSize);
+    }
+    
+    /**
+     * 分块上传文件（断点续传），分块完成情况记录在上传会话中
+     * 
+     * @param file      文件块
+     * @param directory 存储目录
+     * @param fileName  文件名（临时目录名）
+     * @param session   上传会话
+     * @param chunk     当前块索引
+     * @param chunkSize 分块大小（除最后一块外每块的字节数），为空时根据非最后一块的大小推断
+     * @return 如果是完成上传的那一块，返回合并后的文件；否则返回null
+     */
+    public File storeFileChunk(MultipartFile file, String directory, String fileName,
+                               UploadSession session, Integer chunk, Long chunkSize) {
+        return storeFileChunk(file, directory, fileName, session, chunk, chunkSize, null);
+    }
+    
+    /**
+     * 分块上传文件（断点续传），写入时计算分块的CRC32C并与客户端携带的校验值比对
+     * 
+     * @param checksum 分块校验，为空时不计算；校验失败时抛出 {@link ChunkChecksumException}，该分块不会被登记为已上传
+     * @see #storeFileChunk(MultipartFile, String, String, UploadSession, Integer, Long)
+     */
+    public File storeFileChunk(MultipartFile file, String directory, String fileName,
+                               UploadSession session, Integer chunk, Long chunkSize, ChunkChecksum checksum) {
+        int chunks = session.getChunks();
         try {
             // 确保路径中使用一致的分隔符
             directory = directory.replace('\\', '/');
@@ -156,42 +248,68 @@ public class FileTransferUtil {
             Path dirPath = Paths.get(directory);
             Path tempDirPath = Paths.get(directory, "temp", fileName);
             
-            log.info("目录检查 - 主目录: {}", dirPath.toAbsolutePath());
-            log.info("目录检查 - 临时目录: {}", tempDirPath.toAbsolutePath());
+            // 同一上传的目录只需检查创建一次，后续分块（包括并发到达的分块）直接写入
+            if (!session.isDirectoryReady()) {
+                log.info("目录检查 - 主目录: {}", dirPath.toAbsolutePath());
+                log.info("目录检查 - 临时目录: {}", tempDirPath.toAbsolutePath());
             
-            // 先创建主目录
-            if (!Files.exists(dirPath)) {
-                try {
-                    Files.createDirectories(dirPath);
-                    log.info("主目录不存在，已创建: {}", dirPath.toAbsolutePath());
-                } catch (Exception e) {
-                    log.error("创建主目录失败: {}, 错误: {}", dirPath.toAbsolutePath(), e.getMessage());
-                    throw e;
+                // 先创建主目录
+                if (!Files.exists(dirPath)) {
+                    try {
+                        Files.createDirectories(dirPath);
+                        log.info("主目录不存在，已创建: {}", dirPath.toAbsolutePath());
+                    } catch (Exception e) {
+                        log.error("创建主目录失败: {}, 错误: {}", dirPath.toAbsolutePath(), e.getMessage());
+                        throw e;
+                    }
+                } else {
+                    log.info("主目录已存在: {}", dirPath.toAbsolutePath());
                 }
-            } else {
-                log.info("主目录已存在: {}", dirPath.toAbsolutePath());
-            }
             
-            // 然后创建临时目录
-            if (!Files.exists(tempDirPath)) {
-                try {
-                    Files.createDirectories(tempDirPath);
-                    log.info("临时目录不存在，已创建: {}", tempDirPath.toAbsolutePath());
-                } catch (Exception e) {
-                    log.error("创建临时目录失败: {}, 错误: {}", tempDirPath.toAbsolutePath(), e.getMessage());
-                    throw e;
+                // 然后创建临时目录
+                if (!Files.exists(tempDirPath)) {
+                    try {
+                        Files.createDirectories(tempDirPath);
+                        log.info("临时目录不存在，已创建: {}", tempDirPath.toAbsolutePath());
+                    } catch (Exception e) {
+                        log.error("创建临时目录失败: {}, 错误: {}", tempDirPath.toAbsolutePath(), e.getMessage());
+                        throw e;
+                    }
+                } else {
+                    log.info("临时目录已存在: {}", tempDirPath.toAbsolutePath());
+                    if (session.getUploadedChunks() == 0) {
+                        restoreChunks(session, tempDirPath);
+                    }
                 }
-            } else {
-                log.info("临时目录已存在: {}", tempDirPath.toAbsolutePath());
+                session.setDirectoryReady(true);
             }
             
-            // 存储分块文件
-            String chunkFileName = chunk + ".part";
+            if (getChunkStoreMode() == ChunkStoreMode.PREALLOCATED) {
+                return storeChunkPositional(file, dirPath, tempDirPath, fileName, session, chunk, chunkSize, checksum);
+            }
+            
+            // 存储分块文件：先写入临时文件，完整写入后再改名，磁盘上的 .part 文件都是完整的分块
+            String chunkFileName = chunk + FileConstant.CHUNK_PART_SUFFIX;
             Path chunkPath = tempDirPath.resolve(chunkFileName);
-            File chunkFile = chunkPath.toFile();
+            Path writingPath = tempDirPath.resolve(chunkFileName + "." + UUID.randomUUID().toString().replace("-", ""));
             
             try {
-                file.transferTo(chunkFile);
+                ChunkDigest digest = session.getDigest();
+                boolean digesting = digest.claim(chunk);
+                try {
+                    if (digesting || checksum != null) {
+                        // 按顺序到达的分块边写入边计算MD5，携带校验值的分块边写入边计算CRC32C
+                        try (FileChannel out = FileChannel.open(writingPath, StandardOpenOption.CREATE_NEW,
+                                StandardOpenOption.WRITE)) {
+                            writeChunkStreaming(file, out, 0, digesting ? digest : null, checksum, chunk);
+                        }
+                    } else {
+                        file.transferTo(writingPath.toFile());
+                    }
+                    Files.move(writingPath, chunkPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(writingPath);
+                }
                 log.info("分块文件已保存: {}", chunkPath.toAbsolutePath());
             } catch (Exception e) {
                 log.error("保存分块文件失败: {}, 错误: {}", chunkPath.toAbsolutePath(), e.getMessage());
@@ -200,77 +318,30 @@ public class FileTransferUtil {
             
             log.info("分块文件上传: chunk {}/{}, 大小: {}", chunk + 1, chunks, file.getSize());
             
-            // 检查是否已上传所有分块
-            int uploadedCount = getUploadedChunkCount(tempDirPath.toFile());
-            boolean allUploaded = uploadedCount == chunks;
+            // 检查是否已上传所有分块，并发到达的多个最后分块中只有一个能够进入合并
+            session.markChunk(chunk, file.getSize());
+            boolean allUploaded = session.tryComplete();
+            int uploadedCount = session.getUploadedChunks();
             log.info("分块上传状态 - 已上传: {}/{}, 是否全部上传: {}", uploadedCount, chunks, allUploaded);
             
             // 只有当所有分块都上传完成时才合并文件
             if (allUploaded) {
-                // 检查文件名是否符合规范，否则重命名
-                String finalFileName = fileName;
-                if (!isStandardFilename(fileName)) {
-                    // 如果不符合规范，生成随机名称
-                    String extension = "";
-                    if (fileName.contains(".")) {
-                        extension = fileName.substring(fileName.lastIndexOf("."));
-                    } else {
-                        // 如果文件名中没有扩展名，尝试从原始文件名获取
-                        String originalExtension = getOriginalExtensionFromCache(fileName);
-                        if (originalExtension != null && !originalExtension.isEmpty()) {
-                            // 确保扩展名以.开头
-                            extension = originalExtension.startsWith(".") ? originalExtension : "." + originalExtension;
-                            log.info("从缓存获取到原始扩展名: {}", extension);
-                        }
-                    }
-                    finalFileName = UUID.randomUUID().toString() + extension;
-                    log.info("分块上传使用随机文件名: {}", finalFileName);
-                } else {
-                    log.info("分块上传使用标准文件名: {}", finalFileName);
-                    
-                    // 即使是标准文件名，也检查是否包含扩展名
-                    if (!finalFileName.contains(".")) {
-                        // 尝试从缓存获取原始扩展名
-                        String originalExtension = getOriginalExtensionFromCache(fileName);
-                        if (originalExtension != null && !originalExtension.isEmpty()) {
-                            // 确保扩展名以.开头
-                            String extension = originalExtension.startsWith(".") ? originalExtension : "." + originalExtension;
-                            finalFileName += extension;
-                            log.info("为标准格式文件名添加扩展名: {}", finalFileName);
-                        }
-                    }
-                }
-                
-                Path targetPath = dirPath.resolve(finalFileName);
+                Path targetPath = dirPath.resolve(resolveMergedFileName(fileName));
                 File targetFile = targetPath.toFile();
                 log.info("准备合并文件到: {}", targetPath.toAbsolutePath());
                 
                 try {
-                    mergeChunks(tempDirPath.toFile(), targetFile, chunks);
+                    mergeChunks(tempDirPath.toFile(), targetFile, chunks, getMergeMode());
                     log.info("合并文件成功: {}, 大小: {}", targetPath.toAbsolutePath(), targetFile.length());
                 } catch (Exception e) {
                     log.error("合并文件失败: {}, 错误: {}", targetPath.toAbsolutePath(), e.getMessage());
+                    session.resetCompletion();
                     throw e;
                 }
+                uploadSessionRegistry.remove(session);
                 
                 // 删除临时分块文件和目录
-                boolean deleted = deleteDirectory(tempDirPath.toFile());
-                if (!deleted) {
-                    log.warn("临时目录删除不完全，将在JVM退出时尝试再次删除: {}", tempDirPath.toAbsolutePath());
-                    // 注册JVM退出时删除
-                    tempDirPath.toFile().deleteOnExit();
-                    
-                    // 尝试使用File类的delete方法再删除一次
-                    File parentTempDir = new File(directory, "temp");
-                    if (parentTempDir.exists()) {
-                        boolean parentDeleted = parentTempDir.delete();
-                        if (parentDeleted) {
-                            log.info("成功删除父临时目录: {}", parentTempDir.getAbsolutePath());
-                        }
-                    }
-                } else {
-                    log.info("临时目录删除成功: {}", tempDirPath.toAbsolutePath());
-                }
+                cleanupTempDirectory(tempDirPath, directory);
                 
                 // 从文件名缓存中移除当前文件(在FileServiceImpl中实现)
                 
@@ -293,14 +364,215 @@ public class FileTransferUtil {
     }
     
     /**
-     * 获取已上传的分块数量
-     * 
-     * @param tempDir 临时目录
-     * @return 已上传的分块数量
+     * 本节点没有该上传的会话（服务重启、会话过期清理）而临时目录已存在时，按磁盘上已完整写入的分块重建完成情况，
+     * 客户端只需重传缺失的分块：分块文件模式为 {分块索引}.part 文件，预分配模式为 {分块索引}.done 标记文件
      */
-    private int getUploadedChunkCount(File tempDir) {
-        File[] files = tempDir.listFiles((dir, name) -> name.endsWith(".part"));
-        return files != null ? files.length : 0;
+    private void restoreChunks(UploadSession session, Path tempDirPath) throws IOException {
+        int chunks = session.getChunks();
+        boolean positional = getChunkStoreMode() == ChunkStoreMode.PREALLOCATED;
+        String suffix = positional ? FileConstant.CHUNK_DONE_SUFFIX : FileConstant.CHUNK_PART_SUFFIX;
+        UploadSessionStore.SessionState state = session.getState();
+        int restored = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(tempDirPath, "*" + suffix)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                int chunk;
+                long bytes;
+                try {
+                    chunk = Integer.parseInt(name.substring(0, name.length() - suffix.length()));
+                    bytes = positional ? Long.parseLong(Files.readString(path).trim()) : Files.size(path);
+                } catch (NumberFormatException e) {
+                    log.warn("忽略无法识别的分块文件: {}", path.toAbsolutePath());
+                    continue;
+                }
+                if (chunk < 0 || chunk >= chunks) {
+                    continue;
+                }
+                if (chunk == chunks - 1) {
+                    state.setLastChunkLength(bytes);
+                }
+                if (chunk < chunks - 1 || chunks == 1) {
+                    state.initChunkSize(bytes);
+                }
+                if (session.markChunk(chunk, bytes)) {
+                    restored++;
+                }
+            }
+        }
+        if (restored > 0) {
+            log.info("按磁盘上的分块恢复上传进度: {}, 已上传: {}/{}", session.getKey(), session.getUploadedChunks(), chunks);
+        }
+    }
+    
+    /**
+     * 预分配模式存储分块：首个分块到达时按 chunks * chunkSize 预分配数据文件（稀疏文件），
+     * 每个分块按偏移量直接定位写入，通过位图记录完成情况，最后一个分块写完后截断到实际大小并改名，
+     * 不产生 .part 文件、不列目录、不需要合并
+     */
+    private File storeChunkPositional(MultipartFile file, Path dirPath, Path tempDirPath, String fileName,
+                                      UploadSession session, int chunk, Long chunkSize,
+                                      ChunkChecksum checksum) throws IOException {
+        int chunks = session.getChunks();
+        Path dataPath = tempDirPath.resolve(FileConstant.UPLOAD_DATA_FILE);
+        DataSize maxSize = fileProperties.getUpload().getMaxSize();
+        long partSize = session.resolveChunkSize(chunkSize, chunk, file.getSize(), maxSize != null ? maxSize.toBytes() : 0);
+        session.preallocate(dataPath);
+        
+        // 按偏移量定位写入，不同分块可以并发写入同一个文件
+        long offset = (long) chunk * partSize;
+        ChunkDigest digest = session.getDigest();
+        boolean digesting = digest.claim(chunk);
+        if (digesting || checksum != null) {
+            // 按顺序到达的分块边写入边计算MD5，上传完成时无需再读一遍文件；校验失败的分块区域未登记，重传时覆盖
+            try (FileChannel out = FileChannel.open(dataPath, StandardOpenOption.WRITE)) {
+                writeChunkStreaming(file, out, offset, digesting ? digest : null, checksum, chunk);
+            }
+        } else {
+            try (ReadableByteChannel in = Channels.newChannel(file.getInputStream());
+                 FileChannel out = FileChannel.open(dataPath, StandardOpenOption.WRITE)) {
+                long size = file.getSize();
+                long written = 0;
+                while (written < size) {
+                    long count = out.transferFrom(in, offset + written, size - written);
+                    if (count <= 0) {
+                        throw new IOException("分块数据写入中断: chunk " + chunk + ", 已写入" + written + "/" + size);
+                    }
+                    written += count;
+                }
+            }
+        }
+        // 分块完整写入后才创建标记文件，重启后据此恢复上传进度
+        Files.writeString(tempDirPath.resolve(chunk + FileConstant.CHUNK_DONE_SUFFIX), String.valueOf(file.getSize()));
+        log.info("分块已定位写入: chunk {}/{}, 偏移: {}, 大小: {}", chunk + 1, chunks, offset, file.getSize());
+        
+        session.markChunk(chunk, file.getSize());
+        if (!session.tryComplete()) {
+            log.info("分块上传进度: {}/{}", session.getUploadedChunks(), chunks);
+            return null;
+        }
+        
+        // 所有分块均已写入（只有一个请求会走到这里）
+        Path targetPath = dirPath.resolve(resolveMergedFileName(fileName));
+        try {
+            try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.WRITE)) {
+                channel.truncate(session.getTotalLength());
+            }
+            Files.move(dataPath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.error("分块上传收尾失败: {}, 错误: {}", targetPath.toAbsolutePath(), e.getMessage());
+            session.resetCompletion();
+            throw e;
+        }
+        uploadSessionRegistry.remove(session);
+        cleanupTempDirectory(tempDirPath, dirPath.toString());
+        
+        File targetFile = targetPath.toFile();
+        log.info("分块文件上传完成（预分配模式，无需合并）: {}, 大小: {}", targetFile.getAbsolutePath(), targetFile.length());
+        return targetFile;
+    }
+    
+    /**
+     * 把分块数据写入指定位置，同时更新增量MD5和CRC32C，写入结束后校验CRC32C并释放摘要
+     *
+     * @param digest   增量MD5，为空时不更新
+     * @param checksum 分块校验，为空时不计算
+     */
+    private void writeChunkStreaming(MultipartFile file, FileChannel out, long position,
+                                     ChunkDigest digest, ChunkChecksum checksum, int chunk) throws IOException {
+        boolean success = false;
+        try (InputStream in = file.getInputStream()) {
+            byte[] buffer = new byte[FileConstant.STREAM_BUFFER_SIZE];
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+            long size = file.getSize();
+            long written = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (digest != null) {
+                    digest.update(buffer, 0, read);
+                }
+                if (checksum != null) {
+                    checksum.update(buffer, 0, read);
+                }
+                byteBuffer.clear().limit(read);
+                while (byteBuffer.hasRemaining()) {
+                    written += out.write(byteBuffer, position + written);
+                }
+            }
+            if (written != size) {
+                throw new IOException("分块数据写入中断: chunk " + chunk + ", 已写入" + written + "/" + size);
+            }
+            if (checksum != null) {
+                checksum.verify(chunk);
+            }
+            success = true;
+        } finally {
+            if (digest != null) {
+                digest.release(chunk, success);
+            }
+        }
+    }
+    
+    /**
+     * 生成分块上传完成后的文件名：不符合规范的文件名使用随机名称，缺少扩展名时从缓存补全
+     */
+    private String resolveMergedFileName(String fileName) {
+        // 检查文件名是否符合规范，否则重命名
+        String finalFileName = fileName;
+        if (!isStandardFilename(fileName)) {
+            // 如果不符合规范，生成随机名称
+            String extension = "";
+            if (fileName.contains(".")) {
+                extension = fileName.substring(fileName.lastIndexOf("."));
+            } else {
+                // 如果文件名中没有扩展名，尝试从原始文件名获取
+                String originalExtension = getOriginalExtensionFromCache(fileName);
+                if (originalExtension != null && !originalExtension.isEmpty()) {
+                    // 确保扩展名以.开头
+                    extension = originalExtension.startsWith(".") ? originalExtension : "." + originalExtension;
+                    log.info("从缓存获取到原始扩展名: {}", extension);
+                }
+            }
+            finalFileName = UUID.randomUUID().toString() + extension;
+            log.info("分块上传使用随机文件名: {}", finalFileName);
+        } else {
+            log.info("分块上传使用标准文件名: {}", finalFileName);
+            
+            // 即使是标准文件名，也检查是否包含扩展名
+            if (!finalFileName.contains(".")) {
+                // 尝试从缓存获取原始扩展名
+                String originalExtension = getOriginalExtensionFromCache(fileName);
+                if (originalExtension != null && !originalExtension.isEmpty()) {
+                    // 确保扩展名以.开头
+                    String extension = originalExtension.startsWith(".") ? originalExtension : "." + originalExtension;
+                    finalFileName += extension;
+                    log.info("为标准格式文件名添加扩展名: {}", finalFileName);
+                }
+            }
+        }
+        return finalFileName;
+    }
+    
+    /**
+     * 删除分块上传的临时目录
+     */
+    private void cleanupTempDirectory(Path tempDirPath, String directory) {
+        boolean deleted = deleteDirectory(tempDirPath.toFile());
+        if (!deleted) {
+            log.warn("临时目录删除不完全，将在JVM退出时尝试再次删除: {}", tempDirPath.toAbsolutePath());
+            // 注册JVM退出时删除
+            tempDirPath.toFile().deleteOnExit();
+            
+            // 尝试使用File类的delete方法再删除一次
+            File parentTempDir = new File(directory, "temp");
+            if (parentTempDir.exists()) {
+                boolean parentDeleted = parentTempDir.delete();
+                if (parentDeleted) {
+                    log.info("成功删除父临时目录: {}", parentTempDir.getAbsolutePath());
+                }
+            }
+        } else {
+            log.info("临时目录删除成功: {}", tempDirPath.toAbsolutePath());
+        }
     }
     
     /**
@@ -309,8 +581,20 @@ public class FileTransferUtil {
      * @param tempDir    临时目录
      * @param targetFile 目标文件
      * @param chunks     分块总数
+     * @param mergeMode  合并方式
      */
-    private void mergeChunks(File tempDir, File targetFile, int chunks) throws IOException {
+    public void mergeChunks(File tempDir, File targetFile, int chunks, MergeMode mergeMode) throws IOException {
+        if (mergeMode == MergeMode.BUFFERED) {
+            mergeChunksBuffered(tempDir, targetFile, chunks);
+        } else {
+            mergeChunksZeroCopy(tempDir, targetFile, chunks);
+        }
+    }
+    
+    /**
+     * 通过堆内缓冲区逐块复制合并分块文件
+     */
+    private void mergeChunksBuffered(File tempDir, File targetFile, int chunks) throws IOException {
         try (FileOutputStream fos = new FileOutputStream(targetFile);
              BufferedOutputStream bos = new BufferedOutputStream(fos)) {
             
@@ -336,6 +620,83 @@ public class FileTransferUtil {
         }
     }
     
+    /**
+     * 通过FileChannel.transferTo在内核态拼接分块文件（Linux下为sendfile），数据不经过用户态缓冲区
+     */
+    private void mergeChunksZeroCopy(File tempDir, File targetFile, int chunks) throws IOException {
+        try (FileChannel out = FileChannel.open(targetFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long position = 0;
+            for (int i = 0; i < chunks; i++) {
+                File chunkFile = new File(tempDir, i + ".part");
+                if (!chunkFile.exists()) {
+                    log.warn("缺少分块文件: {}", chunkFile.getAbsolutePath());
+                    throw new IOException("缺少分块文件: " + chunkFile.getAbsolutePath());
+                }
+                try (FileChannel in = FileChannel.open(chunkFile.toPath(), StandardOpenOption.READ)) {
+                    long size = in.size();
+                    long transferred = 0;
+                    // transferTo单次调用可能只传输部分数据，需要循环直到整个分块写完
+                    while (transferred < size) {
+                        long count = in.transferTo(transferred, size - transferred, out);
+                        if (count <= 0) {
+                            throw new IOException("分块文件传输中断: " + chunkFile.getAbsolutePath());
+                        }
+                        transferred += count;
+                    }
+                    position += size;
+                }
+            }
+            log.debug("零拷贝合并完成: {}, 共{}个分块, {}字节", targetFile.getAbsolutePath(), chunks, position);
+        }
+    }
+    
+    /**
+     * 获取配置的分块合并方式，无法识别时使用零拷贝合并
+     */
+    private MergeMode getMergeMode() {
+        String mode = fileProperties.getUpload().getMergeMode();
+        if (mode != null) {
+            try {
+                return MergeMode.valueOf(mode.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                log.warn("无法识别的分块合并方式: {}, 使用默认的零拷贝合并", mode);
+            }
+        }
+        return MergeMode.ZERO_COPY;
+    }
+    
+    /**
+     * 分块合并方式
+     */
+    public enum MergeMode {
+        BUFFERED,   // 经堆内缓冲区复制
+        ZERO_COPY   // FileChannel.transferTo内核态拼接
+    }
+    
+    /**
+     * 获取配置的分块存储方式，无法识别时使用预分配定位写入
+     */
+    private ChunkStoreMode getChunkStoreMode() {
+        String mode = fileProperties.getUpload().getChunkStoreMode();
+        if (mode != null) {
+            try {
+                return ChunkStoreMode.valueOf(mode.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                log.warn("无法识别的分块存储方式: {}, 使用默认的预分配定位写入", mode);
+            }
+        }
+        return ChunkStoreMode.PREALLOCATED;
+    }
+    
+    /**
+     * 分块存储方式
+     */
+    public enum ChunkStoreMode {
+        PART_FILES,   // 每个分块单独保存为.part文件，全部到达后合并
+        PREALLOCATED  // 预分配目标文件，分块按偏移量定位写入
+    }
+    
     /**
      * 递归删除目录
      * 
@@ -402,61 +763,413 @@ public class FileTransferUtil {
      */
     public void downloadWithRange(HttpServletRequest request, HttpServletResponse response, 
                                  File file, String filename) {
+        serve(request, response, new RangeResource()
+                .setFile(file)
+                .setFilename(filename)
+                .setLastModified(file.lastModified()));
+    }
+    
+    /**
+     * 按HTTP范围请求语义输出文件（下载和在线预览共用）：
+     * <ul>
+     *     <li>If-None-Match / If-Modified-Since 命中时返回304，ETag和修改时间取自资源描述，不访问磁盘</li>
+     *     <li>没有Range（或If-Range与当前版本不一致）时返回200和完整内容</li>
+     *     <li>单个范围返回206，多个范围返回 multipart/byteranges，范围均不可满足时返回416</li>
+     *     <li>原始字节输出且容器支持sendfile（Tomcat NIO）时交给容器以 FileChannel.transferTo 直接发送到套接字</li>
+     *     <li>其余情况由 {@link FileSender} 输出，较大的响应使用异步非阻塞输出，不占用容器线程；同时输出的响应数达到上限时返回503</li>
+     * </ul>
+     * 
+     * @param request  HTTP请求对象
+     * @param response HTTP响应对象
+     * @param resource 输出的资源
+     */
+    public void serve(HttpServletRequest request, HttpServletResponse response, RangeResource resource) {
+        // 交给 FileSender 之前的任何路径（包括设置响应头时抛出异常）都在 finally 中归还输出名额
+        FileSender.Permit permit = null;
         try {
-            long fileLength = file.length();
-            String range = request.getHeader("Range");
+            String etag = resource.getEtag() != null ? "\"" + resource.getEtag() + "\"" : null;
+            long lastModified = resource.getLastModified() / 1000 * 1000;
             
-            // 设置响应头
             response.setHeader("Accept-Ranges", "bytes");
-            response.setHeader("Content-Type", "application/octet-stream");
-            response.setHeader("Content-Disposition", "attachment; filename=\"" + 
-                    URLEncoder.encode(filename, "UTF-8").replaceAll("\\+", "%20") + "\"");
+            if (etag != null) {
+                response.setHeader("ETag", etag);
+            }
+            if (lastModified > 0) {
+                response.setDateHeader("Last-Modified", lastModified);
+            }
+            if (resource.getCacheControl() != null) {
+                response.setHeader("Cache-Control", resource.getCacheControl());
+            }
             
-            // 处理范围请求
-            long start = 0;
-            long end = fileLength - 1;
+            if (isNotModified(request, etag, lastModified)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
             
-            if (range != null && range.startsWith("bytes=")) {
-                String[] ranges = range.substring(6).split("-");
-                start = Long.parseLong(ranges[0]);
-                if (ranges.length > 1 && !ranges[1].isEmpty()) {
-                    end = Long.parseLong(ranges[1]);
-                }
+            File file = resource.getFile();
+            if (!file.isFile() || file.length() < resource.getContentOffset()) {
+                log.warn("输出的文件不存在: {}", file.getAbsolutePath());
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                return;
             }
+            long totalLength = file.length() - resource.getContentOffset();
             
-            // 确保范围有效
-            if (start < 0) start = 0;
-            if (end >= fileLength) end = fileLength - 1;
-            if (start > end) start = end;
+            String contentType = resource.getContentType() != null ? resource.getContentType() : "application/octet-stream";
+            if (resource.getFilename() != null) {
+                response.setHeader("Content-Disposition", "attachment; filename=\"" +
+                        URLEncoder.encode(resource.getFilename(), "UTF-8").replaceAll("\\+", "%20") + "\"");
+            }
             
-            long contentLength = end - start + 1;
-            response.setHeader("Content-Length", String.valueOf(contentLength));
-            response.setHeader("Content-Range", String.format("bytes %d-%d/%d", start, end, fileLength));
-            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            List<HttpRange> ranges = isRangeApplicable(request, etag, lastModified)
+                    ? HttpRange.parse(request.getHeader("Range"), totalLength) : null;
+            if (ranges != null && ranges.isEmpty()) {
+                response.setHeader("Content-Range", "bytes */" + totalLength);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
             
-            // 写入文件内容
-            try (RandomAccessFile raf = new RandomAccessFile(file, "r");
-                 OutputStream out = new BufferedOutputStream(response.getOutputStream())) {
-                
-                byte[] buffer = new byte[4096];
-                raf.seek(start);
-                long remaining = contentLength;
-                
-                while (remaining > 0) {
-                    int read = raf.read(buffer, 0, (int) Math.min(buffer.length, remaining));
-                    if (read == -1) break;
-                    out.write(buffer, 0, read);
-                    remaining -= read;
+            List<FileSender.BodyPart> parts;
+            long contentLength;
+            if (ranges == null) {
+                parts = List.of(FileSender.BodyPart.range(0, totalLength));
+                contentLength = totalLength;
+            } else if (ranges.size() == 1) {
+                HttpRange range = ranges.get(0);
+                parts = List.of(FileSender.BodyPart.range(range.getStart(), range.getLength()));
+                contentLength = range.getLength();
+            } else {
+                String boundary = UUID.randomUUID().toString().replace("-", "");
+                parts = multipartOf(ranges, boundary, contentType, totalLength);
+                contentLength = parts.stream().mapToLong(part -> part.getPrefix().length + part.getLength()).sum();
+                contentType = "multipart/byteranges; boundary=" + boundary;
+            }
+            
+            // 原始字节的单个范围交给容器sendfile发送，其余占用一个输出名额
+            boolean sendfile = parts.size() == 1 && isSendfileApplicable(request, resource);
+            if (!sendfile && contentLength > 0) {
+                permit = fileSender.tryAcquire();
+                if (permit == null) {
+                    response.setHeader("Retry-After", String.valueOf(fileProperties.getDownload().getRetryAfterSeconds()));
+                    response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    return;
                 }
-                out.flush();
             }
             
+            if (ranges != null) {
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                if (ranges.size() == 1) {
+                    response.setHeader("Content-Range", ranges.get(0).toContentRange(totalLength));
+                }
+            }
+            response.setContentType(contentType);
+            response.setContentLengthLong(contentLength);
+            if (contentLength == 0) {
+                return;
+            }
+            if (sendfile) {
+                // 由Tomcat在请求处理结束后以 FileChannel.transferTo 从页缓存直接发送到套接字
+                FileSender.BodyPart part = parts.get(0);
+                request.setAttribute(SENDFILE_FILENAME_ATTR, file.getAbsolutePath());
+                request.setAttribute(SENDFILE_START_ATTR, part.getStart());
+                request.setAttribute(SENDFILE_END_ATTR, part.getStart() + part.getLength());
+                return;
+            }
+            // 名额的所有权转移给 FileSender，由其在输出结束时释放
+            FileSender.Permit owned = permit;
+            permit = null;
+            fileSender.send(request, response, file, resource.getWriter(), parts, contentLength,
+                    resource.getTrafficClass() != null ? resource.getTrafficClass() : FileSender.TrafficClass.BULK, owned);
         } catch (Exception e) {
-            log.error("文件下载失败: {}", e.getMessage(), e);
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            log.error("文件输出失败: {}, 错误: {}", resource.getFile(), e.getMessage(), e);
+            if (!response.isCommitted()) {
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        } finally {
+            if (permit != null) {
+                permit.close();
+            }
+        }
+    }
+    
+    /**
+     * 把多个文件边读边打包成ZIP输出（批量下载），不生成临时压缩包
+     * <p>
+     * 响应长度未知，以分块传输编码同步输出，占用一个批量打包名额和一个输出名额（任一达到上限时返回503），
+     * 限速时按文件下载分配带宽，超过 asyncTimeoutSeconds 时中止输出。
+     * 磁盘上已不存在的文件跳过，并在压缩包末尾附加 {@value #ZIP_MISSING_ENTRY} 列出。
+     * 客户端中途断开时停止读取后续文件；其他错误发生在开始输出之后时不再写入中央目录，客户端得到的压缩包无法打开，不会被误认为完整。
+     * </p>
+     * 
+     * @param request  HTTP请求对象
+     * @param response HTTP响应对象
+     * @param filename 下载文件名
+     * @param entries  按顺序打包的文件，可以在遍历时才逐批查询
+     */
+    public void serveZip(HttpServletRequest request, HttpServletResponse response, String filename,
+                         Iterable<ZipStreamWriter.Entry> entries) {
+        FileSender.Permit permit = fileSender.tryAcquireBatch();
+        if (permit == null) {
+            response.setHeader("Retry-After", String.valueOf(fileProperties.getDownload().getRetryAfterSeconds()));
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        ZipBody body = new ZipBody(entries);
+        try {
+            response.setContentType("application/zip");
+            response.setHeader("Content-Disposition", "attachment; filename=\"" +
+                    URLEncoder.encode(filename, "UTF-8").replaceAll("\\+", "%20") + "\"");
+            fileSender.sendStream(request, response, body, FileSender.TrafficClass.BULK, permit);
+            log.info("批量打包下载完成: {}, 文件数: {}, 缺失: {}", filename, body.written, body.missing.size());
+        } catch (Exception e) {
+            if (body.disconnected) {
+                // 客户端中途断开是常见情况，不按错误记录
+                log.info("客户端断开，批量打包下载中止: {}, 已输出文件数: {}, 原因: {}", filename, body.written, e.toString());
+            } else {
+                log.error("批量打包下载失败: {}, 已输出文件数: {}, 错误: {}", filename, body.written, e.getMessage(), e);
+                if (!response.isCommitted()) {
+                    response.reset();
+                    response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                }
+            }
+        } finally {
+            permit.close();
+        }
+    }
+    
+    /**
+     * 批量打包的响应体
+     */
+    private class ZipBody implements FileSender.StreamBody {
+        
+        private final Iterable<ZipStreamWriter.Entry> entries;
+        
+        private final List<String> missing = new ArrayList<>();
+        
+        private int written;
+        
+        private boolean disconnected;
+        
+        ZipBody(Iterable<ZipStreamWriter.Entry> entries) {
+            this.entries = entries;
+        }
+        
+        @Override
+        public void writeTo(OutputStream out) throws Exception {
+            // 出错时不关闭（关闭会写入中央目录），Deflater 由 Cleaner 回收
+            ZipStreamWriter zip = new ZipStreamWriter(new DisconnectAwareOutputStream(out),
+                    fileProperties.getDownload().getBatchCompressionLevel());
+            for (ZipStreamWriter.Entry entry : entries) {
+                File file = entry.getFile();
+                if (!file.isFile() || file.length() < entry.getContentOffset()) {
+                    log.warn("批量打包的文件不存在，跳过: {}", file.getAbsolutePath());
+                    missing.add(entry.getName());
+                    continue;
+                }
+                zip.write(entry);
+                written++;
+            }
+            if (!missing.isEmpty()) {
+                zip.writeText(ZIP_MISSING_ENTRY, "以下文件在存储中已不存在，未打包:\r\n" + String.join("\r\n", missing) + "\r\n");
+            }
+            zip.close();
+        }
+        
+        /**
+         * 写出失败即认为客户端已断开，与读取文件的错误区分
+         */
+        private class DisconnectAwareOutputStream extends FilterOutputStream {
+            
+            DisconnectAwareOutputStream(OutputStream out) {
+                super(out);
+            }
+            
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                try {
+                    out.write(b, off, len);
+                } catch (InterruptedIOException e) {
+                    // 输出超时或等待被中断，不是客户端断开
+                    throw e;
+                } catch (IOException e) {
+                    disconnected = true;
+                    throw e;
+                }
+            }
+            
+            @Override
+            public void flush() throws IOException {
+                try {
+                    out.flush();
+                } catch (IOException e) {
+                    disconnected = true;
+                    throw e;
+                }
+            }
         }
     }
     
+    /**
+     * 条件请求判断：有If-None-Match时只按ETag比较（弱比较），否则按If-Modified-Since比较
+     */
+    private boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            if (etag == null) {
+                return false;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if ("*".equals(tag) || stripWeakPrefix(tag).equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = getDateHeader(request, "If-Modified-Since");
+        return ifModifiedSince >= 0 && lastModified > 0 && lastModified <= ifModifiedSince;
+    }
+    
+    /**
+     * If-Range与当前版本一致（ETag强比较或最后修改时间相同）时Range才生效，否则返回完整内容
+     */
+    private boolean isRangeApplicable(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        if (ifRange.startsWith("W/")) {
+            return false;
+        }
+        long date = getDateHeader(request, "If-Range");
+        return date >= 0 && date == lastModified;
+    }
+    
+    private String stripWeakPrefix(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+    
+    /**
+     * 格式错误的日期请求头按不存在处理
+     */
+    private long getDateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+    
+    private boolean isSendfileApplicable(HttpServletRequest request, RangeResource resource) {
+        return resource.getWriter() == null && !fileSender.isShaping()
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR));
+    }
+    
+    /**
+     * 多个范围按 multipart/byteranges 输出：每个范围前是该部分的头，最后是结束分隔符
+     */
+    private List<FileSender.BodyPart> multipartOf(List<HttpRange> ranges, String boundary, String contentType,
+                                                  long totalLength) {
+        List<FileSender.BodyPart> parts = new ArrayList<>(ranges.size() + 1);
+        for (HttpRange range : ranges) {
+            byte[] header = ("\r\n--" + boundary + "\r\nContent-Type: " + contentType + "\r\nContent-Range: "
+                    + range.toContentRange(totalLength) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            parts.add(new FileSender.BodyPart(header, range.getStart(), range.getLength()));
+        }
+        parts.add(FileSender.BodyPart.bytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII)));
+        return parts;
+    }
+    
+    /**
+     * 直接输出文件原始字节的 RangeWriter（容器不支持sendfile、限速或多范围输出时使用）
+     */
+    public static RangeWriter rawRangeWriter() {
+        return (channel, start, length, out) -> {
+            byte[] buffer = new byte[FileConstant.STREAM_BUFFER_SIZE];
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+            long position = start;
+            long remaining = length;
+            
+            while (remaining > 0) {
+                byteBuffer.clear().limit((int) Math.min(buffer.length, remaining));
+                int read = channel.read(byteBuffer, position);
+                if (read == -1) break;
+                out.write(buffer, 0, read);
+                position += read;
+                remaining -= read;
+            }
+        };
+    }
+    
+    /**
+     * 按范围输出文件内容
+     */
+    @FunctionalInterface
+    public interface RangeWriter {
+        
+        /**
+         * @param channel 文件通道
+         * @param start   输出内容的起始位置
+         * @param length  输出的字节数
+         * @param out     输出流
+         */
+        void write(FileChannel channel, long start, long length, OutputStream out) throws Exception;
+    }
+    
+    /**
+     * 按范围输出的资源
+     */
+    @Data
+    @Accessors(chain = true)
+    public static class RangeResource {
+        /**
+         * 磁盘上的文件
+         */
+        private File file;
+        
+        /**
+         * 下载文件名，设置时以附件形式下载，为空时内联输出（在线预览）
+         */
+        private String filename;
+        
+        /**
+         * 内容类型，为空时为 application/octet-stream
+         */
+        private String contentType;
+        
+        /**
+         * 文件开头不属于输出内容的字节数（如静态加密文件的IV，由 writer 负责跳过），输出内容长度为文件大小减去该值
+         */
+        private long contentOffset;
+        
+        /**
+         * 强ETag（不含引号，一般为文件MD5），为空时不支持按ETag的条件请求
+         */
+        private String etag;
+        
+        /**
+         * 最后修改时间（毫秒），为0时不支持按时间的条件请求
+         */
+        private long lastModified;
+        
+        /**
+         * Cache-Control响应头，为空时不设置
+         */
+        private String cacheControl;
+        
+        /**
+         * 范围内容输出方式（如加密文件实时解密），为空时输出文件原始字节
+         */
+        private RangeWriter writer;
+        
+        /**
+         * 流量类别，限速时决定带宽分配的权重，为空时按文件下载处理
+         */
+        private FileSender.TrafficClass trafficClass;
+    }
+    
     /**
      * 保存原始文件扩展名到缓存
      * 
@@ -465,7 +1178,7 @@ public class FileTransferUtil {
      */
     public void saveOriginalExtension(String fileName, String extension) {
         if (fileName != null && extension != null && !extension.isEmpty()) {
-            EXTENSION_CACHE.put(fileName, extension);
+            uploadMetadataCache.put(UploadMetadataCache.Namespace.EXTENSION, fileName, extension);
             log.info("保存原始文件扩展名到缓存: {} -> {}", fileName, extension);
         }
     }
@@ -477,7 +1190,7 @@ public class FileTransferUtil {
      * @return 原始扩展名，如果不存在则返回null
      */
     private String getOriginalExtensionFromCache(String fileName) {
-        String extension = EXTENSION_CACHE.get(fileName);
+        String extension = uploadMetadataCache.get(UploadMetadataCache.Namespace.EXTENSION, fileName);
         log.info("从缓存获取原始文件扩展名: {} -> {}", fileName, extension);
         return extension;
     }
@@ -0,0 +1,91 @@
+package com.goodsop.file.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HTTP Range请求头中的一个字节范围（起止位置均包含）
+ * <p>
+ * 支持 bytes=a-b、bytes=a-（到末尾）、bytes=-n（最后n个字节）以及逗号分隔的多个范围。
+ * </p>
+ */
+@Getter
+@AllArgsConstructor
+public final class HttpRange {
+
+    /**
+     * 单个请求允许的最大范围数，超出时忽略Range按完整内容响应，避免大量碎片范围放大读取
+     */
+    public static final int MAX_RANGES = 16;
+
+    private static final String BYTES_UNIT = "bytes=";
+
+    private final long start;
+
+    private final long end;
+
+    /**
+     * 解析Range请求头
+     *
+     * @param header Range请求头
+     * @param length 内容总长度
+     * @return 有效范围列表；请求头为空、格式错误或范围过多时返回null（应忽略Range），所有范围都不可满足时返回空列表（应返回416）
+     */
+    public static List<HttpRange> parse(String header, long length) {
+        if (header == null || !header.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return null;
+        }
+        String[] specs = header.substring(BYTES_UNIT.length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<HttpRange> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            String trimmed = spec.trim();
+            int dash = trimmed.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            String first = trimmed.substring(0, dash).trim();
+            String last = trimmed.substring(dash + 1).trim();
+            try {
+                if (first.isEmpty()) {
+                    // 后缀范围：最后n个字节
+                    long suffix = Long.parseLong(last);
+                    if (suffix < 0) {
+                        return null;
+                    }
+                    if (suffix > 0 && length > 0) {
+                        ranges.add(new HttpRange(Math.max(length - suffix, 0), length - 1));
+                    }
+                    continue;
+                }
+                long start = Long.parseLong(first);
+                long end = last.isEmpty() ? length - 1 : Long.parseLong(last);
+                if (start < 0 || end < start) {
+                    return null;
+                }
+                if (start < length) {
+                    ranges.add(new HttpRange(start, Math.min(end, length - 1)));
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return ranges;
+    }
+
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    /**
+     * Content-Range响应头的值
+     */
+    public String toContentRange(long totalLength) {
+        return "bytes " + start + "-" + end + "/" + totalLength;
+    }
+}
@@ -0,0 +1,176 @@
+package com.goodsop.file.util;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 内存中的分块上传会话存储（默认）
+ * <p>
+ * 分块完成情况使用CAS位图记录，只在当前节点可见，适用于单节点部署。服务重启或会话过期后位图丢失，
+ * 由 {@link FileTransferUtil} 在下一个分块到达时按临时目录中已完整写入的分块重建。
+ * </p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "goodsop.file.upload", name = "session-store", havingValue = "MEMORY", matchIfMissing = true)
+public class InMemoryUploadSessionStore implements UploadSessionStore {
+
+    private final Map<String, MemorySessionState> sessions = new ConcurrentHashMap<>();
+
+    @Override
+    public String getName() {
+        return "MEMORY";
+    }
+
+    @Override
+    public SessionState open(String key, String deviceId, String fileName, int chunks) {
+        return sessions.computeIfAbsent(key, k -> new MemorySessionState(k, chunks));
+    }
+
+    @Override
+    public SessionState find(String key) {
+        return sessions.get(key);
+    }
+
+    @Override
+    public void remove(SessionState state) {
+        sessions.remove(state.getKey(), state);
+    }
+
+    @Override
+    public int evictIdle(long expirationTimeMillis) {
+        int before = sessions.size();
+        sessions.values().removeIf(state -> {
+            boolean expired = state.lastAccessTime < expirationTimeMillis;
+            if (expired) {
+                log.info("清理过期的分块上传会话: {}, 已上传: {}/{}", state.getKey(),
+                        state.getUploadedChunks(), state.getChunks());
+            }
+            return expired;
+        });
+        return before - sessions.size();
+    }
+
+    /**
+     * 进行中的会话数量
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    private static class MemorySessionState implements SessionState {
+
+        @Getter
+        private final String sessionId = UUID.randomUUID().toString().replace("-", "");
+
+        @Getter
+        private final String key;
+
+        @Getter
+        private final int chunks;
+
+        private final ChunkBitmap bitmap;
+
+        private final AtomicLong receivedBytes = new AtomicLong();
+
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private final AtomicLong chunkSize = new AtomicLong();
+
+        @Getter
+        private volatile long lastChunkLength = -1;
+
+        private final AtomicReference<String> standardFileName = new AtomicReference<>();
+
+        @Getter
+        private volatile String originalExtension;
+
+        private volatile long lastAccessTime = System.currentTimeMillis();
+
+        MemorySessionState(String key, int chunks) {
+            this.key = key;
+            this.chunks = chunks;
+            this.bitmap = new ChunkBitmap(chunks);
+        }
+
+        @Override
+        public boolean markChunk(int chunk, long bytes) {
+            lastAccessTime = System.currentTimeMillis();
+            if (!bitmap.set(chunk)) {
+                return false;
+            }
+            receivedBytes.addAndGet(bytes);
+            return true;
+        }
+
+        @Override
+        public int getUploadedChunks() {
+            return bitmap.cardinality();
+        }
+
+        @Override
+        public long getReceivedBytes() {
+            return receivedBytes.get();
+        }
+
+        @Override
+        public List<Integer> getMissingChunks() {
+            return bitmap.missing();
+        }
+
+        @Override
+        public boolean tryComplete() {
+            return bitmap.isComplete() && completed.compareAndSet(false, true);
+        }
+
+        @Override
+        public void resetCompletion() {
+            completed.set(false);
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return completed.get();
+        }
+
+        @Override
+        public long getChunkSize() {
+            return chunkSize.get();
+        }
+
+        @Override
+        public long initChunkSize(long size) {
+            return chunkSize.compareAndSet(0, size) ? size : chunkSize.get();
+        }
+
+        @Override
+        public void setLastChunkLength(long length) {
+            lastChunkLength = length;
+        }
+
+        @Override
+        public String getStandardFileName() {
+            return standardFileName.get();
+        }
+
+        @Override
+        public String assignStandardFileName(String name) {
+            return standardFileName.compareAndSet(null, name) ? name : standardFileName.get();
+        }
+
+        @Override
+        public void setOriginalExtension(String originalExtension) {
+            this.originalExtension = originalExtension;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.config.FileProperties;
+import lombok.Data;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * 秒传持有证明
+ * <p>
+ * 只凭MD5和大小秒传时，知道MD5的人即可登记并下载他人的文件。秒传前服务端随机指定一段内容范围，
+ * 客户端提交该范围内容的MD5，与服务端已存储的内容一致才允许秒传。
+ * 校验范围以签名令牌的形式下发（包含设备ID、文件MD5、大小、范围和过期时间），服务端无需保存状态。
+ * </p>
+ */
+@Slf4j
+@Component
+public class InstantUploadChallenge {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final FileProperties fileProperties;
+
+    private final SecretKeySpec secret;
+
+    private final SecureRandom random = new SecureRandom();
+
+    public InstantUploadChallenge(FileProperties fileProperties) {
+        this.fileProperties = fileProperties;
+        String configured = fileProperties.getUpload().getInstantChallengeSecret();
+        byte[] key;
+        if (StringUtils.hasText(configured)) {
+            key = configured.getBytes(StandardCharsets.UTF_8);
+        } else {
+            key = new byte[32];
+            random.nextBytes(key);
+            log.info("未配置秒传校验签名密钥，已随机生成（多节点部署时需配置 goodsop.file.upload.instant-challenge-secret）");
+        }
+        this.secret = new SecretKeySpec(key, HMAC_ALGORITHM);
+    }
+
+    /**
+     * 为指定文件随机选择一段校验范围
+     *
+     * @param deviceId 设备ID
+     * @param fileMd5  文件MD5
+     * @param fileSize 文件大小（字节）
+     * @return 校验范围及签名令牌
+     */
+    public Challenge issue(String deviceId, String fileMd5, long fileSize) {
+        long length = Math.min(fileSize, Math.max(1, fileProperties.getUpload().getInstantProofBytes()));
+        long offset = fileSize > length ? (long) (random.nextDouble() * (fileSize - length + 1)) : 0;
+        long expires = System.currentTimeMillis() + fileProperties.getUpload().getInstantChallengeTtlSeconds() * 1000L;
+        String payload = offset + "." + length + "." + expires;
+        return new Challenge()
+                .setOffset(offset)
+                .setLength(length)
+                .setToken(payload + "." + sign(deviceId, fileMd5, fileSize, payload));
+    }
+
+    /**
+     * 校验令牌是否由本服务为该设备和文件签发且未过期
+     *
+     * @param deviceId 设备ID
+     * @param fileMd5  文件MD5
+     * @param fileSize 文件大小（字节）
+     * @param token    签名令牌
+     * @return 令牌中的校验范围，令牌无效或已过期时返回null
+     */
+    public Challenge verify(String deviceId, String fileMd5, long fileSize, String token) {
+        if (!StringUtils.hasText(token)) {
+            return null;
+        }
+        String[] parts = token.split("\\.");
+        if (parts.length != 4) {
+            return null;
+        }
+        try {
+            long offset = Long.parseLong(parts[0]);
+            long length = Long.parseLong(parts[1]);
+            long expires = Long.parseLong(parts[2]);
+            String payload = parts[0] + "." + parts[1] + "." + parts[2];
+            byte[] expected = sign(deviceId, fileMd5, fileSize, payload).getBytes(StandardCharsets.US_ASCII);
+            if (!MessageDigest.isEqual(expected, parts[3].getBytes(StandardCharsets.US_ASCII))
+                    || expires < System.currentTimeMillis()
+                    || offset < 0 || length < 0 || offset + length > fileSize) {
+                return null;
+            }
+            return new Challenge().setOffset(offset).setLength(length).setToken(token);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private String sign(String deviceId, String fileMd5, long fileSize, String payload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secret);
+            String message = deviceId + "|" + fileMd5.toLowerCase() + "|" + fileSize + "|" + payload;
+            return FileEncryptUtil.toHex(mac.doFinal(message.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("秒传校验签名失败", e);
+        }
+    }
+
+    /**
+     * 校验范围：客户端需提交文件内容中 [offset, offset + length) 的MD5
+     */
+    @Data
+    @Accessors(chain = true)
+    public static class Challenge {
+        /**
+         * 范围起始偏移量（字节）
+         */
+        private long offset;
+
+        /**
+         * 范围长度（字节）
+         */
+        private long length;
+
+        /**
+         * 签名令牌，秒传时原样提交
+         */
+        private String token;
+    }
+}
@@ -0,0 +1,54 @@
+package com.goodsop.file.util;
+
+import org.apache.commons.compress.compressors.lz4.BlockLZ4CompressorOutputStream;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * LZ4帧格式编解码器（commons-compress纯Java实现），压缩率低于zstd，适合CPU受限的设备端
+ * <p>
+ * 主要用于解压设备上传的LZ4数据。纯Java编码器使用默认参数时对录音PCM这类匹配稀少的数据压缩极慢（每秒几十KB），
+ * 压缩时使用按速度调优的匹配参数（缩短匹配查找链、关闭惰性匹配），块之间互不依赖。
+ * </p>
+ */
+public class Lz4CompressionCodec implements CompressionCodec {
+
+    /**
+     * 按速度调优的帧参数：64KB独立块，保留内容校验，不计算块校验
+     */
+    private static final FramedLZ4CompressorOutputStream.Parameters SPEED_PARAMETERS =
+            new FramedLZ4CompressorOutputStream.Parameters(FramedLZ4CompressorOutputStream.BlockSize.K64,
+                    true, false, false, BlockLZ4CompressorOutputStream.createParameterBuilder().tunedForSpeed().build());
+
+    @Override
+    public FileCompressUtil.CompressionType getType() {
+        return FileCompressUtil.CompressionType.LZ4;
+    }
+
+    @Override
+    public String getExtension() {
+        return ".lz4";
+    }
+
+    @Override
+    public boolean matches(byte[] signature) {
+        // LZ4帧魔数（小端 0x184D2204）：0x04 0x22 0x4d 0x18
+        return (signature[0] & 0xff) == 0x04 && (signature[1] & 0xff) == 0x22
+                && (signature[2] & 0xff) == 0x4d && (signature[3] & 0xff) == 0x18;
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) throws IOException {
+        // 设备可能连续写入多个帧，全部解压
+        return new FramedLZ4CompressorInputStream(in, true);
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out, String entryName) throws IOException {
+        return new FramedLZ4CompressorOutputStream(out, SPEED_PARAMETERS);
+    }
+}
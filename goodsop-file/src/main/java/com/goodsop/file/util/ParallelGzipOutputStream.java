@@ -0,0 +1,222 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.constant.FileConstant;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 多核并行GZIP压缩输出流（pigz方式）
+ * <p>
+ * 输入按固定大小分块，各块在线程池中独立deflate，并以前一块末尾32KB作为预置字典，压缩率与单线程基本一致。
+ * 除最后一块外每块以 SYNC_FLUSH 结束（按字节对齐），按顺序拼接后即为一个完整的deflate流，
+ * 输出标准的单成员GZIP格式，任何GZIP解压工具均可直接解压。CRC32在写入线程上顺序计算。
+ * 同时在途的块数不超过并行度的两倍，写入方在输出追不上时阻塞等待，内存占用有上限。
+ * </p>
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+    /**
+     * deflate窗口大小，即预置字典的最大长度
+     */
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private final OutputStream out;
+
+    private final int level;
+
+    private final int blockSize;
+
+    private final Executor executor;
+
+    private final int maxInFlight;
+
+    private final Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+
+    private final CRC32 crc = new CRC32();
+
+    private byte[] block;
+
+    private int blockLength;
+
+    private byte[] previousBlock;
+
+    private int previousLength;
+
+    private long totalLength;
+
+    private boolean closed;
+
+    /**
+     * 使用默认分块大小（128KB）
+     *
+     * @param out      输出流
+     * @param level    压缩级别 1-9，-1为默认级别(6)
+     * @param executor 执行压缩的线程池
+     */
+    public ParallelGzipOutputStream(OutputStream out, int level, ParallelTaskExecutor executor) throws IOException {
+        this(out, level, FileConstant.PARALLEL_COMPRESS_BLOCK_SIZE, executor, executor.getParallelism());
+    }
+
+    /**
+     * @param out         输出流
+     * @param level       压缩级别 1-9，-1为默认级别(6)
+     * @param blockSize   分块大小（不小于32KB）
+     * @param executor    执行压缩的线程池
+     * @param parallelism 线程池并行度，决定同时在途的块数
+     */
+    public ParallelGzipOutputStream(OutputStream out, int level, int blockSize, Executor executor, int parallelism)
+            throws IOException {
+        if (blockSize < DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("分块大小不能小于" + DICTIONARY_SIZE + "字节: " + blockSize);
+        }
+        this.out = out;
+        this.level = level;
+        this.blockSize = blockSize;
+        this.executor = executor;
+        this.maxInFlight = Math.max(parallelism, 1) * 2;
+        this.block = new byte[blockSize];
+        out.write(GZIP_HEADER);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        crc.update(b, off, len);
+        totalLength += len;
+        while (len > 0) {
+            int n = Math.min(len, blockSize - blockLength);
+            System.arraycopy(b, off, block, blockLength, n);
+            blockLength += n;
+            off += n;
+            len -= n;
+            if (blockLength == blockSize) {
+                submitBlock(false);
+            }
+        }
+    }
+
+    /**
+     * 只刷新已压缩完成的输出，未满的块仍等待后续数据
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            submitBlock(true);
+            while (!pending.isEmpty()) {
+                writeCompleted();
+            }
+            writeTrailer();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * 提交当前块压缩，块数组交给压缩任务后不再复用；在途的块数达到上限时先写出最早的块
+     */
+    private void submitBlock(boolean last) throws IOException {
+        byte[] input = block;
+        int length = blockLength;
+        byte[] dictionary = previousBlock;
+        int dictionaryLength = Math.min(previousLength, DICTIONARY_SIZE);
+        int dictionaryOffset = previousLength - dictionaryLength;
+        pending.add(CompletableFuture.supplyAsync(
+                () -> deflate(input, length, dictionary, dictionaryOffset, dictionaryLength, last), executor));
+        previousBlock = input;
+        previousLength = length;
+        if (!last) {
+            block = new byte[blockSize];
+            blockLength = 0;
+        }
+        while (pending.size() >= maxInFlight) {
+            writeCompleted();
+        }
+    }
+
+    private byte[] deflate(byte[] input, int length, byte[] dictionary, int dictionaryOffset, int dictionaryLength,
+                           boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionaryLength > 0) {
+                deflater.setDictionary(dictionary, dictionaryOffset, dictionaryLength);
+            }
+            deflater.setInput(input, 0, length);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[FileConstant.STREAM_BUFFER_SIZE];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, n);
+                }
+            } else {
+                // 输出缓冲区被写满时需以同样的flush参数继续调用，直到全部输出
+                int n;
+                do {
+                    n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, n);
+                } while (n == buffer.length);
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeCompleted() throws IOException {
+        CompletableFuture<byte[]> head = pending.poll();
+        try {
+            out.write(head.join());
+        } catch (CompletionException e) {
+            pending.forEach(future -> future.cancel(false));
+            pending.clear();
+            throw new IOException("并行压缩失败", e.getCause());
+        }
+    }
+
+    private void writeTrailer() throws IOException {
+        byte[] trailer = new byte[8];
+        writeIntLE(trailer, 0, crc.getValue());
+        writeIntLE(trailer, 4, totalLength);
+        out.write(trailer);
+    }
+
+    private static void writeIntLE(byte[] buffer, int offset, long value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >> 8);
+        buffer[offset + 2] = (byte) (value >> 16);
+        buffer[offset + 3] = (byte) (value >> 24);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("压缩流已关闭");
+        }
+    }
+}
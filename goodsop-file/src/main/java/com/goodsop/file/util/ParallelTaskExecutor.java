@@ -0,0 +1,81 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.config.FileProperties;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 文件并行计算线程池
+ * <p>
+ * 大文件的分段并行解密、并行GZIP压缩以及与之同时进行的MD5计算使用此线程池，
+ * 与ForkJoin公共池（parallel stream 等其他代码共用）和上传后台处理线程池分开，线程数可单独配置。
+ * 任务只由调用方线程提交，池内任务不会等待其他池内任务，固定大小的线程池不会死锁。
+ * </p>
+ */
+@Component
+public class ParallelTaskExecutor implements Executor {
+
+    private final ThreadPoolExecutor executor;
+
+    private final int parallelism;
+
+    public ParallelTaskExecutor(FileProperties fileProperties) {
+        Integer configured = fileProperties.getUpload().getParallelThreads();
+        this.parallelism = configured != null && configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "file-parallel-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 线程数，决定并行任务的分段数和同时在途的任务数
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        executor.execute(command);
+    }
+
+    /**
+     * 提交一个任务
+     *
+     * @param task 任务
+     * @return 任务结果
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        return executor.submit(task);
+    }
+
+    /**
+     * 提交一组任务并等待全部完成
+     *
+     * @param tasks 任务列表
+     * @return 与任务顺序一致的结果
+     */
+    public <T> List<Future<T>> invokeAll(List<? extends Callable<T>> tasks) throws InterruptedException {
+        return executor.invokeAll(tasks);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,28 @@
+package com.goodsop.file.util;
+
+import java.time.LocalDate;
+
+/**
+ * 存储目录布局策略
+ * <p>
+ * 决定文件存放在存储根目录下的哪个子目录。内置布局见 {@link StorageLayoutResolver.LayoutType}，
+ * 也可以声明一个实现本接口的Spring Bean替换内置布局。
+ * </p>
+ */
+public interface StorageLayout {
+
+    /**
+     * 布局名称
+     */
+    String getName();
+
+    /**
+     * 计算文件所在目录
+     *
+     * @param date     文件日期
+     * @param deviceId 设备ID
+     * @param fileName 文件名（标准格式文件名中包含文件MD5）
+     * @return 相对于存储根目录的目录，使用/分隔，不以/开头和结尾
+     */
+    String resolveDirectory(LocalDate date, String deviceId, String fileName);
+}
@@ -0,0 +1,183 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.constant.FileConstant;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 存储目录解析器
+ * <p>
+ * 按配置的布局（或自定义的 {@link StorageLayout} Bean）计算文件的存储目录。
+ * 单个日期目录下文件数达到数十万时 exists()/mkdirs()/列目录都会明显变慢，
+ * 分片布局把同一天的文件再按设备ID哈希或文件MD5前缀分散到两级子目录（256 x 256）中。
+ * 已创建的目录记录在内存中，在重新检查间隔内同一目录不再重复检查（目录可能被外部删除，过期后重新检查）。
+ * </p>
+ */
+@Slf4j
+@Component
+public class StorageLayoutResolver {
+
+    /**
+     * 已创建目录记录的上限，超过后清空重新记录
+     */
+    private static final int MAX_KNOWN_DIRECTORIES = 100_000;
+
+    /**
+     * 已创建目录的重新检查间隔（毫秒）
+     */
+    private static final long DIRECTORY_RECHECK_MILLIS = 60 * 1000L;
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern(FileConstant.DATE_FORMAT_YYYYMMDD);
+
+    /**
+     * 标准格式文件名中的MD5
+     */
+    private static final Pattern FILENAME_MD5_PATTERN = Pattern.compile("^.+_\\d{8}_.+_\\d+_\\d+_([a-fA-F0-9]{32}).*$");
+
+    private final FileProperties fileProperties;
+
+    @Getter
+    private final StorageLayout layout;
+
+    /**
+     * 已确认存在的目录及确认时间
+     */
+    private final Map<String, Long> knownDirectories = new ConcurrentHashMap<>();
+
+    public StorageLayoutResolver(FileProperties fileProperties, ObjectProvider<StorageLayout> customLayout) {
+        this.fileProperties = fileProperties;
+        StorageLayout custom = customLayout.getIfUnique();
+        this.layout = custom != null ? custom : LayoutType.valueOf(fileProperties.getStorage().getLayout().toUpperCase());
+        log.info("存储目录布局: {}", layout.getName());
+    }
+
+    /**
+     * 存储根目录
+     */
+    public Path getBasePath() {
+        return Paths.get(fileProperties.getStorage().getPath()).toAbsolutePath().normalize();
+    }
+
+    /**
+     * 日期目录（分块上传的临时目录和合并文件位于日期目录下，不参与分片）
+     *
+     * @param date 日期
+     * @return 日期目录
+     */
+    public File getDateDirectory(LocalDate date) {
+        return ensureDirectory(getBasePath().resolve(date.format(DATE_FORMATTER)).toFile());
+    }
+
+    /**
+     * 按布局计算文件的存储目录并确保目录存在
+     *
+     * @param date     文件日期
+     * @param deviceId 设备ID
+     * @param fileName 文件名
+     * @return 存储目录
+     */
+    public File resolveDirectory(LocalDate date, String deviceId, String fileName) {
+        return ensureDirectory(getBasePath().resolve(layout.resolveDirectory(date, deviceId, fileName)).toFile());
+    }
+
+    /**
+     * 计算文件相对于存储根目录的路径
+     *
+     * @param file 文件
+     * @return 使用/分隔的相对路径
+     */
+    public String relativize(File file) {
+        return getBasePath().relativize(file.toPath().toAbsolutePath().normalize()).toString().replace('\\', '/');
+    }
+
+    private File ensureDirectory(File directory) {
+        String key = directory.getPath();
+        long now = System.currentTimeMillis();
+        Long checkedAt = knownDirectories.get(key);
+        if (checkedAt != null && now - checkedAt < DIRECTORY_RECHECK_MILLIS) {
+            return directory;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            knownDirectories.remove(key);
+            throw new IllegalStateException("创建存储目录失败: " + directory.getAbsolutePath());
+        }
+        if (checkedAt == null && knownDirectories.size() >= MAX_KNOWN_DIRECTORIES) {
+            knownDirectories.clear();
+        }
+        knownDirectories.put(key, now);
+        return directory;
+    }
+
+    /**
+     * 内置存储布局
+     */
+    public enum LayoutType implements StorageLayout {
+        /**
+         * 按日期：yyyyMMdd
+         */
+        DATE {
+            @Override
+            public String resolveDirectory(LocalDate date, String deviceId, String fileName) {
+                return date.format(DATE_FORMATTER);
+            }
+        },
+        /**
+         * 按日期 + 设备ID哈希：yyyyMMdd/ab/cd，同一设备的文件位于同一目录
+         */
+        DEVICE_HASH {
+            @Override
+            public String resolveDirectory(LocalDate date, String deviceId, String fileName) {
+                return date.format(DATE_FORMATTER) + "/" + shard(md5Hex(deviceId == null ? "unknown" : deviceId));
+            }
+        },
+        /**
+         * 按日期 + 文件MD5前缀：yyyyMMdd/ab/cd，文件名中没有MD5时使用文件名（不含扩展名）的MD5
+         */
+        MD5_PREFIX {
+            @Override
+            public String resolveDirectory(LocalDate date, String deviceId, String fileName) {
+                String name = fileName == null ? "" : fileName;
+                Matcher matcher = FILENAME_MD5_PATTERN.matcher(name);
+                // 使用去掉扩展名的文件名，保证 .enc/.gz 等处理前后的文件落在同一目录
+                int dot = name.indexOf('.');
+                String md5 = matcher.matches() ? matcher.group(1).toLowerCase()
+                        : md5Hex(dot > 0 ? name.substring(0, dot) : name);
+                return date.format(DATE_FORMATTER) + "/" + shard(md5);
+            }
+        };
+
+        @Override
+        public String getName() {
+            return name();
+        }
+
+        private static String shard(String hex) {
+            return hex.substring(0, 2) + "/" + hex.substring(2, 4);
+        }
+
+        private static String md5Hex(String text) {
+            try {
+                MessageDigest md = MessageDigest.getInstance("MD5");
+                return FileEncryptUtil.toHex(md.digest(text.getBytes(StandardCharsets.UTF_8)));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("MD5算法不可用", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.mapper.TaskLockMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * 基于数据库的定时任务锁，保证多节点部署时同一任务只在一个节点上执行
+ * <p>
+ * 锁以租约方式持有（需执行db/t_task_lock.sql）：持有者需要在租约到期前续期，
+ * 节点异常退出未释放的锁在租约到期后可由其他节点获取。
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TaskLock {
+
+    private final TaskLockMapper taskLockMapper;
+
+    /**
+     * 尝试获取锁
+     *
+     * @param taskName 任务名
+     * @param lease    租约时长
+     * @return 持有者标识（续期和释放时使用），锁由其他持有者持有时返回null
+     */
+    public String tryLock(String taskName, Duration lease) {
+        String owner = UUID.randomUUID().toString().replace("-", "");
+        return taskLockMapper.tryLock(taskName, owner, lease.getSeconds()) > 0 ? owner : null;
+    }
+
+    /**
+     * 续期锁
+     *
+     * @param taskName 任务名
+     * @param owner    持有者标识
+     * @param lease    新的租约时长（从当前时间起算）
+     * @return 是否仍持有锁（租约已过期并被其他节点获取时返回false）
+     */
+    public boolean renew(String taskName, String owner, Duration lease) {
+        return taskLockMapper.tryLock(taskName, owner, lease.getSeconds()) > 0;
+    }
+
+    /**
+     * 释放锁
+     *
+     * @param taskName 任务名
+     * @param owner    持有者标识
+     */
+    public void unlock(String taskName, String owner) {
+        try {
+            taskLockMapper.unlock(taskName, owner);
+        } catch (RuntimeException e) {
+            // 释放失败时锁在租约到期后自动失效
+            log.warn("释放任务锁失败: taskName={}, 错误: {}", taskName, e.getMessage());
+        }
+    }
+}
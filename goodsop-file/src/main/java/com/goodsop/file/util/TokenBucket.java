@@ -0,0 +1,86 @@
+package com.goodsop.file.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 令牌桶限速器（按字节计）
+ * <p>
+ * 令牌按固定速率补充，桶容量为一秒的令牌数，允许短时突发。
+ * 只提供查询和扣减，不阻塞；多个令牌桶需要同时扣减时由调用方加锁，先取各桶可用量的最小值再统一扣减。
+ * </p>
+ */
+public class TokenBucket {
+
+    private final long ratePerSecond;
+
+    private final long capacity;
+
+    private final LongSupplier nanoClock;
+
+    private double tokens;
+
+    private long lastRefillNanos;
+
+    /**
+     * @param ratePerSecond 每秒补充的令牌数（字节/秒），必须大于0
+     */
+    public TokenBucket(long ratePerSecond) {
+        this(ratePerSecond, System::nanoTime);
+    }
+
+    TokenBucket(long ratePerSecond, LongSupplier nanoClock) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("限速必须大于0: " + ratePerSecond);
+        }
+        this.ratePerSecond = ratePerSecond;
+        this.capacity = ratePerSecond;
+        this.nanoClock = nanoClock;
+        this.tokens = ratePerSecond;
+        this.lastRefillNanos = nanoClock.getAsLong();
+    }
+
+    public long getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    /**
+     * 当前可用的令牌数
+     */
+    public synchronized long available() {
+        refill();
+        return (long) tokens;
+    }
+
+    /**
+     * 扣减令牌，n 不应超过 {@link #available()}
+     */
+    public synchronized void consume(long n) {
+        refill();
+        tokens = Math.max(tokens - n, 0);
+    }
+
+    /**
+     * 距离至少有 n 个令牌可用的等待时间
+     *
+     * @param n 令牌数，超过桶容量时按容量计算
+     * @return 等待时间（纳秒），令牌已足够时为0
+     */
+    public synchronized long nanosUntilAvailable(long n) {
+        refill();
+        double missing = Math.min(n, capacity) - tokens;
+        if (missing <= 0) {
+            return 0;
+        }
+        return (long) Math.ceil(missing * TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        long elapsed = now - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + (double) elapsed * ratePerSecond / TimeUnit.SECONDS.toNanos(1));
+            lastRefillNanos = now;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.config.FileProperties;
+import lombok.Data;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 上传元数据缓存
+ * <p>
+ * 保存分块上传过程中需要跨请求使用的少量元数据（原始扩展名、原始文件大小），
+ * 取代原先各处静态的无界Map。标准文件名映射在上传结束前必须保持不变，保存在上传会话中而不在本缓存中。
+ * 缓存按条目数和空闲时间（与临时文件最大保留时间一致）双重限制：
+ * 超过条目上限时淘汰最久未访问的条目，被放弃的上传的元数据在空闲超时后清理，
+ * {@link com.goodsop.file.task.FileCleanupTask} 删除过期的分块临时目录时也会同时清理对应的元数据。
+ * </p>
+ */
+@Slf4j
+@Component
+public class UploadMetadataCache {
+
+    private final FileProperties fileProperties;
+
+    private final Map<CacheKey, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder expirations = new LongAdder();
+
+    public UploadMetadataCache(FileProperties fileProperties) {
+        this.fileProperties = fileProperties;
+    }
+
+    /**
+     * 获取缓存值
+     *
+     * @param namespace 元数据类型
+     * @param key       键（文件名）
+     * @return 缓存值，不存在或已过期时返回null
+     */
+    public String get(Namespace namespace, String key) {
+        if (key == null) {
+            return null;
+        }
+        synchronized (entries) {
+            Entry entry = lookup(new CacheKey(namespace, key), System.currentTimeMillis());
+            return entry != null ? entry.value : null;
+        }
+    }
+
+    /**
+     * 写入缓存值
+     */
+    public void put(Namespace namespace, String key, String value) {
+        if (key == null || value == null) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(new CacheKey(namespace, key), new Entry(value, System.currentTimeMillis()));
+            evictOverflow();
+        }
+    }
+
+    /**
+     * 移除缓存值
+     *
+     * @return 被移除的值，不存在时返回null
+     */
+    public String remove(Namespace namespace, String key) {
+        if (key == null) {
+            return null;
+        }
+        synchronized (entries) {
+            Entry entry = entries.remove(new CacheKey(namespace, key));
+            return entry != null ? entry.value : null;
+        }
+    }
+
+    /**
+     * 清理一次上传的全部元数据（以该文件名为键的条目）
+     *
+     * @param fileName 文件名（分块临时目录名，即标准文件名）
+     * @return 清理的条目数
+     */
+    public int evictUpload(String fileName) {
+        int removed = 0;
+        synchronized (entries) {
+            Iterator<Map.Entry<CacheKey, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<CacheKey, Entry> e = iterator.next();
+                if (e.getKey().key.equals(fileName)) {
+                    iterator.remove();
+                    removed++;
+                }
+            }
+        }
+        if (removed > 0) {
+            evictions.add(removed);
+            log.info("清理被放弃的上传元数据: {}, 条目数: {}", fileName, removed);
+        }
+        return removed;
+    }
+
+    /**
+     * 定期清理空闲超时的条目
+     */
+    @Scheduled(fixedDelay = 10 * 60 * 1000L)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        long ttl = getTtlMillis();
+        int removed = 0;
+        synchronized (entries) {
+            // 按访问顺序排列，遇到第一个未过期的条目即可停止
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (now - entry.lastAccessTime <= ttl) {
+                    break;
+                }
+                iterator.remove();
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            expirations.add(removed);
+            CacheStats stats = getStats();
+            log.info("清理过期的上传元数据{}条 - 条目数: {}, 命中: {}, 未命中: {}, 淘汰: {}, 过期: {}", removed,
+                    stats.getSize(), stats.getHits(), stats.getMisses(), stats.getEvictions(), stats.getExpirations());
+        }
+    }
+
+    /**
+     * 缓存统计
+     */
+    public CacheStats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new CacheStats()
+                .setSize(size)
+                .setMaxEntries(getMaxEntries())
+                .setHits(hits.sum())
+                .setMisses(misses.sum())
+                .setEvictions(evictions.sum())
+                .setExpirations(expirations.sum());
+    }
+
+    private Entry lookup(CacheKey key, long now) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (now - entry.lastAccessTime > getTtlMillis()) {
+            entries.remove(key);
+            expirations.increment();
+            misses.increment();
+            return null;
+        }
+        entry.lastAccessTime = now;
+        hits.increment();
+        return entry;
+    }
+
+    private void evictOverflow() {
+        int maxEntries = getMaxEntries();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    private int getMaxEntries() {
+        return Math.max(1, fileProperties.getUpload().getMetadataCacheMaxEntries());
+    }
+
+    private long getTtlMillis() {
+        return fileProperties.getCleanup().getTempFileMaxAge() * 60 * 60 * 1000L;
+    }
+
+    /**
+     * 元数据类型
+     */
+    public enum Namespace {
+        EXTENSION,      // 文件名 -> 原始扩展名（解压后恢复扩展名）
+        ORIGINAL_SIZE   // 文件名 -> 解密/解压前的原始文件大小
+    }
+
+    private static final class CacheKey {
+        private final Namespace namespace;
+        private final String key;
+
+        private CacheKey(Namespace namespace, String key) {
+            this.namespace = namespace;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return namespace == other.namespace && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(namespace, key);
+        }
+    }
+
+    private static final class Entry {
+        private final String value;
+        private long lastAccessTime;
+
+        private Entry(String value, long lastAccessTime) {
+            this.value = value;
+            this.lastAccessTime = lastAccessTime;
+        }
+    }
+
+    /**
+     * 缓存统计
+     */
+    @Data
+    @Accessors(chain = true)
+    public static class CacheStats {
+        private int size;
+        private int maxEntries;
+        private long hits;
+        private long misses;
+        private long evictions;
+        private long expirations;
+    }
+}
@@ -0,0 +1,252 @@
+package com.goodsop.file.util;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一次分块上传的会话状态
+ * <p>
+ * 分块完成情况、分块大小以及"只完成一次"的状态切换保存在 {@link UploadSessionStore} 中（可在节点之间共享），
+ * 同一文件的多个分块并发到达时，只有一个请求能够通过 {@link #tryComplete()} 进入合并/收尾阶段；
+ * 增量摘要、并发名额、目录和预分配标记只与本节点有关，保存在本对象中。
+ * </p>
+ */
+@Slf4j
+public class UploadSession {
+
+    /**
+     * 设备ID
+     */
+    @Getter
+    private final String deviceId;
+
+    /**
+     * 客户端上传的文件名
+     */
+    @Getter
+    private final String fileName;
+
+    /**
+     * 共享的会话状态
+     */
+    @Getter
+    private final UploadSessionStore.SessionState state;
+
+    /**
+     * 按顺序到达的分块的增量MD5
+     */
+    @Getter
+    private final ChunkDigest digest;
+
+    /**
+     * 会话创建时间
+     */
+    @Getter
+    private final long createTime = System.currentTimeMillis();
+
+    /**
+     * 本节点最后一次收到分块的时间
+     */
+    @Getter
+    private volatile long lastAccessTime = createTime;
+
+    private volatile boolean allocated;
+
+    /**
+     * 存储目录是否已创建
+     */
+    @Getter
+    @Setter
+    private volatile boolean directoryReady;
+
+    /**
+     * 正在处理中的分块请求数
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public UploadSession(String deviceId, String fileName, UploadSessionStore.SessionState state) {
+        this.deviceId = deviceId;
+        this.fileName = fileName;
+        this.state = state;
+        this.digest = new ChunkDigest(state.getChunks());
+    }
+
+    /**
+     * 会话标识（设备ID + 文件名）
+     */
+    public String getKey() {
+        return state.getKey();
+    }
+
+    /**
+     * 总块数
+     */
+    public int getChunks() {
+        return state.getChunks();
+    }
+
+    /**
+     * 记录分块已写入
+     *
+     * @param chunk 分块索引
+     * @param bytes 分块字节数
+     * @return 该分块是否为首次写入
+     */
+    public boolean markChunk(int chunk, long bytes) {
+        lastAccessTime = System.currentTimeMillis();
+        return state.markChunk(chunk, bytes);
+    }
+
+    /**
+     * 所有分块都已写入时尝试把会话切换为完成状态，并发调用时只有一个调用返回true
+     */
+    public boolean tryComplete() {
+        return state.tryComplete();
+    }
+
+    /**
+     * 收尾失败时撤销完成状态，允许客户端重传最后一块重新触发收尾
+     */
+    public void resetCompletion() {
+        state.resetCompletion();
+    }
+
+    public boolean isCompleted() {
+        return state.isCompleted();
+    }
+
+    /**
+     * 在处理中的分块请求数未达到上限时占用一个名额
+     *
+     * @param limit 单个文件同时处理中的分块上限
+     * @return 是否占用成功
+     */
+    public boolean tryEnter(int limit) {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放 {@link #tryEnter(int)} 占用的名额
+     */
+    public void exit() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 获取尚未上传的分块索引
+     */
+    public List<Integer> getMissingChunks() {
+        return state.getMissingChunks();
+    }
+
+    public int getUploadedChunks() {
+        return state.getUploadedChunks();
+    }
+
+    public long getReceivedBytes() {
+        return state.getReceivedBytes();
+    }
+
+    public long getChunkSize() {
+        return state.getChunkSize();
+    }
+
+    public long getLastChunkLength() {
+        return state.getLastChunkLength();
+    }
+
+    /**
+     * 确定分块大小：优先使用请求参数，其次使用已记录的值，最后根据非最后一块的实际大小推断
+     *
+     * @param requested  客户端传入的分块大小，可为空
+     * @param chunk      当前分块索引
+     * @param actualSize 当前分块的实际大小
+     * @param maxLength  文件大小上限，chunks * 分块大小超过时拒绝（不记录该分块大小），0表示不限制
+     * @return 分块大小
+     */
+    public long resolveChunkSize(Long requested, int chunk, long actualSize, long maxLength) throws IOException {
+        int chunks = getChunks();
+        boolean last = chunk == chunks - 1;
+        long size = requested != null && requested > 0 ? requested : state.getChunkSize();
+        if (size <= 0) {
+            if (!last || chunks == 1) {
+                size = actualSize;
+            } else {
+                throw new IOException("无法确定分块大小，请携带chunkSize参数或先上传前面的分块");
+            }
+        }
+        if (maxLength > 0 && totalLength(chunks, size) > maxLength) {
+            throw new IOException("文件大小超过上限: " + chunks + " * " + size + " > " + maxLength);
+        }
+        long current = state.initChunkSize(size);
+        if (current != size) {
+            throw new IOException("分块大小与进行中的上传不一致: " + size + " != " + current);
+        }
+        if (last ? actualSize > size : actualSize != size) {
+            throw new IOException("分块" + chunk + "大小" + actualSize + "与分块大小" + size + "不符");
+        }
+        if (last) {
+            state.setLastChunkLength(actualSize);
+        }
+        return size;
+    }
+
+    /**
+     * 按 chunks * chunkSize 预分配数据文件，未写入的区域在大多数文件系统上不占用磁盘
+     */
+    public void preallocate(Path dataPath) throws IOException {
+        if (allocated) {
+            return;
+        }
+        synchronized (this) {
+            if (allocated) {
+                return;
+            }
+            long length = getChunks() * state.getChunkSize();
+            try (RandomAccessFile raf = new RandomAccessFile(dataPath.toFile(), "rw")) {
+                if (raf.length() < length) {
+                    raf.setLength(length);
+                }
+            }
+            allocated = true;
+            log.info("预分配分块上传文件: {}, 大小: {}", dataPath.toAbsolutePath(), length);
+        }
+    }
+
+    /**
+     * 预分配的大小 chunks * chunkSize，溢出时返回 Long.MAX_VALUE
+     */
+    private static long totalLength(int chunks, long chunkSize) {
+        try {
+            return Math.multiplyExact(chunks, chunkSize);
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * 上传完成后文件的实际大小
+     */
+    public long getTotalLength() {
+        return (getChunks() - 1) * state.getChunkSize() + state.getLastChunkLength();
+    }
+}
@@ -0,0 +1,131 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.config.FileProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 分块上传会话注册表
+ * <p>
+ * 以 设备ID + 文件名 为键维护进行中的分块上传，分块计数和完成判断由 {@link UploadSessionStore} 完成，
+ * 不再在每次请求时列出临时目录。使用共享存储时，其他节点创建的会话也能在本节点继续上传，
+ * 本节点缓存的会话对应的共享会话已结束（会话ID变化）时会重新创建本地会话。
+ * </p>
+ */
+@Slf4j
+@Component
+public class UploadSessionRegistry {
+
+    private static final String UNKNOWN_DEVICE = "unknown";
+
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    private final FileProperties fileProperties;
+
+    private final UploadSessionStore sessionStore;
+
+    public UploadSessionRegistry(FileProperties fileProperties, UploadSessionStore sessionStore) {
+        this.fileProperties = fileProperties;
+        this.sessionStore = sessionStore;
+        log.info("分块上传会话存储: {}", sessionStore.getName());
+    }
+
+    /**
+     * 获取或创建上传会话
+     *
+     * @param deviceId 设备ID
+     * @param fileName 文件名
+     * @param chunks   总块数
+     * @return 上传会话
+     * @throws IllegalArgumentException 总块数不在 1 ~ maxChunks 之间，或与进行中的上传不一致
+     */
+    public UploadSession getOrCreate(String deviceId, String fileName, int chunks) {
+        // 会话按总块数分配分块位图，先检查上限
+        int maxChunks = fileProperties.getUpload().getMaxChunks();
+        if (chunks <= 0 || chunks > maxChunks) {
+            throw new IllegalArgumentException("分块总数无效: " + chunks + "，上限: " + maxChunks);
+        }
+        String key = buildKey(deviceId, fileName);
+        UploadSessionStore.SessionState state = sessionStore.open(key, normalizeDeviceId(deviceId), fileName, chunks);
+        UploadSession session = attach(state, deviceId, fileName);
+        if (session.getChunks() != chunks) {
+            throw new IllegalArgumentException("分块总数与进行中的上传不一致: " + chunks + " != " + session.getChunks());
+        }
+        return session;
+    }
+
+    /**
+     * 获取上传会话
+     *
+     * @param deviceId 设备ID
+     * @param fileName 文件名
+     * @return 上传会话，不存在时返回null
+     */
+    public UploadSession get(String deviceId, String fileName) {
+        UploadSessionStore.SessionState state = sessionStore.find(buildKey(deviceId, fileName));
+        return state != null ? attach(state, deviceId, fileName) : null;
+    }
+
+    /**
+     * 移除上传会话（仅当注册表中仍是同一个会话时才移除）
+     */
+    public void remove(UploadSession session) {
+        sessionStore.remove(session.getState());
+        if (sessions.remove(session.getKey(), session)) {
+            log.info("移除分块上传会话: {}", session.getKey());
+        }
+    }
+
+    /**
+     * 进行中的上传会话数量
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * 会话存储名称
+     */
+    public String getStoreName() {
+        return sessionStore.getName();
+    }
+
+    /**
+     * 定期清理长时间没有收到分块的会话，过期时间与临时文件保留时间一致
+     */
+    @Scheduled(fixedDelay = 10 * 60 * 1000L)
+    public void evictIdleSessions() {
+        long maxAgeMillis = fileProperties.getCleanup().getTempFileMaxAge() * 60 * 60 * 1000L;
+        long expirationTimeMillis = System.currentTimeMillis() - maxAgeMillis;
+        // 本节点长时间未收到分块的会话只释放本地状态，共享状态由存储按最后访问时间统一清理
+        sessions.values().removeIf(session -> session.getLastAccessTime() < expirationTimeMillis);
+        sessionStore.evictIdle(expirationTimeMillis);
+    }
+
+    /**
+     * 获取与共享会话状态对应的本地会话，共享会话已更换时重新创建
+     */
+    private UploadSession attach(UploadSessionStore.SessionState state, String deviceId, String fileName) {
+        return sessions.compute(state.getKey(), (key, existing) -> {
+            if (existing != null && existing.getState().getSessionId().equals(state.getSessionId())) {
+                existing.getState().refresh(state);
+                return existing;
+            }
+            log.info("创建分块上传会话: {}, 总块数: {}", key, state.getChunks());
+            return new UploadSession(normalizeDeviceId(deviceId), fileName, state);
+        });
+    }
+
+    private String buildKey(String deviceId, String fileName) {
+        return normalizeDeviceId(deviceId) + "/" + fileName;
+    }
+
+    private String normalizeDeviceId(String deviceId) {
+        return StringUtils.hasText(deviceId) ? deviceId : UNKNOWN_DEVICE;
+    }
+}
@@ -0,0 +1,137 @@
+package com.goodsop.file.util;
+
+import java.util.List;
+
+/**
+ * 分块上传会话状态存储
+ * <p>
+ * 保存需要在节点之间共享的会话状态：分块完成情况、分块大小、完成标记、标准文件名和原始扩展名。
+ * 单节点部署使用内存存储（{@link InMemoryUploadSessionStore}）；多节点部署时配置
+ * goodsop.file.upload.session-store=DATABASE 使用数据库存储（{@link DatabaseUploadSessionStore}），
+ * 同一文件的分块可以落在负载均衡后的任意节点上，服务重启后也能继续上传。
+ * 摘要、并发名额等只与本节点有关的状态仍保存在 {@link UploadSession} 中。
+ * </p>
+ */
+public interface UploadSessionStore {
+
+    /**
+     * 存储名称
+     */
+    String getName();
+
+    /**
+     * 打开会话，不存在时创建
+     *
+     * @param key      会话标识（设备ID + 文件名）
+     * @param deviceId 设备ID
+     * @param fileName 文件名
+     * @param chunks   总块数（会话已存在时以已有的总块数为准）
+     * @return 会话状态
+     */
+    SessionState open(String key, String deviceId, String fileName, int chunks);
+
+    /**
+     * 查找会话
+     *
+     * @param key 会话标识
+     * @return 会话状态，不存在时返回null
+     */
+    SessionState find(String key);
+
+    /**
+     * 移除会话（仅当存储中仍是同一个会话时才移除）
+     */
+    void remove(SessionState state);
+
+    /**
+     * 移除最后访问时间早于指定时间的会话
+     *
+     * @param expirationTimeMillis 过期时间点
+     * @return 移除的会话数
+     */
+    int evictIdle(long expirationTimeMillis);
+
+    /**
+     * 单个会话的共享状态，所有方法都必须是线程安全的，多节点存储下还必须是跨节点原子的
+     */
+    interface SessionState {
+
+        /**
+         * 会话ID，同一标识的会话上传完成后再次上传会得到新的会话ID
+         */
+        String getSessionId();
+
+        String getKey();
+
+        int getChunks();
+
+        /**
+         * 记录分块已写入
+         *
+         * @return 该分块是否为首次写入
+         */
+        boolean markChunk(int chunk, long bytes);
+
+        int getUploadedChunks();
+
+        long getReceivedBytes();
+
+        List<Integer> getMissingChunks();
+
+        /**
+         * 所有分块都已写入时把会话切换为完成状态，并发调用时只有一个调用返回true
+         */
+        boolean tryComplete();
+
+        void resetCompletion();
+
+        boolean isCompleted();
+
+        /**
+         * 分块大小，尚未确定时返回0
+         */
+        long getChunkSize();
+
+        /**
+         * 分块大小尚未确定时设置为指定值
+         *
+         * @return 设置后生效的分块大小（已确定时返回已有的值）
+         */
+        long initChunkSize(long chunkSize);
+
+        /**
+         * 最后一块的实际大小，尚未上传时返回-1
+         */
+        long getLastChunkLength();
+
+        void setLastChunkLength(long length);
+
+        /**
+         * 标准文件名，尚未分配时返回null
+         */
+        String getStandardFileName();
+
+        /**
+         * 标准文件名尚未分配时分配为指定值
+         *
+         * @return 最终生效的标准文件名（已分配时返回已有的值）
+         */
+        String assignStandardFileName(String standardFileName);
+
+        /**
+         * 原始扩展名，未记录时返回null
+         */
+        String getOriginalExtension();
+
+        void setOriginalExtension(String originalExtension);
+
+        /**
+         * 用本次请求打开会话时读取的最新状态刷新本地缓存的状态（同一会话ID），
+         * 多节点存储借此在每次请求中只读取一次会话记录
+         *
+         * @param latest 本次请求打开的会话状态
+         */
+        default void refresh(SessionState latest) {
+        }
+    }
+}
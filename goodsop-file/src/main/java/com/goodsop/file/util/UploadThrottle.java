@@ -0,0 +1,81 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.exception.UploadThrottledException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 分块上传并发控制
+ * <p>
+ * 同一文件的分块允许乱序并发上传，但同时处理中的分块请求受两级上限约束：
+ * 全局上限保护节点的磁盘和内存，单文件上限避免一个设备占满全部名额。
+ * 达到上限时不排队等待，直接抛出 {@link UploadThrottledException} 让客户端稍后重试。
+ * </p>
+ */
+@Slf4j
+@Component
+public class UploadThrottle {
+
+    private final FileProperties fileProperties;
+
+    private final Semaphore globalPermits;
+
+    public UploadThrottle(FileProperties fileProperties) {
+        this.fileProperties = fileProperties;
+        this.globalPermits = new Semaphore(fileProperties.getUpload().getMaxInFlightChunks());
+    }
+
+    /**
+     * 为一个分块请求申请处理名额
+     *
+     * @param session 上传会话
+     * @return 处理名额，请求结束时必须关闭
+     * @throws UploadThrottledException 达到并发上限时抛出
+     */
+    public Permit acquire(UploadSession session) {
+        FileProperties.Upload upload = fileProperties.getUpload();
+        if (!globalPermits.tryAcquire()) {
+            log.warn("节点分块上传并发已达上限: {}, 拒绝分块请求: {}", upload.getMaxInFlightChunks(), session.getKey());
+            throw new UploadThrottledException("服务器繁忙，请稍后重试", upload.getRetryAfterSeconds());
+        }
+        if (!session.tryEnter(upload.getMaxInFlightChunksPerUpload())) {
+            globalPermits.release();
+            log.warn("文件分块上传并发已达上限: {}, 拒绝分块请求: {}", upload.getMaxInFlightChunksPerUpload(), session.getKey());
+            throw new UploadThrottledException("该文件同时上传的分块过多，请稍后重试", upload.getRetryAfterSeconds());
+        }
+        return new Permit(session);
+    }
+
+    /**
+     * 当前节点正在处理的分块请求数
+     */
+    public int getInFlight() {
+        return fileProperties.getUpload().getMaxInFlightChunks() - globalPermits.availablePermits();
+    }
+
+    /**
+     * 分块请求的处理名额
+     */
+    public class Permit implements AutoCloseable {
+
+        private final UploadSession session;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(UploadSession session) {
+            this.session = session;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                session.exit();
+                globalPermits.release();
+            }
+        }
+    }
+}
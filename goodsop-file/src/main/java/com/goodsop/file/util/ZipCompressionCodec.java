@@ -0,0 +1,54 @@
+package com.goodsop.file.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * ZIP编解码器：解压时取第一个文件条目，压缩时写入单个条目
+ */
+@Slf4j
+public class ZipCompressionCodec implements CompressionCodec {
+
+    @Override
+    public FileCompressUtil.CompressionType getType() {
+        return FileCompressUtil.CompressionType.ZIP;
+    }
+
+    @Override
+    public String getExtension() {
+        return ".zip";
+    }
+
+    @Override
+    public boolean matches(byte[] signature) {
+        // ZIP文件头标识：0x50 0x4b 0x03 0x04 (PK..)
+        return (signature[0] & 0xff) == 0x50 && (signature[1] & 0xff) == 0x4b
+                && (signature[2] & 0xff) == 0x03 && (signature[3] & 0xff) == 0x04;
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) throws IOException {
+        ZipInputStream zipIn = new ZipInputStream(in);
+        ZipEntry entry;
+        while ((entry = zipIn.getNextEntry()) != null) {
+            if (!entry.isDirectory()) {
+                log.info("流式解压ZIP条目: {}", entry.getName());
+                return zipIn;
+            }
+        }
+        throw new IOException("ZIP数据中没有找到文件条目");
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out, String entryName) throws IOException {
+        ZipOutputStream zipOut = new ZipOutputStream(out);
+        zipOut.putNextEntry(new ZipEntry(entryName != null ? entryName : "data"));
+        return zipOut;
+    }
+}
@@ -0,0 +1,185 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.constant.FileConstant;
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 边读边写的ZIP输出流，用于把多个文件直接打包输出到响应，不生成临时压缩包
+ * <p>
+ * 每个条目逐块读取文件写出，内存占用与文件数量和大小无关（只保留已用的条目名用于去重）。
+ * 已压缩的格式（Speex编码的.bin录音、MP3等）以STORED方式原样存储，避免无意义的CPU消耗；
+ * STORED条目的本地头需要预先写入CRC32，因此先读一遍文件计算CRC再输出（第二遍通常命中页缓存）。
+ * 其余文件以deflate压缩，条目大小在数据描述符中给出。总大小或条目数超过ZIP限制时自动使用ZIP64。
+ * </p>
+ */
+public class ZipStreamWriter implements Closeable {
+
+    private final ZipOutputStream zip;
+
+    private final Set<String> entryNames = new HashSet<>();
+
+    private int entryCount;
+
+    /**
+     * @param out   输出流（deflate输出的小块在缓冲后再写出）
+     * @param level deflate压缩级别 1-9，-1为默认级别(6)
+     */
+    public ZipStreamWriter(OutputStream out, int level) {
+        this.zip = new ZipOutputStream(new BufferedOutputStream(out, FileConstant.STREAM_BUFFER_SIZE), StandardCharsets.UTF_8);
+        this.zip.setLevel(level);
+    }
+
+    /**
+     * 写入一个文件条目
+     *
+     * @param entry 条目
+     * @return 实际使用的条目名（重名时追加序号）
+     */
+    public String write(Entry entry) throws Exception {
+        FileTransferUtil.RangeWriter writer = entry.getWriter() != null
+                ? entry.getWriter() : FileTransferUtil.rawRangeWriter();
+        try (FileChannel channel = FileChannel.open(entry.getFile().toPath(), StandardOpenOption.READ)) {
+            long length = channel.size() - entry.getContentOffset();
+            if (length < 0) {
+                throw new IOException("文件长度不足: " + entry.getFile().getAbsolutePath());
+            }
+            ZipEntry zipEntry = new ZipEntry(uniqueName(entry.getName()));
+            if (entry.getLastModified() > 0) {
+                zipEntry.setTime(entry.getLastModified());
+            }
+            if (entry.isStored()) {
+                CrcOutputStream checksum = new CrcOutputStream();
+                writer.write(channel, 0, length, checksum);
+                zipEntry.setMethod(ZipEntry.STORED);
+                zipEntry.setSize(checksum.size);
+                zipEntry.setCompressedSize(checksum.size);
+                zipEntry.setCrc(checksum.crc.getValue());
+            }
+            zip.putNextEntry(zipEntry);
+            writer.write(channel, 0, length, zip);
+            zip.closeEntry();
+            entryCount++;
+            return zipEntry.getName();
+        }
+    }
+
+    /**
+     * 写入一个文本条目（如打包说明）
+     *
+     * @param name 条目名
+     * @param text 内容
+     */
+    public void writeText(String name, String text) throws IOException {
+        zip.putNextEntry(new ZipEntry(uniqueName(name)));
+        zip.write(text.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+        entryCount++;
+    }
+
+    /**
+     * 已写入的条目数
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * 写入中央目录并关闭底层输出流
+     */
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+
+    /**
+     * 只取文件名的最后一段（防止解压时 ../ 跳出目标目录），重名时追加序号
+     */
+    private String uniqueName(String name) {
+        String fileName = name != null ? FilenameUtils.getName(name) : "";
+        if (fileName.isEmpty() || ".".equals(fileName) || "..".equals(fileName)) {
+            fileName = "entry";
+        }
+        String baseName = FilenameUtils.removeExtension(fileName);
+        String extension = FilenameUtils.getExtension(fileName);
+        String candidate = fileName;
+        for (int i = 1; !entryNames.add(candidate); i++) {
+            candidate = baseName + "_" + i + (extension.isEmpty() ? "" : "." + extension);
+        }
+        return candidate;
+    }
+
+    /**
+     * 打包的文件条目
+     */
+    @Data
+    @Accessors(chain = true)
+    public static class Entry {
+        /**
+         * 条目名
+         */
+        private String name;
+
+        /**
+         * 磁盘上的文件
+         */
+        private File file;
+
+        /**
+         * 文件开头不属于条目内容的字节数（如静态加密文件的IV，由 writer 负责跳过）
+         */
+        private long contentOffset;
+
+        /**
+         * 内容输出方式（如加密文件实时解密），为空时输出文件原始字节
+         */
+        private FileTransferUtil.RangeWriter writer;
+
+        /**
+         * 最后修改时间（毫秒），为0时使用当前时间
+         */
+        private long lastModified;
+
+        /**
+         * 是否原样存储（已压缩的格式），否则deflate压缩
+         */
+        private boolean stored;
+    }
+
+    /**
+     * 只计算CRC32和长度的输出流
+     */
+    private static final class CrcOutputStream extends OutputStream {
+
+        private final CRC32 crc = new CRC32();
+
+        private long size;
+
+        @Override
+        public void write(int b) {
+            crc.update(b);
+            size++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            crc.update(b, off, len);
+            size += len;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.goodsop.file.util;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Zstandard编解码器（zstd-jni本地库），压缩率接近GZIP高级别，速度远高于GZIP
+ */
+public class ZstdCompressionCodec implements CompressionCodec {
+
+    /**
+     * 默认压缩级别（zstd默认值）
+     */
+    public static final int DEFAULT_LEVEL = 3;
+
+    private final int level;
+
+    public ZstdCompressionCodec() {
+        this(DEFAULT_LEVEL);
+    }
+
+    /**
+     * @param level 压缩级别 1-22，负数为快速模式
+     */
+    public ZstdCompressionCodec(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public FileCompressUtil.CompressionType getType() {
+        return FileCompressUtil.CompressionType.ZSTD;
+    }
+
+    @Override
+    public String getExtension() {
+        return ".zst";
+    }
+
+    @Override
+    public boolean matches(byte[] signature) {
+        // zstd帧魔数（小端 0xFD2FB528）：0x28 0xb5 0x2f 0xfd
+        return (signature[0] & 0xff) == 0x28 && (signature[1] & 0xff) == 0xb5
+                && (signature[2] & 0xff) == 0x2f && (signature[3] & 0xff) == 0xfd;
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) throws IOException {
+        return new ZstdInputStream(in);
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out, String entryName) throws IOException {
+        return new ZstdOutputStream(out, level);
+    }
+}
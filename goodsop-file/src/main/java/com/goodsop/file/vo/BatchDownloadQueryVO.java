@@ -0,0 +1,51 @@
+package com.goodsop.file.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 批量打包下载的查询条件
+ * <p>
+ * 指定文件ID列表时只打包这些文件（其余条件作为附加过滤），否则至少需要设备ID或录音日期范围之一。
+ * </p>
+ */
+@Data
+@Schema(description = "批量打包下载的查询条件")
+public class BatchDownloadQueryVO {
+
+    /**
+     * 文件ID列表
+     */
+    @Schema(description = "文件ID列表（逗号分隔或重复参数）", example = "1,2,3")
+    private List<Long> ids;
+
+    /**
+     * 设备ID
+     */
+    @Schema(description = "设备ID")
+    private String deviceId;
+
+    /**
+     * 录音日期起始（含）
+     */
+    @Schema(description = "录音日期起始（含）", example = "2024-05-01")
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate startDate;
+
+    /**
+     * 录音日期结束（含）
+     */
+    @Schema(description = "录音日期结束（含）", example = "2024-05-31")
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate endDate;
+
+    /**
+     * 文件类型（扩展名）
+     */
+    @Schema(description = "文件类型（扩展名）", example = "wav")
+    private String fileType;
+}
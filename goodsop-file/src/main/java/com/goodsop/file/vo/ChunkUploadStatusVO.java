@@ -0,0 +1,63 @@
+package com.goodsop.file.vo;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.List;
+
+@Data
+@Accessors(chain = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "分块上传状态")
+public class ChunkUploadStatusVO {
+
+    @Schema(description = "文件名")
+    private String fileName;
+
+    @Schema(description = "设备ID")
+    private String deviceId;
+
+    @Schema(description = "是否存在进行中的上传")
+    private Boolean exists;
+
+    @Schema(description = "总块数")
+    private Integer chunks;
+
+    @Schema(description = "已上传的块数")
+    private Integer uploadedChunks;
+
+    @Schema(description = "缺失的分块索引，客户端只需补传这些分块")
+    private List<Integer> missingChunks;
+
+    @Schema(description = "已接收的字节数")
+    private Long receivedBytes;
+
+    @Schema(description = "分块大小（字节）")
+    private Long chunkSize;
+
+    @Schema(description = "是否已全部上传")
+    private Boolean completed;
+
+    @Schema(description = "文件ID，该设备已上传过该文件时返回，客户端无需再上传")
+    private Long fileId;
+
+    @Schema(description = "文件访问URL，该设备已上传过该文件时返回")
+    private String accessUrl;
+
+    @Schema(description = "秒传校验令牌，服务端已有相同内容时返回，客户端提交校验范围内容的MD5即可秒传")
+    private String challengeToken;
+
+    @Schema(description = "秒传校验范围起始偏移量（字节）")
+    private Long challengeOffset;
+
+    @Schema(description = "秒传校验范围长度（字节）")
+    private Long challengeLength;
+
+    @Schema(description = "是否秒传（服务端已有相同内容的文件，未重复存储）")
+    private Boolean deduplicated;
+
+    @Schema(description = "建议上传前使用的压缩格式（NONE/GZIP/ZSTD/LZ4），NONE表示内容已压缩（如Speex录音），无需再压缩")
+    private String recommendedCompression;
+}
@@ -0,0 +1,48 @@
+package com.goodsop.file.vo;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.time.LocalDateTime;
+
+@Data
+@Accessors(chain = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "文件后台处理状态")
+public class FileProcessingStatusVO {
+
+    @Schema(description = "处理ID")
+    private String processingId;
+
+    @Schema(description = "文件ID")
+    private Long fileId;
+
+    @Schema(description = "处理状态: QUEUED-排队中，PROCESSING-处理中，COMPLETED-处理完成，FAILED-处理失败")
+    private String state;
+
+    @Schema(description = "失败原因")
+    private String message;
+
+    @Schema(description = "文件状态: 0-上传中(后台处理中)，1-已完成，3-处理失败")
+    private Integer status;
+
+    @Schema(description = "文件名")
+    private String fileName;
+
+    @Schema(description = "文件大小（字节）")
+    private Long fileSize;
+
+    @Schema(description = "文件MD5")
+    private String fileMd5;
+
+    @Schema(description = "文件访问URL")
+    private String accessUrl;
+
+    @Schema(description = "提交时间")
+    private LocalDateTime submitTime;
+
+    @Schema(description = "结束时间")
+    private LocalDateTime finishTime;
+}
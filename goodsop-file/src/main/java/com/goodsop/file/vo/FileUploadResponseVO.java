@@ -47,6 +47,27 @@ public class FileUploadResponseVO {
     @Schema(description = "是否上传完成")
     private Boolean completed;
 
+    @Schema(description = "后台处理ID，上传完成后用于查询解密/解压处理状态")
+    private String processingId;
+
+    @Schema(description = "文件状态: 0-上传中(后台处理中)，1-已完成，3-处理失败")
+    private Integer status;
+
+    @Schema(description = "服务端计算的当前分块CRC32C校验值(8位十六进制)")
+    private String chunkCrc32c;
+
+    @Schema(description = "是否秒传（服务端已有相同内容的文件，未重复存储）")
+    private Boolean deduplicated;
+
+    @Schema(description = "秒传校验令牌，客户端需携带该令牌和校验范围内容的MD5重新请求秒传")
+    private String challengeToken;
+
+    @Schema(description = "秒传校验范围起始偏移量（字节）")
+    private Long challengeOffset;
+
+    @Schema(description = "秒传校验范围长度（字节）")
+    private Long challengeLength;
+
     @Schema(description = "响应消息")
     private String message;
     
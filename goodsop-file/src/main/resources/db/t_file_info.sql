@@ -32,6 +32,15 @@ CREATE INDEX "idx_file_info_file_hash" ON "public"."t_file_info" USING btree (
   "file_md5" COLLATE "pg_catalog"."default" "pg_catalog"."text_ops" ASC NULLS LAST
 );
 
+CREATE INDEX "idx_file_info_md5_size" ON "public"."t_file_info" USING btree (
+  "file_md5" COLLATE "pg_catalog"."default" "pg_catalog"."text_ops" ASC NULLS LAST,
+  "file_size" "pg_catalog"."int8_ops" ASC NULLS LAST
+);
+
+CREATE INDEX "idx_file_info_file_path" ON "public"."t_file_info" USING btree (
+  "file_path" COLLATE "pg_catalog"."default" "pg_catalog"."text_ops" ASC NULLS LAST
+);
+
 CREATE INDEX "idx_file_info_record_date" ON "public"."t_file_info" USING btree (
   "record_date" "pg_catalog"."date_ops" ASC NULLS LAST
 );
@@ -68,7 +77,7 @@ COMMENT ON COLUMN "public"."t_file_info"."record_duration" IS '录音时长(毫
 
 COMMENT ON COLUMN "public"."t_file_info"."upload_time" IS '上传时间';
 
-COMMENT ON COLUMN "public"."t_file_info"."status" IS '文件状态: 0-上传中，1-已完成，2-已失效';
+COMMENT ON COLUMN "public"."t_file_info"."status" IS '文件状态: 0-上传中，1-已完成，2-已失效，3-处理失败';
 
 COMMENT ON COLUMN "public"."t_file_info"."create_time" IS '创建时间';
 
@@ -76,4 +85,13 @@ COMMENT ON COLUMN "public"."t_file_info"."update_time" IS '更新时间';
 
 COMMENT ON COLUMN "public"."t_file_info"."deleted" IS '是否删除: 0-未删除，1-已删除';
 
-COMMENT ON TABLE "public"."t_file_info" IS '文件信息表';
\ No newline at end of file
+COMMENT ON TABLE "public"."t_file_info" IS '文件信息表';
+
+-- 后台处理ID：分块上传完成后按处理ID查询处理状态（已有数据库执行以下语句升级）
+ALTER TABLE "public"."t_file_info" ADD COLUMN IF NOT EXISTS "processing_id" varchar(32) COLLATE "pg_catalog"."default";
+
+COMMENT ON COLUMN "public"."t_file_info"."processing_id" IS '后台处理ID';
+
+CREATE INDEX IF NOT EXISTS "idx_file_info_processing_id" ON "public"."t_file_info" USING btree (
+  "processing_id" COLLATE "pg_catalog"."default" "pg_catalog"."text_ops" ASC NULLS LAST
+);
@@ -0,0 +1,15 @@
+CREATE TABLE "public"."t_task_lock" (
+  "task_name" varchar(64) COLLATE "pg_catalog"."default" NOT NULL,
+  "owner" varchar(64) COLLATE "pg_catalog"."default" NOT NULL,
+  "locked_until" timestamp(6) NOT NULL,
+  CONSTRAINT "t_task_lock_pkey" PRIMARY KEY ("task_name")
+)
+;
+
+ALTER TABLE "public"."t_task_lock" 
+  OWNER TO "post";
+
+COMMENT ON COLUMN "public"."t_task_lock"."task_name" IS '任务名';
+COMMENT ON COLUMN "public"."t_task_lock"."owner" IS '持有者标识';
+COMMENT ON COLUMN "public"."t_task_lock"."locked_until" IS '租约到期时间，到期后其他节点可获取';
+COMMENT ON TABLE "public"."t_task_lock" IS '定时任务锁表';
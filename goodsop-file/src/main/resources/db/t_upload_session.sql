@@ -0,0 +1,59 @@
+CREATE TABLE "public"."t_upload_session" (
+  "session_key" varchar(512) COLLATE "pg_catalog"."default" NOT NULL,
+  "session_id" varchar(32) COLLATE "pg_catalog"."default" NOT NULL,
+  "device_id" varchar(64) COLLATE "pg_catalog"."default" NOT NULL,
+  "file_name" varchar(255) COLLATE "pg_catalog"."default" NOT NULL,
+  "chunks" int4 NOT NULL,
+  "chunk_size" int8 DEFAULT 0,
+  "last_chunk_length" int8 DEFAULT -1,
+  "completed" int4 DEFAULT 0,
+  "standard_file_name" varchar(255) COLLATE "pg_catalog"."default",
+  "original_extension" varchar(32) COLLATE "pg_catalog"."default",
+  "create_time" timestamp(6) DEFAULT CURRENT_TIMESTAMP,
+  "last_access_time" timestamp(6) DEFAULT CURRENT_TIMESTAMP,
+  CONSTRAINT "t_upload_session_pkey" PRIMARY KEY ("session_key")
+)
+;
+
+ALTER TABLE "public"."t_upload_session" 
+  OWNER TO "post";
+
+CREATE UNIQUE INDEX "idx_upload_session_session_id" ON "public"."t_upload_session" USING btree (
+  "session_id" COLLATE "pg_catalog"."default" "pg_catalog"."text_ops" ASC NULLS LAST
+);
+
+CREATE INDEX "idx_upload_session_last_access_time" ON "public"."t_upload_session" USING btree (
+  "last_access_time" "pg_catalog"."timestamp_ops" ASC NULLS LAST
+);
+
+COMMENT ON COLUMN "public"."t_upload_session"."session_key" IS '会话标识(设备ID/文件名)';
+COMMENT ON COLUMN "public"."t_upload_session"."session_id" IS '会话ID';
+COMMENT ON COLUMN "public"."t_upload_session"."device_id" IS '设备ID';
+COMMENT ON COLUMN "public"."t_upload_session"."file_name" IS '客户端上传的文件名';
+COMMENT ON COLUMN "public"."t_upload_session"."chunks" IS '总块数';
+COMMENT ON COLUMN "public"."t_upload_session"."chunk_size" IS '分块大小(字节)，0表示尚未确定';
+COMMENT ON COLUMN "public"."t_upload_session"."last_chunk_length" IS '最后一块的实际大小(字节)，-1表示尚未上传';
+COMMENT ON COLUMN "public"."t_upload_session"."completed" IS '是否已完成: 0-未完成，1-已完成';
+COMMENT ON COLUMN "public"."t_upload_session"."standard_file_name" IS '分配的标准文件名';
+COMMENT ON COLUMN "public"."t_upload_session"."original_extension" IS '原始文件扩展名';
+COMMENT ON COLUMN "public"."t_upload_session"."create_time" IS '创建时间';
+COMMENT ON COLUMN "public"."t_upload_session"."last_access_time" IS '最后一次收到分块的时间';
+COMMENT ON TABLE "public"."t_upload_session" IS '分块上传会话表';
+
+CREATE TABLE "public"."t_upload_chunk" (
+  "session_id" varchar(32) COLLATE "pg_catalog"."default" NOT NULL,
+  "chunk_index" int4 NOT NULL,
+  "chunk_bytes" int8 NOT NULL,
+  "create_time" timestamp(6) DEFAULT CURRENT_TIMESTAMP,
+  CONSTRAINT "t_upload_chunk_pkey" PRIMARY KEY ("session_id", "chunk_index")
+)
+;
+
+ALTER TABLE "public"."t_upload_chunk" 
+  OWNER TO "post";
+
+COMMENT ON COLUMN "public"."t_upload_chunk"."session_id" IS '会话ID';
+COMMENT ON COLUMN "public"."t_upload_chunk"."chunk_index" IS '分块索引';
+COMMENT ON COLUMN "public"."t_upload_chunk"."chunk_bytes" IS '分块大小(字节)';
+COMMENT ON COLUMN "public"."t_upload_chunk"."create_time" IS '写入时间';
+COMMENT ON TABLE "public"."t_upload_chunk" IS '分块上传已写入分块表';
@@ -0,0 +1,184 @@
+package com.goodsop.file.benchmark;
+
+import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.constant.FileConstant;
+import com.goodsop.file.util.AesCtrCipherPool;
+import com.goodsop.file.util.FileEncryptUtil;
+import com.goodsop.file.util.ParallelTaskExecutor;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AES/CTR文件解密吞吐量基准测试：原实现(CipherInputStream + 8KB缓冲) vs 池化Cipher + FileChannel直接缓冲区
+ * <p>
+ * 结果中的 megabytes 计数即为解密吞吐量（MB/s）。
+ * POOLED_STREAM 为文件处理管道使用的解密流（池化Cipher + 64KB整块解密），
+ * POOLED_SEQUENTIAL 为单线程的FileChannel解密；POOLED_CHANNEL 即 decryptFile：未超过并行阈值（32MB）时使用解密流，超过时按段并行解密。
+ * 运行方式：mvn -pl goodsop-file test-compile 后执行本类的main方法
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AesDecryptBenchmark {
+
+    private static final String KEY = FileConstant.AES_KEY;
+
+    /**
+     * 密文大小：1MB / 10MB / 100MB
+     */
+    @Param({"1048576", "10485760", "104857600"})
+    private int size;
+
+    @Param({"LEGACY_STREAM", "POOLED_STREAM", "POOLED_SEQUENTIAL", "POOLED_CHANNEL"})
+    private String engine;
+
+    private FileEncryptUtil fileEncryptUtil;
+
+    private File workDir;
+
+    private File encryptedFile;
+
+    private File targetFile;
+
+    /**
+     * 解密的数据量（MB），JMH按每秒的增量输出
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public double megabytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fileEncryptUtil = new FileEncryptUtil(new ParallelTaskExecutor(new FileProperties()));
+        workDir = Files.createTempDirectory("aes_bench_").toFile();
+        File plainFile = new File(workDir, "plain.bin");
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        Files.write(plainFile.toPath(), data);
+        encryptedFile = fileEncryptUtil.encryptFile(plainFile, new File(workDir, "plain.bin.enc"), KEY);
+        targetFile = new File(workDir, "decrypted.bin");
+    }
+
+    @Benchmark
+    public long decrypt(Throughput throughput) throws Exception {
+        switch (engine) {
+            case "LEGACY_STREAM":
+                legacyDecrypt(encryptedFile, targetFile, KEY);
+                break;
+            case "POOLED_CHANNEL":
+                fileEncryptUtil.decryptFile(encryptedFile, targetFile, KEY);
+                break;
+            case "POOLED_SEQUENTIAL":
+                pooledSequentialDecrypt(encryptedFile, targetFile, KEY);
+                break;
+            default:
+                pooledStreamDecrypt(encryptedFile, targetFile, KEY);
+                break;
+        }
+        throughput.megabytes += size / (1024.0 * 1024.0);
+        return targetFile.length();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    /**
+     * 原 FileEncryptUtil.decryptFile 的解密过程：每个文件获取一次Cipher，CipherInputStream + 8KB缓冲
+     */
+    private static void legacyDecrypt(File source, File target, String key) throws IOException, GeneralSecurityException {
+        SecretKey secretKey = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), FileConstant.ALGORITHM_AES);
+        try (FileInputStream fis = new FileInputStream(source);
+             FileOutputStream fos = new FileOutputStream(target)) {
+            byte[] iv = new byte[FileConstant.IV_SIZE];
+            if (fis.read(iv) != FileConstant.IV_SIZE) {
+                throw new IOException("无法读取IV");
+            }
+            Cipher cipher = Cipher.getInstance(FileConstant.TRANSFORMATION_AES);
+            cipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(iv));
+            try (CipherInputStream cis = new CipherInputStream(fis, cipher)) {
+                byte[] buffer = new byte[8192];
+                int len;
+                while ((len = cis.read(buffer)) > 0) {
+                    fos.write(buffer, 0, len);
+                }
+            }
+        }
+    }
+
+    private void pooledSequentialDecrypt(File source, File target, String key) throws IOException, GeneralSecurityException {
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer iv = ByteBuffer.allocate(FileConstant.IV_SIZE);
+            in.read(iv, 0);
+            try (AesCtrCipherPool.Lease lease = fileEncryptUtil.getCipherPool()
+                    .acquire(Cipher.DECRYPT_MODE, fileEncryptUtil.resolveDecryptKey(key), iv.array())) {
+                lease.transform(in, FileConstant.IV_SIZE, in.size() - FileConstant.IV_SIZE, out, 0);
+            }
+        }
+    }
+
+    private void pooledStreamDecrypt(File source, File target, String key) throws IOException, GeneralSecurityException {
+        try (FileInputStream fis = new FileInputStream(source);
+             OutputStream out = new FileOutputStream(target)) {
+            byte[] iv = fis.readNBytes(FileConstant.IV_SIZE);
+            try (InputStream in = fileEncryptUtil.openDecryptStream(fis, fileEncryptUtil.resolveDecryptKey(key), iv)) {
+                byte[] buffer = new byte[FileConstant.STREAM_BUFFER_SIZE];
+                int len;
+                while ((len = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, len);
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AesDecryptBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,111 @@
+package com.goodsop.file.benchmark;
+
+import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.constant.FileConstant;
+import com.goodsop.file.util.FileCompressUtil;
+import com.goodsop.file.util.FileEncryptUtil;
+import com.goodsop.file.util.FileStreamPipeline;
+import com.goodsop.file.util.ParallelTaskExecutor;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * 静态加密开销基准测试：文件处理管道落盘（同时计算MD5）时 不加密 vs AES/CTR静态加密
+ * <p>
+ * 结果中的 megabytes 计数即为落盘吞吐量（MB/s），两者之差即启用 goodsop.file.storage.encrypt-at-rest 的开销。
+ * 运行方式：mvn -pl goodsop-file test-compile 后执行本类的main方法
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AtRestEncryptionBenchmark {
+
+    /**
+     * 文件大小：10MB / 100MB
+     */
+    @Param({"10485760", "104857600"})
+    private int size;
+
+    @Param({"false", "true"})
+    private boolean encryptAtRest;
+
+    private FileStreamPipeline fileStreamPipeline;
+
+    private File workDir;
+
+    private File sourceFile;
+
+    private File targetFile;
+
+    /**
+     * 落盘的数据量（MB），JMH按每秒的增量输出
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public double megabytes;
+    }
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        ParallelTaskExecutor parallelTaskExecutor = new ParallelTaskExecutor(new FileProperties());
+        fileStreamPipeline = new FileStreamPipeline(new FileEncryptUtil(parallelTaskExecutor),
+                new FileCompressUtil(mock(ObjectProvider.class), parallelTaskExecutor));
+        workDir = Files.createTempDirectory("at_rest_bench_").toFile();
+        sourceFile = new File(workDir, "source.bin");
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        Files.write(sourceFile.toPath(), data);
+        targetFile = new File(workDir, "stored.bin");
+    }
+
+    @Benchmark
+    public String store(Throughput throughput) throws IOException {
+        FileStreamPipeline.PipelineResult result = fileStreamPipeline.process(new FileSystemResource(sourceFile), targetFile,
+                new FileStreamPipeline.PipelineOptions().setEncryptAtRest(encryptAtRest).setAtRestKey(FileConstant.AES_KEY));
+        throughput.megabytes += size / (1024.0 * 1024.0);
+        return result.getMd5();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AtRestEncryptionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,106 @@
+package com.goodsop.file.benchmark;
+
+import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.util.FileSender;
+import com.goodsop.file.util.FileTransferUtil;
+import com.goodsop.file.util.InMemoryUploadSessionStore;
+import com.goodsop.file.util.UploadMetadataCache;
+import com.goodsop.file.util.UploadSessionRegistry;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分块合并性能基准测试：零拷贝(transferTo) vs 缓冲区复制
+ * <p>
+ * 运行方式：mvn -pl goodsop-file test-compile 后执行本类的main方法，
+ * 或 java -cp "target/test-classes:target/classes:依赖" org.openjdk.jmh.Main ChunkMergeBenchmark
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChunkMergeBenchmark {
+
+    /**
+     * 合并后的文件总大小（默认100MB，与设备上传的大文件一致）
+     */
+    @Param({"104857600"})
+    private long totalSize;
+
+    /**
+     * 单个分块大小：64KB / 1MB / 8MB
+     */
+    @Param({"65536", "1048576", "8388608"})
+    private int partSize;
+
+    @Param({"BUFFERED", "ZERO_COPY"})
+    private FileTransferUtil.MergeMode mergeMode;
+
+    private FileTransferUtil fileTransferUtil;
+
+    private File workDir;
+
+    private File partsDir;
+
+    private File targetFile;
+
+    private int chunks;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fileTransferUtil = new FileTransferUtil(new FileProperties(), new UploadSessionRegistry(new FileProperties(), new InMemoryUploadSessionStore()),
+                new UploadMetadataCache(new FileProperties()), new FileSender(new FileProperties()));
+        workDir = Files.createTempDirectory("merge_bench_").toFile();
+        partsDir = new File(workDir, "parts");
+        partsDir.mkdirs();
+        targetFile = new File(workDir, "merged.bin");
+
+        chunks = (int) ((totalSize + partSize - 1) / partSize);
+        byte[] data = new byte[partSize];
+        new Random(42).nextBytes(data);
+        for (int i = 0; i < chunks; i++) {
+            Files.write(new File(partsDir, i + ".part").toPath(), data);
+        }
+    }
+
+    @Benchmark
+    public long merge() throws IOException {
+        fileTransferUtil.mergeChunks(partsDir, targetFile, chunks, mergeMode);
+        return targetFile.length();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ChunkMergeBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
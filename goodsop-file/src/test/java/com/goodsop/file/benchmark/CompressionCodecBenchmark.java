@@ -0,0 +1,163 @@
+package com.goodsop.file.benchmark;
+
+import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.util.CompressionCodec;
+import com.goodsop.file.util.FileCompressUtil;
+import com.goodsop.file.util.ParallelTaskExecutor;
+import com.goodsop.file.util.WavUtil;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * 压缩编解码器基准测试：GZIP / ZSTD / LZ4 在录音WAV与Speex(.bin)样本上的压缩率与吞吐量
+ * <p>
+ * 结果中的 megabytes 计数即为按原始数据计的吞吐量（MB/s），压缩率在每个组合开始时打印。
+ * 默认使用合成样本（16kHz/16bit单声道的类语音PCM、接近随机的Speex帧）；
+ * 指定 -Dgoodsop.bench.samples=目录 时改用该目录下的 sample.wav 与 sample.bin 真实样本。
+ * 运行方式：mvn -pl goodsop-file test-compile 后执行本类的main方法
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompressionCodecBenchmark {
+
+    private static final int SAMPLE_RATE = 16000;
+
+    /**
+     * 合成样本大小：8MB（16kHz/16bit单声道约4分钟录音）。
+     * LZ4的纯Java编码器压缩WAV极慢，测LZ4时可用 -p size=1048576 缩小样本
+     */
+    @Param({"8388608"})
+    private int size;
+
+    @Param({"WAV", "SPEEX"})
+    private String sample;
+
+    @Param({"GZIP", "ZSTD", "LZ4"})
+    private String codec;
+
+    private CompressionCodec compressionCodec;
+
+    private byte[] original;
+
+    private byte[] compressed;
+
+    /**
+     * 处理的原始数据量（MB），JMH按每秒的增量输出
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public double megabytes;
+    }
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        compressionCodec = new FileCompressUtil(mock(ObjectProvider.class), new ParallelTaskExecutor(new FileProperties()))
+                .getCodec(FileCompressUtil.CompressionType.valueOf(codec));
+        original = loadSample();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(original.length);
+        try (OutputStream out = compressionCodec.compress(buffer, "sample")) {
+            out.write(original);
+        }
+        compressed = buffer.toByteArray();
+        System.out.printf("%n%s/%s 压缩率: %.2f%% (%d -> %d 字节)%n", sample, codec,
+                compressed.length * 100.0 / original.length, original.length, compressed.length);
+    }
+
+    @Benchmark
+    public int compress(Throughput throughput) throws IOException {
+        try (OutputStream out = compressionCodec.compress(NullOutputStream.INSTANCE, "sample")) {
+            out.write(original);
+        }
+        throughput.megabytes += original.length / (1024.0 * 1024.0);
+        return original.length;
+    }
+
+    @Benchmark
+    public long decompress(Throughput throughput) throws IOException {
+        long total = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = compressionCodec.decompress(new ByteArrayInputStream(compressed))) {
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                total += len;
+            }
+        }
+        throughput.megabytes += total / (1024.0 * 1024.0);
+        return total;
+    }
+
+    private byte[] loadSample() throws IOException {
+        String dir = System.getProperty("goodsop.bench.samples");
+        if (dir != null) {
+            File file = new File(dir, "WAV".equals(sample) ? "sample.wav" : "sample.bin");
+            if (file.isFile()) {
+                return Files.readAllBytes(file.toPath());
+            }
+        }
+        Random random = new Random(42);
+        if (!"WAV".equals(sample)) {
+            // Speex帧已是熵编码结果，合成数据按接近随机处理
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            return data;
+        }
+        // 类语音PCM：基频+谐波，按音节包络起伏，叠加底噪，间隔静音段
+        byte[] pcm = new byte[size - 44];
+        double pitch = 140;
+        for (int i = 0; i < pcm.length / 2; i++) {
+            double t = (double) i / SAMPLE_RATE;
+            if (i % (SAMPLE_RATE / 4) == 0) {
+                pitch = 100 + random.nextInt(120);
+            }
+            double envelope = Math.max(0, Math.sin(Math.PI * t * 3)) * (t % 4 < 3 ? 1 : 0);
+            double value = envelope * (0.5 * Math.sin(2 * Math.PI * pitch * t)
+                    + 0.25 * Math.sin(4 * Math.PI * pitch * t)
+                    + 0.1 * Math.sin(6 * Math.PI * pitch * t));
+            short s = (short) (value * 12000 + random.nextGaussian() * 60);
+            pcm[2 * i] = (byte) s;
+            pcm[2 * i + 1] = (byte) (s >> 8);
+        }
+        return WavUtil.addWavHeader(pcm, SAMPLE_RATE, 1, 16);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CompressionCodecBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,228 @@
+package com.goodsop.file.benchmark;
+
+import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.util.FileSender;
+import com.goodsop.file.util.FileTransferUtil;
+import com.goodsop.file.util.InMemoryUploadSessionStore;
+import com.goodsop.file.util.UploadMetadataCache;
+import com.goodsop.file.util.UploadSessionRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.Context;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 并发下载负载测试：大量慢速客户端下载大文件时，上传接口的延迟
+ * <p>
+ * 启动内嵌Tomcat（默认200个工作线程、关闭sendfile，模拟静态加密文件实时解密或HTTPS等无法sendfile的情况），
+ * 先测量空闲时上传请求的延迟，再让N个慢速客户端（接收缓冲区16KB、按固定速率读取）同时下载大文件，
+ * 期间持续发起上传请求并统计延迟分位数和失败数。
+ * 同步输出时每个下载占用一个工作线程，客户端数超过线程数后上传请求排队直至超时；异步输出时上传延迟基本不变。
+ * </p>
+ * 运行方式：mvn -pl goodsop-file test-compile 后执行本类的main方法，可用系统属性调整参数：
+ * <ul>
+ *     <li>-Dmode=ASYNC|BLOCKING 下载输出方式（默认ASYNC）</li>
+ *     <li>-Dclients=500 并发下载数，-DfileSize=104857600 下载文件大小</li>
+ *     <li>-DclientRate=65536 每个下载客户端的读取速率（字节/秒），-Dduration=30 负载持续时间（秒）</li>
+ *     <li>-DmaxThreads=200 Tomcat工作线程数，-DmaxBandwidth=0 全局下载带宽上限（字节/秒）</li>
+ * </ul>
+ */
+public class ConcurrentDownloadLoadBenchmark {
+
+    private static final int UPLOAD_SIZE = 256 * 1024;
+
+    private static final int UPLOAD_TIMEOUT_MILLIS = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        String mode = System.getProperty("mode", "ASYNC");
+        int clients = Integer.getInteger("clients", 500);
+        long fileSize = Long.getLong("fileSize", 100L * 1024 * 1024);
+        int clientRate = Integer.getInteger("clientRate", 64 * 1024);
+        int duration = Integer.getInteger("duration", 30);
+        int maxThreads = Integer.getInteger("maxThreads", 200);
+        long maxBandwidth = Long.getLong("maxBandwidth", 0L);
+
+        File workDir = Files.createTempDirectory("download_load_").toFile();
+        File recording = new File(workDir, "recording.wav");
+        try (RandomAccessFile file = new RandomAccessFile(recording, "rw")) {
+            file.setLength(fileSize);
+        }
+
+        FileProperties properties = new FileProperties();
+        properties.getDownload().setAsyncEnabled("ASYNC".equalsIgnoreCase(mode));
+        properties.getDownload().setMaxConcurrentTransfers(clients * 2);
+        properties.getDownload().setMaxBandwidth(maxBandwidth);
+        FileSender sender = new FileSender(properties);
+        FileTransferUtil transferUtil = new FileTransferUtil(properties, new UploadSessionRegistry(properties, new InMemoryUploadSessionStore()),
+                new UploadMetadataCache(properties), sender);
+
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(workDir.getAbsolutePath());
+        Connector connector = new Connector("HTTP/1.1");
+        connector.setPort(0);
+        connector.setProperty("maxThreads", String.valueOf(maxThreads));
+        connector.setProperty("useSendfile", "false");
+        tomcat.setConnector(connector);
+        Context context = tomcat.addContext("", workDir.getAbsolutePath());
+        Wrapper download = Tomcat.addServlet(context, "download", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) {
+                transferUtil.serve(request, response, new FileTransferUtil.RangeResource()
+                        .setFile(recording).setContentType("audio/wav"));
+            }
+        });
+        download.setAsyncSupported(true);
+        context.addServletMappingDecoded("/download", "download");
+        Tomcat.addServlet(context, "upload", new HttpServlet() {
+            @Override
+            protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                request.getInputStream().transferTo(OutputStream.nullOutputStream());
+                response.getOutputStream().write("ok".getBytes(StandardCharsets.US_ASCII));
+            }
+        });
+        context.addServletMappingDecoded("/upload", "upload");
+        tomcat.start();
+        int port = connector.getLocalPort();
+
+        try {
+            System.out.printf("模式: %s, 并发下载: %d, 文件: %dMB, 客户端读取速率: %dKB/s, 工作线程: %d%n",
+                    mode, clients, fileSize >> 20, clientRate >> 10, maxThreads);
+            report("空闲时上传", measureUploads(port, 5));
+
+            AtomicLong downloaded = new AtomicLong();
+            AtomicInteger failedDownloads = new AtomicInteger();
+            List<Thread> downloaders = new ArrayList<>(clients);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(duration + 5);
+            for (int i = 0; i < clients; i++) {
+                Thread thread = new Thread(() -> slowDownload(port, clientRate, deadline, downloaded, failedDownloads),
+                        "slow-download-" + i);
+                thread.setDaemon(true);
+                thread.start();
+                downloaders.add(thread);
+            }
+            // 等所有下载建立连接后再测量
+            TimeUnit.SECONDS.sleep(5);
+            long downloadedBefore = downloaded.get();
+            long start = System.nanoTime();
+            List<Long> latencies = measureUploads(port, duration);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            report(clients + "个并发下载时上传", latencies);
+            System.out.printf("下载总吞吐: %.1f MB/s, 进行中输出: %d, 下载失败: %d%n",
+                    (downloaded.get() - downloadedBefore) / seconds / (1024 * 1024),
+                    sender.getActiveTransfers(), failedDownloads.get());
+            for (Thread thread : downloaders) {
+                thread.interrupt();
+            }
+        } finally {
+            tomcat.stop();
+            tomcat.destroy();
+            sender.shutdown();
+            FileUtils.deleteQuietly(workDir);
+        }
+    }
+
+    /**
+     * 持续发起上传请求
+     *
+     * @return 每个请求的延迟（毫秒），失败的请求按超时时间计
+     */
+    private static List<Long> measureUploads(int port, int seconds) {
+        byte[] body = new byte[UPLOAD_SIZE];
+        List<Long> latencies = new ArrayList<>();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        while (System.nanoTime() < end) {
+            long start = System.nanoTime();
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + "/upload").openConnection();
+                connection.setConnectTimeout(UPLOAD_TIMEOUT_MILLIS);
+                connection.setReadTimeout(UPLOAD_TIMEOUT_MILLIS);
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(body.length);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body);
+                }
+                try (InputStream in = connection.getInputStream()) {
+                    in.readAllBytes();
+                }
+                latencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (IOException e) {
+                latencies.add(-1L);
+            }
+            sleepQuietly(100);
+        }
+        return latencies;
+    }
+
+    /**
+     * 接收缓冲区很小、按固定速率读取的下载客户端
+     */
+    private static void slowDownload(int port, int rate, long deadline, AtomicLong downloaded, AtomicInteger failed) {
+        try (Socket socket = new Socket()) {
+            socket.setReceiveBufferSize(16 * 1024);
+            socket.connect(new InetSocketAddress("127.0.0.1", port));
+            socket.getOutputStream().write(("GET /download HTTP/1.1\r\nHost: 127.0.0.1\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[8 * 1024];
+            long sleepMillis = Math.max(1, buffer.length * 1000L / rate);
+            int read;
+            while (System.nanoTime() < deadline && (read = in.read(buffer)) != -1) {
+                downloaded.addAndGet(read);
+                TimeUnit.MILLISECONDS.sleep(sleepMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            failed.incrementAndGet();
+        }
+    }
+
+    private static void report(String label, List<Long> latencies) {
+        long failures = latencies.stream().filter(latency -> latency < 0).count();
+        List<Long> sorted = new ArrayList<>(latencies.size());
+        latencies.forEach(latency -> sorted.add(latency < 0 ? UPLOAD_TIMEOUT_MILLIS : latency));
+        Collections.sort(sorted);
+        if (sorted.isEmpty()) {
+            System.out.printf("%s: 无请求完成%n", label);
+            return;
+        }
+        System.out.printf("%s: 请求%d次, 失败%d次, p50=%dms p95=%dms p99=%dms max=%dms%n", label, sorted.size(),
+                failures, percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99),
+                sorted.get(sorted.size() - 1));
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0));
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
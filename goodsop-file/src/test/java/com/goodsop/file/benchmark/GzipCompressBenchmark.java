@@ -0,0 +1,160 @@
+package com.goodsop.file.benchmark;
+
+import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.constant.FileConstant;
+import com.goodsop.file.util.GzipCompressionCodec;
+import com.goodsop.file.util.ParallelTaskExecutor;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * GZIP文件压缩吞吐量基准测试：原实现(GZIPOutputStream + 8KB缓冲) vs 多核按块并行压缩
+ * <p>
+ * 结果中的 megabytes 计数即为压缩吞吐量（MB/s，按原始数据计）；样本为16kHz/16bit单声道的类语音PCM。
+ * 并行压缩的加速比取决于ForkJoin公共池的并行度（默认CPU核数-1），可用
+ * -Djava.util.concurrent.ForkJoinPool.common.parallelism=N 调整。
+ * 运行方式：mvn -pl goodsop-file test-compile 后执行本类的main方法
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GzipCompressBenchmark {
+
+    /**
+     * 文件大小：10MB / 100MB
+     */
+    @Param({"10485760", "104857600"})
+    private int size;
+
+    @Param({"LEGACY_STREAM", "PARALLEL"})
+    private String engine;
+
+    private File workDir;
+
+    private File sourceFile;
+
+    private File targetFile;
+
+    private ParallelTaskExecutor parallelTaskExecutor;
+
+    /**
+     * 压缩的原始数据量（MB），JMH按每秒的增量输出
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public double megabytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("gzip_bench_").toFile();
+        sourceFile = new File(workDir, "record.wav");
+        Files.write(sourceFile.toPath(), speechLikePcm(size));
+        targetFile = new File(workDir, "record.wav.gz");
+        parallelTaskExecutor = new ParallelTaskExecutor(new FileProperties());
+    }
+
+    @Benchmark
+    public long compress(Throughput throughput) throws IOException {
+        if ("PARALLEL".equals(engine)) {
+            parallelCompress(sourceFile, targetFile);
+        } else {
+            legacyCompress(sourceFile, targetFile);
+        }
+        throughput.megabytes += size / (1024.0 * 1024.0);
+        return targetFile.length();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        parallelTaskExecutor.shutdown();
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    /**
+     * 原 FileProcessingUtil.compressFile 的压缩过程
+     */
+    private static void legacyCompress(File source, File target) throws IOException {
+        try (FileInputStream inputStream = new FileInputStream(source);
+             GZIPOutputStream gzipOutputStream = new GZIPOutputStream(new FileOutputStream(target))) {
+            byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+                gzipOutputStream.write(buffer, 0, bytesRead);
+            }
+        }
+    }
+
+    /**
+     * FileCompressUtil.compressFile 对大文件使用的并行压缩流（不受并行度为1时回退单线程的限制）
+     */
+    private void parallelCompress(File source, File target) throws IOException {
+        try (FileInputStream inputStream = new FileInputStream(source);
+             OutputStream out = new GzipCompressionCodec().compressParallel(new FileOutputStream(target),
+                     parallelTaskExecutor)) {
+            byte[] buffer = new byte[FileConstant.STREAM_BUFFER_SIZE];
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+                out.write(buffer, 0, bytesRead);
+            }
+        }
+    }
+
+    /**
+     * 基频+谐波、按音节起伏并叠加底噪的PCM
+     */
+    private static byte[] speechLikePcm(int size) {
+        Random random = new Random(42);
+        byte[] pcm = new byte[size];
+        double pitch = 140;
+        for (int i = 0; i < size / 2; i++) {
+            double t = i / 16000.0;
+            if (i % 4000 == 0) {
+                pitch = 100 + random.nextInt(120);
+            }
+            double envelope = Math.max(0, Math.sin(Math.PI * t * 3)) * (t % 4 < 3 ? 1 : 0);
+            double value = envelope * (0.5 * Math.sin(2 * Math.PI * pitch * t) + 0.25 * Math.sin(4 * Math.PI * pitch * t));
+            short s = (short) (value * 12000 + random.nextGaussian() * 60);
+            pcm[2 * i] = (byte) s;
+            pcm[2 * i + 1] = (byte) (s >> 8);
+        }
+        return pcm;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(GzipCompressBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
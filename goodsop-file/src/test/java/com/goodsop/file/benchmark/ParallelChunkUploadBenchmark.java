@@ -0,0 +1,149 @@
+package com.goodsop.file.benchmark;
+
+import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.util.FileSender;
+import com.goodsop.file.util.FileTransferUtil;
+import com.goodsop.file.util.InMemoryUploadSessionStore;
+import com.goodsop.file.util.UploadMetadataCache;
+import com.goodsop.file.util.UploadSession;
+import com.goodsop.file.util.UploadSessionRegistry;
+import com.goodsop.file.util.UploadThrottle;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分块并发上传负载测试：模拟客户端以不同并行度乱序上传同一文件的分块
+ * <p>
+ * 每次操作上传一个完整文件（chunks个分块），结果中的 ops/s 乘以文件大小即为吞吐量，
+ * 用于观察吞吐量随客户端并行度的变化以及单文件并发上限的影响。
+ * 运行方式：mvn -pl goodsop-file test-compile 后执行本类的main方法
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelChunkUploadBenchmark {
+
+    /**
+     * 客户端并行上传的分块数
+     */
+    @Param({"1", "2", "4", "8"})
+    private int parallelism;
+
+    /**
+     * 单个分块大小（默认1MB）
+     */
+    @Param({"1048576"})
+    private int chunkSize;
+
+    /**
+     * 每个文件的分块数
+     */
+    @Param({"32"})
+    private int chunks;
+
+    private FileTransferUtil fileTransferUtil;
+
+    private UploadSessionRegistry registry;
+
+    private UploadThrottle throttle;
+
+    private ExecutorService clients;
+
+    private List<MockMultipartFile> parts;
+
+    private File workDir;
+
+    private int sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        FileProperties properties = new FileProperties();
+        properties.getUpload().setMaxInFlightChunksPerUpload(parallelism);
+        registry = new UploadSessionRegistry(properties, new InMemoryUploadSessionStore());
+        throttle = new UploadThrottle(properties);
+        fileTransferUtil = new FileTransferUtil(properties, registry, new UploadMetadataCache(properties),
+                new FileSender(properties));
+        clients = Executors.newFixedThreadPool(parallelism);
+        workDir = Files.createTempDirectory("chunk_upload_bench_").toFile();
+
+        byte[] data = new byte[chunkSize];
+        new Random(42).nextBytes(data);
+        parts = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            parts.add(new MockMultipartFile("file", i + ".part", "application/octet-stream", data));
+        }
+    }
+
+    @Benchmark
+    public long uploadFile() throws Exception {
+        String fileName = "bench_" + (sequence++) + ".bin";
+        UploadSession session = registry.getOrCreate("bench", fileName, chunks);
+        List<Future<File>> futures = new ArrayList<>(chunks);
+        // 倒序提交，模拟分块乱序到达
+        for (int i = chunks - 1; i >= 0; i--) {
+            int chunk = i;
+            futures.add(clients.submit(() -> {
+                try (UploadThrottle.Permit permit = throttle.acquire(session)) {
+                    return fileTransferUtil.storeFileChunk(parts.get(chunk), workDir.getAbsolutePath(),
+                            fileName, session, chunk, (long) chunkSize);
+                }
+            }));
+        }
+        File merged = null;
+        for (Future<File> future : futures) {
+            File result = future.get();
+            if (result != null) {
+                merged = result;
+            }
+        }
+        if (merged == null) {
+            throw new IllegalStateException("上传未完成: " + fileName);
+        }
+        long length = merged.length();
+        Files.delete(merged.toPath());
+        return length;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        clients.shutdownNow();
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ParallelChunkUploadBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,146 @@
+package com.goodsop.file.benchmark;
+
+import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.util.StorageLayout;
+import com.goodsop.file.util.StorageLayoutResolver;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 存储目录布局基准测试：同一天写入大量文件时，按日期平铺与两级分片的创建/查找延迟对比
+ * <p>
+ * 初始化阶段按布局预先创建 fileCount 个空文件（1M个文件需要数分钟和约1M个inode），
+ * 然后测量在此基础上新建文件（含目录解析）和随机查找已有文件的平均延迟。
+ * 运行方式：mvn -pl goodsop-file test-compile 后执行本类的main方法
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StorageLayoutBenchmark {
+
+    @Param({"DATE", "DEVICE_HASH", "MD5_PREFIX"})
+    private String layout;
+
+    /**
+     * 预先创建的文件数
+     */
+    @Param({"1000000"})
+    private int fileCount;
+
+    /**
+     * 设备数
+     */
+    @Param({"1000"})
+    private int devices;
+
+    private final LocalDate date = LocalDate.of(2025, 5, 6);
+
+    private StorageLayoutResolver resolver;
+
+    private File workDir;
+
+    private String[] deviceIds;
+
+    private String[] fileNames;
+
+    private File[] existingFiles;
+
+    private Random random;
+
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("layout_bench_").toFile();
+        FileProperties properties = new FileProperties();
+        properties.getStorage().setPath(workDir.getAbsolutePath());
+        properties.getStorage().setLayout(layout);
+        ObjectProvider<StorageLayout> noCustomLayout = new StaticListableBeanFactory().getBeanProvider(StorageLayout.class);
+        resolver = new StorageLayoutResolver(properties, noCustomLayout);
+
+        random = new Random(42);
+        deviceIds = new String[devices];
+        for (int i = 0; i < devices; i++) {
+            deviceIds[i] = String.format("device%05d", i);
+        }
+        fileNames = new String[fileCount];
+        existingFiles = new File[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            String deviceId = deviceIds[i % devices];
+            fileNames[i] = standardName(deviceId, i);
+            File directory = resolver.resolveDirectory(date, deviceId, fileNames[i]);
+            existingFiles[i] = new File(directory, fileNames[i]);
+            Files.createFile(existingFiles[i].toPath());
+        }
+    }
+
+    /**
+     * 新建文件：解析目录 + 创建文件
+     */
+    @Benchmark
+    public File createFile() throws IOException {
+        long index = fileCount + sequence++;
+        String deviceId = deviceIds[(int) (index % devices)];
+        String fileName = standardName(deviceId, index);
+        File file = new File(resolver.resolveDirectory(date, deviceId, fileName), fileName);
+        Files.createFile(file.toPath());
+        return file;
+    }
+
+    /**
+     * 查找已有文件：按记录中的文件名重新解析目录并检查文件是否存在
+     */
+    @Benchmark
+    public boolean lookupFile() {
+        int index = random.nextInt(fileCount);
+        String deviceId = deviceIds[index % devices];
+        return new File(resolver.resolveDirectory(date, deviceId, fileNames[index]), fileNames[index]).exists();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    /**
+     * 生成标准格式文件名：设备ID_日期_用户ID_时间戳_时长_MD5.wav
+     */
+    private String standardName(String deviceId, long index) {
+        String md5 = String.format("%016x%016x", random.nextLong(), index);
+        return deviceId + "_20250506_user_" + (1746500000000L + index) + "_60000_" + md5 + ".wav";
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StorageLayoutBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,182 @@
+package com.goodsop.file.controller;
+
+import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.entity.FileInfo;
+import com.goodsop.file.service.FileDedupService;
+import com.goodsop.file.service.impl.FileServiceImpl;
+import com.goodsop.file.util.CompressionPolicy;
+import com.goodsop.file.util.FileEncryptUtil;
+import com.goodsop.file.util.InstantUploadChallenge;
+import com.goodsop.file.util.ParallelTaskExecutor;
+import com.goodsop.file.util.UploadSessionRegistry;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 秒传和上传前探测接口测试
+ */
+class FileUploadControllerTest {
+
+    private static final String DEVICE_ID = "device02";
+
+    private FileDedupService fileDedupService;
+
+    private MockMvc mockMvc;
+
+    private byte[] content;
+
+    private FileInfo blob;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileProperties fileProperties = new FileProperties();
+        fileProperties.getUpload().setInstantProofBytes(1024);
+        fileDedupService = mock(FileDedupService.class);
+        UploadSessionRegistry uploadSessionRegistry = mock(UploadSessionRegistry.class);
+        FileServiceImpl fileService = new FileServiceImpl(fileProperties, null, null, new FileEncryptUtil(new ParallelTaskExecutor(fileProperties)), null, null,
+                uploadSessionRegistry, null, null, fileDedupService, null, new CompressionPolicy(fileProperties),
+                new InstantUploadChallenge(fileProperties), null);
+        mockMvc = MockMvcBuilders.standaloneSetup(new FileUploadController(fileService, fileProperties)).build();
+
+        // 其他设备已上传的文件
+        content = new byte[8192];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        File stored = Files.write(tempDir.resolve("stored.wav"), content).toFile();
+        blob = new FileInfo();
+        blob.setId(1L);
+        blob.setDeviceId("device01");
+        blob.setFilePath(stored.getAbsolutePath());
+        blob.setFileMd5(md5(content));
+        blob.setFileSize((long) content.length);
+        blob.setAccessUrl("/file/download/1");
+        when(fileDedupService.findBlob(blob.getFileMd5(), blob.getFileSize())).thenReturn(blob);
+    }
+
+    @Test
+    void probeDoesNotRegisterOrExposeOtherDevicesFile() throws Exception {
+        mockMvc.perform(post("/file/chunk/probe")
+                        .param("fileName", "rec.wav")
+                        .param("deviceId", DEVICE_ID)
+                        .param("fileSize", String.valueOf(content.length))
+                        .param("chunks", "2")
+                        .param("fileMd5", blob.getFileMd5()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.completed").value(false))
+                .andExpect(jsonPath("$.data.fileId").doesNotExist())
+                .andExpect(jsonPath("$.data.accessUrl").doesNotExist())
+                .andExpect(jsonPath("$.data.challengeToken").exists())
+                .andExpect(jsonPath("$.data.challengeLength").value(1024));
+
+        verify(fileDedupService, never()).shareBlob(any(), any(), any());
+    }
+
+    @Test
+    void probeRejectsTooManyChunks() throws Exception {
+        mockMvc.perform(post("/file/chunk/probe")
+                        .param("fileName", "rec.wav")
+                        .param("deviceId", DEVICE_ID)
+                        .param("chunks", String.valueOf(Integer.MAX_VALUE)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(500))
+                .andExpect(jsonPath("$.data").doesNotExist());
+    }
+
+    @Test
+    void instantUploadRequiresProofOfPossession() throws Exception {
+        when(fileDedupService.shareBlob(any(), eq(blob), any())).thenReturn(true);
+
+        // 不带令牌时只返回校验范围
+        String body = mockMvc.perform(instantRequest(DEVICE_ID))
+                .andExpect(jsonPath("$.data.completed").value(false))
+                .andExpect(jsonPath("$.data.fileId").doesNotExist())
+                .andReturn().getResponse().getContentAsString();
+        String token = JsonPath.read(body, "$.data.challengeToken");
+        int offset = ((Number) JsonPath.read(body, "$.data.challengeOffset")).intValue();
+        int length = ((Number) JsonPath.read(body, "$.data.challengeLength")).intValue();
+        verify(fileDedupService, never()).shareBlob(any(), any(), any());
+
+        // 只知道整个文件的MD5无法通过校验
+        mockMvc.perform(instantRequest(DEVICE_ID).param("challengeToken", token).param("proofMd5", blob.getFileMd5()))
+                .andExpect(jsonPath("$.data").doesNotExist());
+        verify(fileDedupService, never()).shareBlob(any(), any(), any());
+
+        // 令牌绑定设备，其他设备不能使用
+        String proof = md5(Arrays.copyOfRange(content, offset, offset + length));
+        mockMvc.perform(instantRequest("device03").param("challengeToken", token).param("proofMd5", proof))
+                .andExpect(jsonPath("$.data").doesNotExist());
+        verify(fileDedupService, never()).shareBlob(any(), any(), any());
+
+        mockMvc.perform(instantRequest(DEVICE_ID).param("challengeToken", token).param("proofMd5", proof))
+                .andExpect(jsonPath("$.data.completed").value(true))
+                .andExpect(jsonPath("$.data.deduplicated").value(true));
+        verify(fileDedupService).shareBlob(any(), eq(blob), any());
+    }
+
+    @Test
+    void clientCiphertextIsNotDecryptedForProof() throws Exception {
+        // 客户端密文原样存储（非服务端静态加密），校验范围按存储的原始字节计算
+        blob.setIsEncrypted(true);
+        blob.setEncryptionType("AES");
+        when(fileDedupService.shareBlob(any(), eq(blob), any())).thenReturn(true);
+
+        String body = mockMvc.perform(instantRequest(DEVICE_ID))
+                .andReturn().getResponse().getContentAsString();
+        String token = JsonPath.read(body, "$.data.challengeToken");
+        int offset = ((Number) JsonPath.read(body, "$.data.challengeOffset")).intValue();
+        int length = ((Number) JsonPath.read(body, "$.data.challengeLength")).intValue();
+
+        String proof = md5(Arrays.copyOfRange(content, offset, offset + length));
+        mockMvc.perform(instantRequest(DEVICE_ID).param("challengeToken", token).param("proofMd5", proof))
+                .andExpect(jsonPath("$.data.completed").value(true));
+        verify(fileDedupService).shareBlob(any(), eq(blob), any());
+    }
+
+    @Test
+    void instantUploadWithoutExistingContent() throws Exception {
+        when(fileDedupService.findBlob(anyString(), anyLong())).thenReturn(null);
+
+        mockMvc.perform(instantRequest(DEVICE_ID))
+                .andExpect(jsonPath("$.data.completed").value(false))
+                .andExpect(jsonPath("$.data.challengeToken").doesNotExist());
+    }
+
+    private MockHttpServletRequestBuilder instantRequest(String deviceId) {
+        return post("/file/instant")
+                .param("fileName", "rec.wav")
+                .param("deviceId", deviceId)
+                .param("fileMd5", blob.getFileMd5())
+                .param("fileSize", String.valueOf(content.length));
+    }
+
+    private static String md5(byte[] data) throws Exception {
+        return FileEncryptUtil.toHex(MessageDigest.getInstance("MD5").digest(data));
+    }
+}
@@ -0,0 +1,128 @@
+package com.goodsop.file.mapper;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import com.goodsop.file.entity.UploadSessionRecord;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分块上传会话Mapper的SQL测试（H2 PostgreSQL兼容模式）
+ */
+class UploadSessionMapperTest {
+
+    private SqlSession sqlSession;
+
+    private UploadSessionMapper mapper;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            // 与 db/t_upload_session.sql 相同的列和约束
+            statement.execute("CREATE TABLE t_upload_session (session_key varchar(512) PRIMARY KEY, "
+                    + "session_id varchar(32) NOT NULL UNIQUE, device_id varchar(64) NOT NULL, file_name varchar(255) NOT NULL, "
+                    + "chunks int4 NOT NULL, chunk_size int8 DEFAULT 0, last_chunk_length int8 DEFAULT -1, completed int4 DEFAULT 0, "
+                    + "standard_file_name varchar(255), original_extension varchar(32), "
+                    + "create_time timestamp(6) DEFAULT CURRENT_TIMESTAMP, last_access_time timestamp(6) DEFAULT CURRENT_TIMESTAMP)");
+            statement.execute("CREATE TABLE t_upload_chunk (session_id varchar(32) NOT NULL, chunk_index int4 NOT NULL, "
+                    + "chunk_bytes int8 NOT NULL, create_time timestamp(6) DEFAULT CURRENT_TIMESTAMP, "
+                    + "PRIMARY KEY (session_id, chunk_index))");
+        }
+        MybatisConfiguration configuration = new MybatisConfiguration(
+                new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(UploadSessionMapper.class);
+        sqlSession = new MybatisSqlSessionFactoryBuilder().build(configuration).openSession(true);
+        mapper = sqlSession.getMapper(UploadSessionMapper.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sqlSession.close();
+    }
+
+    @Test
+    void createSessionOnlyOnce() {
+        assertEquals(1, mapper.insertIfAbsent(record("session01")));
+        assertEquals(0, mapper.insertIfAbsent(record("session02")));
+
+        UploadSessionRecord stored = mapper.selectById("device01/rec.wav");
+        assertEquals("session01", stored.getSessionId());
+        assertEquals(0L, stored.getChunkSize());
+        assertEquals(-1L, stored.getLastChunkLength());
+        assertEquals(0, stored.getCompleted());
+    }
+
+    @Test
+    void completeOnlyWhenAllChunksWritten() {
+        mapper.insertIfAbsent(record("session01"));
+
+        assertEquals(1, mapper.insertChunk("session01", 0, 100));
+        assertEquals(0, mapper.insertChunk("session01", 0, 100)); // 重复上传
+        assertEquals(0, mapper.tryComplete("session01"));
+
+        assertEquals(1, mapper.insertChunk("session01", 1, 60));
+        assertEquals(List.of(0, 1), mapper.selectChunkIndexes("session01").stream().sorted().toList());
+        assertEquals(2, mapper.countChunks("session01"));
+        assertEquals(160L, mapper.sumChunkBytes("session01"));
+        assertEquals(1, mapper.tryComplete("session01"));
+        assertEquals(0, mapper.tryComplete("session01")); // 其他节点已完成
+
+        mapper.resetCompletion("session01");
+        assertEquals(1, mapper.tryComplete("session01"));
+    }
+
+    @Test
+    void assignValuesOnlyOnce() {
+        mapper.insertIfAbsent(record("session01"));
+
+        assertEquals(1, mapper.initChunkSize("session01", 1024));
+        assertEquals(0, mapper.initChunkSize("session01", 2048));
+        assertEquals(1, mapper.assignStandardFileName("session01", "standard.wav"));
+        assertEquals(0, mapper.assignStandardFileName("session01", "other.wav"));
+
+        UploadSessionRecord stored = mapper.selectById("device01/rec.wav");
+        assertEquals(1024L, stored.getChunkSize());
+        assertEquals("standard.wav", stored.getStandardFileName());
+    }
+
+    @Test
+    void deleteIdleSessionsAndOrphanChunks() {
+        mapper.insertIfAbsent(record("session01"));
+        mapper.insertChunk("session01", 0, 100);
+        mapper.insertChunk("late01", 0, 100); // 会话移除后才写入的迟到分块
+
+        assertEquals(0, mapper.deleteIdle(LocalDateTime.now().minusHours(1)));
+        assertEquals(1, mapper.deleteOrphanChunks());
+        assertEquals(1, mapper.countChunks("session01"));
+
+        assertEquals(1, mapper.deleteIdle(LocalDateTime.now().plusHours(1)));
+        assertEquals(1, mapper.deleteOrphanChunks());
+        assertNull(mapper.selectById("device01/rec.wav"));
+    }
+
+    private UploadSessionRecord record(String sessionId) {
+        UploadSessionRecord record = new UploadSessionRecord();
+        record.setSessionKey("device01/rec.wav");
+        record.setSessionId(sessionId);
+        record.setDeviceId("device01");
+        record.setFileName("rec.wav");
+        record.setChunks(2);
+        return record;
+    }
+}
@@ -0,0 +1,117 @@
+package com.goodsop.file.service.impl;
+
+import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.entity.FileInfo;
+import com.goodsop.file.mapper.FileInfoMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 文件去重服务单元测试
+ */
+class FileDedupServiceImplTest {
+
+    private FileInfoMapper fileInfoMapper;
+
+    private FileDedupServiceImpl fileDedupService;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        fileInfoMapper = mock(FileInfoMapper.class);
+        fileDedupService = new FileDedupServiceImpl(fileInfoMapper, new FileProperties());
+    }
+
+    @Test
+    void shareExistingBlob() throws IOException {
+        File stored = Files.writeString(tempDir.resolve("stored.wav"), "录音内容").toFile();
+        FileInfo blob = blob(stored);
+        when(fileInfoMapper.selectOne(any())).thenReturn(blob);
+        when(fileInfoMapper.selectList(any())).thenReturn(List.of(blob));
+
+        assertSame(blob, fileDedupService.findBlob("0123456789abcdef0123456789abcdef", blob.getFileSize()));
+
+        FileInfo duplicate = new FileInfo();
+        assertTrue(fileDedupService.shareBlob(duplicate, blob, () -> true));
+        assertEquals(stored.getAbsolutePath(), duplicate.getFilePath());
+        assertEquals(blob.getAccessUrl(), duplicate.getAccessUrl());
+        assertEquals(blob.getFileMd5(), duplicate.getFileMd5());
+    }
+
+    @Test
+    void ignoreBlobWhenPhysicalFileMissing() {
+        FileInfo blob = blob(tempDir.resolve("missing.wav").toFile());
+        when(fileInfoMapper.selectOne(any())).thenReturn(blob);
+
+        assertNull(fileDedupService.findBlob(blob.getFileMd5(), blob.getFileSize()));
+        assertFalse(fileDedupService.shareBlob(new FileInfo(), blob, () -> true));
+    }
+
+    @Test
+    void deletePhysicalFileWithLastReference() throws IOException {
+        File stored = Files.writeString(tempDir.resolve("shared.wav"), "录音内容").toFile();
+        FileInfo fileInfo = blob(stored);
+
+        // 仍有其他记录引用时保留物理文件
+        when(fileInfoMapper.selectCount(any())).thenReturn(1L);
+        assertTrue(fileDedupService.releaseBlob(fileInfo, () -> true));
+        assertTrue(stored.exists());
+
+        // 最后一个引用释放后删除物理文件
+        when(fileInfoMapper.selectCount(any())).thenReturn(0L);
+        assertTrue(fileDedupService.releaseBlob(fileInfo, () -> true));
+        assertFalse(stored.exists());
+    }
+
+    @Test
+    void deletePhysicalFileOnlyAfterCommit() throws IOException {
+        File stored = Files.writeString(tempDir.resolve("pending.wav"), "录音内容").toFile();
+        when(fileInfoMapper.selectCount(any())).thenReturn(0L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertTrue(fileDedupService.releaseBlob(blob(stored), () -> true));
+            // 事务提交前其他事务可能刚建立引用，物理文件保留
+            assertTrue(stored.exists());
+            verify(fileInfoMapper).selectList(any());
+
+            // 回滚时不删除
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            assertTrue(stored.exists());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertFalse(stored.exists());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private FileInfo blob(File file) {
+        FileInfo blob = new FileInfo();
+        blob.setId(1L);
+        blob.setFileName(file.getName());
+        blob.setFilePath(file.getAbsolutePath());
+        blob.setFileMd5("0123456789abcdef0123456789abcdef");
+        blob.setFileSize(file.length());
+        blob.setAccessUrl("/files/20250101/" + file.getName());
+        return blob;
+    }
+}
@@ -1,6 +1,7 @@
 package com.goodsop.file.task;
 
 import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.util.UploadMetadataCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -35,6 +36,9 @@ class FileCleanupTaskTest {
     @Mock
     private FileProperties.Cleanup cleanup;
     
+    @Mock
+    private UploadMetadataCache uploadMetadataCache;
+    
     @InjectMocks
     private FileCleanupTask fileCleanupTask;
     
@@ -0,0 +1,100 @@
+package com.goodsop.file.task;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.constant.FileConstant;
+import com.goodsop.file.entity.FileInfo;
+import com.goodsop.file.mapper.FileInfoMapper;
+import com.goodsop.file.util.FileProcessingExecutor;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 遗留上传记录恢复任务测试（H2 PostgreSQL兼容模式）
+ */
+class StaleUploadRecoveryTaskTest {
+
+    private SqlSession sqlSession;
+
+    private FileInfoMapper mapper;
+
+    private final FileProcessingExecutor fileProcessingExecutor = mock(FileProcessingExecutor.class);
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE t_file_info (id bigserial PRIMARY KEY, device_id varchar(64), "
+                    + "user_id varchar(64), file_name varchar(255), file_path varchar(255), access_url varchar(512), "
+                    + "domain_prefix varchar(128), file_size int8, file_type varchar(32), file_md5 varchar(64), "
+                    + "record_date date, record_start_time timestamp(6), record_duration int8, upload_time timestamp(6), "
+                    + "status int4 DEFAULT 0, processing_id varchar(32), create_time timestamp(6), update_time timestamp(6), "
+                    + "deleted int4 DEFAULT 0, is_encrypted boolean, is_compressed boolean, encryption_type varchar(32), "
+                    + "compression_type varchar(32), original_size int8, keywords varchar(255), is_speex_compressed int4)");
+        }
+        MybatisConfiguration configuration = new MybatisConfiguration(
+                new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(FileInfoMapper.class);
+        sqlSession = new MybatisSqlSessionFactoryBuilder().build(configuration).openSession(true);
+        mapper = sqlSession.getMapper(FileInfoMapper.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sqlSession.close();
+    }
+
+    @Test
+    void markOnlyStaleUploadsFailed() {
+        LocalDateTime longAgo = LocalDateTime.now().minusHours(3);
+        Long stale = insert(FileConstant.FILE_STATUS_UPLOADING, longAgo);
+        Long activeHere = insert(FileConstant.FILE_STATUS_UPLOADING, longAgo);
+        Long recent = insert(FileConstant.FILE_STATUS_UPLOADING, LocalDateTime.now());
+        Long completed = insert(FileConstant.FILE_STATUS_NORMAL, longAgo);
+        when(fileProcessingExecutor.getActiveFileIds()).thenReturn(Set.of(activeHere));
+
+        StaleUploadRecoveryTask task = new StaleUploadRecoveryTask(new FileProperties(), mapper, fileProcessingExecutor);
+        assertEquals(1, task.markStaleUploadsFailed());
+
+        assertEquals(FileConstant.FILE_STATUS_FAILED, mapper.selectById(stale).getStatus());
+        assertEquals(FileConstant.FILE_STATUS_UPLOADING, mapper.selectById(activeHere).getStatus());
+        assertEquals(FileConstant.FILE_STATUS_UPLOADING, mapper.selectById(recent).getStatus());
+        assertEquals(FileConstant.FILE_STATUS_NORMAL, mapper.selectById(completed).getStatus());
+
+        // 再次执行不重复标记
+        assertEquals(0, task.markStaleUploadsFailed());
+    }
+
+    private Long insert(int status, LocalDateTime updateTime) {
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setDeviceId("device01");
+        fileInfo.setUserId("default");
+        fileInfo.setFileName("rec.wav");
+        fileInfo.setFilePath("/data/rec.wav");
+        fileInfo.setStatus(status);
+        fileInfo.setProcessingId(FileProcessingExecutor.newProcessingId());
+        fileInfo.setCreateTime(updateTime);
+        fileInfo.setUpdateTime(updateTime);
+        fileInfo.setDeleted(0);
+        mapper.insert(fileInfo);
+        return fileInfo.getId();
+    }
+}
@@ -0,0 +1,123 @@
+package com.goodsop.file.task;
+
+import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.entity.FileInfo;
+import com.goodsop.file.mapper.FileInfoMapper;
+import com.goodsop.file.service.FileDedupService;
+import com.goodsop.file.util.StorageLayoutResolver;
+import com.goodsop.file.util.TaskLock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 存储布局迁移任务单元测试
+ */
+class StorageLayoutMigrationTaskTest {
+
+    private static final String FILE_NAME = "device01_20250506_user01_1746500000000_60000_ab12cd34ef567890ab12cd34ef567890.wav";
+
+    @TempDir
+    Path tempDir;
+
+    private final FileInfoMapper mapper = mock(FileInfoMapper.class);
+
+    private final FileDedupService fileDedupService = mock(FileDedupService.class);
+
+    private final TaskLock taskLock = mock(TaskLock.class);
+
+    @Test
+    void moveFileAndUpdateSharedRecords() throws IOException {
+        String fileName = FILE_NAME;
+        File source = storedFile();
+
+        FileInfo fileInfo = fileInfo(1L, source, fileName);
+        FileInfo sharer = fileInfo(2L, source, fileName);
+        when(taskLock.tryLock(any(), any())).thenReturn("owner");
+        when(taskLock.renew(any(), any(), any())).thenReturn(true);
+        when(fileDedupService.lockReferences(source.getAbsolutePath())).thenReturn(List.of(fileInfo, sharer));
+        when(mapper.selectList(any()))
+                .thenReturn(List.of(fileInfo))
+                .thenReturn(List.of(fileInfo, sharer))
+                .thenReturn(Collections.emptyList());
+
+        createTask().migrate();
+
+        verify(fileDedupService).lockReferences(source.getAbsolutePath());
+        verify(taskLock).unlock(any(), eq("owner"));
+        File target = tempDir.resolve("20250506/ab/12/" + fileName).toFile();
+        assertFalse(source.exists());
+        assertTrue(target.exists());
+
+        ArgumentCaptor<FileInfo> updates = ArgumentCaptor.forClass(FileInfo.class);
+        verify(mapper, times(2)).updateById(updates.capture());
+        for (FileInfo update : updates.getAllValues()) {
+            assertEquals(target.getAbsolutePath(), update.getFilePath());
+            assertEquals("/api/files/20250506/ab/12/" + fileName, update.getAccessUrl());
+        }
+    }
+
+    @Test
+    void skipWhenLockHeldByAnotherNode() throws IOException {
+        File source = storedFile();
+        when(taskLock.tryLock(any(), any())).thenReturn(null);
+
+        createTask().migrate();
+
+        assertTrue(source.exists());
+        verifyNoInteractions(mapper, fileDedupService);
+        verify(taskLock, never()).unlock(any(), any());
+    }
+
+    @Test
+    void skipFileReleasedAfterBatchQuery() throws IOException {
+        File source = storedFile();
+        when(fileDedupService.lockReferences(source.getAbsolutePath())).thenReturn(Collections.emptyList());
+
+        assertFalse(createTask().migrateFile(fileInfo(1L, source, FILE_NAME)));
+
+        assertTrue(source.exists());
+        verify(mapper, never()).updateById(any(FileInfo.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private StorageLayoutMigrationTask createTask() {
+        FileProperties properties = new FileProperties();
+        properties.getStorage().setPath(tempDir.toString());
+        properties.getStorage().setLayout("MD5_PREFIX");
+        properties.getStorage().setLayoutMigrationEnabled(true);
+        StorageLayoutResolver resolver = new StorageLayoutResolver(properties, mock(ObjectProvider.class));
+        return new StorageLayoutMigrationTask(properties, mapper, resolver, fileDedupService, taskLock,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+    }
+
+    private File storedFile() throws IOException {
+        File source = Files.createDirectories(tempDir.resolve("20250506")).resolve(FILE_NAME).toFile();
+        Files.writeString(source.toPath(), "录音内容");
+        return source;
+    }
+
+    private FileInfo fileInfo(Long id, File file, String fileName) {
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setId(id);
+        fileInfo.setDeviceId("device01");
+        fileInfo.setFileName(fileName);
+        fileInfo.setFilePath(file.getAbsolutePath());
+        fileInfo.setAccessUrl("/api/files/20250506/" + fileName);
+        return fileInfo;
+    }
+}
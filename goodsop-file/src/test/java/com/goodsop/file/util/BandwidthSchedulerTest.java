@@ -0,0 +1,150 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.config.FileProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 下载带宽调度单元测试（手动推进时钟）
+ */
+class BandwidthSchedulerTest {
+
+    private static final long KB = 1024;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+
+    @Test
+    void interactiveAndUsersShareGlobalBandwidthByWeight() {
+        FileProperties.Download config = new FileProperties.Download();
+        config.setMaxBandwidth(160 * KB);
+        BandwidthScheduler scheduler = new BandwidthScheduler(config, executor, clock::get);
+
+        // 一个播放连接，用户b开两个下载连接，用户c一个下载连接
+        List<Client> clients = List.of(
+                new Client(scheduler, "a", FileSender.TrafficClass.INTERACTIVE),
+                new Client(scheduler, "b", FileSender.TrafficClass.BULK),
+                new Client(scheduler, "b", FileSender.TrafficClass.BULK),
+                new Client(scheduler, "c", FileSender.TrafficClass.BULK));
+        // 先用完桶内的突发额度
+        Client hog = new Client(scheduler, "c", FileSender.TrafficClass.BULK);
+        assertEquals(160 * KB, scheduler.acquire(hog.connection, 160 * KB));
+        scheduler.close(hog.connection);
+        clients.forEach(Client::write);
+        assertTrue(clients.stream().allMatch(client -> client.received == 0), "全局带宽用完后应排队");
+
+        for (int i = 0; i < 50; i++) {
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+            scheduler.tick();
+            clients.forEach(Client::write);
+        }
+
+        long interactive = clients.get(0).received;
+        long userB = clients.get(1).received + clients.get(2).received;
+        long userC = clients.get(3).received;
+        // 总量不超过全局限速
+        assertTrue(interactive + userB + userC <= 5 * 160 * KB + BandwidthScheduler.QUANTUM * 8);
+        // 播放请求拿到所需带宽，下载按用户平分剩余带宽，多开连接不多分
+        assertTrue(interactive >= 3 * userB, "interactive=" + interactive + ", b=" + userB);
+        assertTrue(Math.abs(userB - userC) <= 2 * BandwidthScheduler.QUANTUM, "b=" + userB + ", c=" + userC);
+        assertTrue(userC > 0);
+    }
+
+    @Test
+    void perConnectionAndPerUserLimits() {
+        FileProperties.Download config = new FileProperties.Download();
+        config.setMaxBandwidthPerConnection(64 * KB);
+        config.setMaxBandwidthPerUser(100 * KB);
+        BandwidthScheduler scheduler = new BandwidthScheduler(config, executor, clock::get);
+        Runnable resumer = () -> { };
+
+        BandwidthScheduler.Connection first = scheduler.open("u1", FileSender.TrafficClass.BULK, resumer);
+        BandwidthScheduler.Connection second = scheduler.open("u1", FileSender.TrafficClass.BULK, resumer);
+        BandwidthScheduler.Connection other = scheduler.open("u2", FileSender.TrafficClass.BULK, resumer);
+        assertEquals(64 * KB, scheduler.acquire(first, 128 * KB));
+        assertEquals(36 * KB, scheduler.acquire(second, 64 * KB));
+        // 其他用户不受影响
+        assertEquals(64 * KB, scheduler.acquire(other, 64 * KB));
+
+        // 超限时不阻塞，定时恢复
+        assertEquals(0, scheduler.acquire(first, 64 * KB));
+        verify(executor).schedule(eq(resumer), anyLong(), any(TimeUnit.class));
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(32 * KB, scheduler.acquire(first, 64 * KB));
+    }
+
+    @Test
+    void queueEachConnectionOnceAndDropClosedConnections() {
+        FileProperties.Download config = new FileProperties.Download();
+        config.setMaxBandwidth(64 * KB);
+        BandwidthScheduler scheduler = new BandwidthScheduler(config, executor, clock::get);
+        AtomicInteger waitingResumed = new AtomicInteger();
+        AtomicInteger closedResumed = new AtomicInteger();
+
+        BandwidthScheduler.Connection first = scheduler.open("u1", FileSender.TrafficClass.BULK, () -> { });
+        BandwidthScheduler.Connection waiting = scheduler.open("u2", FileSender.TrafficClass.BULK, waitingResumed::incrementAndGet);
+        BandwidthScheduler.Connection closed = scheduler.open("u3", FileSender.TrafficClass.BULK, closedResumed::incrementAndGet);
+        assertEquals(64 * KB, scheduler.acquire(first, 64 * KB));
+        assertEquals(0, scheduler.acquire(waiting, 32 * KB));
+        // 排队中重复申请不会再次排队
+        assertEquals(0, scheduler.acquire(waiting, 32 * KB));
+        assertEquals(0, scheduler.acquire(closed, 32 * KB));
+        scheduler.close(closed);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        scheduler.tick();
+        assertEquals(1, waitingResumed.get());
+        assertEquals(0, closedResumed.get());
+        assertEquals(32 * KB, scheduler.acquire(waiting, 32 * KB));
+
+        // 恢复后全局带宽仍有剩余，已关闭的连接也不会占用
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        scheduler.tick();
+        assertEquals(1, waitingResumed.get());
+        assertEquals(64 * KB, scheduler.acquire(first, 64 * KB));
+    }
+
+    /**
+     * 模拟总是可写的连接：拿到带宽就写出，拿不到时等调度恢复
+     */
+    private static class Client {
+
+        private final BandwidthScheduler scheduler;
+
+        private final BandwidthScheduler.Connection connection;
+
+        private long received;
+
+        private boolean waiting;
+
+        Client(BandwidthScheduler scheduler, String user, FileSender.TrafficClass trafficClass) {
+            this.scheduler = scheduler;
+            this.connection = scheduler.open(user, trafficClass, () -> waiting = false);
+        }
+
+        void write() {
+            if (waiting) {
+                return;
+            }
+            long n;
+            while ((n = scheduler.acquire(connection, 64 * KB)) > 0) {
+                received += n;
+            }
+            waiting = true;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.config.FileProperties;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分块上传增量MD5单元测试
+ */
+class ChunkDigestTest {
+
+    private final FileEncryptUtil fileEncryptUtil = new FileEncryptUtil(new ParallelTaskExecutor(new FileProperties()));
+
+    @Test
+    void digestInOrderChunks() {
+        String[] parts = {"第一块数据", "第二块数据", "第三块"};
+        ChunkDigest digest = new ChunkDigest(parts.length);
+
+        for (int i = 0; i < parts.length; i++) {
+            assertNull(digest.getMd5());
+            byte[] data = parts[i].getBytes(StandardCharsets.UTF_8);
+            assertTrue(digest.claim(i));
+            digest.update(data, 0, data.length);
+            digest.release(i, true);
+            // 已摘要的分块重传不再计入
+            assertFalse(digest.claim(i));
+        }
+
+        assertEquals(fileEncryptUtil.calculateMD5(String.join("", parts)), digest.getMd5());
+    }
+
+    @Test
+    void deferWhenOutOfOrder() {
+        ChunkDigest digest = new ChunkDigest(3);
+        assertTrue(digest.claim(0));
+        digest.release(0, true);
+
+        // 分块2先于分块1到达，转为延迟计算
+        assertFalse(digest.claim(2));
+        assertTrue(digest.isDeferred());
+        assertFalse(digest.claim(1));
+        assertNull(digest.getMd5());
+    }
+
+    @Test
+    void deferWhenChunkFails() {
+        ChunkDigest digest = new ChunkDigest(2);
+        assertTrue(digest.claim(0));
+        digest.update(new byte[]{1, 2, 3}, 0, 3);
+        digest.release(0, false);
+
+        assertFalse(digest.claim(0));
+        assertNull(digest.getMd5());
+    }
+}
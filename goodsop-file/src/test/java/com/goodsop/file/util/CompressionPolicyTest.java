@@ -0,0 +1,33 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.config.FileProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 压缩格式选择策略单元测试
+ */
+class CompressionPolicyTest {
+
+    @Test
+    void skipAlreadyCompressedContent() {
+        CompressionPolicy policy = createPolicy("lz4");
+
+        assertEquals(FileCompressUtil.CompressionType.NONE, policy.select("record.bin"));
+        assertEquals(FileCompressUtil.CompressionType.NONE, policy.select("record.wav.gz"));
+        assertEquals(FileCompressUtil.CompressionType.LZ4, policy.select("record.wav"));
+    }
+
+    @Test
+    void fallBackToZstdForUnknownCodec() {
+        assertEquals(FileCompressUtil.CompressionType.ZSTD, createPolicy("zstdd").select("record.wav"));
+        assertEquals(FileCompressUtil.CompressionType.ZSTD, createPolicy(null).select("record.wav"));
+    }
+
+    private CompressionPolicy createPolicy(String codec) {
+        FileProperties properties = new FileProperties();
+        properties.getUpload().setCompressionCodec(codec);
+        return new CompressionPolicy(properties);
+    }
+}
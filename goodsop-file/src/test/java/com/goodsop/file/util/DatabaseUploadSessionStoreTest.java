@@ -0,0 +1,96 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.entity.UploadSessionRecord;
+import com.goodsop.file.mapper.UploadSessionMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 数据库分块上传会话存储单元测试
+ */
+class DatabaseUploadSessionStoreTest {
+
+    private UploadSessionMapper uploadSessionMapper;
+
+    private DatabaseUploadSessionStore store;
+
+    @BeforeEach
+    void setUp() {
+        uploadSessionMapper = mock(UploadSessionMapper.class);
+        store = new DatabaseUploadSessionStore(uploadSessionMapper);
+    }
+
+    @Test
+    void joinSessionCreatedByAnotherNode() {
+        UploadSessionRecord existing = new UploadSessionRecord();
+        existing.setSessionKey("device01/test.wav");
+        existing.setSessionId("session01");
+        existing.setChunks(4);
+        existing.setChunkSize(1024L);
+        existing.setStandardFileName("standard.wav");
+        when(uploadSessionMapper.insertIfAbsent(any())).thenReturn(0);
+        when(uploadSessionMapper.selectById("device01/test.wav")).thenReturn(existing);
+        when(uploadSessionMapper.selectChunkIndexes("session01")).thenReturn(List.of(0, 2));
+
+        UploadSessionStore.SessionState state = store.open("device01/test.wav", "device01", "test.wav", 4);
+
+        assertEquals("session01", state.getSessionId());
+        assertEquals(1024L, state.getChunkSize());
+        assertEquals("standard.wav", state.assignStandardFileName("other.wav"));
+        assertEquals(List.of(1, 3), state.getMissingChunks());
+        verify(uploadSessionMapper, never()).assignStandardFileName(anyString(), anyString());
+    }
+
+    @Test
+    void completeOnlyWhenDatabaseUpdateSucceeds() {
+        when(uploadSessionMapper.insertIfAbsent(any())).thenReturn(1);
+        UploadSessionStore.SessionState state = store.open("device01/test.wav", "device01", "test.wav", 2);
+        String sessionId = state.getSessionId();
+        when(uploadSessionMapper.insertChunk(eq(sessionId), anyInt(), anyLong())).thenReturn(1, 0);
+        when(uploadSessionMapper.tryComplete(sessionId)).thenReturn(1, 0);
+
+        assertTrue(state.markChunk(1, 10));
+        assertFalse(state.markChunk(1, 10)); // 重复上传
+        assertTrue(state.tryComplete());
+        assertFalse(state.tryComplete()); // 其他节点已完成
+        verify(uploadSessionMapper, times(2)).touch(sessionId);
+    }
+
+    @Test
+    void readSessionRecordOncePerRequest() {
+        UploadSessionRecord existing = new UploadSessionRecord();
+        existing.setSessionKey("device01/test.wav");
+        existing.setSessionId("session01");
+        existing.setChunks(2);
+        existing.setChunkSize(1024L);
+        existing.setLastChunkLength(-1L);
+        existing.setCompleted(0);
+        existing.setOriginalExtension("wav");
+        when(uploadSessionMapper.insertIfAbsent(any())).thenReturn(0);
+        when(uploadSessionMapper.selectById("device01/test.wav")).thenReturn(existing);
+
+        UploadSessionStore.SessionState state = store.open("device01/test.wav", "device01", "test.wav", 2);
+        assertFalse(state.isCompleted());
+        assertEquals("wav", state.getOriginalExtension());
+        assertEquals(-1L, state.getLastChunkLength());
+        state.setLastChunkLength(100);
+        assertEquals(100L, state.getLastChunkLength());
+
+        verify(uploadSessionMapper, times(1)).selectById("device01/test.wav");
+        verify(uploadSessionMapper, never()).selectOne(any());
+    }
+}
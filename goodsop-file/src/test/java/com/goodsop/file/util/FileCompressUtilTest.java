@@ -1,8 +1,10 @@
 package com.goodsop.file.util;
 
+import com.goodsop.file.config.FileProperties;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -10,8 +12,11 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * 文件压缩工具类单元测试
@@ -24,8 +29,9 @@ class FileCompressUtilTest {
     Path tempDir;
     
     @BeforeEach
+    @SuppressWarnings("unchecked")
     void setUp() {
-        fileCompressUtil = new FileCompressUtil();
+        fileCompressUtil = new FileCompressUtil(mock(ObjectProvider.class), new ParallelTaskExecutor(new FileProperties()));
     }
     
     @Test
@@ -90,4 +96,57 @@ class FileCompressUtilTest {
             "非压缩文件'解压'后内容应与原始内容相同"
         );
     }
-} 
\ No newline at end of file
+    
+    @Test
+    void compressAndDecompressWithEachCodec() throws IOException {
+        byte[] content = "这是测试内容，用于测试各压缩格式的编解码。".repeat(2000).getBytes(StandardCharsets.UTF_8);
+        File sourceFile = Files.write(tempDir.resolve("codec.txt"), content).toFile();
+        
+        for (FileCompressUtil.CompressionType type : new FileCompressUtil.CompressionType[]{
+                FileCompressUtil.CompressionType.GZIP, FileCompressUtil.CompressionType.ZIP,
+                FileCompressUtil.CompressionType.ZSTD, FileCompressUtil.CompressionType.LZ4}) {
+            // 扩展名与格式不符，只能依靠文件头魔数识别
+            File compressed = fileCompressUtil.compressFile(sourceFile, tempDir.resolve(type + ".dat").toFile(), type);
+            assertNotNull(compressed, type + "压缩失败");
+            assertTrue(compressed.length() < content.length, type + "压缩后应变小");
+            assertEquals(type, fileCompressUtil.detectCompressionType(compressed));
+            
+            File decompressed = fileCompressUtil.decompressFile(compressed, tempDir.resolve(type + ".out").toFile());
+            assertArrayEquals(content, Files.readAllBytes(decompressed.toPath()), type + "解压内容不一致");
+        }
+        
+        assertEquals("record.wav", FileCompressUtil.stripCompressionSuffix("record.wav.zst"));
+        assertEquals("record.wav", FileCompressUtil.stripCompressionSuffix("record.wav.lz4"));
+        assertEquals("record.wav", FileCompressUtil.stripCompressionSuffix("record.wav"));
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void detectWithRegisteredCodec() {
+        // 自定义LZ4编解码器额外识别旧版LZ4魔数（0x184C2102）
+        CompressionCodec legacyLz4 = new Lz4CompressionCodec() {
+            @Override
+            public boolean matches(byte[] signature) {
+                return super.matches(signature) || ((signature[0] & 0xff) == 0x02 && (signature[1] & 0xff) == 0x21
+                        && (signature[2] & 0xff) == 0x4c && (signature[3] & 0xff) == 0x18);
+            }
+        };
+        ObjectProvider<CompressionCodec> customCodecs = mock(ObjectProvider.class);
+        when(customCodecs.orderedStream()).thenReturn(Stream.of(legacyLz4));
+        FileCompressUtil customized = new FileCompressUtil(customCodecs, new ParallelTaskExecutor(new FileProperties()));
+        
+        byte[] legacySignature = {0x02, 0x21, 0x4c, 0x18};
+        assertEquals(FileCompressUtil.CompressionType.LZ4, customized.detectBySignature(legacySignature));
+        assertEquals(FileCompressUtil.CompressionType.NONE, fileCompressUtil.detectBySignature(legacySignature));
+    }
+    
+    @Test
+    void decompressZipWithoutTempDirectory() throws IOException {
+        File zipFile = Files.write(tempDir.resolve("multi.zip"), FileStreamPipelineTest.zipOf(
+                "docs/", "", "docs/a.txt", "内容A", "b.txt", "内容B", "../a.txt", "内容C")).toFile();
+        
+        // 单文件解压只写出第一个文件条目
+        File target = fileCompressUtil.decompressFile(zipFile, tempDir.resolve("single.txt").toFile());
+        assertEquals("内容A", Files.readString(target.toPath()));
+    }
+}
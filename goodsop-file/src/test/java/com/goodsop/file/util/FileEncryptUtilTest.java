@@ -1,16 +1,27 @@
 package com.goodsop.file.util;
 
+import com.goodsop.file.config.FileProperties;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.SecureRandom;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -28,7 +39,7 @@ class FileEncryptUtilTest {
     
     @BeforeEach
     void setUp() {
-        fileEncryptUtil = new FileEncryptUtil();
+        fileEncryptUtil = new FileEncryptUtil(new ParallelTaskExecutor(new FileProperties()));
     }
     
     @Test
@@ -139,6 +150,85 @@ class FileEncryptUtilTest {
         );
     }
     
+    @Test
+    void decryptWithPooledCipher() throws Exception {
+        // 跨越多个缓冲区且不是整块大小的文件
+        byte[] randomData = new byte[3 * AesCtrCipherPool.BUFFER_SIZE + 17];
+        new SecureRandom().nextBytes(randomData);
+        File sourceFile = Files.write(tempDir.resolve("pooled.bin"), randomData).toFile();
+        File encryptedFile = fileEncryptUtil.encryptFile(sourceFile, tempDir.resolve("pooled.bin.enc").toFile(), testKey);
+        
+        // 连续解密两次，第二次复用池中的Cipher
+        for (int i = 0; i < 2; i++) {
+            File decryptedFile = fileEncryptUtil.decryptFile(encryptedFile, tempDir.resolve("pooled_" + i + ".bin").toFile(), testKey);
+            assertArrayEquals(randomData, Files.readAllBytes(decryptedFile.toPath()));
+        }
+        assertEquals(1, fileEncryptUtil.getCipherPool().getIdleCount());
+        
+        // 解密流与文件解密结果一致，关闭后归还Cipher
+        try (InputStream in = new FileInputStream(encryptedFile)) {
+            byte[] iv = in.readNBytes(16);
+            try (InputStream decrypted = fileEncryptUtil.openDecryptStream(in, fileEncryptUtil.resolveDecryptKey(testKey), iv)) {
+                assertEquals(0, fileEncryptUtil.getCipherPool().getIdleCount());
+                assertArrayEquals(randomData, decrypted.readAllBytes());
+            }
+        }
+        assertEquals(1, fileEncryptUtil.getCipherPool().getIdleCount());
+    }
+    
+    @Test
+    void decryptInParallelSegments() throws Exception {
+        // 计数器低位接近溢出的IV，验证分段推进计数器时的进位与顺序解密一致
+        byte[] iv = new byte[16];
+        Arrays.fill(iv, 8, 16, (byte) 0xFF);
+        iv[15] = (byte) 0xF0;
+        byte[] plain = new byte[5 * 64 * 1024 + 7];
+        new SecureRandom().nextBytes(plain);
+        SecretKey key = fileEncryptUtil.resolveDecryptKey(testKey);
+        Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(iv));
+        Path encrypted = Files.write(tempDir.resolve("parallel.enc"), cipher.doFinal(plain));
+        Path decrypted = tempDir.resolve("parallel.bin");
+        
+        try (FileChannel in = FileChannel.open(encrypted, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(decrypted, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            assertEquals(plain.length, fileEncryptUtil.decryptParallel(in, 0, plain.length, out, key, iv, 64 * 1024));
+        }
+        assertArrayEquals(plain, Files.readAllBytes(decrypted));
+        
+        assertArrayEquals(new byte[]{0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0x0F},
+                FileEncryptUtil.advanceCounter(iv, 0x1F));
+        assertThrows(IllegalArgumentException.class, () -> fileEncryptUtil.decryptParallel(null, 0, 1, null, key, iv, 100));
+    }
+
+    @Test
+    void decryptArbitraryRange() throws Exception {
+        byte[] randomData = new byte[200 * 1024 + 5];
+        new SecureRandom().nextBytes(randomData);
+        File sourceFile = Files.write(tempDir.resolve("range.bin"), randomData).toFile();
+        File encryptedFile = fileEncryptUtil.encryptFile(sourceFile, tempDir.resolve("range.bin.enc").toFile(), testKey);
+        SecretKey key = fileEncryptUtil.resolveDecryptKey(testKey);
+
+        // 块内偏移、跨越64KB缓冲区、到文件末尾的范围
+        long[][] ranges = {{0, 1}, {7, 100}, {16, 16}, {65535, 70000}, {randomData.length - 3, 3}};
+        try (FileChannel in = FileChannel.open(encryptedFile.toPath(), StandardOpenOption.READ)) {
+            for (long[] range : ranges) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                assertEquals(range[1], fileEncryptUtil.transferDecryptedRange(in, range[0], range[1], out, key));
+                assertArrayEquals(Arrays.copyOfRange(randomData, (int) range[0], (int) (range[0] + range[1])), out.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    void rejectInvalidKey() {
+        // 不回退到内置密钥
+        assertThrows(IllegalArgumentException.class, () -> fileEncryptUtil.resolveDecryptKey(null));
+        assertThrows(IllegalArgumentException.class, () -> fileEncryptUtil.resolveDecryptKey("short-key"));
+        assertFalse(fileEncryptUtil.isValidKey(""));
+        assertTrue(fileEncryptUtil.isValidKey(testKey));
+    }
+
     @Test
     void calculateMD5() throws IOException {
         // 创建测试文件
@@ -157,6 +247,13 @@ class FileEncryptUtilTest {
         assertTrue(md5.matches("[0-9a-f]{32}"));
     }
     
+    @Test
+    void toHex() {
+        // 断言查表转换结果与标准MD5测试向量一致
+        assertEquals("900150983cd24fb0d6963f7d28e17f72", fileEncryptUtil.calculateMD5("abc"));
+        assertEquals("00ff7f80", FileEncryptUtil.toHex(new byte[]{0x00, (byte) 0xff, 0x7f, (byte) 0x80}));
+    }
+    
     @Test
     void encodeAndDecodeBase64() {
         // 测试数据
@@ -0,0 +1,73 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.config.FileProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 上传文件后台处理执行器单元测试
+ */
+class FileProcessingExecutorTest {
+
+    private FileProcessingExecutor executor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void processInBackground() throws InterruptedException {
+        executor = new FileProcessingExecutor(new FileProperties());
+        CountDownLatch release = new CountDownLatch(1);
+
+        FileProcessingExecutor.ProcessingTask task = executor.submit(FileProcessingExecutor.newProcessingId(), 1L, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // 提交后立即返回，任务仍在处理中
+        assertNotNull(task.getProcessingId());
+        assertNotEquals(FileProcessingExecutor.ProcessingState.COMPLETED, task.getState());
+        assertSame(task, executor.get(task.getProcessingId()));
+        assertEquals(Set.of(1L), executor.getActiveFileIds());
+
+        release.countDown();
+        waitForFinish(task);
+        assertEquals(FileProcessingExecutor.ProcessingState.COMPLETED, task.getState());
+        assertTrue(executor.getActiveFileIds().isEmpty());
+    }
+
+    @Test
+    void recordFailureWhenProcessedSynchronously() {
+        FileProperties properties = new FileProperties();
+        properties.getUpload().setAsyncProcessing(false);
+        executor = new FileProcessingExecutor(properties);
+
+        FileProcessingExecutor.ProcessingTask task = executor.submit(FileProcessingExecutor.newProcessingId(), 2L, () -> {
+            throw new RuntimeException("解密失败");
+        });
+
+        assertEquals(FileProcessingExecutor.ProcessingState.FAILED, task.getState());
+        assertEquals("解密失败", task.getMessage());
+        assertNotNull(task.getFinishTime());
+    }
+
+    private void waitForFinish(FileProcessingExecutor.ProcessingTask task) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (task.getFinishTime() == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
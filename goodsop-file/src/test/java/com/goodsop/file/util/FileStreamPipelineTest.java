@@ -0,0 +1,267 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.constant.FileConstant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 文件流式处理管道单元测试
+ */
+class FileStreamPipelineTest {
+
+    private FileEncryptUtil fileEncryptUtil;
+
+    private FileCompressUtil fileCompressUtil;
+
+    private FileStreamPipeline fileStreamPipeline;
+
+    @TempDir
+    Path tempDir;
+
+    private final String testKey = "1234567890abcdef1234567890abcdef";
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ParallelTaskExecutor parallelTaskExecutor = new ParallelTaskExecutor(new FileProperties());
+        fileEncryptUtil = new FileEncryptUtil(parallelTaskExecutor);
+        fileCompressUtil = new FileCompressUtil(mock(ObjectProvider.class), parallelTaskExecutor);
+        fileStreamPipeline = new FileStreamPipeline(fileEncryptUtil, fileCompressUtil);
+    }
+
+    @Test
+    void decryptAndDecompressInOnePass() throws IOException {
+        // 准备原始内容：先GZIP压缩再AES加密，与设备上传的数据格式一致
+        File sourceFile = createTextFile("source.txt", 2000);
+        File gzipFile = fileCompressUtil.compressFile(sourceFile, tempDir.resolve("source.txt.gz").toFile());
+        File encFile = fileEncryptUtil.encryptFile(gzipFile, tempDir.resolve("source.txt.gz.enc").toFile(), testKey);
+
+        Path outDir = Files.createDirectory(tempDir.resolve("out"));
+        File targetFile = outDir.resolve("source.txt").toFile();
+        MockMultipartFile upload = new MockMultipartFile("file", encFile.getName(),
+                "application/octet-stream", Files.readAllBytes(encFile.toPath()));
+
+        FileStreamPipeline.PipelineResult result = fileStreamPipeline.process(upload, targetFile,
+                new FileStreamPipeline.PipelineOptions().setDecrypt(true).setAesKey(testKey).setDecompress(true)
+                        .setDigestSource(true));
+
+        // 断言源数据MD5在同一次读取中得出，与上传的密文一致
+        assertEquals(fileEncryptUtil.calculateMD5(encFile), result.getSourceMd5());
+
+        // 断言内容、大小和MD5均与原始文件一致
+        assertTrue(result.isDecrypted());
+        assertTrue(result.isDecompressed());
+        assertEquals(FileCompressUtil.CompressionType.GZIP, result.getCompressionType());
+        assertArrayEquals(Files.readAllBytes(sourceFile.toPath()), Files.readAllBytes(targetFile.toPath()));
+        assertEquals(sourceFile.length(), result.getBytesWritten());
+        assertEquals(fileEncryptUtil.calculateMD5(sourceFile), result.getMd5());
+
+        // 断言没有残留任何中间文件
+        assertEquals(1, Objects.requireNonNull(outDir.toFile().list()).length);
+    }
+
+    @Test
+    void keepDataWhenNotCompressed() throws IOException {
+        // 客户端标记为压缩，但数据实际上不是压缩格式
+        File sourceFile = createTextFile("plain.txt", 10);
+        File targetFile = tempDir.resolve("plain_out.txt").toFile();
+
+        FileStreamPipeline.PipelineResult result = fileStreamPipeline.processFile(sourceFile, targetFile,
+                new FileStreamPipeline.PipelineOptions().setDecompress(true));
+
+        assertEquals(FileCompressUtil.CompressionType.NONE, result.getCompressionType());
+        assertEquals(fileEncryptUtil.calculateMD5(targetFile), result.getMd5());
+        assertFalse(sourceFile.exists(), "处理完成后应移除源文件");
+    }
+
+    @Test
+    void keepCompressedDataWhenInflateFails() throws IOException {
+        // 构造一个只有GZIP头部、内容损坏的文件
+        byte[] corrupted = new byte[64];
+        corrupted[0] = 0x1f;
+        corrupted[1] = (byte) 0x8b;
+        corrupted[2] = 8;
+        File sourceFile = tempDir.resolve("broken.gz").toFile();
+        Files.write(sourceFile.toPath(), corrupted);
+        File targetFile = tempDir.resolve("broken_out.gz").toFile();
+
+        FileStreamPipeline.PipelineResult result = fileStreamPipeline.processFile(sourceFile, targetFile,
+                new FileStreamPipeline.PipelineOptions().setDecompress(true));
+
+        // 解压失败时应保留原始压缩数据
+        assertFalse(result.isDecompressed());
+        assertArrayEquals(corrupted, Files.readAllBytes(targetFile.toPath()));
+    }
+
+    @Test
+    void moveWithoutRewriteWhenNoProcessing() throws IOException {
+        File sourceFile = createTextFile("raw.txt", 100);
+        String expectedMd5 = fileEncryptUtil.calculateMD5(sourceFile);
+        File targetFile = tempDir.resolve("raw_final.txt").toFile();
+
+        FileStreamPipeline.PipelineResult result = fileStreamPipeline.processFile(sourceFile, targetFile,
+                new FileStreamPipeline.PipelineOptions());
+
+        assertTrue(targetFile.exists());
+        assertFalse(sourceFile.exists());
+        assertEquals(expectedMd5, result.getMd5());
+    }
+
+    @Test
+    void encryptAtRestInSamePass() throws Exception {
+        File sourceFile = createTextFile("plain.txt", 5000);
+        byte[] plain = Files.readAllBytes(sourceFile.toPath());
+        String plainMd5 = fileEncryptUtil.calculateMD5(sourceFile);
+        File targetFile = tempDir.resolve("plain_final.txt").toFile();
+
+        FileStreamPipeline.PipelineResult result = fileStreamPipeline.processFile(sourceFile, targetFile,
+                new FileStreamPipeline.PipelineOptions().setEncryptAtRest(true).setAtRestKey(testKey).setSourceMd5(plainMd5));
+
+        // 磁盘上是 IV + 密文，MD5和大小仍按明文记录
+        assertTrue(result.isEncryptedAtRest());
+        assertEquals(plainMd5, result.getMd5());
+        assertEquals(plain.length, result.getBytesWritten());
+        assertEquals(plain.length + 16, targetFile.length());
+        assertFalse(Arrays.equals(plain, Arrays.copyOfRange(Files.readAllBytes(targetFile.toPath()), 16, plain.length + 16)));
+
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        try (FileChannel in = FileChannel.open(targetFile.toPath(), StandardOpenOption.READ)) {
+            fileEncryptUtil.transferDecryptedRange(in, 0, plain.length, decrypted, fileEncryptUtil.resolveDecryptKey(testKey));
+        }
+        assertArrayEquals(plain, decrypted.toByteArray());
+    }
+
+    @Test
+    void extractEachZipEntryToOwnFile() throws Exception {
+        byte[] zip = zipOf("dir/", "", "first.txt", "第一个文件", "dir/second.txt", "第二个文件", "../first.txt", "同名文件");
+        Path outDir = Files.createDirectory(tempDir.resolve("zip_out"));
+        File targetFile = outDir.resolve("archive").toFile();
+        MockMultipartFile upload = new MockMultipartFile("file", "archive.zip", "application/zip", zip);
+
+        FileStreamPipeline.PipelineResult result = fileStreamPipeline.process(upload, targetFile,
+                new FileStreamPipeline.PipelineOptions().setDecompress(true).setZipMaxEntries(2).setDigestSource(true));
+
+        // 第一个文件写入目标文件，其余条目按数量上限写入同目录，条目路径中的目录部分被去掉
+        assertEquals(FileCompressUtil.CompressionType.ZIP, result.getCompressionType());
+        assertEquals("第一个文件", Files.readString(targetFile.toPath()));
+        assertEquals(fileEncryptUtil.calculateMD5("第一个文件"), result.getMd5());
+        assertEquals(FileEncryptUtil.toHex(MessageDigest.getInstance("MD5").digest(zip)), result.getSourceMd5());
+        assertEquals(1, result.getEntries().size());
+        FileStreamPipeline.PipelineResult entry = result.getEntries().get(0);
+        assertEquals("dir/second.txt", entry.getEntryName());
+        assertEquals(outDir.resolve("second.txt").toFile(), entry.getTargetFile());
+        assertEquals("第二个文件", Files.readString(entry.getTargetFile().toPath()));
+        assertEquals(fileEncryptUtil.calculateMD5("第二个文件"), entry.getMd5());
+
+        // 不限制数量时同名条目追加序号
+        File allTarget = outDir.resolve("all.txt").toFile();
+        result = fileStreamPipeline.process(upload, allTarget,
+                new FileStreamPipeline.PipelineOptions().setDecompress(true).setZipMaxEntries(10));
+        assertEquals(2, result.getEntries().size());
+        assertEquals("second_1.txt", result.getEntries().get(0).getTargetFile().getName());
+        assertEquals("first.txt", result.getEntries().get(1).getTargetFile().getName());
+        assertEquals("同名文件", Files.readString(result.getEntries().get(1).getTargetFile().toPath()));
+        assertEquals(5, Objects.requireNonNull(outDir.toFile().list()).length);
+    }
+
+    @Test
+    void reserveZipEntryNamesWithoutOverwriting() throws Exception {
+        Path outDir = Files.createDirectory(tempDir.resolve("reserve_out"));
+        Files.writeString(outDir.resolve("a.txt"), "已有文件");
+        // 其他上传正在写入 a_1.txt
+        Files.createFile(outDir.resolve("a_1.txt" + FileConstant.PIPELINE_FILE_SUFFIX));
+
+        File reserved = FileStreamPipeline.reserveEntryFile(outDir.toFile(), "dir/a.txt");
+        assertEquals("a_2.txt", reserved.getName());
+        assertTrue(Files.exists(outDir.resolve("a_2.txt" + FileConstant.PIPELINE_FILE_SUFFIX)));
+        // 同一次解压中重名的条目
+        assertEquals("b.txt", FileStreamPipeline.reserveEntryFile(outDir.toFile(), "b.txt").getName());
+        assertEquals("b_1.txt", FileStreamPipeline.reserveEntryFile(outDir.toFile(), "../b.txt").getName());
+        assertEquals("已有文件", Files.readString(outDir.resolve("a.txt")));
+    }
+
+    static byte[] zipOf(String... namesAndContents) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOut = new ZipOutputStream(bytes)) {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                zipOut.putNextEntry(new ZipEntry(namesAndContents[i]));
+                zipOut.write(namesAndContents[i + 1].getBytes(StandardCharsets.UTF_8));
+                zipOut.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    void decryptLargeFileInParallelWithSingleRead() throws Exception {
+        FileProperties properties = new FileProperties();
+        properties.getUpload().setParallelThreads(4);
+        ParallelTaskExecutor parallelTaskExecutor = new ParallelTaskExecutor(properties);
+        try {
+            FileEncryptUtil encryptUtil = spy(new FileEncryptUtil(parallelTaskExecutor));
+            FileStreamPipeline pipeline = new FileStreamPipeline(encryptUtil, fileCompressUtil);
+            byte[] plain = new byte[(int) FileConstant.PARALLEL_DECRYPT_THRESHOLD + 12345];
+            new Random(11).nextBytes(plain);
+            File plainFile = Files.write(tempDir.resolve("large.bin"), plain).toFile();
+            File encFile = encryptUtil.encryptFile(plainFile, tempDir.resolve("large.bin.enc").toFile(), testKey);
+            String encMd5 = encryptUtil.calculateMD5(encFile);
+            clearInvocations(encryptUtil);
+            
+            File targetFile = tempDir.resolve("large_out.bin").toFile();
+            FileStreamPipeline.PipelineResult result = pipeline.processFile(encFile, targetFile,
+                    new FileStreamPipeline.PipelineOptions().setDecrypt(true).setAesKey(testKey).setDigestSource(true));
+            
+            // 两个MD5都在解密的同时得出，不再读取源文件或目标文件
+            verify(encryptUtil, never()).calculateMD5(any(File.class));
+            verify(encryptUtil, never()).calculateMD5(any(InputStream.class));
+            assertTrue(result.isDecrypted());
+            assertArrayEquals(plain, Files.readAllBytes(targetFile.toPath()));
+            assertEquals(encryptUtil.calculateMD5(plainFile), result.getMd5());
+            assertEquals(encMd5, result.getSourceMd5());
+            assertFalse(encFile.exists());
+        } finally {
+            parallelTaskExecutor.shutdown();
+        }
+    }
+
+    private File createTextFile(String name, int repeat) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < repeat; i++) {
+            content.append("这是测试内容，用于测试文件流式处理管道。");
+        }
+        File file = tempDir.resolve(name).toFile();
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(content.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+}
@@ -1,19 +1,34 @@
 package com.goodsop.file.util;
 
+import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.constant.FileConstant;
+import com.goodsop.file.exception.ChunkChecksumException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32C;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -29,7 +44,8 @@ class FileTransferUtilTest {
     
     @BeforeEach
     void setUp() {
-        fileTransferUtil = new FileTransferUtil();
+        fileTransferUtil = new FileTransferUtil(new FileProperties(), new UploadSessionRegistry(new FileProperties(), new InMemoryUploadSessionStore()),
+                new UploadMetadataCache(new FileProperties()), new FileSender(new FileProperties()));
     }
     
     @Test
@@ -104,6 +120,146 @@ class FileTransferUtilTest {
         assertEquals(expectedContent, Files.readString(result2.toPath(), StandardCharsets.UTF_8));
     }
     
+    @Test
+    void storeFileChunkPositionalOutOfOrder() throws IOException {
+        // 3个分块，每块4字节，最后一块2字节，乱序上传且重复上传其中一块
+        byte[][] parts = {"AAAA".getBytes(), "BBBB".getBytes(), "CC".getBytes()};
+        int[] order = {2, 0, 0, 1};
+        File result = null;
+        for (int i = 0; i < order.length; i++) {
+            int chunk = order[i];
+            MockMultipartFile mockChunk = new MockMultipartFile("file", chunk + ".part",
+                    "application/octet-stream", parts[chunk]);
+            result = fileTransferUtil.storeFileChunk(mockChunk, tempDir.toString(), "device01", "positional.bin", chunk, 3, 4L);
+            if (i < order.length - 1) {
+                assertNull(result);
+            }
+        }
+
+        // 最后一个分块到达后直接得到截断到实际大小的文件，且不产生.part文件
+        assertNotNull(result);
+        assertEquals("AAAABBBBCC", Files.readString(result.toPath()));
+        assertFalse(tempDir.resolve("temp").resolve("positional.bin").toFile().exists());
+    }
+
+    @Test
+    void rejectPreallocationAboveMaxSize() {
+        FileProperties properties = new FileProperties();
+        properties.getUpload().setMaxSize(DataSize.ofBytes(10));
+        UploadSessionRegistry registry = new UploadSessionRegistry(properties, new InMemoryUploadSessionStore());
+        FileTransferUtil util = new FileTransferUtil(properties, registry, new UploadMetadataCache(properties),
+                new FileSender(properties));
+        UploadSession session = registry.getOrCreate("device01", "huge.bin", 3);
+        
+        // 3 * 4 字节超过上限，分块大小溢出时同样拒绝，都不预分配、不记录分块大小
+        assertThrows(RuntimeException.class, () -> util.storeFileChunk(new MockMultipartFile("file", "0.part",
+                "application/octet-stream", "AAAA".getBytes()), tempDir.toString(), "huge.bin", session, 0, 4L));
+        assertThrows(RuntimeException.class, () -> util.storeFileChunk(new MockMultipartFile("file", "2.part",
+                "application/octet-stream", "CC".getBytes()), tempDir.toString(), "huge.bin", session, 2, Long.MAX_VALUE / 2));
+        assertEquals(0, session.getChunkSize());
+        assertFalse(tempDir.resolve("temp").resolve("huge.bin").resolve(FileConstant.UPLOAD_DATA_FILE).toFile().exists());
+    }
+    
+    @Test
+    void resumeChunksFromDiskAfterRestart() throws IOException {
+        for (String mode : List.of("PREALLOCATED", "PART_FILES")) {
+            FileProperties properties = new FileProperties();
+            properties.getUpload().setChunkStoreMode(mode);
+            String fileName = "resume_" + mode + ".bin";
+            FileTransferUtil beforeRestart = new FileTransferUtil(properties, new UploadSessionRegistry(properties, new InMemoryUploadSessionStore()),
+                    new UploadMetadataCache(properties), new FileSender(properties));
+            assertNull(beforeRestart.storeFileChunk(new MockMultipartFile("file", "0.part", "application/octet-stream",
+                    "AAAA".getBytes()), tempDir.toString(), "device01", fileName, 0, 3, 4L));
+            assertNull(beforeRestart.storeFileChunk(new MockMultipartFile("file", "2.part", "application/octet-stream",
+                    "CC".getBytes()), tempDir.toString(), "device01", fileName, 2, 3, 4L));
+            
+            // 重启后会话丢失，客户端只重传缺失的分块即可完成
+            UploadSessionRegistry registry = new UploadSessionRegistry(properties, new InMemoryUploadSessionStore());
+            FileTransferUtil afterRestart = new FileTransferUtil(properties, registry, new UploadMetadataCache(properties),
+                    new FileSender(properties));
+            File result = afterRestart.storeFileChunk(new MockMultipartFile("file", "1.part", "application/octet-stream",
+                    "BBBB".getBytes()), tempDir.toString(), "device01", fileName, 1, 3, null);
+            
+            assertNotNull(result, mode);
+            assertEquals("AAAABBBBCC", Files.readString(result.toPath()), mode);
+            assertNull(registry.get("device01", fileName), mode);
+        }
+    }
+
+    @Test
+    void rejectCorruptedChunkByCrc32c() throws IOException {
+        FileProperties properties = new FileProperties();
+        UploadSessionRegistry registry = new UploadSessionRegistry(properties, new InMemoryUploadSessionStore());
+        FileTransferUtil util = new FileTransferUtil(properties, registry, new UploadMetadataCache(properties),
+                new FileSender(properties));
+        UploadSession session = registry.getOrCreate("device01", "checked.bin", 2);
+        byte[] data = "AAAA".getBytes();
+        CRC32C crc32c = new CRC32C();
+        crc32c.update(data);
+        String expected = ChunkChecksum.format(crc32c.getValue());
+
+        // 校验值不一致时拒绝分块，且不登记为已上传
+        MockMultipartFile corrupted = new MockMultipartFile("file", "0.part", "application/octet-stream", "AAAB".getBytes());
+        ChunkChecksumException e = assertThrows(ChunkChecksumException.class, () -> util.storeFileChunk(corrupted,
+                tempDir.toString(), "checked.bin", session, 0, 4L, new ChunkChecksum(expected.toUpperCase())));
+        assertEquals(expected, e.getExpected());
+        assertEquals(List.of(0, 1), session.getMissingChunks());
+
+        // 重传正确的分块后返回计算出的校验值
+        ChunkChecksum checksum = new ChunkChecksum(expected);
+        assertNull(util.storeFileChunk(new MockMultipartFile("file", "0.part", "application/octet-stream", data),
+                tempDir.toString(), "checked.bin", session, 0, 4L, checksum));
+        assertEquals(expected, checksum.getActual());
+        File result = util.storeFileChunk(new MockMultipartFile("file", "1.part", "application/octet-stream", "BB".getBytes()),
+                tempDir.toString(), "checked.bin", session, 1, 4L, null);
+        assertEquals("AAAABB", Files.readString(result.toPath()));
+
+        assertThrows(IllegalArgumentException.class, () -> new ChunkChecksum("xyz"));
+    }
+
+    @Test
+    void storeFileChunkWithPartFilesMode() throws IOException {
+        FileProperties properties = new FileProperties();
+        properties.getUpload().setChunkStoreMode("PART_FILES");
+        FileTransferUtil partFilesUtil = new FileTransferUtil(properties, new UploadSessionRegistry(properties, new InMemoryUploadSessionStore()),
+                new UploadMetadataCache(properties), new FileSender(properties));
+
+        MockMultipartFile chunk0 = new MockMultipartFile("file", "0.part", "application/octet-stream", "第一块".getBytes(StandardCharsets.UTF_8));
+        MockMultipartFile chunk1 = new MockMultipartFile("file", "1.part", "application/octet-stream", "第二块".getBytes(StandardCharsets.UTF_8));
+
+        assertNull(partFilesUtil.storeFileChunk(chunk1, tempDir.toString(), "parts.txt", 1, 2));
+        File result = partFilesUtil.storeFileChunk(chunk0, tempDir.toString(), "parts.txt", 0, 2);
+
+        assertNotNull(result);
+        assertEquals("第一块第二块", Files.readString(result.toPath(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void mergeChunksWithBothModes() throws IOException {
+        // 创建分块文件，分块大小各不相同
+        File partsDir = Files.createDirectory(tempDir.resolve("parts")).toFile();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            String content = "分块" + i + "的数据".repeat(i * 100 + 1);
+            Files.writeString(new File(partsDir, i + ".part").toPath(), content, StandardCharsets.UTF_8);
+            expected.append(content);
+        }
+
+        // 分别使用零拷贝和缓冲区方式合并
+        File zeroCopyFile = tempDir.resolve("zero_copy.txt").toFile();
+        File bufferedFile = tempDir.resolve("buffered.txt").toFile();
+        fileTransferUtil.mergeChunks(partsDir, zeroCopyFile, 3, FileTransferUtil.MergeMode.ZERO_COPY);
+        fileTransferUtil.mergeChunks(partsDir, bufferedFile, 3, FileTransferUtil.MergeMode.BUFFERED);
+
+        // 断言两种方式合并结果一致
+        assertEquals(expected.toString(), Files.readString(zeroCopyFile.toPath(), StandardCharsets.UTF_8));
+        assertArrayEquals(Files.readAllBytes(bufferedFile.toPath()), Files.readAllBytes(zeroCopyFile.toPath()));
+
+        // 缺少分块时应失败
+        assertThrows(IOException.class,
+                () -> fileTransferUtil.mergeChunks(partsDir, zeroCopyFile, 4, FileTransferUtil.MergeMode.ZERO_COPY));
+    }
+
     @Test
     void setDownloadResponseHeaders() {
         // 创建模拟响应
@@ -156,4 +312,332 @@ class FileTransferUtilTest {
         content = response.getContentAsString(StandardCharsets.UTF_8);
         assertEquals("测试文件", content);
     }
-} 
\ No newline at end of file
+    
+    @Test
+    void serveMultiRangeAndConditionalRequests() throws IOException {
+        byte[] content = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+        File testFile = Files.write(tempDir.resolve("serve.bin"), content).toFile();
+        FileTransferUtil.RangeResource resource = new FileTransferUtil.RangeResource()
+                .setFile(testFile).setContentType("audio/wav").setCacheControl("private, max-age=60")
+                .setEtag("0123abcd").setLastModified(testFile.lastModified());
+        
+        // 没有Range时返回200和完整内容
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        fileTransferUtil.serve(request, response, resource);
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertEquals("\"0123abcd\"", response.getHeader("ETag"));
+        assertEquals("private, max-age=60", response.getHeader("Cache-Control"));
+        assertEquals("20", response.getHeader("Content-Length"));
+        assertArrayEquals(content, response.getContentAsByteArray());
+        
+        // 后缀范围
+        request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=-5");
+        response = new MockHttpServletResponse();
+        fileTransferUtil.serve(request, response, resource);
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+        assertEquals("bytes 15-19/20", response.getHeader("Content-Range"));
+        assertEquals("fghij", response.getContentAsString());
+        
+        // 多个范围按 multipart/byteranges 输出，Content-Length 与实际输出一致
+        request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=0-1, 10-");
+        response = new MockHttpServletResponse();
+        fileTransferUtil.serve(request, response, resource);
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+        assertTrue(response.getContentType().startsWith("multipart/byteranges; boundary="));
+        String body = response.getContentAsString();
+        assertEquals(response.getContentLengthLong(), response.getContentAsByteArray().length);
+        assertTrue(body.contains("Content-Range: bytes 0-1/20\r\n\r\n01\r\n"));
+        assertTrue(body.contains("Content-Range: bytes 10-19/20\r\n\r\nabcdefghij\r\n"));
+        
+        // 范围不可满足
+        request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=30-40");
+        response = new MockHttpServletResponse();
+        fileTransferUtil.serve(request, response, resource);
+        assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatus());
+        assertEquals("bytes */20", response.getHeader("Content-Range"));
+        
+        // ETag命中返回304且不输出内容，文件不存在也不影响（不访问磁盘）
+        request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", "\"other\", W/\"0123abcd\"");
+        response = new MockHttpServletResponse();
+        FileTransferUtil.RangeResource missing = new FileTransferUtil.RangeResource()
+                .setFile(tempDir.resolve("missing.bin").toFile()).setEtag("0123abcd");
+        fileTransferUtil.serve(request, response, missing);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        response = new MockHttpServletResponse();
+        fileTransferUtil.serve(new MockHttpServletRequest(), response, missing);
+        assertEquals(HttpServletResponse.SC_NOT_FOUND, response.getStatus());
+        
+        // 最后修改时间未变化返回304
+        request = new MockHttpServletRequest();
+        request.addHeader("If-Modified-Since", testFile.lastModified() + 1000);
+        response = new MockHttpServletResponse();
+        fileTransferUtil.serve(request, response, resource);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+        
+        // If-Range与当前版本不一致时忽略Range返回完整内容
+        request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=0-1");
+        request.addHeader("If-Range", "\"stale\"");
+        response = new MockHttpServletResponse();
+        fileTransferUtil.serve(request, response, resource);
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertEquals(content.length, response.getContentAsByteArray().length);
+    }
+    
+    @Test
+    void serveWithSendfile() throws IOException {
+        File testFile = Files.write(tempDir.resolve("sendfile.bin"), new byte[1000]).toFile();
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader("Range", "bytes=100-199");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        fileTransferUtil.downloadWithRange(request, response, testFile, "sendfile.bin");
+        
+        // 内容交给容器发送，响应体中不写入数据
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+        assertEquals(testFile.getAbsolutePath(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(100L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(200L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+    
+    @Test
+    void serveAsyncWritesOnlyWhenConnectionReady() throws IOException {
+        FileProperties properties = new FileProperties();
+        properties.getDownload().setAsyncThreshold(0L);
+        properties.getDownload().setMaxConcurrentTransfers(1);
+        FileSender sender = new FileSender(properties);
+        FileTransferUtil util = new FileTransferUtil(properties, new UploadSessionRegistry(properties, new InMemoryUploadSessionStore()),
+                new UploadMetadataCache(properties), sender);
+        byte[] content = new byte[300 * 1024];
+        new Random(7).nextBytes(content);
+        File testFile = Files.write(tempDir.resolve("async.bin"), content).toFile();
+        FileTransferUtil.RangeResource resource = new FileTransferUtil.RangeResource().setFile(testFile);
+        
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAsyncSupported(true);
+        ReadinessOutputStream out = new ReadinessOutputStream();
+        HttpServletResponse response = new HttpServletResponseWrapper(new MockHttpServletResponse()) {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return out;
+            }
+        };
+        util.serve(request, response, resource);
+        
+        // 请求线程立即返回，内容等连接可写时再输出
+        assertTrue(request.isAsyncStarted());
+        assertNotNull(out.listener);
+        assertEquals(1, sender.getActiveTransfers());
+        
+        // 输出名额已用完时返回503
+        MockHttpServletResponse busy = new MockHttpServletResponse();
+        util.serve(new MockHttpServletRequest(), busy, resource);
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, busy.getStatus());
+        assertEquals("1", busy.getHeader("Retry-After"));
+        
+        // 每次回调只写到连接不可写为止
+        int callbacks = 0;
+        while (sender.getActiveTransfers() > 0 && callbacks < 100) {
+            out.ready = true;
+            out.listener.onWritePossible();
+            callbacks++;
+        }
+        assertArrayEquals(content, out.written.toByteArray());
+        assertEquals(0, sender.getActiveTransfers());
+        assertFalse(request.isAsyncStarted());
+        assertTrue(callbacks > 1);
+    }
+    
+    @Test
+    void serveReleasesPermitWhenHeadersFail() throws IOException {
+        FileProperties properties = new FileProperties();
+        properties.getDownload().setMaxConcurrentTransfers(1);
+        FileSender sender = new FileSender(properties);
+        FileTransferUtil util = new FileTransferUtil(properties, new UploadSessionRegistry(properties, new InMemoryUploadSessionStore()),
+                new UploadMetadataCache(properties), sender);
+        File testFile = Files.write(tempDir.resolve("headers.bin"), new byte[1000]).toFile();
+        FileTransferUtil.RangeResource resource = new FileTransferUtil.RangeResource().setFile(testFile);
+        try {
+            // 占用输出名额之后设置响应头失败
+            HttpServletResponse failing = new HttpServletResponseWrapper(new MockHttpServletResponse()) {
+                @Override
+                public void setContentLengthLong(long len) {
+                    throw new IllegalStateException("响应头设置失败");
+                }
+            };
+            util.serve(new MockHttpServletRequest(), failing, resource);
+            assertEquals(0, sender.getActiveTransfers());
+            
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            util.serve(new MockHttpServletRequest(), response, resource);
+            assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+            assertEquals(1000, response.getContentAsByteArray().length);
+        } finally {
+            sender.shutdown();
+        }
+    }
+    
+    /**
+     * 每次写入后变为不可写，模拟套接字发送缓冲区已满的慢速连接
+     */
+    private static class ReadinessOutputStream extends ServletOutputStream {
+        
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        
+        private WriteListener listener;
+        
+        private boolean ready;
+        
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+        
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            this.listener = writeListener;
+        }
+        
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) {
+            assertTrue(ready, "连接不可写时不应写入");
+            written.write(b, off, len);
+            ready = false;
+        }
+    }
+    
+    @Test
+    void serveZipStreamsEntriesAndListsMissingFiles() throws IOException {
+        byte[] wav = new byte[300 * 1024];
+        byte[] speex = new byte[100 * 1024];
+        new Random(7).nextBytes(speex);
+        Path wavFile = Files.write(tempDir.resolve("a.wav"), wav);
+        Path binFile = Files.write(tempDir.resolve("b.bin"), speex);
+        List<ZipStreamWriter.Entry> entries = List.of(
+                new ZipStreamWriter.Entry().setName("rec.wav").setFile(wavFile.toFile()),
+                new ZipStreamWriter.Entry().setName("rec.bin").setFile(binFile.toFile()).setStored(true),
+                new ZipStreamWriter.Entry().setName("rec.wav").setFile(wavFile.toFile()),
+                new ZipStreamWriter.Entry().setName("gone.wav").setFile(tempDir.resolve("gone.wav").toFile()));
+        
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        fileTransferUtil.serveZip(new MockHttpServletRequest(), response, "recordings.zip", entries);
+        
+        assertEquals(200, response.getStatus());
+        assertEquals("application/zip", response.getContentType());
+        try (ZipInputStream zip = new ZipInputStream(
+                new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            ZipEntry entry = zip.getNextEntry();
+            assertEquals("rec.wav", entry.getName());
+            assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+            assertArrayEquals(wav, zip.readAllBytes());
+            
+            // 已压缩的格式原样存储
+            entry = zip.getNextEntry();
+            assertEquals("rec.bin", entry.getName());
+            assertEquals(ZipEntry.STORED, entry.getMethod());
+            assertArrayEquals(speex, zip.readAllBytes());
+            
+            assertEquals("rec_1.wav", zip.getNextEntry().getName());
+            assertArrayEquals(wav, zip.readAllBytes());
+            
+            assertEquals(FileTransferUtil.ZIP_MISSING_ENTRY, zip.getNextEntry().getName());
+            assertTrue(new String(zip.readAllBytes(), StandardCharsets.UTF_8).contains("gone.wav"));
+            assertNull(zip.getNextEntry());
+        }
+    }
+
+    @Test
+    void serveZipUsesSeparateBatchPermits() throws IOException {
+        FileProperties properties = new FileProperties();
+        properties.getDownload().setBatchMaxConcurrent(1);
+        FileSender sender = new FileSender(properties);
+        FileTransferUtil util = new FileTransferUtil(properties, new UploadSessionRegistry(properties, new InMemoryUploadSessionStore()),
+                new UploadMetadataCache(properties), sender);
+        try {
+            FileSender.Permit batch = sender.tryAcquireBatch();
+            assertNotNull(batch);
+            assertEquals(1, sender.getActiveTransfers());
+            
+            // 批量打包名额用完时返回503，普通输出不受影响
+            MockHttpServletResponse busy = new MockHttpServletResponse();
+            util.serveZip(new MockHttpServletRequest(), busy, "recordings.zip", List.of());
+            assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, busy.getStatus());
+            FileSender.Permit single = sender.tryAcquire();
+            assertNotNull(single);
+            single.close();
+            
+            batch.close();
+            assertEquals(0, sender.getActiveTransfers());
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            util.serveZip(new MockHttpServletRequest(), response, "recordings.zip", List.of());
+            assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+            assertEquals(0, sender.getActiveTransfers());
+        } finally {
+            sender.shutdown();
+        }
+    }
+    
+    @Test
+    void sendStreamStopsAfterTimeout() {
+        FileProperties properties = new FileProperties();
+        properties.getDownload().setAsyncTimeoutSeconds(1);
+        FileSender sender = new FileSender(properties);
+        try {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            assertThrows(InterruptedIOException.class, () -> sender.sendStream(new MockHttpServletRequest(), response, out -> {
+                out.write(new byte[16]);
+                Thread.sleep(1200);
+                out.write(new byte[16]);
+            }, FileSender.TrafficClass.BULK, sender.tryAcquireBatch()));
+            assertEquals(16, response.getContentAsByteArray().length);
+            assertEquals(0, sender.getActiveTransfers());
+        } finally {
+            sender.shutdown();
+        }
+    }
+    
+    @Test
+    void clientKeyTrustsForwardedHeadersOnlyFromProxies() {
+        FileProperties properties = new FileProperties();
+        properties.getDownload().setClientKeyHeader("X-User-Id");
+        FileSender sender = new FileSender(properties);
+        try {
+            // 直连客户端伪造的请求头不采信
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.setRemoteAddr("203.0.113.7");
+            request.addHeader("X-User-Id", "victim");
+            request.addHeader("X-Forwarded-For", "198.51.100.1");
+            assertEquals("203.0.113.7", sender.clientKeyOf(request));
+            
+            // 来自受信任代理时使用配置的请求头
+            properties.getDownload().setTrustedProxies(List.of("10.0.0.1", "10.0.0.2"));
+            request.setRemoteAddr("10.0.0.1");
+            assertEquals("victim", sender.clientKeyOf(request));
+            
+            // 没有请求头时从右向左跳过受信任代理
+            request = new MockHttpServletRequest();
+            request.setRemoteAddr("10.0.0.1");
+            request.addHeader("X-Forwarded-For", "1.1.1.1, 198.51.100.1, 10.0.0.2");
+            assertEquals("198.51.100.1", sender.clientKeyOf(request));
+            
+            // 登录用户优先
+            request.setRemoteUser("alice");
+            assertEquals("alice", sender.clientKeyOf(request));
+        } finally {
+            sender.shutdown();
+        }
+    }
+}
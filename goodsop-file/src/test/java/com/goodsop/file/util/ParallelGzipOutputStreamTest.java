@@ -0,0 +1,76 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.config.FileProperties;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 并行GZIP压缩输出流单元测试
+ */
+class ParallelGzipOutputStreamTest {
+
+    @Test
+    void compressToStandardGzip() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // 空数据、不足一块、恰好一块、多块且末块不满
+            for (int size : new int[]{0, 1, 32 * 1024, 5 * 32 * 1024 + 7}) {
+                byte[] data = compressibleData(size);
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                try (OutputStream out = new ParallelGzipOutputStream(compressed, Deflater.DEFAULT_COMPRESSION,
+                        32 * 1024, executor, 4)) {
+                    // 不按块边界写入
+                    for (int off = 0; off < size; off += 1000) {
+                        out.write(data, off, Math.min(1000, size - off));
+                    }
+                }
+                try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+                    assertArrayEquals(data, in.readAllBytes(), "大小" + size + "的数据解压后不一致");
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void ratioCloseToSingleThreaded() throws IOException {
+        byte[] data = compressibleData(2 * 1024 * 1024);
+        ByteArrayOutputStream serial = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(serial)) {
+            out.write(data);
+        }
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        try (OutputStream out = new ParallelGzipOutputStream(parallel, Deflater.DEFAULT_COMPRESSION,
+                new ParallelTaskExecutor(new FileProperties()))) {
+            out.write(data);
+        }
+        // 预置字典后分块带来的损失很小
+        assertTrue(parallel.size() < serial.size() * 1.02, "并行压缩 " + parallel.size() + " / 单线程 " + serial.size());
+    }
+
+    private static byte[] compressibleData(int size) {
+        Random random = new Random(size);
+        StringBuilder content = new StringBuilder(size);
+        while (content.length() < size) {
+            content.append("设备").append(random.nextInt(100)).append("录音片段，时长").append(random.nextInt(60)).append("秒；");
+        }
+        byte[] data = new byte[size];
+        byte[] text = content.toString().getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(text, 0, data, 0, size);
+        return data;
+    }
+}
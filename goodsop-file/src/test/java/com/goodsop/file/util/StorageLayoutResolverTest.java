@@ -0,0 +1,69 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.config.FileProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 存储目录解析器单元测试
+ */
+class StorageLayoutResolverTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final LocalDate date = LocalDate.of(2025, 5, 6);
+
+    @Test
+    void resolveDateLayoutByDefault() {
+        StorageLayoutResolver resolver = createResolver("DATE");
+
+        File directory = resolver.resolveDirectory(date, "device01", "a.wav");
+
+        assertTrue(directory.isDirectory());
+        assertEquals(tempDir.resolve("20250506").toFile().getAbsoluteFile(), directory);
+        assertEquals("20250506/a.wav", resolver.relativize(new File(directory, "a.wav")));
+    }
+
+    @Test
+    void shardByFilenameMd5() {
+        StorageLayoutResolver resolver = createResolver("MD5_PREFIX");
+        String md5 = "ab12cd34ef567890ab12cd34ef567890";
+
+        File directory = resolver.resolveDirectory(date, "device01",
+                "device01_20250506_user01_1746500000000_60000_" + md5 + ".wav");
+
+        assertTrue(directory.isDirectory());
+        assertEquals("20250506/ab/12", resolver.relativize(directory));
+        // 处理前后的非标准文件名落在同一目录
+        assertEquals(resolver.resolveDirectory(date, "device01", "record.wav.enc"),
+                resolver.resolveDirectory(date, "device01", "record.wav"));
+    }
+
+    @Test
+    void shardByDeviceHash() {
+        StorageLayoutResolver resolver = createResolver("DEVICE_HASH");
+
+        File first = resolver.resolveDirectory(date, "device01", "a.wav");
+        File second = resolver.resolveDirectory(date, "device01", "b.wav");
+
+        assertEquals(first, second);
+        assertTrue(resolver.relativize(first).matches("20250506/[0-9a-f]{2}/[0-9a-f]{2}"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private StorageLayoutResolver createResolver(String layout) {
+        FileProperties properties = new FileProperties();
+        properties.getStorage().setPath(tempDir.toString());
+        properties.getStorage().setLayout(layout);
+        return new StorageLayoutResolver(properties, mock(ObjectProvider.class));
+    }
+}
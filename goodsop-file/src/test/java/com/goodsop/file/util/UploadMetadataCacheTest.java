@@ -0,0 +1,70 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.config.FileProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 上传元数据缓存单元测试
+ */
+class UploadMetadataCacheTest {
+
+    @Test
+    void evictLeastRecentlyUsedWhenFull() {
+        FileProperties properties = new FileProperties();
+        properties.getUpload().setMetadataCacheMaxEntries(2);
+        UploadMetadataCache cache = new UploadMetadataCache(properties);
+
+        cache.put(UploadMetadataCache.Namespace.EXTENSION, "a.gz", "wav");
+        cache.put(UploadMetadataCache.Namespace.EXTENSION, "b.gz", "mp3");
+        // 访问a，使b成为最久未访问的条目
+        assertEquals("wav", cache.get(UploadMetadataCache.Namespace.EXTENSION, "a.gz"));
+        cache.put(UploadMetadataCache.Namespace.ORIGINAL_SIZE, "a.gz", "1024");
+
+        assertNull(cache.get(UploadMetadataCache.Namespace.EXTENSION, "b.gz"));
+        assertEquals("1024", cache.get(UploadMetadataCache.Namespace.ORIGINAL_SIZE, "a.gz"));
+
+        UploadMetadataCache.CacheStats stats = cache.getStats();
+        assertEquals(2, stats.getSize());
+        assertEquals(2, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getEvictions());
+    }
+
+    @Test
+    void expireIdleEntries() {
+        FileProperties properties = new FileProperties();
+        properties.getCleanup().setTempFileMaxAge(0);
+        UploadMetadataCache cache = new UploadMetadataCache(properties);
+
+        cache.put(UploadMetadataCache.Namespace.EXTENSION, "device01_20250506_user_1_0_abc.gz", "wav");
+        sleep(5);
+        cache.evictExpired();
+
+        assertEquals(0, cache.getStats().getSize());
+        assertEquals(1, cache.getStats().getExpirations());
+    }
+
+    @Test
+    void evictAbandonedUpload() {
+        UploadMetadataCache cache = new UploadMetadataCache(new FileProperties());
+        String standardName = "device01_20250506_user_1_0_0123456789abcdef0123456789abcdef.wav";
+
+        cache.put(UploadMetadataCache.Namespace.ORIGINAL_SIZE, standardName, "1024");
+        cache.put(UploadMetadataCache.Namespace.EXTENSION, standardName, "wav");
+        cache.put(UploadMetadataCache.Namespace.EXTENSION, "other.wav", "wav");
+
+        assertEquals(2, cache.evictUpload(standardName));
+        assertNull(cache.get(UploadMetadataCache.Namespace.ORIGINAL_SIZE, standardName));
+        assertEquals("wav", cache.get(UploadMetadataCache.Namespace.EXTENSION, "other.wav"));
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
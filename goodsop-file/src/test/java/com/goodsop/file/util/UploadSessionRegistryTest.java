@@ -0,0 +1,115 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.config.FileProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分块上传会话注册表单元测试
+ */
+class UploadSessionRegistryTest {
+
+    private UploadSessionRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new UploadSessionRegistry(new FileProperties(), new InMemoryUploadSessionStore());
+    }
+
+    @Test
+    void reportMissingChunks() {
+        UploadSession session = registry.getOrCreate("device01", "test.wav", 5);
+        session.markChunk(0, 100);
+        session.markChunk(3, 100);
+        session.markChunk(3, 100); // 重复上传不重复计数
+
+        UploadSession found = registry.get("device01", "test.wav");
+        assertSame(session, found);
+        assertEquals(List.of(1, 2, 4), found.getMissingChunks());
+        assertEquals(2, found.getUploadedChunks());
+        assertEquals(200, found.getReceivedBytes());
+        assertFalse(found.tryComplete());
+
+        // 不同设备的同名文件是不同的会话
+        assertNull(registry.get("device02", "test.wav"));
+        assertThrows(IllegalArgumentException.class, () -> registry.getOrCreate("device01", "test.wav", 6));
+    }
+
+    @Test
+    void rejectChunksAboveLimitBeforeOpening() {
+        FileProperties properties = new FileProperties();
+        properties.getUpload().setMaxChunks(100);
+        UploadSessionRegistry limited = new UploadSessionRegistry(properties, new InMemoryUploadSessionStore());
+
+        assertThrows(IllegalArgumentException.class, () -> limited.getOrCreate("device01", "huge.wav", Integer.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> limited.getOrCreate("device01", "huge.wav", 101));
+        assertNull(limited.get("device01", "huge.wav"));
+        assertEquals(100, limited.getOrCreate("device01", "huge.wav", 100).getChunks());
+    }
+
+    @Test
+    void completeExactlyOnceUnderConcurrency() throws InterruptedException {
+        int chunks = 200;
+        UploadSession session = registry.getOrCreate("device01", "concurrent.wav", chunks);
+        AtomicInteger completions = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < chunks; i++) {
+            int chunk = i;
+            executor.submit(() -> {
+                start.await();
+                session.markChunk(chunk, 10);
+                if (session.tryComplete()) {
+                    completions.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(1, completions.get());
+        assertTrue(session.isCompleted());
+        assertTrue(session.getMissingChunks().isEmpty());
+        assertEquals(chunks * 10L, session.getReceivedBytes());
+    }
+
+    @Test
+    void shareSessionStateAcrossNodes() {
+        // 两个注册表共用同一个会话存储，模拟负载均衡后的两个节点
+        InMemoryUploadSessionStore store = new InMemoryUploadSessionStore();
+        UploadSessionRegistry node1 = new UploadSessionRegistry(new FileProperties(), store);
+        UploadSessionRegistry node2 = new UploadSessionRegistry(new FileProperties(), store);
+
+        UploadSession session1 = node1.getOrCreate("device01", "shared.wav", 3);
+        UploadSession session2 = node2.getOrCreate("device01", "shared.wav", 3);
+        assertNotSame(session1, session2);
+        assertEquals("a.wav", session1.getState().assignStandardFileName("a.wav"));
+        assertEquals("a.wav", session2.getState().assignStandardFileName("b.wav"));
+
+        session1.markChunk(0, 10);
+        session2.markChunk(2, 10);
+        assertEquals(List.of(1), node1.get("device01", "shared.wav").getMissingChunks());
+        assertFalse(session1.tryComplete());
+        session2.markChunk(1, 10);
+        assertTrue(session1.tryComplete());
+        assertFalse(session2.tryComplete());
+
+        // 一个节点完成并移除会话后，另一个节点上的同名上传得到新的会话
+        node1.remove(session1);
+        UploadSession next = node2.getOrCreate("device01", "shared.wav", 3);
+        assertNotSame(session2, next);
+        assertEquals(0, next.getUploadedChunks());
+        assertNull(next.getState().getStandardFileName());
+    }
+}
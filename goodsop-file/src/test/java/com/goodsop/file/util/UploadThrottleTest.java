@@ -0,0 +1,64 @@
+package com.goodsop.file.util;
+
+import com.goodsop.file.config.FileProperties;
+import com.goodsop.file.exception.UploadThrottledException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分块上传并发控制单元测试
+ */
+class UploadThrottleTest {
+
+    private UploadSessionRegistry registry;
+
+    private UploadThrottle throttle;
+
+    @BeforeEach
+    void setUp() {
+        FileProperties properties = new FileProperties();
+        properties.getUpload().setMaxInFlightChunks(3);
+        properties.getUpload().setMaxInFlightChunksPerUpload(2);
+        properties.getUpload().setRetryAfterSeconds(5);
+        registry = new UploadSessionRegistry(properties, new InMemoryUploadSessionStore());
+        throttle = new UploadThrottle(properties);
+    }
+
+    @Test
+    void rejectWhenPerUploadLimitReached() {
+        UploadSession session = registry.getOrCreate("device01", "a.wav", 10);
+        UploadThrottle.Permit first = throttle.acquire(session);
+        UploadThrottle.Permit second = throttle.acquire(session);
+
+        UploadThrottledException e = assertThrows(UploadThrottledException.class, () -> throttle.acquire(session));
+        assertEquals(5, e.getRetryAfterSeconds());
+        // 被拒绝的请求不应占用全局名额
+        assertEquals(2, throttle.getInFlight());
+
+        // 释放后可以继续上传，重复释放不影响计数
+        first.close();
+        first.close();
+        assertEquals(1, session.getInFlight());
+        throttle.acquire(session).close();
+        second.close();
+        assertEquals(0, throttle.getInFlight());
+    }
+
+    @Test
+    void rejectWhenGlobalLimitReached() {
+        UploadThrottle.Permit a = throttle.acquire(registry.getOrCreate("device01", "a.wav", 10));
+        UploadThrottle.Permit b = throttle.acquire(registry.getOrCreate("device02", "b.wav", 10));
+        UploadThrottle.Permit c = throttle.acquire(registry.getOrCreate("device03", "c.wav", 10));
+
+        UploadSession other = registry.getOrCreate("device04", "d.wav", 10);
+        assertThrows(UploadThrottledException.class, () -> throttle.acquire(other));
+        assertEquals(0, other.getInFlight());
+
+        a.close();
+        b.close();
+        c.close();
+        throttle.acquire(other).close();
+    }
+}